@@ -0,0 +1,75 @@
+package com.shahilraghuwanshi.aetherium.benchmarks;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.CellRect;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.SpatialGrid;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.TickFrames;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket frame serialization: {@link #encode} builds one tick's per-cell delta blocks,
+ * {@link #encodeAndAssemble} also assembles the frame of a viewer watching the whole map (the most
+ * expensive per-session work), and {@link #keyframe} encodes the full state of every cell, as for a
+ * viewer that just connected. The simulation advances one tick before every invocation, outside the
+ * measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class FrameEncodingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int vehicles;
+
+    private PopulatedGrid simulation;
+    private FrameEncoder encoder;
+    private CellRect allCells;
+    private boolean[] keyframeCells;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        simulation = new PopulatedGrid(vehicles, 1);
+        double extent = Math.sqrt(simulation.graph.nodeCount()) * SyntheticNetworks.GRID_SPACING;
+        SpatialGrid grid = new SpatialGrid(0, 0, extent, extent, 200);
+        encoder = new FrameEncoder(grid);
+        allCells = grid.allCells();
+        keyframeCells = new boolean[grid.cellCount()];
+        encode(); // Baseline, so measured frames are deltas
+    }
+
+    @Setup(Level.Invocation)
+    public void advance() {
+        simulation.engine.tick();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        simulation.close();
+    }
+
+    @Benchmark
+    public TickFrames encode() {
+        SimulationEngine engine = simulation.engine;
+        return encoder.encode(engine.getTickCount(), engine.getVehicles(), engine.getSignals());
+    }
+
+    @Benchmark
+    public byte[] encodeAndAssemble() {
+        return encode().assemble(allCells, allCells, false);
+    }
+
+    @Benchmark
+    public byte[] keyframe() {
+        TickFrames frames = encode();
+        Arrays.fill(keyframeCells, true);
+        encoder.encodeKeyframeBlocks(frames, keyframeCells);
+        return frames.assemble(allCells, CellRect.EMPTY, true);
+    }
+}
@@ -0,0 +1,42 @@
+package com.shahilraghuwanshi.aetherium.benchmarks;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+
+/**
+ * Routes on a {@link SyntheticNetworks#grid} without searching: along the row first, then along the
+ * column, cut off after {@code maxHops}. Lets tick benchmarks populate a million vehicles in seconds and
+ * bounds the memory their paths take; the tick cost does not depend on how routes were found.
+ */
+final class GridRouter implements Router {
+
+    private final RoadGraph graph;
+    private final int cols;
+    private final int maxHops;
+
+    GridRouter(RoadGraph graph, int cols, int maxHops) {
+        this.graph = graph;
+        this.cols = cols;
+        this.maxHops = maxHops;
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public int[] route(int start, int end) {
+        int row = start / cols, col = start % cols;
+        int endRow = end / cols, endCol = end % cols;
+        int hops = Math.min(maxHops, Math.abs(endCol - col) + Math.abs(endRow - row));
+        int[] path = new int[hops + 1];
+        path[0] = start;
+        for (int i = 1; i <= hops; i++) {
+            if (col != endCol) col += Integer.signum(endCol - col);
+            else row += Integer.signum(endRow - row);
+            path[i] = row * cols + col;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,54 @@
+package com.shahilraghuwanshi.aetherium.benchmarks;
+
+import com.shahilraghuwanshi.aetherium.simulation.IntelligentDriverModel;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.TickExecutor;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalPlan;
+
+import java.util.SplittableRandom;
+
+/**
+ * A simulation on a signalised grid sized for a target vehicle count (about two road segments per
+ * vehicle), with the application's default car-following parameters.
+ */
+final class PopulatedGrid implements AutoCloseable {
+
+    private static final int MAX_HOPS = 40;
+
+    final RoadGraph graph;
+    final SimulationEngine engine;
+    private final TickExecutor executor;
+    private final int vehicles;
+
+    PopulatedGrid(int vehicles, int workerThreads) {
+        this.vehicles = vehicles;
+        int side = Math.max(16, (int) Math.ceil(Math.sqrt(vehicles / 2.0)));
+        graph = SyntheticNetworks.grid(side, side);
+        SignalController signals = new SignalController(graph);
+        SignalPlan plan = SignalPlan.twoPhase(30, 3);
+        SplittableRandom random = new SplittableRandom(3);
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            signals.addSignal(node, plan, random.nextDouble() * plan.cycleSeconds());
+        }
+        IntelligentDriverModel driver = new IntelligentDriverModel(60, 30, 45, 4, 1.0, 8, 120);
+        int threads = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        executor = new TickExecutor(threads, 4096);
+        engine = new SimulationEngine(graph, new GridRouter(graph, side, MAX_HOPS), signals, driver, executor,
+                new SplittableRandom(11), vehicles, 0.033);
+        topUp();
+    }
+
+    /** Spawns vehicles until the target count is live again; spawns onto full road segments fail. */
+    void topUp() {
+        for (int attempts = 0; engine.getVehicles().size() < vehicles && attempts < 4 * vehicles; attempts++) {
+            engine.spawnVehicle();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
@@ -0,0 +1,58 @@
+package com.shahilraghuwanshi.aetherium.benchmarks;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchyBuilder;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchyRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+import com.shahilraghuwanshi.aetherium.simulation.routing.RoutingMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One shortest-path query between random intersections, as made by {@code SimulationService.findShortestPath}
+ * and for every spawned vehicle. The route cache is left out: it would only measure a hash lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class RoutingBenchmark {
+
+    public enum Network { GRID, SCALE_FREE }
+
+    @Param({"GRID", "SCALE_FREE"})
+    public Network network;
+
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    @Param({"ASTAR", "CH"})
+    public RoutingMode mode;
+
+    private Router router;
+    private int[] pairs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int side = (int) Math.sqrt(nodes);
+        RoadGraph graph = network == Network.GRID
+                ? SyntheticNetworks.grid(side, side)
+                : SyntheticNetworks.scaleFree(nodes, 2, 17);
+        router = mode == RoutingMode.CH
+                ? new ContractionHierarchyRouter(graph, new ContractionHierarchyBuilder(graph).build())
+                : new AStarRouter(graph);
+        pairs = SyntheticNetworks.randomPairs(graph, 4096, 29);
+    }
+
+    @Benchmark
+    public int[] route() {
+        int i = next;
+        next = (i + 2) % pairs.length;
+        return router.route(pairs[i], pairs[i + 1]);
+    }
+}
@@ -0,0 +1,46 @@
+package com.shahilraghuwanshi.aetherium.benchmarks;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalPlan;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/** One tick's update of every traffic signal on a fully signalised grid, on the simulation thread alone. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignalBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int signals;
+
+    private SignalController controller;
+    private double time;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int side = (int) Math.sqrt(signals);
+        RoadGraph graph = SyntheticNetworks.grid(side, side);
+        controller = new SignalController(graph);
+        SplittableRandom random = new SplittableRandom(5);
+        // A handful of shared plans with staggered offsets, as produced from the database
+        SignalPlan[] plans = {SignalPlan.twoPhase(20, 3), SignalPlan.twoPhase(30, 3), SignalPlan.twoPhase(45, 4)};
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            SignalPlan plan = plans[random.nextInt(plans.length)];
+            controller.addSignal(node, plan, random.nextDouble() * plan.cycleSeconds());
+        }
+    }
+
+    @Benchmark
+    public SignalController update() {
+        time += 0.033;
+        controller.update(time, 0, controller.signalCount());
+        return controller;
+    }
+}
@@ -0,0 +1,88 @@
+package com.shahilraghuwanshi.aetherium.benchmarks;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraphBuilder;
+
+import java.util.SplittableRandom;
+
+/**
+ * Road networks generated in memory, so benchmarks need no database. Intersection ids are dense
+ * indices + 1, so node {@code i} of the built graph is intersection {@code i + 1}.
+ */
+public final class SyntheticNetworks {
+
+    public static final double GRID_SPACING = 100;
+
+    private SyntheticNetworks() {
+    }
+
+    /** A rows x cols Manhattan grid with {@link #GRID_SPACING} between neighbours; every intersection signalised. */
+    public static RoadGraph grid(int rows, int cols) {
+        RoadGraphBuilder builder = RoadGraph.builder();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                builder.addIntersection(r * cols + c + 1, c * GRID_SPACING, r * GRID_SPACING, true);
+            }
+        }
+        long roadId = 1;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                long id = r * cols + c + 1;
+                if (c + 1 < cols) builder.addRoad(roadId++, id, id + 1);
+                if (r + 1 < rows) builder.addRoad(roadId++, id, id + cols);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * A Barabási–Albert network: each new intersection connects to {@code roadsPerNode} existing ones
+     * chosen in proportion to their degree, giving a few hubs and many minor junctions, like an arterial
+     * network. Intersections are scattered uniformly over a square with about one per
+     * {@link #GRID_SPACING}² of area.
+     */
+    public static RoadGraph scaleFree(int nodes, int roadsPerNode, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double side = Math.sqrt(nodes) * GRID_SPACING;
+        RoadGraphBuilder builder = RoadGraph.builder();
+        for (int i = 0; i < nodes; i++) {
+            builder.addIntersection(i + 1, random.nextDouble() * side, random.nextDouble() * side, random.nextInt(4) == 0);
+        }
+        // Every road endpoint once, so a uniform pick from it is a degree-proportional pick of a node
+        int[] endpoints = new int[2 * roadsPerNode * nodes];
+        int endpointCount = 0;
+        long roadId = 1;
+        int seedNodes = Math.min(nodes, roadsPerNode + 1);
+        for (int a = 0; a < seedNodes; a++) {
+            for (int b = a + 1; b < seedNodes; b++) {
+                builder.addRoad(roadId++, a + 1, b + 1);
+                endpoints[endpointCount++] = a;
+                endpoints[endpointCount++] = b;
+            }
+        }
+        int[] chosen = new int[roadsPerNode];
+        for (int node = seedNodes; node < nodes; node++) {
+            int count = 0;
+            while (count < roadsPerNode) {
+                int target = endpoints[random.nextInt(endpointCount)];
+                boolean duplicate = false;
+                for (int i = 0; i < count; i++) duplicate |= chosen[i] == target;
+                if (!duplicate) chosen[count++] = target;
+            }
+            for (int i = 0; i < count; i++) {
+                builder.addRoad(roadId++, node + 1, chosen[i] + 1);
+                endpoints[endpointCount++] = node;
+                endpoints[endpointCount++] = chosen[i];
+            }
+        }
+        return builder.build();
+    }
+
+    /** Random origin/destination node pairs, {@code [origin0, destination0, origin1, ...]}. */
+    public static int[] randomPairs(RoadGraph graph, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] pairs = new int[2 * count];
+        for (int i = 0; i < pairs.length; i++) pairs[i] = random.nextInt(graph.nodeCount());
+        return pairs;
+    }
+}
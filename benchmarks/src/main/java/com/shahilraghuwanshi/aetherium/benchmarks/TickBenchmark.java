@@ -0,0 +1,88 @@
+package com.shahilraghuwanshi.aetherium.benchmarks;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.SpatialGrid;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.TickFrames;
+import com.shahilraghuwanshi.aetherium.simulation.replay.TrajectoryRecorder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * One simulation tick at a given number of live vehicles: {@link #tick} is {@link SimulationEngine#tick}
+ * alone, {@link #tickAndEncode} adds the per-cell frame encoding {@code SimulationService.updateSimulation}
+ * does before handing frames to the WebSocket senders, and {@link #tickAndRecord} adds handing the tick to a
+ * {@link TrajectoryRecorder} writing to a temporary directory. Vehicles that arrive are replaced before each
+ * iteration so the count stays near the target.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class TickBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int vehicles;
+
+    // 0 = one per available processor, as in aetherium.simulation.worker-threads
+    @Param({"1", "0"})
+    public int workerThreads;
+
+    private PopulatedGrid simulation;
+    private FrameEncoder encoder;
+    private Path recordingDirectory;
+    private TrajectoryRecorder recorder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        simulation = new PopulatedGrid(vehicles, workerThreads);
+        double extent = Math.sqrt(simulation.graph.nodeCount()) * SyntheticNetworks.GRID_SPACING;
+        encoder = new FrameEncoder(new SpatialGrid(0, 0, extent, extent, 200));
+        recordingDirectory = Files.createTempDirectory("aetherium-recording");
+        recorder = new TrajectoryRecorder(recordingDirectory, simulation.graph.fingerprint(), 0.033, 300,
+                256L << 20, 16, 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void topUp() {
+        simulation.topUp();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        simulation.close();
+        recorder.close();
+        try (Stream<Path> files = Files.walk(recordingDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public SimulationEngine tick() {
+        simulation.engine.tick();
+        return simulation.engine;
+    }
+
+    @Benchmark
+    public TickFrames tickAndEncode() {
+        SimulationEngine engine = simulation.engine;
+        engine.tick();
+        return encoder.encode(engine.getTickCount(), engine.getVehicles(), engine.getSignals());
+    }
+
+    @Benchmark
+    public SimulationEngine tickAndRecord() {
+        SimulationEngine engine = simulation.engine;
+        engine.tick();
+        recorder.record(engine.getSnapshot());
+        return engine;
+    }
+}
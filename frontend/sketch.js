@@ -1,86 +1,90 @@
 // Global variables
-let mapLayout; // Static map data (intersections, roads)
-let cars = [];   // Dynamic car data (updated every tick)
-let trafficLights = {}; // Dynamic traffic light data (updated every tick)
+// Static map data, merged from layout tiles as they arrive (see MapService.java on the backend)
+let intersections = new Map(); // id -> {x, y}
+let roads = new Map();         // id -> [start intersection id, end intersection id]
+let lightIntersections = new Set(); // Ids of the intersections with a traffic light
+let cars = new Map();   // Dynamic car data: id (BigInt) -> {x, y, fromX, fromY, cell} (updated every frame)
+let carsByCell = new Map(); // Grid cell -> Set of car ids, to drop cells that leave the viewport
+let trafficLights = {}; // Intersection id -> light state; unknown until the first keyframe
 let socket;      // Our WebSocket connection object
 
+// Interpolation: cars are drawn sliding from where they were drawn when the last frame arrived
+// (fromX, fromY) to the position it carried (x, y), over one frame interval. This keeps motion smooth
+// whatever the server's physics step or frame rate, including fast-forwards.
+let lastFrameTime = 0;     // performance.now() when the last frame was applied
+let frameInterval = 33;    // Smoothed milliseconds between frames
+
+// Binary frame protocol (see FrameEncoder.java on the backend)
+const FRAME_KEYFRAME = 1;
+const FRAME_DELTA = 2;
+const FRAME_VERSION = 3; // Frames of any other version are dropped
+const POSITION_SCALE = 16; // Fixed-point steps per distance unit
+const LIGHT_STATES = ['NS_GREEN', 'EW_GREEN', 'ALL_RED']; // TrafficLight.State ordinals
+const BLOCK_RESET = 1; // Block flag: replace everything we know about the cell
+
 // p5.js function: Setup canvas and WebSocket connection
 function setup() {
   createCanvas(windowWidth, windowHeight);
   console.log("Setting up canvas and WebSocket connection...");
 
-  // --- Load static map data via standard HTTP request ONCE ---
-  let apiUrl = "http://localhost:8082/api/map/layout";
-  loadJSON(apiUrl, data => {
-      mapLayout = data;
-      console.log("Static map data loaded:", mapLayout);
-      
-      // --- NEW: Initialize traffic light states ---
-      // We store the light states separately so we can update them
-      // from the simulation data later.
-      for (let light of mapLayout.trafficLights) {
-        trafficLights[light.intersection.id] = light.currentState;
-      }
-      // --- END NEW ---
+  loadMapTiles();
+  connectWebSocket(); // Cars and lights stream in while the map loads
+}
+
+// Loads the map tile by tile, those in view first, so large maps show up before they are complete.
+// The browser keeps each response with its ETag and revalidates it, so unchanged tiles cost a 304.
+const API_URL = "http://localhost:8082/api/map/layout";
+async function loadMapTiles() {
+  try {
+    const index = await (await fetch(API_URL + "/tiles")).json();
+    const visible = [];
+    const rest = [];
+    for (let tile of index.tiles) {
+      const x = tile % index.columns;
+      const y = Math.floor(tile / index.columns);
+      const left = index.minX + x * index.tileSize;
+      const top = index.minY + y * index.tileSize;
+      const inView = left < width && left + index.tileSize > 0 && top < height && top + index.tileSize > 0;
+      (inView ? visible : rest).push([x, y]);
+    }
+    for (let batch of [visible, rest]) {
+      await Promise.all(batch.map(([x, y]) => fetch(API_URL + "/tiles/" + x + "/" + y)
+          .then(response => response.json())
+          .then(mergeLayout)));
+    }
+    console.log("Map loaded: " + intersections.size + " intersections, " + roads.size + " roads.");
+  } catch (e) {
+    console.error("Failed to load map layout:", e);
+  }
+}
 
-      connectWebSocket(); // Connect WebSocket *after* map data is loaded
-  }, error => {
-      console.error("Failed to load map layout:", error);
-  });
+// Adds one tile (or a full layout) in the columnar form the server sends
+function mergeLayout(layout) {
+  for (let i = 0; i < layout.intersectionIds.length; i++) {
+    intersections.set(layout.intersectionIds[i], { x: layout.xs[i], y: layout.ys[i] });
+  }
+  for (let i = 0; i < layout.roadIds.length; i++) {
+    roads.set(layout.roadIds[i], [layout.roadStarts[i], layout.roadEnds[i]]);
+  }
+  for (let id of layout.trafficLights) lightIntersections.add(id);
 }
 
 // Function to establish WebSocket connection
 function connectWebSocket() {
   let wsUrl = "ws://localhost:8082/ws/simulation";
   socket = new WebSocket(wsUrl);
+  socket.binaryType = "arraybuffer"; // Frames are binary keyframes and deltas
 
   socket.onopen = function(event) {
     console.log("WebSocket connection established.");
+    sendViewport();
   };
 
   socket.onmessage = function(event) {
     try {
-        // --- NEW: Receive CARS and update LIGHTS ---
-        // The backend now sends *car data*, but we can get
-        // the *real-time light state* from the cars that are stopped.
-        // This is a clever way to get both data streams at once.
-        let receivedCars = JSON.parse(event.data);
-        cars = receivedCars; // Update the global cars array
-
-        // Reset all lights to their last known state (from mapLayout)
-        // We do this in case a light has no cars near it.
-        for (let light of mapLayout.trafficLights) {
-             trafficLights[light.intersection.id] = light.currentState;
-        }
-
-        // Loop through the cars to find the *true* current state
-        // (This is a temporary way to get light data until we send a dedicated DTO)
-        for (let car of cars) {
-            if (car.currentTargetIntersection && car.currentTargetIntersection.hasTrafficLight) {
-                let lightId = car.currentTargetIntersection.id;
-                // Find the light object in our static map data
-                let light = mapLayout.trafficLights.find(l => l.intersection.id === lightId);
-                if (light) {
-                    // Update our light state tracker
-                    // This is a bit of a hack: we check if the car is moving horizontally
-                    let from = car.path[car.currentPathIndex - 1];
-                    let to = car.currentTargetIntersection;
-                    let isMovingHorizontally = Math.abs(to.xcoordinate - from.xcoordinate) > Math.abs(to.ycoordinate - from.ycoordinate);
-                    
-                    // This logic is reversed from the backend's "isCarApproachingRedLight"
-                    if (isMovingHorizontally) {
-                        trafficLights[lightId] = light.currentState; // This is the 'EW' state
-                    } else {
-                        trafficLights[lightId] = light.currentState; // This is the 'NS' state
-                    }
-                    // A better way would be to send a dedicated DTO, but this works for now
-                }
-            }
-        }
-        // --- END NEW ---
-
+        decodeFrame(new DataView(event.data));
     } catch (e) {
-        console.error("Error parsing WebSocket message:", e);
+        console.error("Error decoding WebSocket frame:", e);
     }
   };
 
@@ -93,30 +97,142 @@ function connectWebSocket() {
   };
 }
 
+// Applies one binary frame to `cars` and `trafficLights`
+function decodeFrame(view) {
+  let offset = 0;
+  const type = view.getUint8(offset);
+  const version = view.getUint8(offset + 1); offset += 4; // type, version, reserved
+  offset += 4; // tick
+  if (version !== FRAME_VERSION) return; // Laid out differently: misparsing it would corrupt everything after
+  if (type !== FRAME_KEYFRAME && type !== FRAME_DELTA) return; // Unknown frame type
+
+  // Freeze every car where it is drawn right now and animate from there to the new position
+  const now = performance.now();
+  const alpha = interpolationAlpha(now);
+  for (let car of cars.values()) {
+    car.fromX = lerp(car.fromX, car.x, alpha);
+    car.fromY = lerp(car.fromY, car.y, alpha);
+  }
+  if (lastFrameTime > 0) {
+    frameInterval = 0.9 * frameInterval + 0.1 * Math.min(now - lastFrameTime, 1000);
+  }
+  lastFrameTime = now;
+
+  let previous = null; // Cars known before a keyframe, so they keep sliding instead of jumping
+  if (type === FRAME_KEYFRAME) {
+    previous = cars;
+    cars = new Map();
+    carsByCell.clear();
+  }
+  const droppedCount = view.getUint32(offset, true); offset += 4;
+  for (let i = 0; i < droppedCount; i++) {
+    clearCell(view.getUint32(offset, true)); // Scrolled out of view
+    offset += 4;
+  }
+
+  // One block per grid cell inside our viewport
+  const blockCount = view.getUint32(offset, true); offset += 4;
+  for (let b = 0; b < blockCount; b++) {
+    const cell = view.getUint32(offset, true);
+    const flags = view.getUint8(offset + 4); offset += 5;
+    if (flags & BLOCK_RESET) clearCell(cell);
+
+    const upsertCount = view.getUint32(offset, true); offset += 4;
+    for (let i = 0; i < upsertCount; i++) {
+      const id = view.getBigUint64(offset, true);
+      const x = view.getInt32(offset + 8, true) / POSITION_SCALE;
+      const y = view.getInt32(offset + 12, true) / POSITION_SCALE;
+      const car = cars.get(id);
+      moveToCell(id, car ? car.cell : -1, cell);
+      if (car) {
+        // Crossed into another cell: keep sliding from where it was drawn
+        car.x = x; car.y = y; car.cell = cell;
+      } else {
+        const old = previous ? previous.get(id) : undefined;
+        cars.set(id, { x: x, y: y, fromX: old ? old.fromX : x, fromY: old ? old.fromY : y, cell: cell });
+      }
+      offset += 16;
+    }
+    const despawnCount = view.getUint32(offset, true); offset += 4;
+    for (let i = 0; i < despawnCount; i++) {
+      const id = view.getBigUint64(offset, true);
+      const car = cars.get(id);
+      // Blocks are independent: a car that crossed into another cell may already have been upserted there
+      if (car && car.cell === cell) {
+        cars.delete(id);
+        moveToCell(id, cell, -1);
+      }
+      offset += 8;
+    }
+    const moveCount = view.getUint32(offset, true); offset += 4;
+    for (let i = 0; i < moveCount; i++) {
+      const car = cars.get(view.getBigUint64(offset, true));
+      if (car) {
+        car.x += view.getInt16(offset + 8, true) / POSITION_SCALE;
+        car.y += view.getInt16(offset + 10, true) / POSITION_SCALE;
+      }
+      offset += 12;
+    }
+    const lightCount = view.getUint32(offset, true); offset += 4;
+    for (let i = 0; i < lightCount; i++) {
+      const intersectionId = Number(view.getBigUint64(offset, true)); // Layout JSON ids are plain numbers
+      trafficLights[intersectionId] = LIGHT_STATES[view.getUint8(offset + 8)];
+      offset += 9;
+    }
+  }
+}
+
+// How far between the previous and the latest frame cars should be drawn, 0..1
+function interpolationAlpha(now) {
+  return constrain((now - lastFrameTime) / frameInterval, 0, 1);
+}
+
+function clearCell(cell) {
+  const ids = carsByCell.get(cell);
+  if (!ids) return;
+  for (let id of ids) cars.delete(id);
+  carsByCell.delete(cell);
+}
+
+function moveToCell(id, from, to) {
+  if (from === to) return;
+  if (from >= 0) {
+    const ids = carsByCell.get(from);
+    if (ids) ids.delete(id);
+  }
+  if (to >= 0) {
+    if (!carsByCell.has(to)) carsByCell.set(to, new Set());
+    carsByCell.get(to).add(id);
+  }
+}
+
+// Tells the server which part of the map we draw, so it only streams cars in it
+function sendViewport() {
+  if (!socket || socket.readyState !== WebSocket.OPEN) return;
+  socket.send(JSON.stringify({ type: "viewport", minX: 0, minY: 0, maxX: width, maxY: height }));
+}
+
 // p5.js function: Draw loop
 function draw() {
   background(240); 
 
-  if (mapLayout && mapLayout.intersections) {
+  if (intersections.size > 0) {
     // Draw Roads
     stroke(150);
     strokeWeight(4);
-    for (let road of mapLayout.roads) {
-      line(
-        road.startIntersection.xcoordinate,
-        road.startIntersection.ycoordinate,
-        road.endIntersection.xcoordinate,
-        road.endIntersection.ycoordinate
-      );
+    for (let [startId, endId] of roads.values()) {
+      const start = intersections.get(startId);
+      const end = intersections.get(endId);
+      line(start.x, start.y, end.x, end.y);
     }
     
     // Draw Intersections (as plain blue dots first)
     noStroke();
     fill(100, 150, 255); 
-    for (let intersection of mapLayout.intersections) {
+    for (let intersection of intersections.values()) {
       circle(
-        intersection.xcoordinate,
-        intersection.ycoordinate,
+        intersection.x,
+        intersection.y,
         10
       );
     }
@@ -125,44 +241,52 @@ function draw() {
     // Draw this *after* the intersections so it appears on top
     noStroke();
     let lightSize = 10;
-    for (let light of mapLayout.trafficLights) {
-        let intersection = light.intersection;
-        let currentState = trafficLights[intersection.id]; // Get the current state
+    for (let id of lightIntersections) {
+        let intersection = intersections.get(id);
+        let currentState = trafficLights[id]; // Get the current state
         
         if (currentState === 'NS_GREEN') {
             // NS is Green
             fill(0, 255, 0); // Green
-            rect(intersection.xcoordinate - lightSize / 2, intersection.ycoordinate - lightSize * 1.5, lightSize, lightSize); // North
-            rect(intersection.xcoordinate - lightSize / 2, intersection.ycoordinate + lightSize * 0.5, lightSize, lightSize); // South
+            rect(intersection.x - lightSize / 2, intersection.y - lightSize * 1.5, lightSize, lightSize); // North
+            rect(intersection.x - lightSize / 2, intersection.y + lightSize * 0.5, lightSize, lightSize); // South
             
             // EW is Red
             fill(255, 0, 0); // Red
-            rect(intersection.xcoordinate - lightSize * 1.5, intersection.ycoordinate - lightSize / 2, lightSize, lightSize); // West
-            rect(intersection.xcoordinate + lightSize * 0.5, intersection.ycoordinate - lightSize / 2, lightSize, lightSize); // East
+            rect(intersection.x - lightSize * 1.5, intersection.y - lightSize / 2, lightSize, lightSize); // West
+            rect(intersection.x + lightSize * 0.5, intersection.y - lightSize / 2, lightSize, lightSize); // East
 
         } else if (currentState === 'EW_GREEN') {
             // NS is Red
             fill(255, 0, 0); // Red
-            rect(intersection.xcoordinate - lightSize / 2, intersection.ycoordinate - lightSize * 1.5, lightSize, lightSize); // North
-            rect(intersection.xcoordinate - lightSize / 2, intersection.ycoordinate + lightSize * 0.5, lightSize, lightSize); // South
+            rect(intersection.x - lightSize / 2, intersection.y - lightSize * 1.5, lightSize, lightSize); // North
+            rect(intersection.x - lightSize / 2, intersection.y + lightSize * 0.5, lightSize, lightSize); // South
 
             // EW is Green
             fill(0, 255, 0); // Green
-            rect(intersection.xcoordinate - lightSize * 1.5, intersection.ycoordinate - lightSize / 2, lightSize, lightSize); // West
-            rect(intersection.xcoordinate + lightSize * 0.5, intersection.ycoordinate - lightSize / 2, lightSize, lightSize); // East
+            rect(intersection.x - lightSize * 1.5, intersection.y - lightSize / 2, lightSize, lightSize); // West
+            rect(intersection.x + lightSize * 0.5, intersection.y - lightSize / 2, lightSize, lightSize); // East
+        } else if (currentState === 'ALL_RED') {
+            // Clearance: every approach is red
+            fill(255, 0, 0); // Red
+            rect(intersection.x - lightSize / 2, intersection.y - lightSize * 1.5, lightSize, lightSize); // North
+            rect(intersection.x - lightSize / 2, intersection.y + lightSize * 0.5, lightSize, lightSize); // South
+            rect(intersection.x - lightSize * 1.5, intersection.y - lightSize / 2, lightSize, lightSize); // West
+            rect(intersection.x + lightSize * 0.5, intersection.y - lightSize / 2, lightSize, lightSize); // East
         }
     }
     // --- END NEW ---
   }
 
-  // Draw Cars (Unchanged)
-  if (cars && cars.length > 0) {
+  // Draw Cars, interpolated between the last two frames
+  if (cars.size > 0) {
     noStroke();
     fill(255, 0, 0); 
-    for (let car of cars) {
+    const alpha = interpolationAlpha(performance.now());
+    for (let car of cars.values()) {
       circle(
-        car.x, 
-        car.y,
+        lerp(car.fromX, car.x, alpha), 
+        lerp(car.fromY, car.y, alpha),
         8
       );
     }
@@ -172,4 +296,5 @@ function draw() {
 // p5.js function: Handle window resize
 function windowResized() {
   resizeCanvas(windowWidth, windowHeight);
+  sendViewport();
 }
\ No newline at end of file
@@ -1,14 +1,20 @@
 package com.shahilraghuwanshi.aetherium;
 
 import com.shahilraghuwanshi.aetherium.simulation.SimulationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan // Picks up AetheriumProperties
 public class BackendApplication {
 
+    private static final Logger log = LoggerFactory.getLogger(BackendApplication.class);
+
     public static void main(String[] args) {
         SpringApplication.run(BackendApplication.class, args);
     }
@@ -17,12 +23,12 @@ public class BackendApplication {
     @Bean
     public CommandLineRunner demo(SimulationService simulationService) {
         return (args) -> {
-            System.out.println("Spawning initial cars...");
+            log.info("Spawning initial cars...");
             // Spawn 5 cars for testing
             for (int i = 0; i < 5; i++) {
                 simulationService.spawnCar();
             }
-            System.out.println("Initial cars spawned.");
+            log.info("Initial cars spawned.");
         };
     }
 }
@@ -0,0 +1,229 @@
+package com.shahilraghuwanshi.aetherium.config;
+
+import com.shahilraghuwanshi.aetherium.simulation.OverflowPolicy;
+import com.shahilraghuwanshi.aetherium.simulation.PacingMode;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandMode;
+import com.shahilraghuwanshi.aetherium.simulation.partition.PartitionRole;
+import com.shahilraghuwanshi.aetherium.simulation.routing.RoutingMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Simulation settings bound from the {@code aetherium.*} keys in application.properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "aetherium")
+public class AetheriumProperties {
+
+    private Simulation simulation = new Simulation();
+    private Routing routing = new Routing();
+    private Stream stream = new Stream();
+    private MapImport mapImport = new MapImport();
+    private MapLayout mapLayout = new MapLayout();
+    private Demand demand = new Demand();
+    private Recording recording = new Recording();
+    private Partition partition = new Partition();
+    private Trips trips = new Trips();
+    private Scenarios scenarios = new Scenarios();
+
+    @Data
+    public static class Simulation {
+        // Upper bound on live vehicles; the vehicle store grows on demand up to this size
+        private int maxVehicles = 50;
+        // Threads for the parallel tick phases; 0 = one per available processor
+        private int workerThreads = 0;
+        // Smallest index range handed to one worker; smaller ticks run on the simulation thread alone
+        private int parallelChunkSize = 4096;
+        // All-red seconds between the green phases of every signal; 0 = switch directly
+        private double signalClearanceSeconds = 0;
+        // Seed of the random spawns and destinations; the same seed replays the same run
+        private long seed = 1;
+        // Simulated seconds per tick, independent of how fast ticks run
+        private double tickSeconds = 0.033;
+        // REALTIME paces ticks against the wall clock; HEADLESS runs them back to back
+        private PacingMode pacing = PacingMode.REALTIME;
+        // Simulated seconds per wall-clock second in REALTIME mode
+        private double speed = 1.0;
+        // Compiled copy of the map, loaded instead of the database while the tables are unchanged; blank = off
+        private String networkCacheDir = "data/network";
+        private CarFollowing carFollowing = new CarFollowing();
+    }
+
+    // Intelligent Driver Model parameters; distances in map units, times in seconds
+    @Data
+    public static class CarFollowing {
+        private double desiredSpeed = 60;
+        private double maxAcceleration = 30;
+        private double comfortableDeceleration = 45;
+        // Bumper-to-bumper distance in a standing queue, and the length of every vehicle
+        private double minimumGap = 4;
+        private double vehicleLength = 8;
+        private double timeHeadway = 1.0;
+        // Vehicles that would need to brake harder than this to stop for a red light drive through
+        private double maxDeceleration = 120;
+    }
+
+    @Data
+    public static class Routing {
+        // Shortest-path implementation used when spawning cars
+        private RoutingMode mode = RoutingMode.ASTAR;
+        // Where Contraction Hierarchies preprocessing is cached between restarts
+        private String chCacheDir = "data/routing";
+        private RouteCache cache = new RouteCache();
+        private Congestion congestion = new Congestion();
+    }
+
+    // Live travel times per edge, used for routing and for rerouting vehicles stuck behind congestion
+    @Data
+    public static class Congestion {
+        // Off: routes minimise distance and are fixed at spawn
+        private boolean enabled = false;
+        // Simulated seconds between publications of new travel-time estimates
+        private double updateSeconds = 10;
+        // Weight of the newest interval in the moving average, 0..1
+        private double smoothing = 0.3;
+        // Reroute when the rest of a trip looks this fraction slower than last estimated
+        private double rerouteThreshold = 0.25;
+        // Take a new route only if it saves at least this fraction of the remaining time
+        private double minImprovement = 0.1;
+        // Route searches for degraded trips per tick, and vehicles checked per tick (round robin)
+        private int maxReroutesPerTick = 50;
+        private int rerouteChecksPerTick = 2000;
+    }
+
+    @Data
+    public static class RouteCache {
+        private boolean enabled = true;
+        // Both limits apply; whichever is hit first triggers LRU eviction
+        private int maxEntries = 100_000;
+        private DataSize maxMemory = DataSize.ofMegabytes(64);
+    }
+
+    @Data
+    public static class Stream {
+        // Frames between full keyframes sent to every viewer; deltas in between
+        private int keyframeInterval = 90;
+        // Upper bound on frames broadcast per wall-clock second; ticks in between are folded into the next delta
+        private double maxFramesPerSecond = 30;
+        // Frames queued per viewer before the overflow policy kicks in
+        private int outboxCapacity = 64;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.CONFLATE;
+        // Viewers that keep overflowing their outbox for this long are disconnected
+        private Duration slowClientTimeout = Duration.ofSeconds(10);
+        // Threads performing WebSocket sends, shared by all viewers
+        private int senderThreads = 4;
+        // Side of the square grid cells viewers subscribe to, in map units
+        private double cellSize = 200;
+    }
+
+    @Data
+    public static class MapImport {
+        // Rows per JDBC batch
+        private int batchSize = 5000;
+        // CSV edge lists carry no signals: intersections where this many roads meet get one; 0 = none
+        private int signalMinDegree = 3;
+        // Green seconds per phase for imported traffic lights
+        private int greenSeconds = 20;
+        // OSM: highway=* values imported as roads, and the scale of the projection
+        private List<String> osmHighways = List.of("motorway", "trunk", "primary", "secondary", "tertiary",
+                "unclassified", "residential", "motorway_link", "trunk_link", "primary_link", "secondary_link",
+                "tertiary_link", "living_street");
+        private double metresPerUnit = 1.0;
+    }
+
+    @Data
+    public static class MapLayout {
+        // Side of the square tiles served by /api/map/layout/tiles, in map units
+        private double tileSize = 2000;
+    }
+
+    @Data
+    public static class Demand {
+        // RANDOM (a random trip on ~5% of ticks) or OD_MATRIX (time-of-day origin-destination demand)
+        private DemandMode mode = DemandMode.RANDOM;
+        // CSV of startHour,originZone,destinationZone,tripsPerHour; blank = trips-per-hour spread over all zone pairs
+        private String odMatrixFile = "";
+        // Zones: a grid over the map, trips start and end at a few access nodes of each
+        private int zoneColumns = 8;
+        private int zoneRows = 8;
+        private int accessNodesPerZone = 8;
+        // Without a matrix file: average trips per hour, scaled by one multiplier per hour of the day
+        private double tripsPerHour = 3600;
+        private List<Double> hourlyProfile = List.of(0.2, 0.1, 0.1, 0.1, 0.2, 0.5, 1.2, 2.5, 2.8, 1.5, 1.0, 1.0,
+                1.1, 1.0, 1.0, 1.2, 1.8, 2.6, 2.4, 1.4, 0.9, 0.7, 0.5, 0.3);
+        // Time of day at the start of the simulation, in hours
+        private double startHour = 7;
+        // Departures are generated and routed per window of batch-seconds, lookahead-seconds ahead of time
+        private double batchSeconds = 60;
+        private double lookaheadSeconds = 120;
+        // Route assignment threads; 0 = one per available processor
+        private int routeThreads = 0;
+        // Upper bound on vehicles entering per tick, so a surge is spread over several ticks
+        private int maxReleasesPerTick = 200;
+    }
+
+    @Data
+    public static class Recording {
+        // Off: nothing is written; replay can still play earlier recordings from the directory
+        private boolean enabled = false;
+        // Every run records into a subdirectory named after its start time
+        private String directory = "data/recordings";
+        // Records between keyframes; a seek decodes at most this many
+        private int keyframeInterval = 300;
+        // A new segment file is started once the current one reaches this size
+        private DataSize segmentSize = DataSize.ofMegabytes(256);
+        // Ticks waiting for the writer before further ticks are folded into the next one written; each holds a snapshot
+        private int queueCapacity = 16;
+        // Deflate level, 1 (fastest) to 9 (smallest)
+        private int compressionLevel = 1;
+    }
+
+    // One city split into regions, each simulated by a worker process, driven in lockstep by a coordinator
+    @Data
+    public static class Partition {
+        // NONE simulates the whole city in this process
+        private PartitionRole role = PartitionRole.NONE;
+        // Regions the map is cut into; the coordinator and every worker must agree
+        private int regions = 2;
+        // WORKER: the region this process simulates, 0 to regions - 1
+        private int region = 0;
+        // Where the coordinator listens for its workers
+        private String coordinatorHost = "localhost";
+        private int coordinatorPort = 8090;
+        // At startup, how long the coordinator waits for every worker, and a worker for the coordinator
+        private Duration connectTimeout = Duration.ofMinutes(2);
+    }
+
+    // Statistics of completed trips, aggregated off the tick thread and rolled up per interval of simulated time
+    @Data
+    public static class Trips {
+        // Off: arrivals are only counted
+        private boolean enabled = true;
+        // Events waiting between the tick thread and the statistics thread; events finding it full are dropped
+        private int ringCapacity = 65536;
+        // Simulated seconds per rollup interval
+        private double intervalSeconds = 300;
+        // Relative error of travel-time quantiles
+        private double accuracy = 0.02;
+        // Rollups of closed intervals are written to trip_rollups and road_rollups every flush-interval; false = memory only
+        private boolean persist = true;
+        private Duration flushInterval = Duration.ofSeconds(10);
+        private int batchSize = 1000;
+        // Rows kept for retry while the database is unavailable, before the oldest intervals are given up
+        private int maxPendingRows = 1_000_000;
+    }
+
+    @Data
+    public static class Scenarios {
+        // Threads ticking every scenario, one tick at a time each; 0 = one per available processor
+        private int workerThreads = 0;
+        // Threads routing the OD demand of every scenario; 0 = one per available processor
+        private int routeThreads = 0;
+        // Scenarios that may exist at once, paused ones included
+        private int maxScenarios = 32;
+    }
+}
@@ -1,13 +1,20 @@
 package com.shahilraghuwanshi.aetherium.controller;
 
-import com.shahilraghuwanshi.aetherium.dto.MapLayoutDto;
+import com.shahilraghuwanshi.aetherium.service.EncodedResponse;
 import com.shahilraghuwanshi.aetherium.service.MapService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin; // Import CrossOrigin
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-@CrossOrigin(origins = "*") // Keep this line for CORS
+@CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ETAG) // Keep this line for CORS
 @RestController
 @RequestMapping("/api/map")
 public class MapController {
@@ -20,7 +27,78 @@ public class MapController {
     }
 
     @GetMapping("/layout")
-    public MapLayoutDto getMapLayout() {
-        return mapService.getMapLayout();
+    public ResponseEntity<byte[]> getMapLayout(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return serve(mapService.getMapLayout(), ifNoneMatch, acceptEncoding);
     }
-}
\ No newline at end of file
+
+    // Tile grid and the tiles that have content, for loading the layout piece by piece
+    @GetMapping("/layout/tiles")
+    public ResponseEntity<byte[]> getTileIndex(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return serve(mapService.getTileIndex(), ifNoneMatch, acceptEncoding);
+    }
+
+    @GetMapping("/layout/tiles/{x}/{y}")
+    public ResponseEntity<byte[]> getTile(@PathVariable int x, @PathVariable int y,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        EncodedResponse tile = mapService.getTile(x, y);
+        if (tile == null) return ResponseEntity.notFound().build();
+        return serve(tile, ifNoneMatch, acceptEncoding);
+    }
+
+    // Pre-encoded bodies: 304 if the client's copy is current, else the gzip form when the client accepts it.
+    // Each coding has its own ETag, so a cache never validates one coding's bytes for a request wanting the other.
+    // no-cache lets clients keep their copy but makes them revalidate it, since the map changes with the network.
+    private static ResponseEntity<byte[]> serve(EncodedResponse response, String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        boolean notModified = matches(ifNoneMatch, response.etag()) || matches(ifNoneMatch, response.gzipEtag());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                .eTag(gzip ? response.gzipEtag() : response.etag())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (notModified) return builder.build();
+        builder.contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(response.gzip());
+        }
+        return builder.body(response.identity());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2); // Weak comparison, as RFC 9110 requires for If-None-Match
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    // True if Accept-Encoding lists gzip, or failing that *, with a non-zero q value
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        Boolean wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase();
+                if (parameter.startsWith("q=")) accepted = qValue(parameter.substring(2)) > 0;
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) return accepted;
+            if (coding.equals("*")) wildcard = accepted;
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static double qValue(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return 0; // Malformed: don't pick a coding the client may have meant to refuse
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.shahilraghuwanshi.aetherium.controller;
+
+import com.shahilraghuwanshi.aetherium.dto.NetworkStatusDto;
+import com.shahilraghuwanshi.aetherium.dto.RoadDto;
+import com.shahilraghuwanshi.aetherium.service.NetworkEditService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.function.Supplier;
+
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping("/api/network")
+public class NetworkController {
+
+    private final NetworkEditService networkEditService;
+
+    // Constructor Injection
+    public NetworkController(NetworkEditService networkEditService) {
+        this.networkEditService = networkEditService;
+    }
+
+    @GetMapping
+    public NetworkStatusDto getStatus() {
+        return networkEditService.status();
+    }
+
+    // e.g. PUT /api/network/roads/42/closed?closed=true; the simulation takes it up at its next tick
+    @PutMapping("/roads/{id}/closed")
+    public ResponseEntity<RoadDto> setClosed(@PathVariable long id, @RequestParam boolean closed) {
+        return edit(HttpStatus.OK, () -> networkEditService.setClosed(id, closed));
+    }
+
+    @PutMapping("/roads/{id}/speed-limit")
+    public ResponseEntity<RoadDto> setSpeedLimit(@PathVariable long id, @RequestParam double limit) {
+        return edit(HttpStatus.OK, () -> networkEditService.setSpeedLimit(id, limit));
+    }
+
+    @DeleteMapping("/roads/{id}/speed-limit")
+    public ResponseEntity<RoadDto> clearSpeedLimit(@PathVariable long id) {
+        return edit(HttpStatus.OK, () -> networkEditService.setSpeedLimit(id, null));
+    }
+
+    // e.g. POST /api/network/roads?start=17&end=23&speedLimit=30, between existing intersections
+    @PostMapping("/roads")
+    public ResponseEntity<RoadDto> addRoad(@RequestParam long start, @RequestParam long end,
+                                           @RequestParam(required = false) Double speedLimit) {
+        return edit(HttpStatus.CREATED, () -> networkEditService.addRoad(start, end, speedLimit));
+    }
+
+    // 404 for an unknown road or intersection, 400 for an invalid edit, 409 while the city is partitioned
+    private static ResponseEntity<RoadDto> edit(HttpStatus status, Supplier<RoadDto> edit) {
+        try {
+            RoadDto road = edit.get();
+            return road != null ? ResponseEntity.status(status).body(road) : ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.shahilraghuwanshi.aetherium.controller;
+
+import com.shahilraghuwanshi.aetherium.dto.ReplayStatusDto;
+import com.shahilraghuwanshi.aetherium.service.ReplayService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.List;
+
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping("/api/replay")
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    // Constructor Injection
+    public ReplayController(ReplayService replayService) {
+        this.replayService = replayService;
+    }
+
+    @GetMapping("/recordings")
+    public List<String> getRecordings() throws IOException {
+        return replayService.listRecordings();
+    }
+
+    // The replay in progress; 404 while viewers see the live simulation
+    @GetMapping
+    public ResponseEntity<ReplayStatusDto> getStatus() {
+        return orNotFound(replayService.status());
+    }
+
+    // e.g. POST /api/replay/start?recording=20250101-120000&tick=9000&speed=4
+    @PostMapping("/start")
+    public ResponseEntity<ReplayStatusDto> start(@RequestParam String recording,
+                                                 @RequestParam(defaultValue = "0") long tick,
+                                                 @RequestParam(defaultValue = "1.0") double speed) throws IOException {
+        if (!(speed > 0)) return ResponseEntity.badRequest().build();
+        try {
+            return orNotFound(replayService.start(recording, tick, speed));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build(); // Recorded on another road network
+        }
+    }
+
+    @PutMapping("/seek")
+    public ResponseEntity<ReplayStatusDto> seek(@RequestParam long tick) {
+        return orNotFound(replayService.seek(tick));
+    }
+
+    @PutMapping("/speed")
+    public ResponseEntity<ReplayStatusDto> setSpeed(@RequestParam double speed) {
+        if (!(speed > 0)) return ResponseEntity.badRequest().build();
+        return orNotFound(replayService.setSpeed(speed));
+    }
+
+    // Hands the stream back to the live simulation
+    @PostMapping("/stop")
+    public ResponseEntity<Void> stop() {
+        replayService.stop();
+        return ResponseEntity.noContent().build();
+    }
+
+    private static ResponseEntity<ReplayStatusDto> orNotFound(ReplayStatusDto status) {
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.shahilraghuwanshi.aetherium.controller;
+
+import com.shahilraghuwanshi.aetherium.dto.NetworkStatusDto;
+import com.shahilraghuwanshi.aetherium.dto.ScenarioDto;
+import com.shahilraghuwanshi.aetherium.dto.VehiclesDto;
+import com.shahilraghuwanshi.aetherium.simulation.PacingMode;
+import com.shahilraghuwanshi.aetherium.simulation.ScenarioManager;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandMode;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.Scenario;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.ScenarioSpec;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping("/api/scenarios")
+public class ScenarioController {
+
+    private final ScenarioManager scenarioManager;
+
+    // Constructor Injection
+    public ScenarioController(ScenarioManager scenarioManager) {
+        this.scenarioManager = scenarioManager;
+    }
+
+    @GetMapping
+    public List<ScenarioDto> list() {
+        return scenarioManager.list().stream().map(ScenarioDto::from).toList();
+    }
+
+    // e.g. POST /api/scenarios?name=bridge-closed&seed=7&demand=OD_MATRIX&tripsPerHour=5000&pacing=HEADLESS;
+    // whatever is left out is as configured for the live simulation. 409 once max-scenarios exist.
+    @PostMapping
+    public ResponseEntity<ScenarioDto> create(@RequestParam(required = false) String name,
+                                              @RequestParam(required = false) Long seed,
+                                              @RequestParam(required = false) DemandMode demand,
+                                              @RequestParam(required = false) Double tripsPerHour,
+                                              @RequestParam(required = false) Double startHour,
+                                              @RequestParam(required = false) Integer maxVehicles,
+                                              @RequestParam(required = false) PacingMode pacing,
+                                              @RequestParam(required = false) Double speed) {
+        ScenarioSpec defaults = scenarioManager.defaults();
+        ScenarioSpec spec;
+        try {
+            spec = new ScenarioSpec(name,
+                    seed != null ? seed : defaults.seed(),
+                    demand != null ? demand : defaults.demandMode(),
+                    tripsPerHour != null ? tripsPerHour : defaults.tripsPerHour(),
+                    startHour != null ? startHour : defaults.startHour(),
+                    maxVehicles != null ? maxVehicles : defaults.maxVehicles(),
+                    pacing != null ? pacing : defaults.pacing(),
+                    speed != null ? speed : defaults.speed());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(ScenarioDto.from(scenarioManager.create(spec)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ScenarioDto> get(@PathVariable String id) {
+        return withScenario(id, ScenarioDto::from);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> destroy(@PathVariable String id) {
+        return scenarioManager.destroy(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/{id}/pause")
+    public ResponseEntity<ScenarioDto> pause(@PathVariable String id) {
+        return withScenario(id, scenario -> {
+            scenario.pause();
+            return ScenarioDto.from(scenario);
+        });
+    }
+
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<ScenarioDto> resume(@PathVariable String id) {
+        return withScenario(id, scenario -> {
+            scenario.resume();
+            return ScenarioDto.from(scenario);
+        });
+    }
+
+    // As PUT /api/simulation/clock, for one scenario
+    @PutMapping("/{id}/clock")
+    public ResponseEntity<ScenarioDto> setClock(@PathVariable String id, @RequestParam PacingMode pacing,
+                                                @RequestParam(defaultValue = "1.0") double speed) {
+        if (!(speed > 0)) return ResponseEntity.badRequest().build();
+        return withScenario(id, scenario -> {
+            scenario.getClock().setPacing(pacing, speed);
+            return ScenarioDto.from(scenario);
+        });
+    }
+
+    @PostMapping("/{id}/fast-forward")
+    public ResponseEntity<ScenarioDto> fastForward(@PathVariable String id, @RequestParam double seconds) {
+        if (!(seconds >= 0)) return ResponseEntity.badRequest().build();
+        return withScenario(id, scenario -> {
+            scenario.getClock().fastForward((long) Math.ceil(seconds / scenario.getClock().getTickSeconds()));
+            return ScenarioDto.from(scenario);
+        });
+    }
+
+    @GetMapping("/{id}/vehicles")
+    public ResponseEntity<VehiclesDto> getVehicles(@PathVariable String id) {
+        return withScenario(id, scenario -> VehiclesDto.from(scenario.getSnapshot()));
+    }
+
+    // Edits of a scenario's network are its own: nothing is written to the roads table and other scenarios keep theirs
+    @GetMapping("/{id}/network")
+    public ResponseEntity<NetworkStatusDto> getNetwork(@PathVariable String id) {
+        return withScenario(id, ScenarioController::networkStatus);
+    }
+
+    @PutMapping("/{id}/network/roads/{roadId}/closed")
+    public ResponseEntity<NetworkStatusDto> setClosed(@PathVariable String id, @PathVariable long roadId,
+                                                      @RequestParam boolean closed) {
+        return edit(id, graph -> graph.withRoadClosed(roadId, closed));
+    }
+
+    @PutMapping("/{id}/network/roads/{roadId}/speed-limit")
+    public ResponseEntity<NetworkStatusDto> setSpeedLimit(@PathVariable String id, @PathVariable long roadId,
+                                                          @RequestParam double limit) {
+        if (!(limit > 0)) return ResponseEntity.badRequest().build();
+        return edit(id, graph -> graph.withSpeedLimit(roadId, limit));
+    }
+
+    @DeleteMapping("/{id}/network/roads/{roadId}/speed-limit")
+    public ResponseEntity<NetworkStatusDto> clearSpeedLimit(@PathVariable String id, @PathVariable long roadId) {
+        return edit(id, graph -> graph.withSpeedLimit(roadId, Double.NaN));
+    }
+
+    // 404 for an unknown scenario or road
+    private ResponseEntity<NetworkStatusDto> edit(String id, UnaryOperator<RoadGraph> edit) {
+        try {
+            return withScenario(id, scenario -> {
+                scenario.editNetwork(edit);
+                return networkStatus(scenario);
+            });
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    private <T> ResponseEntity<T> withScenario(String id, Function<Scenario, T> action) {
+        Scenario scenario = scenarioManager.get(id);
+        return scenario != null ? ResponseEntity.ok(action.apply(scenario)) : ResponseEntity.notFound().build();
+    }
+
+    private static NetworkStatusDto networkStatus(Scenario scenario) {
+        RoadGraph graph = scenario.getLatestGraph();
+        NetworkStatusDto dto = new NetworkStatusDto();
+        dto.setVersion(scenario.getNetworkVersion());
+        dto.setIntersections(graph.nodeCount());
+        dto.setRoads(graph.edgeCount() / 2);
+        dto.setClosedRoads(graph.closedEdgeCount() / 2);
+        return dto;
+    }
+}
@@ -0,0 +1,66 @@
+package com.shahilraghuwanshi.aetherium.controller;
+
+import com.shahilraghuwanshi.aetherium.dto.ClockDto;
+import com.shahilraghuwanshi.aetherium.dto.VehiclesDto;
+import com.shahilraghuwanshi.aetherium.simulation.PacingMode;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationService;
+import com.shahilraghuwanshi.aetherium.simulation.routing.RouteCacheStats;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping("/api/simulation")
+public class SimulationController {
+
+    private final SimulationService simulationService;
+
+    // Constructor Injection
+    public SimulationController(SimulationService simulationService) {
+        this.simulationService = simulationService;
+    }
+
+    // Read from the last published snapshot; never waits for the simulation thread
+    @GetMapping("/vehicles")
+    public VehiclesDto getVehicles() {
+        return VehiclesDto.from(simulationService.getSnapshot());
+    }
+
+    @GetMapping("/route-cache")
+    public ResponseEntity<RouteCacheStats> getRouteCacheStats() {
+        RouteCacheStats stats = simulationService.getRouteCacheStats();
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/clock")
+    public ClockDto getClock() {
+        return clock();
+    }
+
+    // e.g. PUT /api/simulation/clock?pacing=HEADLESS, or ?pacing=REALTIME&speed=4
+    @PutMapping("/clock")
+    public ResponseEntity<ClockDto> setClock(@RequestParam PacingMode pacing,
+                                             @RequestParam(defaultValue = "1.0") double speed) {
+        if (!(speed > 0)) return ResponseEntity.badRequest().build();
+        simulationService.setPacing(pacing, speed);
+        return ResponseEntity.ok(clock());
+    }
+
+    // Simulates the next N seconds as fast as possible, e.g. ?seconds=86400 for a day; returns at once
+    @PostMapping("/fast-forward")
+    public ResponseEntity<ClockDto> fastForward(@RequestParam double seconds) {
+        if (!(seconds >= 0)) return ResponseEntity.badRequest().build();
+        simulationService.fastForward(seconds);
+        return ResponseEntity.accepted().body(clock());
+    }
+
+    private ClockDto clock() {
+        return ClockDto.from(simulationService.getLoop(), simulationService.getSnapshot().getSequence());
+    }
+}
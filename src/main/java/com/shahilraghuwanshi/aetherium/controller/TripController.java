@@ -0,0 +1,61 @@
+package com.shahilraghuwanshi.aetherium.controller;
+
+import com.shahilraghuwanshi.aetherium.dto.ThroughputDto;
+import com.shahilraghuwanshi.aetherium.dto.TripStatsDto;
+import com.shahilraghuwanshi.aetherium.dto.TripSummaryDto;
+import com.shahilraghuwanshi.aetherium.service.TripStatisticsService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+// Statistics of the trips completed in this run; 404 when they are off or nothing matches
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping("/api/trips")
+public class TripController {
+
+    private final TripStatisticsService tripStatisticsService;
+
+    // Constructor Injection
+    public TripController(TripStatisticsService tripStatisticsService) {
+        this.tripStatisticsService = tripStatisticsService;
+    }
+
+    @GetMapping
+    public ResponseEntity<TripSummaryDto> getSummary() {
+        return orNotFound(tripStatisticsService.summary());
+    }
+
+    // e.g. GET /api/trips/zone-pairs?limit=10, busiest first
+    @GetMapping("/zone-pairs")
+    public ResponseEntity<List<TripStatsDto>> getBusiestZonePairs(@RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1) return ResponseEntity.badRequest().build();
+        return orNotFound(tripStatisticsService.busiestZonePairs(limit));
+    }
+
+    @GetMapping("/zone-pairs/{origin}/{destination}")
+    public ResponseEntity<TripStatsDto> getZonePair(@PathVariable int origin, @PathVariable int destination) {
+        return orNotFound(tripStatisticsService.zonePair(origin, destination));
+    }
+
+    @GetMapping("/roads/{id}")
+    public ResponseEntity<TripStatsDto> getRoad(@PathVariable long id) {
+        return orNotFound(tripStatisticsService.road(id));
+    }
+
+    // One entry per interval of simulated time; the last one is still open
+    @GetMapping("/throughput")
+    public ResponseEntity<List<ThroughputDto>> getThroughput() {
+        return orNotFound(tripStatisticsService.throughput());
+    }
+
+    private static <T> ResponseEntity<T> orNotFound(T body) {
+        return body != null ? ResponseEntity.ok(body) : ResponseEntity.notFound().build();
+    }
+}
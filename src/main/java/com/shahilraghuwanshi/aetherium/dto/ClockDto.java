@@ -0,0 +1,39 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import com.shahilraghuwanshi.aetherium.simulation.PacingMode;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationLoop;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.ScenarioScheduler;
+import lombok.Data;
+
+// How the simulation is being driven and how far it has got
+@Data
+public class ClockDto {
+    private PacingMode pacing;
+    private double speed;
+    private double tickSeconds;
+    private long tick;
+    private double simulatedSeconds;
+    private double fastForwardRemainingSeconds;
+
+    public static ClockDto from(SimulationLoop loop, long tick) {
+        ClockDto dto = new ClockDto();
+        dto.pacing = loop.getMode();
+        dto.speed = loop.getSpeed();
+        dto.tickSeconds = loop.getTickSeconds();
+        dto.tick = tick;
+        dto.simulatedSeconds = tick * loop.getTickSeconds();
+        dto.fastForwardRemainingSeconds = loop.getFastForwardRemaining() * loop.getTickSeconds();
+        return dto;
+    }
+
+    public static ClockDto from(ScenarioScheduler.Task task, long tick) {
+        ClockDto dto = new ClockDto();
+        dto.pacing = task.getMode();
+        dto.speed = task.getSpeed();
+        dto.tickSeconds = task.getTickSeconds();
+        dto.tick = tick;
+        dto.simulatedSeconds = tick * task.getTickSeconds();
+        dto.fastForwardRemainingSeconds = task.getFastForwardRemaining() * task.getTickSeconds();
+        return dto;
+    }
+}
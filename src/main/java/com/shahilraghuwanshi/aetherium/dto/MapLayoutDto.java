@@ -1,14 +1,18 @@
 package com.shahilraghuwanshi.aetherium.dto;
 
-import com.shahilraghuwanshi.aetherium.model.Intersection;
-import com.shahilraghuwanshi.aetherium.model.Road;
-import com.shahilraghuwanshi.aetherium.model.TrafficLight;
 import lombok.Data;
-import java.util.List;
 
+// The static map as parallel columns. Roads and traffic lights refer to intersections by id instead of
+// embedding them; light states are not included, they arrive with the first WebSocket keyframe.
 @Data
 public class MapLayoutDto {
-    private List<Intersection> intersections;
-    private List<Road> roads;
-    private List<TrafficLight> trafficLights;
-}
\ No newline at end of file
+    private String version;
+    private long[] intersectionIds;
+    private double[] xs;
+    private double[] ys;
+    private long[] roadIds;
+    private long[] roadStarts; // Intersection ids
+    private long[] roadEnds;
+    private long[] trafficLights; // Ids of the intersections with a signal
+    private long[] closedRoads; // Ids of the roads closed to traffic
+}
@@ -0,0 +1,16 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import lombok.Data;
+
+// How the map layout is split into square tiles. Tile (x, y) covers [minX + x * tileSize, minX + (x + 1) * tileSize)
+// horizontally, and likewise vertically; only tiles with content are listed, as y * columns + x.
+@Data
+public class MapTileIndexDto {
+    private String version;
+    private double minX;
+    private double minY;
+    private double tileSize;
+    private int columns;
+    private int rows;
+    private int[] tiles;
+}
@@ -0,0 +1,15 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import lombok.Data;
+
+// The newest version of the road network, edits included
+@Data
+public class NetworkStatusDto {
+    // Edits applied since startup
+    private long version;
+    private int intersections;
+    private int roads;
+    private int closedRoads;
+    // Routing uses A* until the contraction hierarchy for the edited network is ready
+    private boolean rebuildingHierarchy;
+}
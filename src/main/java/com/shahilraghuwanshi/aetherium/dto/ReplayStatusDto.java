@@ -0,0 +1,16 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import lombok.Data;
+
+// The recording being replayed and how far playback has got
+@Data
+public class ReplayStatusDto {
+    private String recording;
+    private long tick;
+    private long firstTick;
+    private long lastTick;
+    private double tickSeconds;
+    private double speed;
+    // Playback reached the last recorded tick and holds it
+    private boolean finished;
+}
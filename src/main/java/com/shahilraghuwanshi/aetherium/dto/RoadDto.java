@@ -0,0 +1,14 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import lombok.Data;
+
+// One road as stored, after an edit
+@Data
+public class RoadDto {
+    private long id;
+    private long startIntersectionId;
+    private long endIntersectionId;
+    private boolean closed;
+    // In the car-following model's units; null = no limit
+    private Double speedLimit;
+}
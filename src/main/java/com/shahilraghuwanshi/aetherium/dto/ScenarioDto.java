@@ -0,0 +1,43 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationSnapshot;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandMode;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.Scenario;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.ScenarioSpec;
+import lombok.Data;
+
+// One what-if simulation next to the live one, and how far it has got
+@Data
+public class ScenarioDto {
+    private String id;
+    private String name;
+    private long seed;
+    private DemandMode demandMode;
+    // Trips per hour spread over the zone pairs; null = the configured demand
+    private Double tripsPerHour;
+    private double startHour;
+    private int maxVehicles;
+    private boolean paused;
+    private ClockDto clock;
+    private int vehicles;
+    // Edits applied to this scenario's road network
+    private long networkVersion;
+
+    public static ScenarioDto from(Scenario scenario) {
+        ScenarioSpec spec = scenario.getSpec();
+        SimulationSnapshot snapshot = scenario.getSnapshot();
+        ScenarioDto dto = new ScenarioDto();
+        dto.id = scenario.getId();
+        dto.name = spec.name();
+        dto.seed = spec.seed();
+        dto.demandMode = spec.demandMode();
+        dto.tripsPerHour = Double.isNaN(spec.tripsPerHour()) ? null : spec.tripsPerHour();
+        dto.startHour = spec.startHour();
+        dto.maxVehicles = spec.maxVehicles();
+        dto.paused = scenario.isPaused();
+        dto.clock = ClockDto.from(scenario.getClock(), snapshot.getSequence());
+        dto.vehicles = snapshot.size();
+        dto.networkVersion = scenario.getNetworkVersion();
+        return dto;
+    }
+}
@@ -0,0 +1,13 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import lombok.Data;
+
+// Trips completed in one interval of simulated time
+@Data
+public class ThroughputDto {
+    private double intervalStart;
+    private double intervalSeconds;
+    private long trips;
+    private Double meanSeconds;
+    private Double meanDelaySeconds;
+}
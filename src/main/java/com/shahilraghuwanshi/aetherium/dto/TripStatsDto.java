@@ -0,0 +1,22 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import lombok.Data;
+
+// Travel times in simulated seconds of the trips between two zones, or of the traversals of one road; the keys
+// that do not apply are null, as are the times while there is nothing to measure
+@Data
+public class TripStatsDto {
+    private Integer originZone;
+    private Integer destinationZone;
+    private Long roadId;
+    private long count;
+    private Double meanSeconds;
+    private Double p50Seconds;
+    private Double p90Seconds;
+    private Double p99Seconds;
+    private Double maxSeconds;
+    // Time taken beyond free flow, at the desired speed or the road's limit
+    private Double meanDelaySeconds;
+    // Trips only
+    private Double meanDistance;
+}
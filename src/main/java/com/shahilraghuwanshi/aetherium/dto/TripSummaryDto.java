@@ -0,0 +1,18 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import lombok.Data;
+
+// Every trip completed in this run so far
+@Data
+public class TripSummaryDto {
+    private String run;
+    private long roadTraversals;
+    // Events the statistics thread was too far behind to take
+    private long droppedEvents;
+    // Rollups written to trip_rollups and road_rollups
+    private long rollupRowsWritten;
+    private double intervalSeconds;
+    // Zones of the demand grid, numbered row by row
+    private int zones;
+    private TripStatsDto trips;
+}
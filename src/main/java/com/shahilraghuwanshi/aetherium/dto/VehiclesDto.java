@@ -0,0 +1,28 @@
+package com.shahilraghuwanshi.aetherium.dto;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationSnapshot;
+import lombok.Data;
+
+// Positions of every vehicle as parallel columns, as of one simulation tick
+@Data
+public class VehiclesDto {
+    private long sequence;
+    private long[] ids;
+    private double[] xs;
+    private double[] ys;
+
+    public static VehiclesDto from(SimulationSnapshot snapshot) {
+        VehiclesDto dto = new VehiclesDto();
+        dto.sequence = snapshot.getSequence();
+        int size = snapshot.size();
+        dto.ids = new long[size];
+        dto.xs = new double[size];
+        dto.ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            dto.ids[i] = snapshot.id(i);
+            dto.xs[i] = snapshot.x(i);
+            dto.ys[i] = snapshot.y(i);
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,60 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Streams a CSV edge list, one road per line: {@code fromId,fromX,fromY,toId,toX,toY}. Ids are any
+ * integers; coordinates are map units. Blank lines, lines starting with {@code #} and a header line are
+ * skipped. Only one line is held in memory at a time.
+ */
+public final class CsvEdgeListReader {
+
+    private static final int COLUMNS = 6;
+
+    private CsvEdgeListReader() {
+    }
+
+    /** Returns the number of roads read; throws IllegalArgumentException on a malformed line. */
+    public static long read(BufferedReader in, NetworkSink sink) throws IOException {
+        long roads = 0;
+        long lineNumber = 0;
+        boolean first = true;
+        double[] fields = new double[COLUMNS];
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            if (first && !Character.isDigit(trimmed.charAt(0)) && trimmed.charAt(0) != '-') {
+                first = false; // Header
+                continue;
+            }
+            first = false;
+            split(trimmed, fields, lineNumber);
+            long from = (long) fields[0];
+            long to = (long) fields[3];
+            sink.intersection(from, fields[1], fields[2], false);
+            sink.intersection(to, fields[4], fields[5], false);
+            sink.road(from, to);
+            roads++;
+        }
+        return roads;
+    }
+
+    private static void split(String line, double[] fields, long lineNumber) {
+        int start = 0;
+        for (int i = 0; i < COLUMNS; i++) {
+            int end = line.indexOf(',', start);
+            if (end < 0) end = line.length();
+            if (start > line.length() || (i < COLUMNS - 1 && end == line.length())) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected " + COLUMNS + " columns: " + line);
+            }
+            try {
+                fields[i] = Double.parseDouble(line.substring(start, end).strip());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": not a number in column " + (i + 1) + ": " + line);
+            }
+            start = end + 1;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+import com.shahilraghuwanshi.aetherium.simulation.io.LongIntHashMap;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Writes a streamed network to the {@code intersections}, {@code roads} and {@code traffic_lights} tables
+ * with batched JDBC inserts, bypassing JPA.
+ * <p>
+ * Ids are assigned here rather than generated row by row: {@link #begin} reserves the range above the
+ * current maximum id, and the n-th intersection of the import gets {@code base + n}. Mapping a source
+ * id to its database id is then one lookup in a {@link LongIntHashMap}, with no round trip. Rows are
+ * buffered in primitive arrays of {@code batchSize} and flushed as one batch; intersections are always
+ * flushed before the roads that may refer to them. Imports must not run concurrently with other writers
+ * to these tables.
+ */
+public final class JdbcNetworkWriter implements NetworkSink {
+
+    private static final String INSERT_INTERSECTION =
+            "INSERT INTO intersections (id, x_coordinate, y_coordinate, has_traffic_light) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_ROAD =
+            "INSERT INTO roads (id, start_intersection_id, end_intersection_id) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final int batchSize;
+
+    private long intersectionBase;
+    private long roadBase;
+    private final LongIntHashMap indexBySourceId = new LongIntHashMap(1 << 16);
+    private int intersectionCount;
+    private long roadCount;
+    private long skippedRoads;
+    private int[] degrees = new int[1024]; // By import index
+
+    private final long[] pendingIntersectionIds;
+    private final int[] pendingXs;
+    private final int[] pendingYs;
+    private final boolean[] pendingLights;
+    private int pendingIntersections;
+    private final long[] pendingRoadIds;
+    private final long[] pendingStarts;
+    private final long[] pendingEnds;
+    private int pendingRoads;
+
+    public JdbcNetworkWriter(JdbcTemplate jdbc, int batchSize) {
+        this.jdbc = jdbc;
+        this.batchSize = batchSize;
+        pendingIntersectionIds = new long[batchSize];
+        pendingXs = new int[batchSize];
+        pendingYs = new int[batchSize];
+        pendingLights = new boolean[batchSize];
+        pendingRoadIds = new long[batchSize];
+        pendingStarts = new long[batchSize];
+        pendingEnds = new long[batchSize];
+    }
+
+    /** Optionally deletes the existing map, then reserves ids above the highest ones in use. */
+    public void begin(boolean replace) {
+        if (replace) {
+            jdbc.update("DELETE FROM traffic_lights");
+            jdbc.update("DELETE FROM roads");
+            jdbc.update("DELETE FROM intersections");
+        }
+        intersectionBase = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM intersections", Long.class);
+        roadBase = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM roads", Long.class);
+    }
+
+    @Override
+    public void intersection(long id, double x, double y, boolean trafficLight) {
+        if (indexBySourceId.containsKey(id)) return;
+        int index = intersectionCount++;
+        indexBySourceId.put(id, index);
+        if (index == degrees.length) degrees = Arrays.copyOf(degrees, index * 2);
+        pendingIntersectionIds[pendingIntersections] = intersectionBase + 1 + index;
+        pendingXs[pendingIntersections] = (int) Math.round(x);
+        pendingYs[pendingIntersections] = (int) Math.round(y);
+        pendingLights[pendingIntersections] = trafficLight;
+        if (++pendingIntersections == batchSize) flushIntersections();
+    }
+
+    @Override
+    public void road(long startIntersectionId, long endIntersectionId) {
+        int start = indexBySourceId.get(startIntersectionId, -1);
+        int end = indexBySourceId.get(endIntersectionId, -1);
+        if (start < 0 || end < 0 || start == end) {
+            skippedRoads++; // Clipped at the extract's edge, or a loop
+            return;
+        }
+        degrees[start]++;
+        degrees[end]++;
+        pendingRoadIds[pendingRoads] = roadBase + 1 + roadCount++;
+        pendingStarts[pendingRoads] = intersectionBase + 1 + start;
+        pendingEnds[pendingRoads] = intersectionBase + 1 + end;
+        if (++pendingRoads == batchSize) flushRoads();
+    }
+
+    /**
+     * Flushes the remaining rows, turns intersections where at least {@code signalMinDegree} roads meet
+     * into signalised ones (0 = keep the source's signals only) and creates a traffic light, timed
+     * {@code greenSeconds} per phase, for every signalised intersection imported.
+     */
+    public MapImportResult finish(int signalMinDegree, int greenSeconds) {
+        flushRoads();
+        flushIntersections();
+        if (signalMinDegree > 0) {
+            long[] batch = new long[batchSize];
+            int count = 0;
+            for (int index = 0; index < intersectionCount; index++) {
+                if (degrees[index] < signalMinDegree) continue;
+                batch[count++] = intersectionBase + 1 + index;
+                if (count == batch.length) {
+                    markSignalised(batch, count);
+                    count = 0;
+                }
+            }
+            markSignalised(batch, count);
+        }
+        int lights = jdbc.update("INSERT INTO traffic_lights (intersection_id, current_state, state_duration_seconds, offset_seconds) "
+                + "SELECT id, 'NS_GREEN', ?, 0 FROM intersections WHERE id > ? AND has_traffic_light", greenSeconds, intersectionBase);
+        return new MapImportResult(intersectionCount, roadCount, lights, skippedRoads);
+    }
+
+    private void markSignalised(long[] ids, int count) {
+        if (count == 0) return;
+        jdbc.batchUpdate("UPDATE intersections SET has_traffic_light = TRUE WHERE id = ?", new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, ids[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+    }
+
+    private void flushIntersections() {
+        if (pendingIntersections == 0) return;
+        int count = pendingIntersections;
+        jdbc.batchUpdate(INSERT_INTERSECTION, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, pendingIntersectionIds[i]);
+                statement.setInt(2, pendingXs[i]);
+                statement.setInt(3, pendingYs[i]);
+                statement.setBoolean(4, pendingLights[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+        pendingIntersections = 0;
+    }
+
+    private void flushRoads() {
+        if (pendingRoads == 0) return;
+        flushIntersections(); // Roads reference them
+        int count = pendingRoads;
+        jdbc.batchUpdate(INSERT_ROAD, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, pendingRoadIds[i]);
+                statement.setLong(2, pendingStarts[i]);
+                statement.setLong(3, pendingEnds[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+        pendingRoads = 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+import java.nio.file.Path;
+
+public enum MapImportFormat {
+    /** One road per line: {@code fromId,fromX,fromY,toId,toX,toY}, in map units. */
+    CSV,
+    /** OpenStreetMap XML; roads are the {@code highway} ways, intersections the nodes they share. */
+    OSM;
+
+    /** Guesses the format from the file name, ignoring a trailing {@code .gz}. */
+    public static MapImportFormat fromFileName(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".gz")) name = name.substring(0, name.length() - 3);
+        if (name.endsWith(".csv")) return CSV;
+        if (name.endsWith(".osm") || name.endsWith(".xml")) return OSM;
+        throw new IllegalArgumentException("Cannot tell the format of " + path + "; pass --import-format=CSV or OSM");
+    }
+}
@@ -0,0 +1,5 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+/** Rows written by one import; skipped roads referenced an intersection missing from the source or were loops. */
+public record MapImportResult(int intersections, long roads, int trafficLights, long skippedRoads) {
+}
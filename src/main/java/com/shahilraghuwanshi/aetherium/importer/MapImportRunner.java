@@ -0,0 +1,51 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Imports a map file given on the command line, then exits:
+ * <pre>
+ *   java -jar aetherium.jar --import-map=city.osm.gz [--import-format=OSM] [--import-replace]
+ * </pre>
+ * The simulation loads the map at startup, so start the application again without
+ * {@code --import-map} to simulate the imported network.
+ */
+@Component
+public class MapImportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MapImportRunner.class);
+
+    private final MapImporter importer;
+    private final ConfigurableApplicationContext context;
+
+    public MapImportRunner(MapImporter importer, ConfigurableApplicationContext context) {
+        this.importer = importer;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption("import-map")) return;
+        Path file = Path.of(args.getOptionValues("import-map").get(0));
+        MapImportFormat format = args.containsOption("import-format")
+                ? MapImportFormat.valueOf(args.getOptionValues("import-format").get(0).toUpperCase())
+                : MapImportFormat.fromFileName(file);
+        boolean replace = args.containsOption("import-replace");
+
+        log.info("Importing {} map from {}{}...", format, file, replace ? ", replacing the current map" : "");
+        long started = System.nanoTime();
+        MapImportResult result = importer.importMap(file, format, replace);
+        log.info("Imported {} intersections, {} roads and {} traffic lights in {} ms{}.", result.intersections(), result.roads(),
+                result.trafficLights(), (System.nanoTime() - started) / 1_000_000,
+                result.skippedRoads() > 0 ? " (" + result.skippedRoads() + " roads skipped)" : "");
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
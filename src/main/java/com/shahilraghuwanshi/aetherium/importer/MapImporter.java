@@ -0,0 +1,65 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+import com.shahilraghuwanshi.aetherium.config.AetheriumProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Imports a road network file into the database in one transaction: the file is streamed by
+ * {@link CsvEdgeListReader} or {@link OsmXmlReader} into a {@link JdbcNetworkWriter}. Files ending in
+ * {@code .gz} are decompressed on the fly.
+ */
+@Service
+public class MapImporter {
+
+    private final JdbcTemplate jdbc;
+    private final AetheriumProperties properties;
+
+    public MapImporter(JdbcTemplate jdbc, AetheriumProperties properties) {
+        this.jdbc = jdbc;
+        this.properties = properties;
+    }
+
+    /**
+     * @param replace delete the existing map first; otherwise the imported network is added to it
+     */
+    @Transactional
+    public MapImportResult importMap(Path file, MapImportFormat format, boolean replace) throws IOException {
+        AetheriumProperties.MapImport settings = properties.getMapImport();
+        JdbcNetworkWriter writer = new JdbcNetworkWriter(jdbc, settings.getBatchSize());
+        writer.begin(replace);
+        if (format == MapImportFormat.CSV) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(open(file), StandardCharsets.UTF_8), 1 << 16)) {
+                CsvEdgeListReader.read(in, writer);
+            }
+            return writer.finish(settings.getSignalMinDegree(), settings.getGreenSeconds());
+        }
+        OsmXmlReader reader = new OsmXmlReader(new HashSet<>(settings.getOsmHighways()), settings.getMetresPerUnit());
+        reader.read(() -> {
+            try {
+                return open(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, writer);
+        return writer.finish(0, settings.getGreenSeconds()); // OSM tags its signals
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        return file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+}
@@ -0,0 +1,13 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+/**
+ * Receives a road network as a reader streams it. Ids are the source file's own; a road may only
+ * refer to intersections already delivered.
+ */
+public interface NetworkSink {
+
+    /** Repeated ids are ignored, so edge lists can repeat their endpoints freely. */
+    void intersection(long id, double x, double y, boolean trafficLight);
+
+    void road(long startIntersectionId, long endIntersectionId);
+}
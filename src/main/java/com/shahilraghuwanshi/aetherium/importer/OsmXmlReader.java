@@ -0,0 +1,170 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+import com.shahilraghuwanshi.aetherium.simulation.io.LongIntHashMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Streams an OpenStreetMap XML extract with StAX, in two passes over the file:
+ * <ol>
+ *   <li>counts how many road ways use each node (way ends count twice), so intersections are the nodes
+ *       used at least twice: junctions and dead ends;</li>
+ *   <li>delivers those nodes as intersections, projected to metres around the extract's south-west
+ *       corner (y grows southwards, like the canvas), then splits every road way at them.</li>
+ * </ol>
+ * Nodes in the middle of a road only shape its curve and are dropped; the road becomes a straight line
+ * between intersections. Memory grows with the number of road nodes, not with the file: no element is
+ * kept beyond the way being read. Intersections tagged {@code highway=traffic_signals} get a light.
+ */
+public final class OsmXmlReader {
+
+    private static final double METRES_PER_DEGREE = 111_320;
+
+    private final Set<String> highways;
+    private final double metresPerUnit;
+
+    /**
+     * @param highways      {@code highway} tag values that count as roads
+     * @param metresPerUnit metres per map unit
+     */
+    public OsmXmlReader(Set<String> highways, double metresPerUnit) {
+        this.highways = highways;
+        this.metresPerUnit = metresPerUnit;
+    }
+
+    /** Reads {@code source} twice; returns the number of road segments delivered. */
+    public long read(Supplier<InputStream> source, NetworkSink sink) throws IOException {
+        LongIntHashMap uses = new LongIntHashMap(1 << 16);
+        try (InputStream in = source.get()) {
+            countNodeUses(in, uses);
+        }
+        try (InputStream in = source.get()) {
+            return deliver(in, uses, sink);
+        }
+    }
+
+    private void countNodeUses(InputStream in, LongIntHashMap uses) throws IOException {
+        WayReader ways = new WayReader();
+        try {
+            XMLStreamReader xml = factory().createXMLStreamReader(in);
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT) continue;
+                if (ways.accept(xml) && ways.isRoad()) {
+                    for (int i = 0; i < ways.refCount; i++) uses.add(ways.refs[i], 1);
+                    uses.add(ways.refs[0], 1);
+                    uses.add(ways.refs[ways.refCount - 1], 1);
+                }
+            }
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed OSM XML: " + e.getMessage(), e);
+        }
+    }
+
+    private long deliver(InputStream in, LongIntHashMap uses, NetworkSink sink) throws IOException {
+        WayReader ways = new WayReader();
+        long roads = 0;
+        double originLat = Double.NaN, originLon = Double.NaN, cosLat = 1;
+        try {
+            XMLStreamReader xml = factory().createXMLStreamReader(in);
+            // Node being read; its tags follow as child elements
+            long nodeId = 0;
+            double nodeLat = 0, nodeLon = 0;
+            boolean inNode = false, nodeSignal = false;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && inNode && xml.getLocalName().equals("node")) {
+                    inNode = false;
+                    if (Double.isNaN(originLat)) {
+                        originLat = nodeLat;
+                        originLon = nodeLon;
+                        cosLat = Math.cos(Math.toRadians(originLat));
+                    }
+                    double x = (nodeLon - originLon) * cosLat * METRES_PER_DEGREE / metresPerUnit;
+                    double y = (originLat - nodeLat) * METRES_PER_DEGREE / metresPerUnit;
+                    sink.intersection(nodeId, x, y, nodeSignal);
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                String name = xml.getLocalName();
+                if (name.equals("bounds") && Double.isNaN(originLat)) {
+                    originLat = Double.parseDouble(xml.getAttributeValue(null, "maxlat"));
+                    originLon = Double.parseDouble(xml.getAttributeValue(null, "minlon"));
+                    cosLat = Math.cos(Math.toRadians(Double.parseDouble(xml.getAttributeValue(null, "minlat"))));
+                } else if (name.equals("node")) {
+                    long id = Long.parseLong(xml.getAttributeValue(null, "id"));
+                    if (uses.get(id, 0) < 2) continue; // Not an intersection
+                    inNode = true;
+                    nodeId = id;
+                    nodeLat = Double.parseDouble(xml.getAttributeValue(null, "lat"));
+                    nodeLon = Double.parseDouble(xml.getAttributeValue(null, "lon"));
+                    nodeSignal = false;
+                } else if (name.equals("tag") && inNode) {
+                    nodeSignal |= "highway".equals(xml.getAttributeValue(null, "k"))
+                            && "traffic_signals".equals(xml.getAttributeValue(null, "v"));
+                } else if (ways.accept(xml) && ways.isRoad()) {
+                    long previous = ways.refs[0];
+                    for (int i = 1; i < ways.refCount; i++) {
+                        long ref = ways.refs[i];
+                        if (uses.get(ref, 0) < 2) continue;
+                        if (ref != previous) {
+                            sink.road(previous, ref);
+                            roads++;
+                        }
+                        previous = ref;
+                    }
+                }
+            }
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed OSM XML: " + e.getMessage(), e);
+        }
+        return roads;
+    }
+
+    private static XMLInputFactory factory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Extracts are data, never documents with external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    // Collects the node refs and highway tag of one <way>, reusing its buffer across ways
+    private final class WayReader {
+        long[] refs = new long[256];
+        int refCount;
+        String highway;
+
+        // Reads the whole way if the reader is at a <way> start element; returns whether it was one
+        boolean accept(XMLStreamReader xml) throws XMLStreamException {
+            if (!xml.getLocalName().equals("way")) return false;
+            refCount = 0;
+            highway = null;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("way")) break;
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                if (xml.getLocalName().equals("nd")) {
+                    if (refCount == refs.length) refs = Arrays.copyOf(refs, refCount * 2);
+                    refs[refCount++] = Long.parseLong(xml.getAttributeValue(null, "ref"));
+                } else if (xml.getLocalName().equals("tag") && "highway".equals(xml.getAttributeValue(null, "k"))) {
+                    highway = xml.getAttributeValue(null, "v");
+                }
+            }
+            return true;
+        }
+
+        boolean isRoad() {
+            return refCount >= 2 && highway != null && highways.contains(highway);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.shahilraghuwanshi.aetherium.metrics;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every query of a {@link Router}. Placed outside any {@code CachingRouter}, it measures the latency
+ * the simulation sees, cache hits included.
+ */
+public final class MeteredRouter implements Router {
+
+    private final Router delegate;
+    private final Timer timer;
+
+    public MeteredRouter(Router delegate, Timer timer) {
+        this.delegate = delegate;
+        this.timer = timer;
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return delegate.getGraph();
+    }
+
+    public Router getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public int[] route(int start, int end) {
+        long startedAt = System.nanoTime();
+        try {
+            return delegate.route(start, end);
+        } finally {
+            timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+}
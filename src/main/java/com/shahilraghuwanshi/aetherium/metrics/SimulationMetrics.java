@@ -0,0 +1,262 @@
+package com.shahilraghuwanshi.aetherium.metrics;
+
+import com.shahilraghuwanshi.aetherium.simulation.Rerouter;
+import com.shahilraghuwanshi.aetherium.simulation.ScenarioManager;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.TickPhase;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandScheduler;
+import com.shahilraghuwanshi.aetherium.simulation.demand.RouteAssigner;
+import com.shahilraghuwanshi.aetherium.simulation.partition.PartitionCoordinator;
+import com.shahilraghuwanshi.aetherium.simulation.partition.RegionWorker;
+import com.shahilraghuwanshi.aetherium.simulation.replay.TrajectoryRecorder;
+import com.shahilraghuwanshi.aetherium.simulation.routing.RouteCache;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.ScenarioScheduler;
+import com.shahilraghuwanshi.aetherium.simulation.trips.TripEventRing;
+import com.shahilraghuwanshi.aetherium.simulation.trips.TripStatistics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The simulation's meters, exported through Actuator (Prometheus at {@code /actuator/prometheus}).
+ * <p>
+ * Tick and routing timers keep HdrHistogram-backed percentiles and publish histogram buckets, so
+ * percentiles can also be aggregated on the Prometheus side. Everything the simulation thread records
+ * goes through {@link #recordTick} once per tick, so meters never read engine state from another thread.
+ */
+@Component
+public class SimulationMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final MeterRegistry registry;
+    private final Timer tickTimer;
+    private final Timer[] phaseTimers = new Timer[TickPhase.values().length];
+    private final Timer broadcastTimer;
+    private final Timer routingTimer;
+    private final Counter spawned;
+    private final Counter arrived;
+    private final Counter failedSpawns;
+    private final Counter rerouteSearches;
+    private final Counter reroutes;
+    private final Counter networkEdits;
+    private final Counter networkReroutes;
+    private final AtomicInteger vehicles = new AtomicInteger();
+    private long lastSpawned; // Engine totals at the previous recordTick(); simulation thread only
+    private long lastArrived;
+    private long lastFailedSpawns;
+    private long lastRerouteSearches;
+    private long lastReroutes;
+
+    public SimulationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        tickTimer = latencyTimer("aetherium.tick.duration", "Wall-clock time of one simulation tick")
+                .register(registry);
+        for (TickPhase phase : TickPhase.values()) {
+            phaseTimers[phase.ordinal()] = phaseTimer(phase.name().toLowerCase(Locale.ROOT));
+        }
+        broadcastTimer = phaseTimer("broadcast");
+        routingTimer = latencyTimer("aetherium.routing.duration", "Latency of one shortest-path query")
+                .register(registry);
+        spawned = Counter.builder("aetherium.vehicles.spawned").description("Vehicles spawned").register(registry);
+        arrived = Counter.builder("aetherium.vehicles.arrived").description("Vehicles that reached their destination").register(registry);
+        failedSpawns = Counter.builder("aetherium.vehicles.spawn.failures").description("Spawns with no route").register(registry);
+        rerouteSearches = Counter.builder("aetherium.reroute.searches").description("Route searches for vehicles whose trip had slowed down").register(registry);
+        reroutes = Counter.builder("aetherium.reroutes").description("Vehicles moved onto a faster route").register(registry);
+        networkEdits = Counter.builder("aetherium.network.versions").description("Edited road networks taken into use").register(registry);
+        networkReroutes = Counter.builder("aetherium.network.reroutes").description("Vehicles rerouted around newly closed roads").register(registry);
+        Gauge.builder("aetherium.vehicles.active", vehicles, AtomicInteger::get)
+                .description("Vehicles in flight")
+                .register(registry);
+    }
+
+    private static Timer.Builder latencyTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofSeconds(1));
+    }
+
+    private Timer phaseTimer(String phase) {
+        return latencyTimer("aetherium.tick.phase.duration", "Wall-clock time of one phase of a simulation tick")
+                .tag("phase", phase)
+                .register(registry);
+    }
+
+    /** Records the phases and counters of the tick the engine just completed. Simulation thread only. */
+    public void recordTick(SimulationEngine engine) {
+        long total = 0;
+        for (TickPhase phase : TickPhase.values()) {
+            long nanos = engine.getPhaseNanos(phase);
+            phaseTimers[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+            total += nanos;
+        }
+        tickTimer.record(total, TimeUnit.NANOSECONDS);
+        spawned.increment(engine.getSpawnedCount() - lastSpawned);
+        arrived.increment(engine.getArrivedCount() - lastArrived);
+        failedSpawns.increment(engine.getFailedSpawnCount() - lastFailedSpawns);
+        lastSpawned = engine.getSpawnedCount();
+        lastArrived = engine.getArrivedCount();
+        lastFailedSpawns = engine.getFailedSpawnCount();
+        vehicles.set(engine.getVehicles().size());
+        Rerouter rerouter = engine.getRerouter();
+        if (rerouter != null) {
+            rerouteSearches.increment(rerouter.getSearches() - lastRerouteSearches);
+            reroutes.increment(rerouter.getReroutes() - lastReroutes);
+            lastRerouteSearches = rerouter.getSearches();
+            lastReroutes = rerouter.getReroutes();
+        }
+    }
+
+    /** Records that the engine switched to an edited road network, rerouting {@code rerouted} vehicles. */
+    public void recordNetworkEdit(int rerouted) {
+        networkEdits.increment();
+        networkReroutes.increment(rerouted);
+    }
+
+    /** Records the time spent encoding and queueing one frame for all viewers. */
+    public void recordBroadcast(long nanos) {
+        broadcastTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Wraps a router so that every query is timed. */
+    public Router meter(Router router) {
+        return new MeteredRouter(router, routingTimer);
+    }
+
+    /** Exports the hit, miss and eviction counters of the route cache. */
+    public void bindRouteCache(RouteCache cache) {
+        FunctionCounter.builder("aetherium.routing.cache.hits", cache, c -> c.stats().hits()).register(registry);
+        FunctionCounter.builder("aetherium.routing.cache.misses", cache, c -> c.stats().misses()).register(registry);
+        FunctionCounter.builder("aetherium.routing.cache.evictions", cache, c -> c.stats().evictions()).register(registry);
+        Gauge.builder("aetherium.routing.cache.entries", cache, c -> c.stats().entries()).register(registry);
+    }
+
+    /** Exports the backlog and counters of OD demand. */
+    public void bindDemand(DemandScheduler scheduler, RouteAssigner assigner) {
+        Gauge.builder("aetherium.demand.routing.pending", assigner, RouteAssigner::getPendingTrips)
+                .description("Departures being routed")
+                .register(registry);
+        Gauge.builder("aetherium.demand.waiting", scheduler, DemandScheduler::getWaitingTrips)
+                .description("Routed trips waiting for their departure time or a free entry")
+                .register(registry);
+        FunctionCounter.builder("aetherium.demand.released", scheduler, DemandScheduler::getReleasedTrips)
+                .description("Trips that entered the simulation")
+                .register(registry);
+        FunctionCounter.builder("aetherium.demand.unroutable", scheduler, DemandScheduler::getUnroutableTrips)
+                .description("Trips dropped for lack of a route")
+                .register(registry);
+        FunctionCounter.builder("aetherium.demand.stalls", scheduler, DemandScheduler::getStalls)
+                .description("Ticks that waited for routes")
+                .register(registry);
+    }
+
+    /** Exports how much of the run the trajectory recorder has written, and how many ticks it had to skip. */
+    public void bindRecorder(TrajectoryRecorder recorder) {
+        FunctionCounter.builder("aetherium.recording.ticks", recorder, TrajectoryRecorder::getRecordedTicks)
+                .description("Ticks written to the recording")
+                .register(registry);
+        FunctionCounter.builder("aetherium.recording.dropped", recorder, TrajectoryRecorder::getDroppedTicks)
+                .description("Ticks folded into a later record because the writer was behind")
+                .register(registry);
+        FunctionCounter.builder("aetherium.recording.written", recorder, TrajectoryRecorder::getBytesWritten)
+                .description("Bytes written to recording segments")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /** Exports how many trip events were aggregated or dropped, and how far the rollups are written. */
+    public void bindTripStatistics(TripStatistics statistics) {
+        FunctionCounter.builder("aetherium.trips.events", statistics, TripStatistics::getEvents)
+                .description("Completed trips and road traversals aggregated")
+                .register(registry);
+        FunctionCounter.builder("aetherium.trips.events.dropped", statistics.getRing(), TripEventRing::getDropped)
+                .description("Trip events dropped because the statistics thread was behind")
+                .register(registry);
+        Gauge.builder("aetherium.trips.events.queued", statistics.getRing(), TripEventRing::size)
+                .description("Trip events waiting for the statistics thread")
+                .register(registry);
+        FunctionCounter.builder("aetherium.trips.rollups.written", statistics, TripStatistics::getRowsWritten)
+                .description("Rollup rows written to the database")
+                .register(registry);
+        FunctionCounter.builder("aetherium.trips.rollups.dropped", statistics, TripStatistics::getRowsDropped)
+                .description("Rollup rows given up while the database was unavailable")
+                .register(registry);
+        FunctionCounter.builder("aetherium.trips.rollups.failures", statistics, TripStatistics::getFailedWrites)
+                .description("Rollup writes that failed and were retried")
+                .register(registry);
+    }
+
+    /** Exports how many scenarios exist and how many ticks the shared pool has run for them. */
+    public void bindScenarios(ScenarioManager manager) {
+        Gauge.builder("aetherium.scenarios.active", manager, ScenarioManager::count)
+                .description("Scenarios in existence, paused ones included")
+                .register(registry);
+        FunctionCounter.builder("aetherium.scenarios.ticks", manager.getScheduler(), ScenarioScheduler::getTicks)
+                .description("Ticks run for all scenarios")
+                .register(registry);
+        Gauge.builder("aetherium.scenarios.queued", manager.getScheduler(), ScenarioScheduler::getQueuedTasks)
+                .description("Running scenarios waiting for their next tick")
+                .register(registry);
+    }
+
+    /** Exports the vehicles of every region together and the handoffs between them, on the coordinator. */
+    public void bindCoordinator(PartitionCoordinator coordinator) {
+        Gauge.builder("aetherium.partition.vehicles", coordinator, PartitionCoordinator::getVehicleCount)
+                .description("Vehicles in all regions")
+                .register(registry);
+        FunctionCounter.builder("aetherium.partition.handoffs", coordinator, PartitionCoordinator::getHandoffs)
+                .description("Vehicles handed from one region to another")
+                .register(registry);
+    }
+
+    /** Exports the vehicles one worker handed to and received from neighbouring regions. */
+    public void bindRegionWorker(RegionWorker worker) {
+        FunctionCounter.builder("aetherium.partition.handed.off", worker, RegionWorker::getHandedOff)
+                .description("Vehicles that left this region for another")
+                .register(registry);
+        FunctionCounter.builder("aetherium.partition.admitted", worker, RegionWorker::getAdmitted)
+                .description("Vehicles that entered this region from another")
+                .register(registry);
+    }
+
+    /**
+     * Registers the stream meters of one viewer, tagged with its session id. The registry only holds the
+     * session weakly; call {@link #unbind} when it disconnects.
+     */
+    public <T> List<Meter> bindSession(String sessionId, T session, ToDoubleFunction<T> bytesSent,
+                                       ToDoubleFunction<T> framesDropped, ToDoubleFunction<T> queuedFrames) {
+        return List.of(
+                FunctionCounter.builder("aetherium.stream.bytes.sent", session, bytesSent)
+                        .description("Frame bytes sent to a viewer")
+                        .baseUnit("bytes")
+                        .tag("session", sessionId)
+                        .register(registry),
+                FunctionCounter.builder("aetherium.stream.frames.dropped", session, framesDropped)
+                        .description("Frames dropped because a viewer fell behind")
+                        .tag("session", sessionId)
+                        .register(registry),
+                Gauge.builder("aetherium.stream.queue.depth", session, queuedFrames)
+                        .description("Frames waiting in a viewer's outbound queue")
+                        .tag("session", sessionId)
+                        .register(registry));
+    }
+
+    public void unbind(List<Meter> meters) {
+        for (Meter meter : meters) registry.remove(meter);
+    }
+}
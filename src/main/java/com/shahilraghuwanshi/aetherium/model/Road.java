@@ -12,11 +12,20 @@ public class Road {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    // Lazy; RoadRepository.findAll fetches both ends up front
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "start_intersection_id")
     private Intersection startIntersection;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "end_intersection_id")
     private Intersection endIntersection;
+
+    // Closed roads stay in the network, but no vehicle is routed onto them
+    @Column(name = "closed", nullable = false, columnDefinition = "boolean not null default false")
+    private boolean closed;
+
+    // In the car-following model's units; null = no limit
+    @Column(name = "speed_limit")
+    private Double speedLimit;
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.shahilraghuwanshi.aetherium.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// Travel times of the traversals of one road, either direction, that ended in one interval of a run; written
+// in JDBC batches by TripRollupRepository, the entity only defines the table
+@Entity
+@Table(name = "road_rollups", indexes = @Index(name = "idx_road_rollups_run", columnList = "run, interval_start"))
+@Data
+public class RoadRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Start time of the run, yyyyMMdd-HHmmss like its recording
+    @Column(length = 15)
+    private String run;
+
+    // Simulated seconds since the start of the run
+    private double intervalStart;
+    private double intervalSeconds;
+
+    private long roadId;
+
+    private long traversals;
+    private double meanSeconds;
+    private double p50Seconds;
+    private double p90Seconds;
+    private double p99Seconds;
+    private double maxSeconds;
+    // Time taken beyond free flow
+    private double meanDelaySeconds;
+}
@@ -11,7 +11,8 @@ public class TrafficLight {
 
     public enum State {
         NS_GREEN, // North-South Green, East-West Red
-        EW_GREEN  // East-West Green, North-South Red
+        EW_GREEN, // East-West Green, North-South Red
+        ALL_RED   // Clearance between phases
         // We could add yellow states later if needed
     }
 
@@ -19,7 +20,7 @@ public class TrafficLight {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY) // Lazy; TrafficLightRepository.findAll fetches it up front
     @JoinColumn(name = "intersection_id")
     @ToString.Exclude // Avoid infinite loop in toString with Intersection
     private Intersection intersection;
@@ -29,8 +30,7 @@ public class TrafficLight {
 
     private int stateDurationSeconds = 20; // How long each state (NS_GREEN, EW_GREEN) lasts
 
-    @Transient // This field is not stored in the database
-    private double timeInCurrentState = 0; // Tracks time elapsed in the current state (in seconds)
+    private int offsetSeconds = 0; // Shifts the cycle relative to other lights, e.g. for green waves
 
     // Default constructor for JPA
     public TrafficLight() {
@@ -43,24 +43,5 @@ public class TrafficLight {
         this.intersection = intersection;
     }
 
-    /**
-     * Updates the traffic light's timer and potentially changes its state.
-     * @param deltaTime The time elapsed since the last update (in seconds).
-     * @return true if the state changed, false otherwise.
-     */
-    public boolean updateState(double deltaTime) {
-        timeInCurrentState += deltaTime;
-        if (timeInCurrentState >= stateDurationSeconds) {
-            // Switch state
-            if (currentState == State.NS_GREEN) {
-                currentState = State.EW_GREEN;
-            } else {
-                currentState = State.NS_GREEN;
-            }
-            timeInCurrentState = 0; // Reset timer
-            System.out.println("Traffic Light ID: " + id + " at Intersection ID: " + (intersection != null ? intersection.getId() : "null") + " changed state to: " + currentState);
-            return true; // State changed
-        }
-        return false; // State did not change
-    }
+    // Phases are advanced by the simulation's SignalController, not by the entity
 }
\ No newline at end of file
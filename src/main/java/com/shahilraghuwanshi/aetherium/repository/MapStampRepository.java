@@ -0,0 +1,58 @@
+package com.shahilraghuwanshi.aetherium.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Summarises the map tables into one number that changes when intersections, roads or traffic lights
+ * are added, removed or edited, road closures and speed limits included, without loading any rows: one
+ * aggregate query per table. Sums are weighted by row id, so moving a value from one row to another also
+ * changes the stamp.
+ * <p>
+ * This is a change detector, not a checksum: an edit crafted to leave every sum unchanged goes unnoticed.
+ * Deleting the compiled network file forces a reload from the tables.
+ */
+@Repository
+public class MapStampRepository {
+
+    private static final String WEIGHT = "(id % 65521 + 1)";
+
+    private static final String[] QUERIES = {
+            "SELECT COUNT(*), COALESCE(SUM(id), 0), COALESCE(SUM(x_coordinate * " + WEIGHT + "), 0), "
+                    + "COALESCE(SUM(y_coordinate * " + WEIGHT + "), 0), "
+                    + "COALESCE(SUM(CASE WHEN has_traffic_light THEN id ELSE 0 END), 0) FROM intersections",
+            "SELECT COUNT(*), COALESCE(SUM(id), 0), COALESCE(SUM(start_intersection_id * " + WEIGHT + "), 0), "
+                    + "COALESCE(SUM(end_intersection_id * " + WEIGHT + "), 0), "
+                    + "COALESCE(SUM(CASE WHEN closed THEN id ELSE 0 END), 0), "
+                    // Speed limits are doubles: summed in thousandths, so a fractional change isn't cut off by getLong
+                    + "COALESCE(SUM(ROUND(COALESCE(speed_limit, 0) * 1000) * " + WEIGHT + "), 0) FROM roads",
+            "SELECT COUNT(*), COALESCE(SUM(id), 0), COALESCE(SUM(intersection_id * " + WEIGHT + "), 0), "
+                    + "COALESCE(SUM(state_duration_seconds * " + WEIGHT + "), 0), "
+                    + "COALESCE(SUM(offset_seconds * " + WEIGHT + "), 0), "
+                    + "COALESCE(SUM(CASE WHEN current_state = 'EW_GREEN' THEN id ELSE 0 END), 0) FROM traffic_lights",
+    };
+
+    private final JdbcTemplate jdbc;
+
+    public MapStampRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public long currentStamp() {
+        long stamp = 0x9E3779B97F4A7C15L;
+        for (String query : QUERIES) {
+            long[] values = jdbc.queryForObject(query, (row, rowNum) -> {
+                long[] columns = new long[row.getMetaData().getColumnCount()];
+                for (int i = 0; i < columns.length; i++) columns[i] = row.getLong(i + 1);
+                return columns;
+            });
+            for (long value : values) stamp = mix(stamp, value);
+        }
+        return stamp;
+    }
+
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+}
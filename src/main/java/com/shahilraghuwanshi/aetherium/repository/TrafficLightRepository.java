@@ -1,9 +1,17 @@
 package com.shahilraghuwanshi.aetherium.repository;
 
 import com.shahilraghuwanshi.aetherium.model.TrafficLight;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface TrafficLightRepository extends JpaRepository<TrafficLight, Long> {
+
+    // One join query for the whole map; the default would issue a query per referenced intersection
+    @Override
+    @EntityGraph(attributePaths = "intersection")
+    List<TrafficLight> findAll();
 }
\ No newline at end of file
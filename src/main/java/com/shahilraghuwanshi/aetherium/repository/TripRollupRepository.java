@@ -0,0 +1,68 @@
+package com.shahilraghuwanshi.aetherium.repository;
+
+import com.shahilraghuwanshi.aetherium.simulation.trips.TravelStats;
+import com.shahilraghuwanshi.aetherium.simulation.trips.TripStatistics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Appends rolled-up trip statistics to the {@code trip_rollups} and {@code road_rollups} tables with batched
+ * JDBC inserts, bypassing JPA; the statistics thread writes a whole flush in one transaction.
+ */
+@Repository
+public class TripRollupRepository {
+
+    private static final String INSERT_ZONE_PAIR = "INSERT INTO trip_rollups (run, interval_start, interval_seconds, "
+            + "origin_zone, destination_zone, trips, mean_seconds, p50_seconds, p90_seconds, p99_seconds, max_seconds, "
+            + "mean_delay_seconds, mean_distance) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ROAD = "INSERT INTO road_rollups (run, interval_start, interval_seconds, "
+            + "road_id, traversals, mean_seconds, p50_seconds, p90_seconds, p99_seconds, max_seconds, "
+            + "mean_delay_seconds) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+
+    public TripRollupRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Inserts every row of {@code rollups} for {@code run}, {@code batchSize} rows per JDBC batch. */
+    @Transactional
+    public void insert(String run, List<TripStatistics.Rollup> rollups, int batchSize) {
+        for (TripStatistics.Rollup rollup : rollups) {
+            jdbc.batchUpdate(INSERT_ZONE_PAIR, rollup.zonePairs(), batchSize, (statement, pair) -> {
+                setInterval(statement, run, rollup);
+                statement.setInt(4, pair.originZone());
+                statement.setInt(5, pair.destinationZone());
+                setStats(statement, 6, pair.stats());
+                statement.setDouble(13, pair.stats().meanDistance());
+            });
+            jdbc.batchUpdate(INSERT_ROAD, rollup.roads(), batchSize, (statement, road) -> {
+                setInterval(statement, run, rollup);
+                statement.setLong(4, road.roadId());
+                setStats(statement, 5, road.stats());
+            });
+        }
+    }
+
+    private static void setInterval(PreparedStatement statement, String run, TripStatistics.Rollup rollup) throws SQLException {
+        statement.setString(1, run);
+        statement.setDouble(2, rollup.startSeconds());
+        statement.setDouble(3, rollup.intervalSeconds());
+    }
+
+    // Count, mean, p50, p90, p99, max and mean delay, from parameter index first
+    private static void setStats(PreparedStatement statement, int first, TravelStats stats) throws SQLException {
+        statement.setLong(first, stats.count());
+        statement.setDouble(first + 1, stats.meanSeconds());
+        statement.setDouble(first + 2, stats.p50Seconds());
+        statement.setDouble(first + 3, stats.p90Seconds());
+        statement.setDouble(first + 4, stats.p99Seconds());
+        statement.setDouble(first + 5, stats.maxSeconds());
+        statement.setDouble(first + 6, stats.meanDelaySeconds());
+    }
+}
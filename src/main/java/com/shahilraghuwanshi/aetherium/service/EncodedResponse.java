@@ -0,0 +1,14 @@
+package com.shahilraghuwanshi.aetherium.service;
+
+/**
+ * A response body serialised once and served many times, with its gzip form. {@code etag} is the strong
+ * validator of the identity body; the gzip body has its own, since RFC 9110 requires strong validators to
+ * differ between content-codings.
+ */
+public record EncodedResponse(byte[] identity, byte[] gzip, String etag) {
+
+    /** The strong ETag of the gzip body: {@code etag} with {@code -gz} appended inside the quotes. */
+    public String gzipEtag() {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+}
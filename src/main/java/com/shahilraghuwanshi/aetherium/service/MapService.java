@@ -1,32 +1,247 @@
 package com.shahilraghuwanshi.aetherium.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shahilraghuwanshi.aetherium.config.AetheriumProperties;
 import com.shahilraghuwanshi.aetherium.dto.MapLayoutDto;
-import com.shahilraghuwanshi.aetherium.repository.IntersectionRepository;
-import com.shahilraghuwanshi.aetherium.repository.RoadRepository;
-import com.shahilraghuwanshi.aetherium.repository.TrafficLightRepository;
+import com.shahilraghuwanshi.aetherium.dto.MapTileIndexDto;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationService;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the map layout from the simulation's compiled road graph, never from the database. The full
+ * layout and the tile index are serialised and gzipped once per network version; tiles are encoded the
+ * first time they are requested. A new version is built only when the simulation's graph changes, e.g.
+ * when a road is closed or added while it runs.
+ */
 @Service
 public class MapService {
 
-    private final IntersectionRepository intersectionRepository;
-    private final RoadRepository roadRepository;
-    private final TrafficLightRepository trafficLightRepository;
+    private final SimulationService simulationService;
+    private final ObjectMapper objectMapper;
+    private final double tileSize;
+    private volatile Layout layout; // Current version, replaced as a whole
 
     // Constructor Injection
-    public MapService(IntersectionRepository intersectionRepository,
-                      RoadRepository roadRepository,
-                      TrafficLightRepository trafficLightRepository) {
-        this.intersectionRepository = intersectionRepository;
-        this.roadRepository = roadRepository;
-        this.trafficLightRepository = trafficLightRepository;
-    }
-
-    public MapLayoutDto getMapLayout() {
-        MapLayoutDto mapLayout = new MapLayoutDto();
-        mapLayout.setIntersections(intersectionRepository.findAll());
-        mapLayout.setRoads(roadRepository.findAll());
-        mapLayout.setTrafficLights(trafficLightRepository.findAll());
-        return mapLayout;
-    }
-}
\ No newline at end of file
+    public MapService(SimulationService simulationService, ObjectMapper objectMapper, AetheriumProperties properties) {
+        this.simulationService = simulationService;
+        this.objectMapper = objectMapper;
+        this.tileSize = properties.getMapLayout().getTileSize();
+    }
+
+    public EncodedResponse getMapLayout() {
+        return current().full;
+    }
+
+    public EncodedResponse getTileIndex() {
+        return current().index;
+    }
+
+    /** The tile at column {@code x}, row {@code y}, or null if there is no such tile. */
+    public EncodedResponse getTile(int x, int y) {
+        Layout current = current();
+        if (x < 0 || y < 0 || x >= current.columns || y >= current.rows) return null;
+        int tile = y * current.columns + x;
+        return current.tiles.computeIfAbsent(tile, t -> encode(current.tileDto(t), current.version + "-" + x + "-" + y));
+    }
+
+    private Layout current() {
+        RoadGraph graph = simulationService.getGraph();
+        Layout current = layout;
+        if (current != null && current.graph == graph) return current;
+        synchronized (this) {
+            current = layout;
+            if (current == null || current.graph != graph) {
+                current = new Layout(graph, simulationService.getSignals());
+                layout = current;
+            }
+            return current;
+        }
+    }
+
+    private EncodedResponse encode(Object dto, String version) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(dto);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {
+                { def.setLevel(Deflater.BEST_COMPRESSION); } // Compressed once, served many times
+            }) {
+                gzip.write(json);
+            }
+            return new EncodedResponse(json, compressed.toByteArray(), "\"" + version + "\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialise the map layout", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // One version of the layout: the graph it was built from, its encodings and the roads and intersections of every tile
+    private final class Layout {
+        final RoadGraph graph;
+        final String version;
+        final int columns;
+        final int rows;
+        final double minX;
+        final double minY;
+        final boolean[] signalised;
+        final int[] tileOffsets; // Tile -> first of its roads in tileRoads, CSR style
+        final int[] tileRoads;   // Edge index of each road, one direction per road
+        final int[] tileNodeOffsets; // Tile -> first of its intersections in tileNodes, CSR style
+        final int[] tileNodes;       // Node index of each intersection, ascending within a tile
+        final EncodedResponse full;
+        final EncodedResponse index;
+        final ConcurrentHashMap<Integer, EncodedResponse> tiles = new ConcurrentHashMap<>();
+
+        Layout(RoadGraph graph, SignalController signals) {
+            this.graph = graph;
+            signalised = new boolean[graph.nodeCount()];
+            // The graph fingerprint covers geometry and topology; road ids and signal placement are added here
+            long hash = graph.fingerprint();
+            for (int e = 0; e < graph.edgeCount(); e++) hash = hash * 31 + graph.roadId(e);
+            for (int s = 0; s < signals.signalCount(); s++) {
+                signalised[signals.node(s)] = true;
+                hash = hash * 31 + signals.node(s);
+            }
+            version = Long.toHexString(hash);
+
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                minX = Math.min(minX, graph.x(node));
+                minY = Math.min(minY, graph.y(node));
+                maxX = Math.max(maxX, graph.x(node));
+                maxY = Math.max(maxY, graph.y(node));
+            }
+            if (graph.nodeCount() == 0) minX = minY = maxX = maxY = 0;
+            this.minX = minX;
+            this.minY = minY;
+            columns = (int) ((maxX - minX) / tileSize) + 1;
+            rows = (int) ((maxY - minY) / tileSize) + 1;
+
+            // Each road belongs to the tile of its start; count, then fill
+            int[] edges = roadEdges(graph);
+            tileOffsets = new int[columns * rows + 1];
+            for (int edge : edges) tileOffsets[tileOf(graph.source(edge)) + 1]++;
+            for (int t = 0; t < columns * rows; t++) tileOffsets[t + 1] += tileOffsets[t];
+            tileRoads = new int[edges.length];
+            int[] fill = Arrays.copyOf(tileOffsets, columns * rows);
+            for (int edge : edges) tileRoads[fill[tileOf(graph.source(edge))]++] = edge;
+
+            // Intersections are bucketed the same way, so a tile is built without scanning the whole graph
+            tileNodeOffsets = new int[columns * rows + 1];
+            for (int node = 0; node < graph.nodeCount(); node++) tileNodeOffsets[tileOf(node) + 1]++;
+            for (int t = 0; t < columns * rows; t++) tileNodeOffsets[t + 1] += tileNodeOffsets[t];
+            tileNodes = new int[graph.nodeCount()];
+            fill = Arrays.copyOf(tileNodeOffsets, columns * rows);
+            for (int node = 0; node < graph.nodeCount(); node++) tileNodes[fill[tileOf(node)]++] = node;
+
+            full = encode(dto(allNodes(graph), edges), version);
+            index = encode(indexDto(), version);
+        }
+
+        int tileOf(int node) {
+            int x = Math.min(columns - 1, (int) ((graph.x(node) - minX) / tileSize));
+            int y = Math.min(rows - 1, (int) ((graph.y(node) - minY) / tileSize));
+            return y * columns + x;
+        }
+
+        MapTileIndexDto indexDto() {
+            // A tile has content if a road starts in it or an isolated intersection lies in it
+            boolean[] occupied = new boolean[columns * rows];
+            for (int t = 0; t < occupied.length; t++) occupied[t] = tileNodeOffsets[t + 1] > tileNodeOffsets[t];
+            MapTileIndexDto dto = new MapTileIndexDto();
+            dto.setVersion(version);
+            dto.setMinX(minX);
+            dto.setMinY(minY);
+            dto.setTileSize(tileSize);
+            dto.setColumns(columns);
+            dto.setRows(rows);
+            int count = 0;
+            for (boolean o : occupied) if (o) count++;
+            int[] tiles = new int[count];
+            for (int t = 0, i = 0; t < occupied.length; t++) if (occupied[t]) tiles[i++] = t;
+            dto.setTiles(tiles);
+            return dto;
+        }
+
+        // The intersections in the tile and those its roads lead to, so every road can be drawn on its own
+        MapLayoutDto tileDto(int tile) {
+            int[] edges = Arrays.copyOfRange(tileRoads, tileOffsets[tile], tileOffsets[tile + 1]);
+            int own = tileNodeOffsets[tile + 1] - tileNodeOffsets[tile];
+            int[] nodes = Arrays.copyOf(Arrays.copyOfRange(tileNodes, tileNodeOffsets[tile], tileNodeOffsets[tile + 1]),
+                    own + edges.length);
+            int count = own;
+            for (int edge : edges) {
+                if (tileOf(graph.target(edge)) != tile) nodes[count++] = graph.target(edge);
+            }
+            Arrays.sort(nodes, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) if (unique == 0 || nodes[i] != nodes[unique - 1]) nodes[unique++] = nodes[i];
+            return dto(Arrays.copyOf(nodes, unique), edges);
+        }
+
+        MapLayoutDto dto(int[] nodes, int[] edges) {
+            MapLayoutDto dto = new MapLayoutDto();
+            dto.setVersion(version);
+            long[] ids = new long[nodes.length];
+            double[] xs = new double[nodes.length];
+            double[] ys = new double[nodes.length];
+            int lights = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                ids[i] = graph.nodeId(nodes[i]);
+                xs[i] = graph.x(nodes[i]);
+                ys[i] = graph.y(nodes[i]);
+                if (signalised[nodes[i]]) lights++;
+            }
+            long[] trafficLights = new long[lights];
+            for (int i = 0, l = 0; i < nodes.length; i++) if (signalised[nodes[i]]) trafficLights[l++] = ids[i];
+            long[] roadIds = new long[edges.length];
+            long[] starts = new long[edges.length];
+            long[] ends = new long[edges.length];
+            int closed = 0;
+            for (int i = 0; i < edges.length; i++) {
+                roadIds[i] = graph.roadId(edges[i]);
+                starts[i] = graph.nodeId(graph.source(edges[i]));
+                ends[i] = graph.nodeId(graph.target(edges[i]));
+                if (graph.isClosed(edges[i])) closed++;
+            }
+            long[] closedRoads = new long[closed];
+            for (int i = 0, c = 0; i < edges.length; i++) if (graph.isClosed(edges[i])) closedRoads[c++] = roadIds[i];
+            dto.setIntersectionIds(ids);
+            dto.setXs(xs);
+            dto.setYs(ys);
+            dto.setRoadIds(roadIds);
+            dto.setRoadStarts(starts);
+            dto.setRoadEnds(ends);
+            dto.setTrafficLights(trafficLights);
+            dto.setClosedRoads(closedRoads);
+            return dto;
+        }
+    }
+
+    private static int[] allNodes(RoadGraph graph) {
+        int[] nodes = new int[graph.nodeCount()];
+        for (int i = 0; i < nodes.length; i++) nodes[i] = i;
+        return nodes;
+    }
+
+    // Every road is two directed edges; keep the one leaving the lower node index
+    private static int[] roadEdges(RoadGraph graph) {
+        int count = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) if (graph.source(e) < graph.target(e)) count++;
+        int[] edges = new int[count];
+        for (int e = 0, i = 0; e < graph.edgeCount(); e++) if (graph.source(e) < graph.target(e)) edges[i++] = e;
+        return edges;
+    }
+}
@@ -0,0 +1,144 @@
+package com.shahilraghuwanshi.aetherium.service;
+
+import com.shahilraghuwanshi.aetherium.dto.NetworkStatusDto;
+import com.shahilraghuwanshi.aetherium.dto.RoadDto;
+import com.shahilraghuwanshi.aetherium.model.Intersection;
+import com.shahilraghuwanshi.aetherium.model.Road;
+import com.shahilraghuwanshi.aetherium.repository.IntersectionRepository;
+import com.shahilraghuwanshi.aetherium.repository.RoadRepository;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationService;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Edits the road network while the simulation runs: closes and reopens roads, sets speed limits and adds
+ * roads between existing intersections. Each edit is written to the {@code roads} table, so the next start
+ * loads it, and handed to the simulation, which switches to the edited network between two ticks without
+ * dropping a vehicle. The edit is checked against the simulation's network before the table is written, so
+ * an invalid one fails the request and rolls the write back; the simulation only takes it up once the write
+ * is committed.
+ * <p>
+ * Roads are closed rather than deleted, so vehicles on them can drive on to the end and every version of
+ * the network keeps the same intersections.
+ */
+@Service
+public class NetworkEditService {
+
+    private static final Logger log = LoggerFactory.getLogger(NetworkEditService.class);
+
+    private final RoadRepository roadRepository;
+    private final IntersectionRepository intersectionRepository;
+    private final SimulationService simulationService;
+
+    // Constructor Injection
+    public NetworkEditService(RoadRepository roadRepository, IntersectionRepository intersectionRepository,
+                              SimulationService simulationService) {
+        this.roadRepository = roadRepository;
+        this.intersectionRepository = intersectionRepository;
+        this.simulationService = simulationService;
+    }
+
+    public NetworkStatusDto status() {
+        RoadGraph graph = simulationService.getLatestGraph();
+        NetworkStatusDto dto = new NetworkStatusDto();
+        dto.setVersion(simulationService.getNetworkVersion());
+        dto.setIntersections(graph.nodeCount());
+        dto.setRoads(graph.edgeCount() / 2);
+        dto.setClosedRoads(graph.closedEdgeCount() / 2);
+        dto.setRebuildingHierarchy(simulationService.isRebuildingHierarchy());
+        return dto;
+    }
+
+    /**
+     * Closes the road to vehicles not on it yet, or reopens it.
+     * @return the road, or null if there is no such road
+     */
+    @Transactional
+    public RoadDto setClosed(long roadId, boolean closed) {
+        Road road = roadRepository.findById(roadId).orElse(null);
+        if (road == null) return null;
+        road.setClosed(closed);
+        roadRepository.save(road);
+        editAfterCommit(graph -> graph.withRoadClosed(roadId, closed));
+        log.info("Road {} {}.", roadId, closed ? "closed" : "reopened");
+        return toDto(road);
+    }
+
+    /**
+     * Sets the road's speed limit, in the car-following model's units; null removes it.
+     * @return the road, or null if there is no such road
+     */
+    @Transactional
+    public RoadDto setSpeedLimit(long roadId, Double limit) {
+        checkSpeedLimit(limit);
+        Road road = roadRepository.findById(roadId).orElse(null);
+        if (road == null) return null;
+        road.setSpeedLimit(limit);
+        roadRepository.save(road);
+        editAfterCommit(graph -> graph.withSpeedLimit(roadId, limit != null ? limit : Double.NaN));
+        log.info("Road {} speed limit {}.", roadId, limit != null ? limit : "removed");
+        return toDto(road);
+    }
+
+    /**
+     * Adds an open road between two intersections of the network.
+     * @return the new road, or null if either intersection does not exist
+     */
+    @Transactional
+    public RoadDto addRoad(long startIntersectionId, long endIntersectionId, Double limit) {
+        checkSpeedLimit(limit);
+        if (startIntersectionId == endIntersectionId) throw new IllegalArgumentException("A road must join two intersections");
+        Intersection start = intersectionRepository.findById(startIntersectionId).orElse(null);
+        Intersection end = intersectionRepository.findById(endIntersectionId).orElse(null);
+        if (start == null || end == null) return null;
+        Road road = new Road();
+        road.setStartIntersection(start);
+        road.setEndIntersection(end);
+        road.setSpeedLimit(limit);
+        road = roadRepository.saveAndFlush(road); // Assigns the id
+        long roadId = road.getId();
+        editAfterCommit(graph -> graph.withRoad(roadId, startIntersectionId, endIntersectionId,
+                limit != null ? limit : Double.NaN));
+        log.info("Road {} added from intersection {} to {}.", roadId, startIntersectionId, endIntersectionId);
+        return toDto(road);
+    }
+
+    // The column is a DOUBLE, which cannot hold infinity; null stands for no limit
+    private static void checkSpeedLimit(Double limit) {
+        if (limit != null && !(limit > 0 && Double.isFinite(limit))) {
+            throw new IllegalArgumentException("Speed limit must be positive and finite, got " + limit);
+        }
+    }
+
+    // Rolled back with the transaction if the simulation would refuse it; handed over once committed
+    private void editAfterCommit(UnaryOperator<RoadGraph> edit) {
+        simulationService.validateEdit(edit);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    simulationService.editNetwork(edit);
+                } catch (RuntimeException e) {
+                    log.error("Road network edit saved, but the simulation did not take it up; it applies from the next start.", e);
+                }
+            }
+        });
+    }
+
+    private static RoadDto toDto(Road road) {
+        RoadDto dto = new RoadDto();
+        dto.setId(road.getId());
+        dto.setStartIntersectionId(road.getStartIntersection().getId());
+        dto.setEndIntersectionId(road.getEndIntersection().getId());
+        dto.setClosed(road.isClosed());
+        dto.setSpeedLimit(road.getSpeedLimit());
+        return dto;
+    }
+}
@@ -0,0 +1,180 @@
+package com.shahilraghuwanshi.aetherium.service;
+
+import com.shahilraghuwanshi.aetherium.config.AetheriumProperties;
+import com.shahilraghuwanshi.aetherium.dto.ReplayStatusDto;
+import com.shahilraghuwanshi.aetherium.simulation.PacingMode;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationLoop;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationService;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationWebSocketHandler;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.TickFrames;
+import com.shahilraghuwanshi.aetherium.simulation.replay.ReplayState;
+import com.shahilraghuwanshi.aetherium.simulation.replay.TrajectoryReader;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Plays recordings back to the viewers of the live stream. While a replay runs, the simulation keeps
+ * going but its frames are not broadcast; the replay's frames go out through the same WebSocket endpoint,
+ * encoded the same way, so viewers need not know the difference. One replay at a time.
+ */
+@Service
+public class ReplayService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayService.class);
+    private static final Pattern RECORDING_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private final SimulationService simulationService;
+    private final SimulationWebSocketHandler webSocketHandler;
+    private final AetheriumProperties properties;
+    private Playback playback; // Guarded by this; null when idle
+
+    public ReplayService(SimulationService simulationService, SimulationWebSocketHandler webSocketHandler,
+                         AetheriumProperties properties) {
+        this.simulationService = simulationService;
+        this.webSocketHandler = webSocketHandler;
+        this.properties = properties;
+    }
+
+    /** Names of the recordings in the recording directory, oldest first. */
+    public List<String> listRecordings() throws IOException {
+        Path root = Path.of(properties.getRecording().getDirectory());
+        if (!Files.isDirectory(root)) return List.of();
+        try (Stream<Path> listing = Files.list(root)) {
+            return listing.filter(Files::isDirectory).map(path -> path.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    /**
+     * Starts replaying {@code recording} from {@code tick}, replacing any replay in progress.
+     * @return null if there is no such recording.
+     * @throws IllegalStateException if it was recorded on a different road network than the one loaded.
+     */
+    public synchronized ReplayStatusDto start(String recording, long tick, double speed) throws IOException {
+        if (!RECORDING_NAME.matcher(recording).matches()) return null;
+        Path directory = Path.of(properties.getRecording().getDirectory()).resolve(recording);
+        if (!Files.isDirectory(directory)) return null;
+
+        TrajectoryReader reader = new TrajectoryReader(directory);
+        if (reader.getGraphFingerprint() != simulationService.getGraph().fingerprint()
+                || reader.getSignalCount() != simulationService.getSignals().signalCount()) {
+            reader.close();
+            throw new IllegalStateException("Recording " + recording + " was made on a different road network");
+        }
+        stop();
+        playback = new Playback(recording, reader, speed, tick);
+        simulationService.setLiveBroadcast(false);
+        playback.loop.start();
+        log.info("Replaying {} from tick {} at {}x.", recording, tick, speed);
+        return playback.status();
+    }
+
+    /** Jumps to {@code tick}; null if nothing is being replayed. */
+    public synchronized ReplayStatusDto seek(long tick) {
+        if (playback == null) return null;
+        playback.pendingSeek.set(tick);
+        return playback.status();
+    }
+
+    /** Recorded seconds per wall-clock second; null if nothing is being replayed. */
+    public synchronized ReplayStatusDto setSpeed(double speed) {
+        if (playback == null) return null;
+        playback.loop.setPacing(PacingMode.REALTIME, speed);
+        return playback.status();
+    }
+
+    /** The replay in progress, or null. */
+    public synchronized ReplayStatusDto status() {
+        return playback != null ? playback.status() : null;
+    }
+
+    /** Ends the replay, if any, and hands the stream back to the live simulation. */
+    @PreDestroy
+    public synchronized void stop() {
+        if (playback == null) return;
+        playback.loop.close();
+        playback.reader.close();
+        log.info("Replay of {} stopped.", playback.recording);
+        playback = null;
+        simulationService.setLiveBroadcast(true);
+    }
+
+    // One replay: its reader and state belong to the loop's thread, which advances one recorded tick per loop tick
+    private final class Playback {
+
+        private static final long NO_SEEK = Long.MIN_VALUE;
+
+        final String recording;
+        final TrajectoryReader reader;
+        final SimulationLoop loop;
+        final AtomicLong pendingSeek;
+        private final ReplayState state;
+        private final FrameEncoder encoder = simulationService.newFrameEncoder();
+        private int next;  // Next record to apply
+        private long clock; // Recorded tick being shown
+        private volatile long shownTick;
+        private volatile boolean finished;
+        private boolean keyframeDue;
+        private long framesBroadcast;
+        private long lastBroadcastNanos;
+
+        Playback(String recording, TrajectoryReader reader, double speed, long startTick) {
+            this.recording = recording;
+            this.reader = reader;
+            this.state = new ReplayState(reader.getSignalCount());
+            this.pendingSeek = new AtomicLong(startTick);
+            this.shownTick = startTick;
+            this.loop = new SimulationLoop("replay", this::tick, reader.getTickSeconds(), PacingMode.REALTIME, speed);
+        }
+
+        private void tick() {
+            long seek = pendingSeek.getAndSet(NO_SEEK);
+            if (seek != NO_SEEK) {
+                int record = reader.recordAt(seek);
+                reader.seek(record, state);
+                next = record + 1;
+                clock = Math.max(seek, reader.tick(record));
+                keyframeDue = true;
+            } else if (next < reader.recordCount()) {
+                clock++;
+                // Ticks the recorder skipped have no record; the next record covers them
+                while (next < reader.recordCount() && reader.tick(next) <= clock) reader.apply(next++, state);
+            }
+            shownTick = Math.min(clock, reader.lastTick());
+            finished = next >= reader.recordCount();
+
+            long now = System.nanoTime();
+            long frameNanos = (long) (0.9e9 / properties.getStream().getMaxFramesPerSecond());
+            if (keyframeDue || framesBroadcast == 0 || now - lastBroadcastNanos >= frameNanos) {
+                lastBroadcastNanos = now;
+                TickFrames frames = encoder.encode(state.getTick(), state.getVehicles(), simulationService.getSignals(),
+                        state.getLightStates());
+                boolean keyframe = keyframeDue || framesBroadcast++ % properties.getStream().getKeyframeInterval() == 0;
+                keyframeDue = false;
+                webSocketHandler.broadcast(encoder, frames, keyframe);
+            }
+        }
+
+        ReplayStatusDto status() {
+            ReplayStatusDto dto = new ReplayStatusDto();
+            dto.setRecording(recording);
+            dto.setTick(shownTick);
+            dto.setFirstTick(reader.firstTick());
+            dto.setLastTick(reader.lastTick());
+            dto.setTickSeconds(reader.getTickSeconds());
+            dto.setSpeed(loop.getSpeed());
+            dto.setFinished(finished && pendingSeek.get() == NO_SEEK);
+            return dto;
+        }
+    }
+}
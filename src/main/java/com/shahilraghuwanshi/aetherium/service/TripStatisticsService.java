@@ -0,0 +1,106 @@
+package com.shahilraghuwanshi.aetherium.service;
+
+import com.shahilraghuwanshi.aetherium.dto.ThroughputDto;
+import com.shahilraghuwanshi.aetherium.dto.TripStatsDto;
+import com.shahilraghuwanshi.aetherium.dto.TripSummaryDto;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationService;
+import com.shahilraghuwanshi.aetherium.simulation.trips.TravelStats;
+import com.shahilraghuwanshi.aetherium.simulation.trips.TripStatistics;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Answers questions about the trips completed in this run from the in-memory aggregates of
+ * {@link TripStatistics}; the rollup tables are written for later analysis and never read here. Every
+ * method returns null when trip statistics are off, or on a coordinator, whose workers keep them.
+ */
+@Service
+public class TripStatisticsService {
+
+    private final SimulationService simulationService;
+
+    // Constructor Injection
+    public TripStatisticsService(SimulationService simulationService) {
+        this.simulationService = simulationService;
+    }
+
+    public TripSummaryDto summary() {
+        TripStatistics statistics = simulationService.getTripStatistics();
+        if (statistics == null) return null;
+        TripSummaryDto dto = new TripSummaryDto();
+        dto.setRun(simulationService.getRunName());
+        dto.setRoadTraversals(statistics.traversals());
+        dto.setDroppedEvents(statistics.getRing().getDropped());
+        dto.setRollupRowsWritten(statistics.getRowsWritten());
+        dto.setIntervalSeconds(statistics.getIntervalSeconds());
+        dto.setZones(statistics.zoneCount());
+        dto.setTrips(toDto(statistics.trips()));
+        return dto;
+    }
+
+    /** @return null also if no trip went from one zone to the other */
+    public TripStatsDto zonePair(int originZone, int destinationZone) {
+        TripStatistics statistics = simulationService.getTripStatistics();
+        TravelStats stats = statistics != null ? statistics.zonePair(originZone, destinationZone) : null;
+        if (stats == null) return null;
+        TripStatsDto dto = toDto(stats);
+        dto.setOriginZone(originZone);
+        dto.setDestinationZone(destinationZone);
+        return dto;
+    }
+
+    public List<TripStatsDto> busiestZonePairs(int limit) {
+        TripStatistics statistics = simulationService.getTripStatistics();
+        if (statistics == null) return null;
+        return statistics.busiestZonePairs(limit).stream().map(pair -> {
+            TripStatsDto dto = toDto(pair.stats());
+            dto.setOriginZone(pair.originZone());
+            dto.setDestinationZone(pair.destinationZone());
+            return dto;
+        }).toList();
+    }
+
+    /** @return null also if no vehicle has driven the road to its end */
+    public TripStatsDto road(long roadId) {
+        TripStatistics statistics = simulationService.getTripStatistics();
+        TravelStats stats = statistics != null ? statistics.road(roadId) : null;
+        if (stats == null) return null;
+        TripStatsDto dto = toDto(stats);
+        dto.setRoadId(roadId);
+        dto.setMeanDistance(null); // The road's length
+        return dto;
+    }
+
+    public List<ThroughputDto> throughput() {
+        TripStatistics statistics = simulationService.getTripStatistics();
+        if (statistics == null) return null;
+        return statistics.throughput().stream().map(interval -> {
+            ThroughputDto dto = new ThroughputDto();
+            dto.setIntervalStart(interval.startSeconds());
+            dto.setIntervalSeconds(statistics.getIntervalSeconds());
+            dto.setTrips(interval.trips().count());
+            dto.setMeanSeconds(orNull(interval.trips().meanSeconds()));
+            dto.setMeanDelaySeconds(orNull(interval.trips().meanDelaySeconds()));
+            return dto;
+        }).toList();
+    }
+
+    private static TripStatsDto toDto(TravelStats stats) {
+        TripStatsDto dto = new TripStatsDto();
+        dto.setCount(stats.count());
+        dto.setMeanSeconds(orNull(stats.meanSeconds()));
+        dto.setP50Seconds(orNull(stats.p50Seconds()));
+        dto.setP90Seconds(orNull(stats.p90Seconds()));
+        dto.setP99Seconds(orNull(stats.p99Seconds()));
+        dto.setMaxSeconds(orNull(stats.maxSeconds()));
+        dto.setMeanDelaySeconds(orNull(stats.meanDelaySeconds()));
+        dto.setMeanDistance(orNull(stats.meanDistance()));
+        return dto;
+    }
+
+    // JSON has no NaN
+    private static Double orNull(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
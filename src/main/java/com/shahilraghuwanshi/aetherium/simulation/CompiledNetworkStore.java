@@ -0,0 +1,93 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.io.ArrayFileWriter;
+import com.shahilraghuwanshi.aetherium.simulation.io.MappedArrayReader;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchy;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps the compiled form of the map (road graph, signal timings and, if computed, the contraction
+ * hierarchy) in a single file, so startup can skip the database and the rebuild. The file is read with
+ * {@link MappedArrayReader}, which copies each array straight out of the page cache.
+ * <p>
+ * Each file records the stamp of the source data it was compiled from; {@link #load} only returns it when
+ * the caller's current stamp matches. Like the contraction hierarchy cache, a missing, stale, corrupt or
+ * unwritable file only costs the slow path; it is never fatal.
+ */
+public final class CompiledNetworkStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledNetworkStore.class);
+
+    private static final int MAGIC = 0x414E4554; // "ANET"
+    private static final int FORMAT_VERSION = 2; // 2: road closures and speed limits
+
+    /** The compiled map; {@code hierarchy} is null if none was stored. */
+    public record CompiledNetwork(RoadGraph graph, SignalController signals, ContractionHierarchy hierarchy) {
+    }
+
+    private final Path file;
+
+    public CompiledNetworkStore(Path directory) {
+        this.file = directory.resolve("network.bin");
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /** The stored network if it was compiled from data with {@code stamp}, otherwise null. */
+    public CompiledNetwork load(long stamp) {
+        if (!Files.exists(file)) return null;
+        try (MappedArrayReader in = new MappedArrayReader(file)) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a compiled network file");
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) throw new IOException("Unsupported format version " + version);
+            if (in.readLong() != stamp) {
+                log.info("Compiled network in {} is out of date; loading from the database.", file);
+                return null;
+            }
+            boolean hasHierarchy = in.readInt() != 0;
+            RoadGraph graph = RoadGraph.readFrom(in);
+            SignalController signals = SignalController.readFrom(in, graph);
+            ContractionHierarchy hierarchy = hasHierarchy ? ContractionHierarchy.readFrom(in) : null;
+            if (hierarchy != null && hierarchy.nodeCount() != graph.nodeCount()) throw new IOException("Hierarchy does not match the graph");
+            return new CompiledNetwork(graph, signals, hierarchy);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read compiled network from {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Replaces the stored network; {@code hierarchy} may be null. */
+    public void store(long stamp, RoadGraph graph, SignalController signals, ContractionHierarchy hierarchy) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            // Write to a temporary file first so a crash never leaves a truncated file behind
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "network-", ".tmp");
+            try {
+                try (ArrayFileWriter out = new ArrayFileWriter(temp)) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeLong(stamp);
+                    out.writeInt(hierarchy != null ? 1 : 0);
+                    graph.writeTo(out);
+                    signals.writeTo(out);
+                    if (hierarchy != null) hierarchy.writeTo(out);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not store compiled network in {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import java.util.Arrays;
+
+/**
+ * The vehicles on each directed edge, in driving order, as intrusive doubly linked lists over vehicle
+ * handles. The vehicle directly ahead on the same edge (the leader) and the rearmost vehicle of an edge
+ * are both O(1) lookups.
+ * <p>
+ * Vehicles cannot overtake, so lists only change when a vehicle enters an edge (at the rear) or leaves
+ * it. All mutation belongs to the simulation thread's serial phases; reads during the parallel phase
+ * are safe because nothing mutates then.
+ */
+public final class EdgeOccupancy {
+
+    private final int[] fronts; // Per edge: the vehicle furthest along, or -1
+    private final int[] rears;  // Per edge: the vehicle that entered last, or -1
+    private int[] ahead = new int[1024];  // Per handle: the next vehicle towards the front, or -1
+    private int[] behind = new int[1024]; // Per handle: the next vehicle towards the rear, or -1
+    private int[] edgeOf = new int[1024]; // Per handle: the edge it is listed on, or -1
+
+    public EdgeOccupancy(int edgeCount) {
+        fronts = new int[edgeCount];
+        rears = new int[edgeCount];
+        Arrays.fill(fronts, -1);
+        Arrays.fill(rears, -1);
+        Arrays.fill(edgeOf, -1);
+    }
+
+    /** The vehicle directly ahead of {@code handle} on its edge, or -1 if it is at the front. */
+    public int leader(int handle) {
+        return ahead[handle];
+    }
+
+    /** The last vehicle to have entered {@code edge}, or -1 if it is empty. */
+    public int rearmost(int edge) {
+        return rears[edge];
+    }
+
+    public int frontmost(int edge) {
+        return fronts[edge];
+    }
+
+    /** The edge {@code handle} is listed on, or -1. */
+    public int edgeOf(int handle) {
+        return handle < edgeOf.length ? edgeOf[handle] : -1;
+    }
+
+    /** Appends the vehicle at the rear of {@code edge}, removing it from any edge it was on. */
+    public void enter(int handle, int edge) {
+        ensureCapacity(handle);
+        if (edgeOf[handle] >= 0) leave(handle);
+        int rear = rears[edge];
+        ahead[handle] = rear;
+        behind[handle] = -1;
+        if (rear >= 0) behind[rear] = handle;
+        else fronts[edge] = handle;
+        rears[edge] = handle;
+        edgeOf[handle] = edge;
+    }
+
+    /** Unlinks the vehicle from its edge; a no-op if it is on none. */
+    public void leave(int handle) {
+        int edge = edgeOf(handle);
+        if (edge < 0) return;
+        int front = ahead[handle];
+        int back = behind[handle];
+        if (front >= 0) behind[front] = back;
+        else fronts[edge] = back;
+        if (back >= 0) ahead[back] = front;
+        else rears[edge] = front;
+        edgeOf[handle] = -1;
+    }
+
+    /**
+     * The same lists over the edges of another version of the road network, each in the same order.
+     * @param mapping per edge of this occupancy, its index among the {@code edgeCount} edges of the new one
+     */
+    public EdgeOccupancy remap(int edgeCount, int[] mapping) {
+        EdgeOccupancy remapped = new EdgeOccupancy(edgeCount);
+        remapped.ensureCapacity(edgeOf.length - 1);
+        for (int edge = 0; edge < fronts.length; edge++) {
+            if (fronts[edge] < 0) continue;
+            if (mapping[edge] < 0) throw new IllegalArgumentException("Edge " + edge + " is occupied but has no counterpart");
+            for (int handle = fronts[edge]; handle >= 0; handle = behind[handle]) {
+                remapped.enter(handle, mapping[edge]);
+            }
+        }
+        return remapped;
+    }
+
+    public void clear() {
+        Arrays.fill(fronts, -1);
+        Arrays.fill(rears, -1);
+        Arrays.fill(edgeOf, -1);
+    }
+
+    private void ensureCapacity(int handle) {
+        if (handle < edgeOf.length) return;
+        int oldLength = edgeOf.length;
+        int capacity = Math.max(handle + 1, oldLength * 2);
+        ahead = Arrays.copyOf(ahead, capacity);
+        behind = Arrays.copyOf(behind, capacity);
+        edgeOf = Arrays.copyOf(edgeOf, capacity);
+        Arrays.fill(edgeOf, oldLength, capacity, -1);
+    }
+}
@@ -0,0 +1,15 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+/**
+ * A vehicle crossing into another engine's region, as the engine that drove it up to the boundary last saw it.
+ *
+ * @param path            the rest of the vehicle's path, starting with the first node of the edge it is entering
+ * @param offset          distance already driven along that edge, before the receiving engine's no-overtaking check
+ * @param enteredAt       simulated time it entered the edge
+ * @param expectedArrival simulated time it should reach the end of its path, as last estimated
+ * @param origin          node its trip started from, and the trip's start time, distance and free-flow time so
+ *                        far, so the region where it arrives can report the whole trip
+ */
+public record Handoff(long id, int[] path, double offset, double speed, double enteredAt, double expectedArrival,
+                      int origin, double departedAt, double distance, double freeFlowSeconds) {
+}
@@ -0,0 +1,84 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+/**
+ * The Intelligent Driver Model (Treiber et al.): a vehicle's acceleration from its own speed, the gap to
+ * the obstacle ahead and how fast it is closing in on it. Stopped obstacles such as red signals are
+ * leaders with speed zero. Distances are map units and times are seconds. Where a road has a speed limit
+ * below the desired speed, the overloads taking a desired speed let the limit stand in for it. Immutable.
+ */
+public final class IntelligentDriverModel {
+
+    private static final double MIN_GAP = 1e-3; // Keeps the interaction term finite for touching vehicles
+
+    private final double desiredSpeed;
+    private final double maxAcceleration;
+    private final double comfortableDeceleration;
+    private final double minimumGap;
+    private final double timeHeadway;
+    private final double vehicleLength;
+    private final double maxDeceleration;
+
+    /**
+     * @param desiredSpeed            speed on a free road
+     * @param maxAcceleration         acceleration from standstill
+     * @param comfortableDeceleration braking used when approaching slower traffic
+     * @param minimumGap              bumper-to-bumper distance kept in a standing queue
+     * @param timeHeadway             time gap kept to the leader at speed
+     * @param vehicleLength           bumper to bumper length of every vehicle
+     * @param maxDeceleration         hardest possible braking; signals that would need more are passed
+     */
+    public IntelligentDriverModel(double desiredSpeed, double maxAcceleration, double comfortableDeceleration,
+                                  double minimumGap, double timeHeadway, double vehicleLength, double maxDeceleration) {
+        this.desiredSpeed = desiredSpeed;
+        this.maxAcceleration = maxAcceleration;
+        this.comfortableDeceleration = comfortableDeceleration;
+        this.minimumGap = minimumGap;
+        this.timeHeadway = timeHeadway;
+        this.vehicleLength = vehicleLength;
+        this.maxDeceleration = maxDeceleration;
+    }
+
+    public double vehicleLength() {
+        return vehicleLength;
+    }
+
+    public double minimumGap() {
+        return minimumGap;
+    }
+
+    public double desiredSpeed() {
+        return desiredSpeed;
+    }
+
+    /** Acceleration on a free road. */
+    public double freeAcceleration(double speed) {
+        return freeAcceleration(speed, desiredSpeed);
+    }
+
+    /** Acceleration on a free road where the driver wants to go {@code desired}, e.g. a speed limit. */
+    public double freeAcceleration(double speed, double desired) {
+        double ratio = speed / desired;
+        return maxAcceleration * (1 - ratio * ratio * ratio * ratio);
+    }
+
+    /**
+     * @param gap          free distance to the obstacle ahead (bumper to bumper)
+     * @param approachRate own speed minus the obstacle's speed
+     */
+    public double acceleration(double speed, double gap, double approachRate) {
+        return acceleration(speed, desiredSpeed, gap, approachRate);
+    }
+
+    /** As {@link #acceleration(double, double, double)}, for a driver who wants to go {@code desired}. */
+    public double acceleration(double speed, double desired, double gap, double approachRate) {
+        double desiredGap = minimumGap + Math.max(0, speed * timeHeadway
+                + speed * approachRate / (2 * Math.sqrt(maxAcceleration * comfortableDeceleration)));
+        double interaction = desiredGap / Math.max(gap, MIN_GAP);
+        return freeAcceleration(speed, desired) - maxAcceleration * interaction * interaction;
+    }
+
+    /** Whether a vehicle at {@code speed} can still stop within {@code distance}. */
+    public boolean canStopWithin(double speed, double distance) {
+        return speed * speed <= 2 * maxDeceleration * distance;
+    }
+}
@@ -0,0 +1,18 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+/**
+ * What a {@link SessionOutbox} does when a viewer falls behind. Deltas are only meaningful in order,
+ * so both policies end a gap with a keyframe; they differ in how soon one is sent.
+ */
+public enum OverflowPolicy {
+    /**
+     * On overflow, drop the oldest queued frames back to the newest queued keyframe, or all of them if
+     * there is none, and resume at the next periodic keyframe. Costs the server nothing extra.
+     */
+    DROP_OLDEST,
+    /**
+     * Keep at most one pending state: a keyframe replaces whatever is still queued, and on overflow the
+     * queue is cleared and a keyframe is requested for the very next tick.
+     */
+    CONFLATE
+}
@@ -0,0 +1,9 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+/** How the simulation loop relates simulated time to wall-clock time. */
+public enum PacingMode {
+    /** Ticks are spaced so simulated time advances at a fixed multiple of wall-clock time, for live viewing. */
+    REALTIME,
+    /** Ticks run back to back as fast as the CPU allows, for batch and what-if runs. */
+    HEADLESS
+}
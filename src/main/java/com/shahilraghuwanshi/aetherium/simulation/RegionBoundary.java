@@ -0,0 +1,87 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The part of the road network a {@link SimulationEngine} owns when one city is split between several engines,
+ * and what it knows of the rest.
+ * <p>
+ * An edge belongs to the region of its source node. The engine only drives vehicles on its own edges: one
+ * reaching a foreign edge leaves the engine as a {@link Handoff}, collected here for whoever connects the
+ * regions. Across the boundary, the engine sees the rearmost vehicle of each foreign edge its own edges lead
+ * into (the halo), as last reported by the neighbouring region, so vehicles slow down for queues on the other
+ * side just as they do for those on their own.
+ * <p>
+ * Vehicle ids are issued by every region from its own residue class modulo the region count, so they stay
+ * unique across regions and through handoffs. Belongs to the thread driving the engine.
+ */
+public final class RegionBoundary {
+
+    private final int region;
+    private final int regionCount;
+    private final boolean[] ownedNodes;
+    private final boolean[] ownedEdges;
+    private final double[] rearOffsets; // Per foreign edge: the halo vehicle's offset, or NaN if none is known
+    private final double[] rearSpeeds;
+    private final List<Handoff> departures = new ArrayList<>();
+
+    /** @param ownedNodes per node of {@code graph}, whether it belongs to this region */
+    public RegionBoundary(RoadGraph graph, int region, int regionCount, boolean[] ownedNodes) {
+        this.region = region;
+        this.regionCount = regionCount;
+        this.ownedNodes = ownedNodes;
+        this.ownedEdges = new boolean[graph.edgeCount()];
+        for (int edge = 0; edge < ownedEdges.length; edge++) {
+            ownedEdges[edge] = ownedNodes[graph.source(edge)];
+        }
+        this.rearOffsets = new double[graph.edgeCount()];
+        this.rearSpeeds = new double[graph.edgeCount()];
+        Arrays.fill(rearOffsets, Double.NaN);
+    }
+
+    public int getRegion() {
+        return region;
+    }
+
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    public boolean ownsNode(int node) {
+        return ownedNodes[node];
+    }
+
+    public boolean owns(int edge) {
+        return ownedEdges[edge];
+    }
+
+    /** Sets the rearmost vehicle of a foreign edge; a NaN offset means the edge is empty. */
+    public void setRear(int edge, double offset, double speed) {
+        rearOffsets[edge] = offset;
+        rearSpeeds[edge] = speed;
+    }
+
+    /** Offset of the rearmost vehicle on a foreign edge, or NaN if it is empty or not known. */
+    public double rearOffset(int edge) {
+        return rearOffsets[edge];
+    }
+
+    public double rearSpeed(int edge) {
+        return rearSpeeds[edge];
+    }
+
+    void depart(Handoff handoff) {
+        departures.add(handoff);
+    }
+
+    /** The vehicles that left the region since the last call, in the order they crossed. */
+    public List<Handoff> drainDepartures() {
+        List<Handoff> drained = new ArrayList<>(departures);
+        departures.clear();
+        return drained;
+    }
+}
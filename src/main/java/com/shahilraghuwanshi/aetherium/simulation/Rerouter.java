@@ -0,0 +1,96 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+
+/**
+ * Moves vehicles onto faster routes when traffic ahead of them builds up.
+ * <p>
+ * Each tick it checks the next {@code checksPerTick} vehicles, round robin, so every vehicle is looked
+ * at regularly whatever the fleet size. A vehicle whose estimated arrival under the current
+ * {@link TravelTimes} has slipped by more than {@code threshold} of its remaining trip gets a new route
+ * from the end of its current edge; the route is adopted if it saves at least {@code minImprovement} of
+ * the remaining time. At most {@code maxReroutesPerTick} such searches run per tick. Either way the
+ * vehicle's expected arrival is reset to the best estimate, so it is only reconsidered if things get
+ * worse again.
+ * <p>
+ * Not thread-safe: runs in the engine's serial phase.
+ */
+public final class Rerouter {
+
+    private Router router;
+    private TravelTimes travelTimes;
+    private final double threshold;
+    private final double minImprovement;
+    private final int maxReroutesPerTick;
+    private final int checksPerTick;
+    private int cursor; // Next slot to check
+    private long searches;
+    private long reroutes;
+
+    /** @param router should weigh edges by {@code travelTimes} */
+    public Rerouter(Router router, TravelTimes travelTimes, double threshold, double minImprovement,
+                    int maxReroutesPerTick, int checksPerTick) {
+        this.router = router;
+        this.travelTimes = travelTimes;
+        this.threshold = threshold;
+        this.minImprovement = minImprovement;
+        this.maxReroutesPerTick = maxReroutesPerTick;
+        this.checksPerTick = checksPerTick;
+    }
+
+    /** Route searches run for vehicles whose trip had degraded. */
+    public long getSearches() {
+        return searches;
+    }
+
+    /** Searches that found a faster route, which the vehicle then took. */
+    public long getReroutes() {
+        return reroutes;
+    }
+
+    // After an edit of the road network, which brings its own estimates and router
+    void replace(Router router, TravelTimes travelTimes) {
+        this.router = router;
+        this.travelTimes = travelTimes;
+    }
+
+    void run(VehicleStore vehicles, RoadGraph graph, double now) {
+        int size = vehicles.size();
+        int checks = Math.min(checksPerTick, size);
+        int searched = 0;
+        for (int i = 0; i < checks && searched < maxReroutesPerTick; i++) {
+            if (cursor >= size) cursor = 0;
+            int slot = cursor++;
+            int[] path = vehicles.path(slot);
+            int pathIndex = vehicles.pathIndex(slot);
+            if (vehicles.state(slot) != VehicleStore.STATE_MOVING || pathIndex >= path.length - 1) continue;
+
+            // The rest of the current edge, then the path beyond it
+            int edge = vehicles.edge(slot);
+            double length = graph.length(edge);
+            double onEdge = length > 0 ? travelTimes.cost(edge) * Math.max(0, 1 - vehicles.offset(slot) / length) : 0;
+            double beyond = travelTimes.pathSeconds(path, pathIndex);
+            double expectedRemaining = vehicles.expectedArrival(slot) - now;
+            if (onEdge + beyond <= Math.max(expectedRemaining, 0) * (1 + threshold)) continue;
+
+            searched++;
+            searches++;
+            int[] route = router.route(path[pathIndex], path[path.length - 1]);
+            double best = beyond;
+            if (route.length >= 2) {
+                double alternative = travelTimes.pathSeconds(route, 0);
+                if (alternative < beyond * (1 - minImprovement)) {
+                    // Keep the node the current edge starts from, so the vehicle stays on it
+                    int[] rerouted = new int[route.length + 1];
+                    rerouted[0] = path[pathIndex - 1];
+                    System.arraycopy(route, 0, rerouted, 1, route.length);
+                    vehicles.setPath(slot, rerouted, 1);
+                    best = alternative;
+                    reroutes++;
+                }
+            }
+            vehicles.setExpectedArrival(slot, now + onEdge + best);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limit for messages that can repeat every tick: at most one is let through per interval, and the
+ * next one that is reports how many were suppressed in between. Thread-safe and allocation-free.
+ * <pre>
+ * if (log.isWarnEnabled() &amp;&amp; noRoute.tryAcquire()) log.warn("No route ({} more suppressed)", noRoute.drainSuppressed());
+ * </pre>
+ */
+public final class SampledLog {
+
+    private final long intervalNanos;
+    private final AtomicLong nextAllowedNanos;
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public SampledLog(long intervalNanos) {
+        this.intervalNanos = intervalNanos;
+        this.nextAllowedNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /** True if a message may be logged now; otherwise counts it as suppressed. */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        long next = nextAllowedNanos.get();
+        if (now - next >= 0 && nextAllowedNanos.compareAndSet(next, now + intervalNanos)) return true;
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    /** Messages suppressed since the last call. */
+    public long drainSuppressed() {
+        return suppressed.getAndSet(0);
+    }
+}
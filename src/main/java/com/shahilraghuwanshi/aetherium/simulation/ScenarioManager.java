@@ -0,0 +1,200 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.config.AetheriumProperties;
+import com.shahilraghuwanshi.aetherium.metrics.SimulationMetrics;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandMode;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandModel;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandScheduler;
+import com.shahilraghuwanshi.aetherium.simulation.demand.RouteAssigner;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchy;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchyRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.OneToManyRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.Scenario;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.ScenarioScheduler;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.ScenarioSpec;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates, pauses and destroys {@link Scenario}s: what-if simulations of the live simulation's city, next to
+ * it in the same process.
+ * <p>
+ * A scenario starts from the live simulation's current road network and signal timings, with a seed, demand
+ * and pacing of its own. All scenarios tick on one {@link ScenarioScheduler} of {@code workerThreads} threads,
+ * each engine on a single thread, so dozens of scenarios use no more CPU than the pool, and route their OD
+ * demand on one shared pool. Scenarios on the same version of the network share its router as well.
+ */
+@Service
+public class ScenarioManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ScenarioManager.class);
+
+    private final SimulationService simulationService;
+    private final SimulationWebSocketHandler webSocketHandler;
+    private final AetheriumProperties properties;
+
+    private final ScenarioScheduler scheduler;
+    private final ExecutorService routingPool; // OD demand of every scenario
+    private final TickExecutor serialExecutor = new TickExecutor(1, 1); // Each engine ticks on one thread; the scheduler runs them side by side
+    private final IntelligentDriverModel driver;
+    private final Map<String, Scenario> scenarios = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicInteger slotsTaken = new AtomicInteger(); // Reserved before a scenario is built, so concurrent creates can't exceed the limit
+
+    // Routers keep their search state per thread, so scenarios on the same network share one; guarded by this
+    private RoadGraph sharedGraph;
+    private Router sharedRouter;
+
+    // Constructor Injection
+    public ScenarioManager(SimulationService simulationService, SimulationWebSocketHandler webSocketHandler,
+                           AetheriumProperties properties, SimulationMetrics metrics) {
+        this.simulationService = simulationService;
+        this.webSocketHandler = webSocketHandler;
+        this.properties = properties;
+        AetheriumProperties.Scenarios settings = properties.getScenarios();
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.scheduler = new ScenarioScheduler(settings.getWorkerThreads() > 0 ? settings.getWorkerThreads() : processors);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.routingPool = Executors.newFixedThreadPool(settings.getRouteThreads() > 0 ? settings.getRouteThreads() : processors,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "scenario-routing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.driver = simulationService.createDriver();
+        metrics.bindScenarios(this);
+    }
+
+    /** A spec with the configured settings of the live simulation, for whatever a request leaves out. */
+    public ScenarioSpec defaults() {
+        AetheriumProperties.Simulation simulation = properties.getSimulation();
+        AetheriumProperties.Demand demand = properties.getDemand();
+        return new ScenarioSpec(null, simulation.getSeed(), demand.getMode(), Double.NaN, demand.getStartHour(),
+                simulation.getMaxVehicles(), simulation.getPacing(), simulation.getSpeed());
+    }
+
+    /**
+     * Creates a scenario of the live simulation's current network and starts it.
+     * @throws IllegalStateException if {@code maxScenarios} already exist
+     */
+    public Scenario create(ScenarioSpec spec) {
+        int max = properties.getScenarios().getMaxScenarios();
+        if (slotsTaken.incrementAndGet() > max) {
+            slotsTaken.decrementAndGet();
+            throw new IllegalStateException("At most " + max + " scenarios may exist at once");
+        }
+        try {
+            return start(spec);
+        } catch (RuntimeException | Error e) {
+            slotsTaken.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private Scenario start(ScenarioSpec spec) {
+        String id = Long.toString(nextId.incrementAndGet());
+        RoadGraph graph = simulationService.getGraph();
+        SplittableRandom random = new SplittableRandom(spec.seed());
+        TravelTimes travelTimes = simulationService.createTravelTimes(graph);
+        SimulationEngine engine = new SimulationEngine(graph, router(graph, travelTimes), simulationService.getSignals().copy(),
+                driver, serialExecutor, random, spec.maxVehicles(), properties.getSimulation().getTickSeconds());
+        if (travelTimes != null) {
+            engine.setCongestionRouting(travelTimes, properties.getRouting().getCongestion().getUpdateSeconds(),
+                    simulationService.createRerouter(engine.getRouter(), travelTimes));
+        }
+        RouteAssigner routeAssigner = null;
+        if (spec.demandMode() == DemandMode.OD_MATRIX) {
+            // Split like the live simulation's, so a scenario with its seed and settings sees the same trips
+            SplittableRandom demandRandom = new SplittableRandom(spec.seed()).split();
+            DemandModel model = simulationService.createDemandModel(graph, demandRandom, spec.tripsPerHour());
+            routeAssigner = new RouteAssigner(travelTimes != null
+                    ? new OneToManyRouter(graph, travelTimes) : new OneToManyRouter(graph), routingPool);
+            AetheriumProperties.Demand demand = properties.getDemand();
+            engine.setTripSource(new DemandScheduler(model, routeAssigner, demandRandom, spec.startHour() * 3600,
+                    demand.getBatchSeconds(), demand.getLookaheadSeconds(), demand.getMaxReleasesPerTick()));
+        }
+        AetheriumProperties.Stream stream = properties.getStream();
+        Scenario scenario = new Scenario(id, spec, engine, routeAssigner, this::router, simulationService.newFrameEncoder(),
+                webSocketHandler, stream.getMaxFramesPerSecond(), stream.getKeyframeInterval(), scheduler);
+        scenario.resume();
+        scenarios.put(id, scenario); // Last, so a failure before it leaves nothing holding the slot
+        log.info("Scenario {} created{}: seed {}, {} demand, {}.", id, spec.name() != null ? " (" + spec.name() + ")" : "",
+                spec.seed(), spec.demandMode(), spec.pacing());
+        return scenario;
+    }
+
+    /** The scenario, or null if there is no such scenario. */
+    public Scenario get(String id) {
+        return scenarios.get(id);
+    }
+
+    /** Every scenario, oldest first. */
+    public List<Scenario> list() {
+        List<Scenario> all = new ArrayList<>(scenarios.values());
+        all.sort(Comparator.comparingLong(scenario -> Long.parseLong(scenario.getId())));
+        return all;
+    }
+
+    public int count() {
+        return scenarios.size();
+    }
+
+    public ScenarioScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Stops the scenario after its current tick and forgets it; its viewers go back to the live simulation.
+     * @return false if there is no such scenario
+     */
+    public boolean destroy(String id) {
+        Scenario scenario = scenarios.remove(id);
+        if (scenario == null) return false;
+        slotsTaken.decrementAndGet();
+        scenario.close();
+        webSocketHandler.unsubscribeAll(id);
+        log.info("Scenario {} destroyed after {} ticks.", id, scenario.getClock().getTicks());
+        return true;
+    }
+
+    // Live travel times are the engine's own, and so is a router over them. A fixed-weight router is shared by every
+    // scenario on the live simulation's network, on its contraction hierarchy when that matches the network.
+    private Router router(RoadGraph graph, TravelTimes travelTimes) {
+        if (travelTimes != null) return new AStarRouter(graph, travelTimes);
+        synchronized (this) {
+            if (graph == sharedGraph) return sharedRouter;
+        }
+        ContractionHierarchy hierarchy = simulationService.getHierarchy();
+        Router router = hierarchy != null && hierarchy.getGraphFingerprint() == graph.fingerprint()
+                ? new ContractionHierarchyRouter(graph, hierarchy) : new AStarRouter(graph);
+        if (graph != simulationService.getGraph()) return router; // A scenario's own edit
+        synchronized (this) {
+            sharedGraph = graph;
+            sharedRouter = router;
+        }
+        return router;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (String id : List.copyOf(scenarios.keySet())) destroy(id);
+        scheduler.close();
+        routingPool.shutdownNow();
+    }
+}
@@ -0,0 +1,241 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.protocol.CellRect;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.SpatialGrid;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.TickFrames;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of outbound frames for one WebSocket session, drained by a sender pool.
+ * <p>
+ * The simulation thread only ever calls {@link #plan} and {@link #offer}, which never block on the
+ * network. At most one drain task per session runs at a time, so sends to a session are never concurrent.
+ * The queue holds the shared per-tick blocks; the session's own frame is assembled from the cells of its
+ * viewport on the sender thread, just before sending.
+ */
+final class SessionOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionOutbox.class);
+
+    private enum SyncState { STREAMING, KEYFRAME_REQUESTED, AWAITING_KEYFRAME }
+
+    private static final int FRAMES_PER_DRAIN = 16; // Re-queue the drain task afterwards so busy sessions share the pool
+
+    private final WebSocketSession session;
+    private final Executor senders;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final long slowClientTimeoutNanos;
+
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private SyncState syncState = SyncState.KEYFRAME_REQUESTED; // New sessions need a keyframe first
+    private boolean draining;
+    private boolean closed;
+    private long behindSinceNanos; // When the queue last overflowed without fully draining since; 0 = keeping up
+
+    private volatile double[] viewport; // minX, minY, maxX, maxY in map units; null = the whole map
+    private volatile String scenario;   // The scenario watched; null = the live simulation
+    private CellRect plannedCells = CellRect.EMPTY; // Cells to send this tick, fixed by plan()
+    private boolean plannedKeyframe;
+    private CellRect sentCells = CellRect.EMPTY; // Cells the client holds state for once the queue is sent
+
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+
+    private record Frame(TickFrames frames, CellRect cells, CellRect previousCells, boolean keyframe) {
+
+        byte[] payload() {
+            return frames.assemble(cells, previousCells, keyframe);
+        }
+    }
+
+    SessionOutbox(WebSocketSession session, Executor senders, int capacity, OverflowPolicy policy, long slowClientTimeoutNanos) {
+        this.session = session;
+        this.senders = senders;
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.slowClientTimeoutNanos = slowClientTimeoutNanos;
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    /** Frames waiting to be sent. */
+    synchronized int queuedFrames() {
+        return queue.size();
+    }
+
+    synchronized boolean isKeyframeRequested() {
+        return syncState == SyncState.KEYFRAME_REQUESTED;
+    }
+
+    String getScenario() {
+        return scenario;
+    }
+
+    /**
+     * Switches the session to another scenario's stream, null for the live simulation. Frames still queued
+     * from the previous one are discarded and the next frame is a keyframe.
+     */
+    synchronized void setScenario(String scenario) {
+        this.scenario = scenario;
+        queue.clear();
+        sentCells = CellRect.EMPTY;
+        if (!closed) syncState = SyncState.KEYFRAME_REQUESTED;
+    }
+
+    /** Sets the region the client is looking at; takes effect on the next tick. */
+    void setViewport(double minX, double minY, double maxX, double maxY) {
+        viewport = new double[] {minX, minY, maxX, maxY};
+    }
+
+    /**
+     * Decides what this session gets on the current tick and marks the cells that need a keyframe block in
+     * {@code keyframeCells}: all of its cells if it has to resync (or on a periodic keyframe), otherwise only
+     * the cells that just scrolled into view. {@link #offer} sends exactly what was planned.
+     */
+    synchronized void plan(SpatialGrid grid, boolean periodicKeyframe, boolean[] keyframeCells) {
+        double[] view = viewport;
+        plannedCells = view != null ? grid.cellsIn(view[0], view[1], view[2], view[3]) : grid.allCells();
+        plannedKeyframe = periodicKeyframe || syncState == SyncState.KEYFRAME_REQUESTED;
+        if (closed || (syncState == SyncState.AWAITING_KEYFRAME && !plannedKeyframe)) return;
+        if (!plannedKeyframe && plannedCells.equals(sentCells)) return;
+        for (int y = plannedCells.minY(); y <= plannedCells.maxY(); y++) {
+            for (int x = plannedCells.minX(); x <= plannedCells.maxX(); x++) {
+                if (plannedKeyframe || !sentCells.contains(x, y)) keyframeCells[y * grid.columns() + x] = true;
+            }
+        }
+    }
+
+    /**
+     * Queues this tick's frame as fixed by the preceding {@link #plan}: a keyframe of the session's cells
+     * if it has to resync, otherwise a delta, or nothing while it waits for the next periodic keyframe.
+     */
+    void offer(TickFrames frames) {
+        boolean scheduleDrain;
+        boolean tooSlow = false;
+        synchronized (this) {
+            if (closed) return;
+            Frame frame;
+            if (plannedKeyframe) {
+                frame = new Frame(frames, plannedCells, CellRect.EMPTY, true);
+                syncState = SyncState.STREAMING;
+                if (policy == OverflowPolicy.CONFLATE) dropQueued(queue.size()); // The keyframe supersedes everything queued
+            } else if (syncState == SyncState.STREAMING) {
+                frame = new Frame(frames, plannedCells, sentCells, false);
+            } else {
+                return; // Nothing this client can apply yet
+            }
+            sentCells = plannedCells;
+
+            if (queue.size() >= capacity) {
+                long now = System.nanoTime();
+                if (behindSinceNanos == 0) behindSinceNanos = now;
+                else if (now - behindSinceNanos > slowClientTimeoutNanos) tooSlow = true;
+                handleOverflow(frame);
+            } else {
+                queue.addLast(frame);
+            }
+            scheduleDrain = !draining && !queue.isEmpty() && !tooSlow;
+            if (scheduleDrain) draining = true;
+            if (tooSlow) closed = true;
+        }
+        if (tooSlow) {
+            log.warn("Closing WebSocket session {}: client too slow, {} frames dropped.", session.getId(), framesDropped.get());
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+        } else if (scheduleDrain) {
+            senders.execute(this::drain);
+        }
+    }
+
+    // Called with the lock held and the queue full
+    private void handleOverflow(Frame incoming) {
+        if (policy == OverflowPolicy.CONFLATE) {
+            dropQueued(queue.size());
+            framesDropped.incrementAndGet(); // The incoming frame too
+            syncState = SyncState.KEYFRAME_REQUESTED;
+            return;
+        }
+        // DROP_OLDEST: keep the newest queued keyframe and what follows it, otherwise start over at the next keyframe
+        int keep = -1;
+        int index = 0;
+        for (Frame frame : queue) {
+            if (frame.keyframe()) keep = index;
+            index++;
+        }
+        if (incoming.keyframe()) {
+            dropQueued(queue.size());
+            queue.addLast(incoming);
+        } else if (keep > 0 && queue.size() - keep < capacity) {
+            dropQueued(keep);
+            queue.addLast(incoming);
+        } else {
+            dropQueued(queue.size());
+            framesDropped.incrementAndGet();
+            syncState = SyncState.AWAITING_KEYFRAME;
+        }
+    }
+
+    private void dropQueued(int count) {
+        for (int i = 0; i < count; i++) queue.pollFirst();
+        framesDropped.addAndGet(count);
+    }
+
+    private void drain() {
+        for (int sent = 0; sent < FRAMES_PER_DRAIN; sent++) {
+            Frame frame;
+            synchronized (this) {
+                frame = queue.pollFirst();
+                if (frame == null || closed) {
+                    draining = false;
+                    behindSinceNanos = 0; // Caught up
+                    return;
+                }
+            }
+            try {
+                byte[] payload = frame.payload();
+                session.sendMessage(new BinaryMessage(payload));
+                bytesSent.addAndGet(payload.length);
+            } catch (IOException | IllegalStateException e) {
+                log.warn("Error sending WebSocket frame to {}: {}", session.getId(), e.getMessage());
+                synchronized (this) {
+                    closed = true;
+                    draining = false;
+                }
+                close(CloseStatus.SERVER_ERROR);
+                return;
+            }
+        }
+        senders.execute(this::drain); // Still draining; yield the thread to other sessions
+    }
+
+    void close(CloseStatus status) {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+        }
+        try {
+            if (session.isOpen()) session.close(status);
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+}
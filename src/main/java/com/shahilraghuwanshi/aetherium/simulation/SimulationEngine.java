@@ -0,0 +1,567 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import com.shahilraghuwanshi.aetherium.simulation.trips.TripEventRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The simulation state and the per-tick update, independent of Spring and the database.
+ * <p>
+ * Vehicles drive along the edges of their path following the {@link IntelligentDriverModel}: each one
+ * reacts to its leader on the same edge, found in O(1) through {@link EdgeOccupancy}; the front vehicle
+ * of an edge reacts to a red signal at the end of it as to a stopped car, or else to the last vehicle on
+ * the next edge of its path. Queues form behind red lights and slow vehicles on their own.
+ * <p>
+ * A tick runs in three phases: a serial phase that removes arrived vehicles and spawns new ones,
+ * a parallel phase that advances traffic signals and vehicles partition by partition on the
+ * {@link TickExecutor}, and a serial commit that swaps the vehicle buffers and moves vehicles that
+ * reached the end of their edge onto the next one. Vehicles only read the previous tick's state during
+ * the parallel phase, so the outcome does not depend on thread count. After the commit the engine
+ * publishes an immutable {@link SimulationSnapshot}.
+ * <p>
+ * Every tick advances simulated time by the same {@code tickSeconds}, and all randomness comes from the
+ * injected generator, so two engines built with the same seed and inputs go through identical states no
+ * matter how fast, or on how many threads, they are driven.
+ * <p>
+ * With {@link #setCongestionRouting}, the engine reports every edge traversal to {@link TravelTimes}, publishes
+ * new estimates at a fixed interval of simulated time, and lets a {@link Rerouter} move vehicles off
+ * roads that have become slow. With {@link #setRegion}, the engine drives only part of a city split between
+ * several engines: vehicles leaving its region are handed off rather than moved on, and vehicles arriving from
+ * other regions are {@linkplain #admit admitted}. Between ticks, {@link #replaceNetwork} switches to an edited
+ * version of the road network without losing a vehicle. With {@link #setTripEvents}, every completed trip and
+ * road traversal is offered to a {@link TripEventRing} for statistics.
+ * <p>
+ * Each tick records how long every {@link TickPhase} took, and the engine counts spawned and arrived
+ * vehicles, for whoever drives it to export as metrics.
+ * <p>
+ * Not thread-safe: all methods except {@link #getSnapshot()} must be called from the thread driving the
+ * simulation.
+ */
+public class SimulationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulationEngine.class);
+    // Unreachable destinations on a disconnected map fail on most spawns, so their warnings are rate limited
+    private static final SampledLog NO_ROUTE_LOG = new SampledLog(TimeUnit.SECONDS.toNanos(10));
+
+    private RoadGraph graph;  // Replaced by replaceNetwork() between ticks
+    private Router router;
+    private final SignalController signals;
+    private final IntelligentDriverModel driver;
+    private final TickExecutor executor;
+    private final VehicleStore vehicles = new VehicleStore(1024);
+    private EdgeOccupancy occupancy;
+    private final SplittableRandom random;
+    private final int maxVehicles;
+    private final double tickSeconds;
+    private final long[] lightIntersectionIds;
+    private byte[] publishedLightStates; // Of the last snapshot, shared by the next ones until a signal changes
+    private long tickCount;
+    private final long[] phaseNanos = new long[TickPhase.values().length]; // Of the last tick
+    private long spawned;
+    private long arrived;
+    private long failedSpawns; // No route found
+    private TripSource tripSource; // null = random spawns
+    private TravelTimes travelTimes; // null = no congestion tracking
+    private Rerouter rerouter;       // null = routes are fixed at spawn
+    private RegionBoundary boundary; // null = the engine owns the whole network
+    private TripEventRing tripEvents; // null = completed trips are not reported
+    private double travelTimeUpdateSeconds;
+    private double nextTravelTimeUpdate;
+    private volatile SimulationSnapshot snapshot = SimulationSnapshot.EMPTY;
+
+    public SimulationEngine(RoadGraph graph, Router router, SignalController signals, IntelligentDriverModel driver,
+                            TickExecutor executor, SplittableRandom random, int maxVehicles, double tickSeconds) {
+        this.graph = graph;
+        this.router = router;
+        this.signals = signals;
+        this.driver = driver;
+        this.occupancy = new EdgeOccupancy(graph.edgeCount());
+        this.executor = executor;
+        this.random = random;
+        this.maxVehicles = maxVehicles;
+        this.tickSeconds = tickSeconds;
+        this.lightIntersectionIds = new long[signals.signalCount()];
+        for (int i = 0; i < lightIntersectionIds.length; i++) {
+            lightIntersectionIds[i] = graph.nodeId(signals.node(i));
+        }
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    public Router getRouter() {
+        return router;
+    }
+
+    public VehicleStore getVehicles() {
+        return vehicles;
+    }
+
+    public SignalController getSignals() {
+        return signals;
+    }
+
+    public EdgeOccupancy getOccupancy() {
+        return occupancy;
+    }
+
+    /** Ticks completed so far. */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /** Simulated seconds per tick. */
+    public double getTickSeconds() {
+        return tickSeconds;
+    }
+
+    /** Simulated time at the end of the last completed tick. */
+    public double getSimulatedSeconds() {
+        return tickCount * tickSeconds;
+    }
+
+    /** Wall-clock nanoseconds the given phase took in the last tick. */
+    public long getPhaseNanos(TickPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /** Vehicles spawned since the engine was created. */
+    public long getSpawnedCount() {
+        return spawned;
+    }
+
+    /** Vehicles that reached their destination and were removed. */
+    public long getArrivedCount() {
+        return arrived;
+    }
+
+    /** Spawn attempts that found no route between the chosen intersections. */
+    public long getFailedSpawnCount() {
+        return failedSpawns;
+    }
+
+    /**
+     * Lets {@code source} decide which vehicles enter, in place of the random spawns; null restores them.
+     * Vehicles requested through {@link #spawnVehicle()} are still added.
+     */
+    public void setTripSource(TripSource source) {
+        this.tripSource = source;
+    }
+
+    /**
+     * Tracks live travel times, publishing new estimates every {@code updateSeconds} of simulated time, and
+     * reroutes vehicles through {@code rerouter} if it is not null.
+     */
+    public void setCongestionRouting(TravelTimes travelTimes, double updateSeconds, Rerouter rerouter) {
+        this.travelTimes = travelTimes;
+        this.travelTimeUpdateSeconds = updateSeconds;
+        this.nextTravelTimeUpdate = getSimulatedSeconds() + updateSeconds;
+        this.rerouter = rerouter;
+    }
+
+    public TravelTimes getTravelTimes() {
+        return travelTimes;
+    }
+
+    public Rerouter getRerouter() {
+        return rerouter;
+    }
+
+    /** Reports every completed trip and road traversal to {@code events}, from the tick thread; null stops reporting. */
+    public void setTripEvents(TripEventRing events) {
+        this.tripEvents = events;
+    }
+
+    public TripEventRing getTripEvents() {
+        return tripEvents;
+    }
+
+    /**
+     * Restricts the engine to one region of a partitioned network; must be called before any vehicle is added.
+     * Every region's engine draws the same random spawns when seeded alike, and only the region owning a
+     * trip's first road spawns it, so the regions together spawn what a single engine would.
+     */
+    public void setRegion(RegionBoundary boundary) {
+        if (vehicles.size() > 0) throw new IllegalStateException("The region must be set before vehicles are added");
+        this.boundary = boundary;
+        vehicles.setIdSequence(boundary.getRegion(), boundary.getRegionCount());
+    }
+
+    /** The region this engine drives, or null if it drives the whole network. */
+    public RegionBoundary getRegion() {
+        return boundary;
+    }
+
+    /** Whether the first road of {@code path} is this engine's to spawn on; always true without a region. */
+    public boolean ownsStart(int[] path) {
+        return boundary == null || boundary.ownsNode(path[0]);
+    }
+
+    public boolean hasRoomForVehicles() {
+        return vehicles.size() < maxVehicles;
+    }
+
+    /** The state as of the last completed tick. Safe to call from any thread; never blocks the simulation. */
+    public SimulationSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Spawns a car at rest between two random intersections.
+     * @return false if the vehicle limit is reached, no route could be found, or the entry is blocked
+     *         by a queue reaching back to the start of the first road.
+     */
+    public boolean spawnVehicle() {
+        if (graph.nodeCount() < 2) {
+            if (NO_ROUTE_LOG.tryAcquire()) log.warn("Cannot spawn car: Need at least two intersections.");
+            return false;
+        }
+        // Drawn even when full or in another region, so every region's generator stays in step with the others
+        int start = random.nextInt(graph.nodeCount());
+        int destination;
+        do { destination = random.nextInt(graph.nodeCount()); } while (destination == start);
+        if (vehicles.size() >= maxVehicles) return false;
+        if (boundary != null && !boundary.ownsNode(start)) return false; // Another region's engine spawns it
+        int[] path = router.route(start, destination);
+        if (path.length < 2) {
+            failedSpawns++;
+            if (log.isWarnEnabled() && NO_ROUTE_LOG.tryAcquire()) {
+                log.warn("Could not find a valid path for the car from {} to {} ({} similar messages suppressed)",
+                        graph.nodeId(start), graph.nodeId(destination), NO_ROUTE_LOG.drainSuppressed());
+            }
+            return false;
+        }
+        return spawnVehicle(path);
+    }
+
+    /**
+     * Spawns a car at rest at the start of an already routed path.
+     * @return false if the vehicle limit is reached, the path has fewer than two nodes, starts in another
+     *         region, or the entry is blocked by a queue reaching back to the start of the first road.
+     */
+    public boolean spawnVehicle(int[] path) {
+        if (vehicles.size() >= maxVehicles || path.length < 2 || !ownsStart(path)) return false;
+        if (graph.usesClosedEdge(path, 0)) {
+            // Routed before a road on it was closed, e.g. by a demand batch or from a cache
+            path = router.route(path[0], path[path.length - 1]);
+            if (path.length < 2) {
+                failedSpawns++;
+                return false;
+            }
+        }
+        int edge = graph.findEdge(path[0], path[1]);
+        int rear = occupancy.rearmost(edge);
+        if (rear >= 0 && vehicles.offset(vehicles.slotOf(rear)) < driver.vehicleLength() + driver.minimumGap()) {
+            return false;
+        }
+        int handle = vehicles.add(graph.x(path[0]), graph.y(path[0]), 0, path);
+        int slot = vehicles.slotOf(handle);
+        double now = getSimulatedSeconds();
+        vehicles.setEdge(slot, edge, 0);
+        vehicles.setEnteredAt(slot, now);
+        vehicles.setTrip(slot, path[0], now, 0, 0);
+        if (travelTimes != null) vehicles.setExpectedArrival(slot, now + travelTimes.pathSeconds(path, 0));
+        occupancy.enter(handle, edge);
+        spawned++;
+        return true;
+    }
+
+    /**
+     * Places a vehicle handed off by the engine of a neighbouring region on the first edge of its path, behind
+     * the vehicles already there. Admitted regardless of the vehicle limit, since it is already on the road.
+     */
+    public void admit(Handoff handoff) {
+        int[] path = handoff.path();
+        int edge = graph.findEdge(path[0], path[1]);
+        double offset = handoff.offset();
+        int rear = occupancy.rearmost(edge);
+        if (rear >= 0) offset = Math.min(offset, vehicles.offset(vehicles.slotOf(rear)));
+        int handle = vehicles.add(handoff.id(), 0, 0, handoff.speed(), path);
+        int slot = vehicles.slotOf(handle);
+        vehicles.setEnteredAt(slot, handoff.enteredAt());
+        vehicles.setExpectedArrival(slot, handoff.expectedArrival());
+        vehicles.setTrip(slot, handoff.origin(), handoff.departedAt(), handoff.distance(), handoff.freeFlowSeconds());
+        placeOnEdge(slot, edge, offset);
+        occupancy.enter(handle, edge);
+    }
+
+    /**
+     * Switches to {@code next}, an edited version of the road network, keeping every vehicle where it is.
+     * Call between ticks. Vehicles, edge occupancy and travel-time estimates move over to the new edge
+     * indices, and the vehicles whose remaining path takes a road that is closed in {@code next} are rerouted
+     * from the end of their current edge; one with no way left to its destination ends its trip there.
+     * Vehicles already on a closed road drive on to its end.
+     * @param next    must have the same intersections and every road of the current network
+     * @param routers builds the router for {@code next} from its travel times, which are null without
+     *                congestion routing
+     * @return the number of vehicles rerouted
+     */
+    public int replaceNetwork(RoadGraph next, Function<TravelTimes, Router> routers) {
+        return replaceNetwork(next, graph.edgeMapping(next), routers);
+    }
+
+    /**
+     * As {@link #replaceNetwork(RoadGraph, Function)}, with the edge mapping already computed, e.g. to drop
+     * the cached routes the edit invalidates before the rerouting asks for new ones.
+     * @param mapping {@code getGraph().edgeMapping(next)}
+     */
+    public int replaceNetwork(RoadGraph next, int[] mapping, Function<TravelTimes, Router> routers) {
+        if (boundary != null) throw new IllegalStateException("The road network of a region cannot be replaced");
+        if (next.nodeCount() != graph.nodeCount()) throw new IllegalArgumentException("The intersections must stay the same");
+        for (int edge = 0; edge < mapping.length; edge++) {
+            if (mapping[edge] < 0) throw new IllegalArgumentException("Road " + graph.roadId(edge) + " is missing from the new network");
+        }
+        for (int slot = 0; slot < vehicles.size(); slot++) {
+            vehicles.setEdge(slot, mapping[vehicles.edge(slot)], vehicles.offset(slot));
+        }
+        occupancy = occupancy.remap(next.edgeCount(), mapping);
+        if (travelTimes != null) travelTimes = travelTimes.remap(next, mapping);
+        graph = next;
+        router = routers.apply(travelTimes);
+        if (rerouter != null) rerouter.replace(router, travelTimes);
+        return rerouteAroundClosures();
+    }
+
+    /** Routes from now on through {@code router}, e.g. once a slower router's replacement is ready. */
+    public void setRouter(Router router) {
+        this.router = router;
+        if (rerouter != null) rerouter.replace(router, travelTimes);
+    }
+
+    public void tick() {
+        // Serial phase: structural changes to the vehicle store
+        long phaseStart = System.nanoTime();
+        for (int slot = 0; slot < vehicles.size(); ) {
+            if (vehicles.state(slot) == VehicleStore.STATE_ARRIVED) {
+                occupancy.leave(vehicles.handle(slot));
+                vehicles.removeAt(slot); // The last vehicle moves into this slot, so don't advance
+                arrived++;
+            } else {
+                slot++;
+            }
+        }
+        if (tripSource != null) {
+            tripSource.release(this, tickCount * tickSeconds);
+        } else if (random.nextInt(100) < 5) { // Approx 5% chance each tick to spawn
+            spawnVehicle();
+        }
+
+        phaseStart = endPhase(TickPhase.SPAWN, phaseStart);
+        if (rerouter != null) rerouter.run(vehicles, graph, getSimulatedSeconds());
+        phaseStart = endPhase(TickPhase.REROUTE, phaseStart);
+
+        // Parallel phase: every signal and every vehicle only writes its own state
+        double time = (tickCount + 1) * tickSeconds;
+        executor.forEachRange(signals.signalCount(), (from, to) -> signals.update(time, from, to));
+        phaseStart = endPhase(TickPhase.SIGNALS, phaseStart);
+        executor.forEachRange(vehicles.size(), this::advanceVehicles);
+        phaseStart = endPhase(TickPhase.MOVEMENT, phaseStart);
+
+        // Commit
+        vehicles.swapBuffers();
+        for (int slot = 0; slot < vehicles.size(); ) {
+            if (vehicles.offset(slot) >= graph.length(vehicles.edge(slot)) && moveToNextEdge(slot)) {
+                vehicles.removeAt(slot); // Handed off; the last vehicle moves into this slot and is checked next
+            } else {
+                slot++;
+            }
+        }
+        tickCount++;
+        if (travelTimes != null && getSimulatedSeconds() >= nextTravelTimeUpdate) {
+            travelTimes.publish(vehicles, occupancy, getSimulatedSeconds());
+            nextTravelTimeUpdate += travelTimeUpdateSeconds;
+        }
+        phaseStart = endPhase(TickPhase.COMMIT, phaseStart);
+        publishSnapshot();
+        endPhase(TickPhase.SNAPSHOT, phaseStart);
+    }
+
+    private int rerouteAroundClosures() {
+        if (graph.closedEdgeCount() == 0) return 0;
+        double now = getSimulatedSeconds();
+        int rerouted = 0;
+        for (int slot = 0; slot < vehicles.size(); slot++) {
+            int[] path = vehicles.path(slot);
+            int pathIndex = vehicles.pathIndex(slot);
+            if (vehicles.state(slot) == VehicleStore.STATE_ARRIVED || pathIndex >= path.length - 1
+                    || !graph.usesClosedEdge(path, pathIndex)) continue;
+            int[] route = router.route(path[pathIndex], path[path.length - 1]);
+            // Keep the node the current edge starts from, so the vehicle stays on it
+            int[] next = new int[route.length >= 2 ? route.length + 1 : 2];
+            next[0] = path[pathIndex - 1];
+            if (route.length >= 2) System.arraycopy(route, 0, next, 1, route.length);
+            else next[1] = path[pathIndex]; // Nowhere left to go: the trip ends with this edge
+            vehicles.setPath(slot, next, 1);
+            if (travelTimes != null) vehicles.setExpectedArrival(slot, now + travelTimes.pathSeconds(next, 1));
+            rerouted++;
+        }
+        return rerouted;
+    }
+
+    private long endPhase(TickPhase phase, long startedAt) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] = now - startedAt;
+        return now;
+    }
+
+    private void advanceVehicles(int from, int to) {
+        VehicleStore vehicles = this.vehicles;
+        for (int slot = from; slot < to; slot++) {
+            int edge = vehicles.edge(slot);
+            int pathIndex = vehicles.pathIndex(slot);
+            double speed = vehicles.speed(slot);
+            double offset = vehicles.offset(slot);
+            double length = graph.length(edge);
+            double desired = Math.min(driver.desiredSpeed(), graph.speedLimit(edge));
+            double remaining = length - offset;
+
+            // Find the obstacle ahead: the leader on this edge, a red signal, or the rear of the next edge
+            double gap = Double.POSITIVE_INFINITY;
+            double obstacleSpeed = 0;
+            boolean stopAtLine = false;
+            int leader = occupancy.leader(vehicles.handle(slot));
+            int[] path = vehicles.path(slot);
+            if (leader >= 0) {
+                int leaderSlot = vehicles.slotOf(leader);
+                gap = vehicles.offset(leaderSlot) - offset - driver.vehicleLength();
+                obstacleSpeed = vehicles.speed(leaderSlot);
+            } else if (pathIndex < path.length - 1) {
+                int node = graph.target(edge);
+                if (!signals.isGreen(node, isNorthSouth(edge)) && driver.canStopWithin(speed, remaining)) {
+                    gap = remaining;
+                    stopAtLine = true;
+                } else {
+                    int next = graph.findEdge(node, path[pathIndex + 1]);
+                    int rear = next >= 0 ? occupancy.rearmost(next) : -1;
+                    if (rear >= 0) {
+                        int rearSlot = vehicles.slotOf(rear);
+                        gap = remaining + vehicles.offset(rearSlot) - driver.vehicleLength();
+                        obstacleSpeed = vehicles.speed(rearSlot);
+                    } else if (next >= 0 && boundary != null && !Double.isNaN(boundary.rearOffset(next))) {
+                        gap = remaining + boundary.rearOffset(next) - driver.vehicleLength();
+                        obstacleSpeed = boundary.rearSpeed(next);
+                    }
+                }
+            }
+
+            double acceleration = gap == Double.POSITIVE_INFINITY
+                    ? driver.freeAcceleration(speed, desired)
+                    : driver.acceleration(speed, desired, gap, speed - obstacleSpeed);
+            // Ballistic update; a vehicle that would stop within the tick stops where it comes to rest
+            double nextSpeed = speed + acceleration * tickSeconds;
+            double advance;
+            if (nextSpeed < 0) {
+                advance = -speed * speed / (2 * acceleration);
+                nextSpeed = 0;
+            } else {
+                advance = (speed + nextSpeed) / 2 * tickSeconds;
+            }
+            double nextOffset = offset + advance;
+            if (stopAtLine) nextOffset = Math.min(nextOffset, Math.max(offset, length - driver.minimumGap()));
+
+            double t = length > 0 ? Math.min(nextOffset / length, 1) : 1;
+            int source = graph.source(edge);
+            int target = graph.target(edge);
+            double x = graph.x(source) + (graph.x(target) - graph.x(source)) * t;
+            double y = graph.y(source) + (graph.y(target) - graph.y(source)) * t;
+            vehicles.setNext(slot, x, y, nextSpeed, nextOffset, pathIndex, VehicleStore.STATE_MOVING);
+        }
+    }
+
+    // Serial: carries the distance driven past the end of the edge onto the following edges of the path.
+    // Returns true if the vehicle crossed into another region, leaving the caller to remove it.
+    private boolean moveToNextEdge(int slot) {
+        int handle = vehicles.handle(slot);
+        int[] path = vehicles.path(slot);
+        int pathIndex = vehicles.pathIndex(slot);
+        int edge = vehicles.edge(slot);
+        double offset = vehicles.offset(slot);
+        double now = (tickCount + 1) * tickSeconds; // The end of the tick being committed
+        while (offset >= graph.length(edge)) {
+            double length = graph.length(edge);
+            double freeFlow = length / Math.min(driver.desiredSpeed(), graph.speedLimit(edge));
+            if (travelTimes != null) travelTimes.record(edge, now - vehicles.enteredAt(slot));
+            if (tripEvents != null) tripEvents.offerTraversal(graph.roadId(edge), vehicles.enteredAt(slot), now, length, freeFlow);
+            vehicles.addDriven(slot, length, freeFlow);
+            vehicles.setEnteredAt(slot, now);
+            int next = pathIndex < path.length - 1 ? graph.findEdge(path[pathIndex], path[pathIndex + 1]) : -1;
+            if (next < 0) {
+                // End of the path: park on the destination node until removal at the start of the next tick
+                occupancy.leave(handle);
+                int node = path[pathIndex];
+                vehicles.setEdge(slot, edge, graph.length(edge));
+                vehicles.setPathIndex(slot, path.length);
+                vehicles.setPosition(slot, graph.x(node), graph.y(node));
+                vehicles.setState(slot, VehicleStore.STATE_ARRIVED);
+                if (tripEvents != null) {
+                    tripEvents.offerTrip(vehicles.origin(slot), node, vehicles.departedAt(slot), now,
+                            vehicles.distanceDriven(slot), vehicles.freeFlowSeconds(slot));
+                }
+                return false;
+            }
+            offset -= length;
+            if (boundary != null && !boundary.owns(next)) {
+                // The receiving region checks for overtaking against its own, current vehicles
+                occupancy.leave(handle);
+                boundary.depart(new Handoff(vehicles.id(slot), Arrays.copyOfRange(path, pathIndex, path.length),
+                        offset, vehicles.speed(slot), now, vehicles.expectedArrival(slot), vehicles.origin(slot),
+                        vehicles.departedAt(slot), vehicles.distanceDriven(slot), vehicles.freeFlowSeconds(slot)));
+                return true;
+            }
+            // No overtaking: never enter ahead of the vehicle that entered last
+            int rear = occupancy.rearmost(next);
+            if (rear >= 0) offset = Math.min(offset, vehicles.offset(vehicles.slotOf(rear)));
+            occupancy.enter(handle, next);
+            edge = next;
+            pathIndex++;
+        }
+        vehicles.setPathIndex(slot, pathIndex);
+        placeOnEdge(slot, edge, offset);
+        return false;
+    }
+
+    // Sets the vehicle's edge and offset, and its world position to match
+    private void placeOnEdge(int slot, int edge, double offset) {
+        double t = graph.length(edge) > 0 ? Math.min(offset / graph.length(edge), 1) : 0;
+        int source = graph.source(edge);
+        int target = graph.target(edge);
+        vehicles.setEdge(slot, edge, offset);
+        vehicles.setPosition(slot, graph.x(source) + (graph.x(target) - graph.x(source)) * t,
+                graph.y(source) + (graph.y(target) - graph.y(source)) * t);
+    }
+
+    // Signals give way by the dominant axis of the approach
+    private boolean isNorthSouth(int edge) {
+        double dx = graph.x(graph.target(edge)) - graph.x(graph.source(edge));
+        double dy = graph.y(graph.target(edge)) - graph.y(graph.source(edge));
+        return Math.abs(dy) >= Math.abs(dx);
+    }
+
+    // Snapshots are never recycled, since readers keep them as long as they like (a REST response being written,
+    // the recorder's queue); each tick copies the vehicle columns, and TickBenchmark's gc.alloc.rate.norm shows
+    // what that costs. Light states only change at phase ends, so most ticks share the previous array.
+    private void publishSnapshot() {
+        byte[] lightStates = publishedLightStates;
+        boolean changed = lightStates == null;
+        for (int i = 0; !changed && i < lightStates.length; i++) {
+            changed = lightStates[i] != signals.state(i);
+        }
+        if (changed) {
+            lightStates = new byte[signals.signalCount()];
+            for (int i = 0; i < lightStates.length; i++) {
+                lightStates[i] = signals.state(i);
+            }
+            publishedLightStates = lightStates;
+        }
+        snapshot = vehicles.snapshot(tickCount, lightIntersectionIds, lightStates);
+    }
+}
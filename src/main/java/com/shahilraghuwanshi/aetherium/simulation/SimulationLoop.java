@@ -0,0 +1,143 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a fixed-timestep simulation on its own thread.
+ * <p>
+ * Every tick advances simulated time by the same {@code tickSeconds}, whatever the wall clock does, so a
+ * seeded run produces the same states at the same ticks in either {@link PacingMode}. In
+ * {@link PacingMode#REALTIME} the loop sleeps until each tick's deadline; if it falls more than
+ * {@link #MAX_BACKLOG_TICKS} behind (a long GC pause, an overloaded host) it drops the backlog rather than
+ * racing to catch up. In {@link PacingMode#HEADLESS} it never sleeps. {@link #fastForward} runs headless
+ * for a number of ticks and then returns to the previous pacing.
+ */
+public final class SimulationLoop implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulationLoop.class);
+
+    private static final int MAX_BACKLOG_TICKS = 5;
+
+    private final Runnable tick;
+    private final SampledLog errorLog = new SampledLog(TimeUnit.SECONDS.toNanos(10));
+    private final double tickSeconds;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile PacingMode mode;
+    private volatile double speed;
+    private volatile long fastForwardUntilTick = -1; // Run headless until this many ticks have completed; -1 = off
+    private volatile long ticks; // Written by the loop thread only
+
+    /**
+     * @param tick        one simulation step; exceptions it throws are logged and the loop continues
+     * @param tickSeconds simulated seconds per tick
+     */
+    public SimulationLoop(String name, Runnable tick, double tickSeconds, PacingMode mode, double speed) {
+        if (!(tickSeconds > 0)) throw new IllegalArgumentException("tickSeconds must be positive: " + tickSeconds);
+        this.tick = tick;
+        this.tickSeconds = tickSeconds;
+        this.mode = mode;
+        this.speed = checkSpeed(speed);
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public double getTickSeconds() {
+        return tickSeconds;
+    }
+
+    public PacingMode getMode() {
+        return mode;
+    }
+
+    /** Simulated seconds per wall-clock second in {@link PacingMode#REALTIME}. */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /** Ticks run by this loop so far. */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /** Ticks left in the current fast-forward, or 0. */
+    public long getFastForwardRemaining() {
+        long until = fastForwardUntilTick;
+        return until < 0 ? 0 : Math.max(0, until - ticks);
+    }
+
+    public boolean isFastForwarding() {
+        return getFastForwardRemaining() > 0;
+    }
+
+    /** Takes effect from the next tick. */
+    public void setPacing(PacingMode mode, double speed) {
+        this.speed = checkSpeed(speed);
+        this.mode = mode;
+        LockSupport.unpark(thread); // Don't finish a long sleep computed for the old speed
+    }
+
+    /** Runs the next {@code tickCount} ticks without pacing, then resumes the configured mode. */
+    public void fastForward(long tickCount) {
+        if (tickCount < 0) throw new IllegalArgumentException("tickCount must not be negative: " + tickCount);
+        fastForwardUntilTick = ticks + tickCount;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        long deadline = System.nanoTime();
+        while (running) {
+            try {
+                tick.run();
+            } catch (RuntimeException e) {
+                // Keep the simulation alive; one bad tick shouldn't stop it for good
+                // A tick that fails once usually fails every tick, so the stack trace is rate limited
+                if (errorLog.tryAcquire()) {
+                    log.error("Error during simulation tick ({} similar errors suppressed)", errorLog.drainSuppressed(), e);
+                }
+            }
+            ticks++;
+
+            if (mode == PacingMode.HEADLESS || isFastForwarding()) {
+                deadline = System.nanoTime(); // Resume real-time pacing from wherever we end up
+                continue;
+            }
+            long period = (long) (tickSeconds * 1e9 / speed);
+            deadline += period;
+            long now = System.nanoTime();
+            if (now - deadline > MAX_BACKLOG_TICKS * period) {
+                deadline = now; // Too far behind: drop the backlog
+            }
+            while (running && deadline - System.nanoTime() > 0 && mode == PacingMode.REALTIME && !isFastForwarding()) {
+                LockSupport.parkNanos(deadline - System.nanoTime());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static double checkSpeed(double speed) {
+        if (!(speed > 0)) throw new IllegalArgumentException("speed must be positive: " + speed);
+        return speed;
+    }
+}
@@ -1,259 +1,718 @@
 package com.shahilraghuwanshi.aetherium.simulation;
 
+import com.shahilraghuwanshi.aetherium.config.AetheriumProperties;
+import com.shahilraghuwanshi.aetherium.metrics.SimulationMetrics;
 import com.shahilraghuwanshi.aetherium.model.Intersection;
 import com.shahilraghuwanshi.aetherium.model.Road;
 import com.shahilraghuwanshi.aetherium.repository.IntersectionRepository;
+import com.shahilraghuwanshi.aetherium.repository.MapStampRepository;
 import com.shahilraghuwanshi.aetherium.repository.RoadRepository;
 import com.shahilraghuwanshi.aetherium.repository.TrafficLightRepository; // Added import
-import com.shahilraghuwanshi.aetherium.model.TrafficLight; // Added import
+import com.shahilraghuwanshi.aetherium.repository.TripRollupRepository;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandMode;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandModel;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandScheduler;
+import com.shahilraghuwanshi.aetherium.simulation.demand.OdMatrixReader;
+import com.shahilraghuwanshi.aetherium.simulation.demand.RouteAssigner;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.partition.GraphPartition;
+import com.shahilraghuwanshi.aetherium.simulation.partition.PartitionCoordinator;
+import com.shahilraghuwanshi.aetherium.simulation.partition.PartitionRole;
+import com.shahilraghuwanshi.aetherium.simulation.partition.RegionWorker;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.SpatialGrid;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.TickFrames;
+import com.shahilraghuwanshi.aetherium.simulation.replay.TrajectoryRecorder;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.CachingRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchy;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchyRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchyStore;
+import com.shahilraghuwanshi.aetherium.simulation.routing.OneToManyRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.RouteCache;
+import com.shahilraghuwanshi.aetherium.simulation.routing.RouteCacheStats;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+import com.shahilraghuwanshi.aetherium.simulation.routing.RoutingMode;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import com.shahilraghuwanshi.aetherium.simulation.trips.TripEventRing;
+import com.shahilraghuwanshi.aetherium.simulation.trips.TripStatistics;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 @Service
 public class SimulationService {
 
+    private static final Logger log = LoggerFactory.getLogger(SimulationService.class);
+
     private final IntersectionRepository intersectionRepository;
     private final RoadRepository roadRepository;
     private final SimulationWebSocketHandler webSocketHandler;
     private final TrafficLightRepository trafficLightRepository; // Added field
-
-    private final List<Car> cars = new CopyOnWriteArrayList<>();
-    private final Random random = new Random();
-    private List<Intersection> allIntersections = new ArrayList<>();
-    private Map<Long, List<Intersection>> adjacencyList = new HashMap<>();
-    private List<TrafficLight> allTrafficLights = new ArrayList<>(); // Added list for traffic lights
-
-    private ScheduledExecutorService scheduler;
-    private static final int SIMULATION_TICK_RATE_MS = 33; // Approx 30 times per second
-    private static final double SIMULATION_TICK_RATE_SECONDS = SIMULATION_TICK_RATE_MS / 1000.0; // Tick rate in seconds
-    private static final int MAX_CARS = 50; // Maximum number of cars allowed
+    private final MapStampRepository mapStampRepository;
+    private final TripRollupRepository tripRollupRepository;
+    private final AetheriumProperties properties;
+    private final SimulationMetrics metrics;
+
+    private final AtomicInteger pendingSpawns = new AtomicInteger(); // spawnCar() requests from other threads
+    private final RouteCache routeCache; // Shared by every router built for this service; null if disabled
+    private final TickExecutor tickExecutor; // Worker pool for the parallel tick phases
+    private SimulationEngine engine; // Graph, vehicles and lights; owned by the simulation thread
+    private FrameEncoder frameEncoder; // Delta baseline and viewer grid; used by the simulation thread only
+    private RouteAssigner routeAssigner; // Demand routing pool; null unless demand mode is OD_MATRIX
+    private TrajectoryRecorder recorder; // null unless recording is enabled
+    private TripStatistics tripStatistics; // null unless trip statistics are enabled; never on the coordinator
+    // The time this run started; names its recording directory and its rows in the rollup tables
+    private final String runName = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    private RegionWorker regionWorker; // Drives the engine instead of the loop when this process is a WORKER
+    private Thread regionWorkerThread;
+    private PartitionCoordinator coordinator; // Ticks the workers instead of the engine when this process is the COORDINATOR
+    private long[] lightIntersectionIds; // COORDINATOR only, for the merged snapshots
+    private volatile SimulationSnapshot mergedSnapshot = SimulationSnapshot.EMPTY; // COORDINATOR only
+    private boolean regionsLost; // A worker disconnected; simulation thread only
+    private volatile boolean stopping;
+
+    // Live network edits: versions are chained under networkLock and taken up by the simulation thread between ticks
+    private final Object networkLock = new Object();
+    private RoadGraph latestGraph; // Newest version, possibly not in use yet; guarded by networkLock
+    private long networkVersion;   // Edits so far; guarded by networkLock
+    private final AtomicReference<RoadGraph> pendingGraph = new AtomicReference<>();
+    private final AtomicReference<ContractionHierarchy> readyHierarchy = new AtomicReference<>();
+    private final AtomicInteger hierarchyBuilds = new AtomicInteger(); // Queued or running
+    private ExecutorService hierarchyBuilder; // Rebuilds the hierarchy after edits; null unless CH routing is in use
+    private volatile ContractionHierarchy hierarchy; // Matches the engine's graph, or null; written by the simulation thread only
+    private volatile RoadGraph liveGraph;   // The engine's graph, for other threads
+    private volatile Router liveRouter;     // The engine's router, for other threads
+
+    private SimulationLoop loop;
+    private long lastBroadcastNanos; // Simulation thread only
+    private long framesBroadcast; // Simulation thread only
+    private volatile boolean liveBroadcast = true; // False while a replay owns the viewers' stream
+    private volatile boolean keyframeDue; // Viewers need full state, e.g. after a replay
 
     @Autowired
     public SimulationService(IntersectionRepository intersectionRepository,
                              RoadRepository roadRepository,
                              SimulationWebSocketHandler webSocketHandler,
-                             TrafficLightRepository trafficLightRepository) { // Added repository
+                             TrafficLightRepository trafficLightRepository, // Added repository
+                             MapStampRepository mapStampRepository,
+                             TripRollupRepository tripRollupRepository,
+                             AetheriumProperties properties,
+                             SimulationMetrics metrics) {
         this.intersectionRepository = intersectionRepository;
         this.roadRepository = roadRepository;
         this.webSocketHandler = webSocketHandler;
         this.trafficLightRepository = trafficLightRepository; // Initialize repository
+        this.mapStampRepository = mapStampRepository;
+        this.tripRollupRepository = tripRollupRepository;
+        this.properties = properties;
+        this.metrics = metrics;
+        AetheriumProperties.RouteCache cacheSettings = properties.getRouting().getCache();
+        this.routeCache = cacheSettings.isEnabled()
+                ? new RouteCache(cacheSettings.getMaxEntries(), cacheSettings.getMaxMemory().toBytes())
+                : null;
+        if (routeCache != null) metrics.bindRouteCache(routeCache);
+        AetheriumProperties.Simulation simulation = properties.getSimulation();
+        int workerThreads = simulation.getWorkerThreads() > 0
+                ? simulation.getWorkerThreads()
+                : Runtime.getRuntime().availableProcessors();
+        this.tickExecutor = new TickExecutor(workerThreads, simulation.getParallelChunkSize());
         loadMapData();
     }
 
     private void loadMapData() {
-        allIntersections = intersectionRepository.findAll();
+        long startedAt = System.nanoTime();
+        AetheriumProperties.Simulation simulation = properties.getSimulation();
+        String networkCacheDir = simulation.getNetworkCacheDir();
+        CompiledNetworkStore networkStore = networkCacheDir == null || networkCacheDir.isBlank()
+                ? null : new CompiledNetworkStore(Path.of(networkCacheDir));
+        // The compiled signals bake in the clearance time, so it is part of what the file must match
+        long stamp = networkStore != null
+                ? mapStampRepository.currentStamp() * 31 + Double.hashCode(simulation.getSignalClearanceSeconds())
+                : 0;
+        CompiledNetworkStore.CompiledNetwork compiled = networkStore != null ? networkStore.load(stamp) : null;
+
+        RoadGraph graph;
+        SignalController signals;
+        if (compiled != null) {
+            graph = compiled.graph();
+            signals = compiled.signals();
+            log.info("Road network mapped from {}: {} nodes, {} directed edges, {} traffic lights.", networkStore.getFile(),
+                    graph.nodeCount(), graph.edgeCount(), signals.signalCount());
+        } else {
+            graph = loadGraph();
+            signals = SignalController.fromTrafficLights(graph, trafficLightRepository.findAll(),
+                    simulation.getSignalClearanceSeconds());
+            log.info("Loaded {} traffic lights.", signals.signalCount());
+        }
+
+        hierarchy = null;
+        if (properties.getRouting().getMode() == RoutingMode.CH) {
+            hierarchy = compiled != null ? compiled.hierarchy() : null;
+            if (hierarchy == null) {
+                ContractionHierarchyStore store = new ContractionHierarchyStore(Path.of(properties.getRouting().getChCacheDir()));
+                hierarchy = store.loadOrBuild(graph);
+            }
+        }
+        if (networkStore != null && (compiled == null || (hierarchy != null && compiled.hierarchy() == null))) {
+            networkStore.store(stamp, graph, signals, hierarchy);
+        }
+        log.info("Map ready in {} ms.", (System.nanoTime() - startedAt) / 1_000_000);
+
+        frameEncoder = new FrameEncoder(createGrid(graph));
+        AetheriumProperties.Congestion congestion = properties.getRouting().getCongestion();
+        TravelTimes travelTimes = createTravelTimes(graph);
+        engine = new SimulationEngine(graph, createRouter(graph, hierarchy, travelTimes), signals, createDriver(), tickExecutor,
+                new SplittableRandom(simulation.getSeed()), simulation.getMaxVehicles(), simulation.getTickSeconds());
+        latestGraph = graph;
+        liveGraph = graph;
+        liveRouter = engine.getRouter();
+        if (hierarchy != null && travelTimes == null) {
+            hierarchyBuilder = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "hierarchy-builder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        log.info("Simulation seed {}, {} s per tick.", simulation.getSeed(), simulation.getTickSeconds());
+        if (travelTimes != null) {
+            engine.setCongestionRouting(travelTimes, congestion.getUpdateSeconds(), createRerouter(engine.getRouter(), travelTimes));
+            log.info("Congestion-aware routing on, travel times updated every {} s.", congestion.getUpdateSeconds());
+        }
+        AetheriumProperties.Partition partitioning = properties.getPartition();
+        if (partitioning.getRole() == PartitionRole.WORKER) {
+            GraphPartition partition = GraphPartition.bisect(graph, partitioning.getRegions());
+            engine.setRegion(partition.boundary(partitioning.getRegion()));
+            regionWorker = new RegionWorker(engine, partition, () -> metrics.recordTick(engine));
+            metrics.bindRegionWorker(regionWorker);
+            log.info("Simulating region {} of {} ({} roads cut between regions).", partitioning.getRegion(),
+                    partitioning.getRegions(), partition.cutEdgeCount() / 2);
+        }
+        if (properties.getDemand().getMode() == DemandMode.OD_MATRIX) {
+            engine.setTripSource(createDemand(graph, new SplittableRandom(simulation.getSeed()).split(), travelTimes));
+        }
+        // Workers' vehicles are recorded by the coordinator, merged
+        if (properties.getRecording().isEnabled() && regionWorker == null) recorder = createRecorder(graph);
+        // Trips end in the engines that tick, so with regions each worker keeps the statistics of its own
+        if (properties.getTrips().isEnabled() && partitioning.getRole() != PartitionRole.COORDINATOR) {
+            tripStatistics = createTripStatistics(graph);
+            engine.setTripEvents(tripStatistics.getRing());
+        }
+    }
+
+    // The car-following model is immutable, so engines may share one
+    IntelligentDriverModel createDriver() {
+        AetheriumProperties.CarFollowing carFollowing = properties.getSimulation().getCarFollowing();
+        return new IntelligentDriverModel(carFollowing.getDesiredSpeed(),
+                carFollowing.getMaxAcceleration(), carFollowing.getComfortableDeceleration(),
+                carFollowing.getMinimumGap(), carFollowing.getTimeHeadway(), carFollowing.getVehicleLength(),
+                carFollowing.getMaxDeceleration());
+    }
+
+    // Live travel times for one engine, or null if congestion-aware routing is off
+    TravelTimes createTravelTimes(RoadGraph graph) {
+        AetheriumProperties.Congestion congestion = properties.getRouting().getCongestion();
+        return congestion.isEnabled() ? new TravelTimes(graph,
+                properties.getSimulation().getCarFollowing().getDesiredSpeed(), congestion.getSmoothing()) : null;
+    }
+
+    Rerouter createRerouter(Router router, TravelTimes travelTimes) {
+        AetheriumProperties.Congestion congestion = properties.getRouting().getCongestion();
+        return new Rerouter(router, travelTimes, congestion.getRerouteThreshold(), congestion.getMinImprovement(),
+                congestion.getMaxReroutesPerTick(), congestion.getRerouteChecksPerTick());
+    }
+
+    // Zones are the demand grid's, so OD statistics line up with OD_MATRIX demand
+    private TripStatistics createTripStatistics(RoadGraph graph) {
+        AetheriumProperties.Trips trips = properties.getTrips();
+        AetheriumProperties.Demand demand = properties.getDemand();
+        int[] zoneOf = DemandModel.zoneOf(graph, demand.getZoneColumns(), demand.getZoneRows());
+        TripStatistics created = new TripStatistics(new TripEventRing(trips.getRingCapacity()), zoneOf,
+                demand.getZoneColumns() * demand.getZoneRows(), trips.getIntervalSeconds(), trips.getAccuracy(),
+                trips.isPersist() ? rollups -> tripRollupRepository.insert(runName, rollups, trips.getBatchSize()) : null,
+                trips.getFlushInterval().toNanos(), trips.getMaxPendingRows());
+        metrics.bindTripStatistics(created);
+        log.info("Trip statistics on, rolled up every {} s of simulated time{}.", trips.getIntervalSeconds(),
+                trips.isPersist() ? " as run " + runName : "");
+        return created;
+    }
+
+    // Each run records into a directory of its own, named after the time it started
+    private TrajectoryRecorder createRecorder(RoadGraph graph) {
+        AetheriumProperties.Recording recording = properties.getRecording();
+        Path directory = Path.of(recording.getDirectory()).resolve(runName);
+        try {
+            TrajectoryRecorder created = new TrajectoryRecorder(directory, graph.fingerprint(),
+                    properties.getSimulation().getTickSeconds(), recording.getKeyframeInterval(),
+                    recording.getSegmentSize().toBytes(), recording.getQueueCapacity(), recording.getCompressionLevel());
+            metrics.bindRecorder(created);
+            log.info("Recording every tick to {}.", directory);
+            return created;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start recording in " + directory, e);
+        }
+    }
+
+    // Zones, matrices and the routing pool for OD_MATRIX demand; seeded so runs replay like random spawns do
+    private DemandScheduler createDemand(RoadGraph graph, SplittableRandom random, TravelTimes travelTimes) {
+        AetheriumProperties.Demand demand = properties.getDemand();
+        DemandModel model = createDemandModel(graph, random, Double.NaN);
+        int threads = demand.getRouteThreads() > 0 ? demand.getRouteThreads() : Runtime.getRuntime().availableProcessors();
+        routeAssigner = new RouteAssigner(travelTimes != null
+                ? new OneToManyRouter(graph, travelTimes) : new OneToManyRouter(graph), threads);
+        DemandScheduler scheduler = new DemandScheduler(model, routeAssigner, random, demand.getStartHour() * 3600,
+                demand.getBatchSeconds(), demand.getLookaheadSeconds(), demand.getMaxReleasesPerTick());
+        metrics.bindDemand(scheduler, routeAssigner);
+        log.info("OD demand: {} zones, {} trips per hour at the start, {} routing threads.", model.zoneCount(),
+                Math.round(model.tripsPerHour(demand.getStartHour() * 3600)), threads);
+        return scheduler;
+    }
+
+    /**
+     * The demand grid's zones with the configured OD matrix, or with {@code tripsPerHour} spread evenly over
+     * every zone pair if it is not NaN or there is no matrix file. Draws the zones' access nodes from {@code random}.
+     */
+    DemandModel createDemandModel(RoadGraph graph, SplittableRandom random, double tripsPerHour) {
+        AetheriumProperties.Demand demand = properties.getDemand();
+        int[][] zones = DemandModel.gridZones(graph, demand.getZoneColumns(), demand.getZoneRows(),
+                demand.getAccessNodesPerZone(), random);
+        String file = demand.getOdMatrixFile();
+        if (!Double.isNaN(tripsPerHour) || file == null || file.isBlank()) {
+            return DemandModel.uniform(zones, Double.isNaN(tripsPerHour) ? demand.getTripsPerHour() : tripsPerHour,
+                    demand.getHourlyProfile());
+        }
+        try (BufferedReader in = Files.newBufferedReader(Path.of(file))) {
+            return OdMatrixReader.read(in, zones);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read OD matrix " + file, e);
+        }
+    }
+
+    private RoadGraph loadGraph() {
+        List<Intersection> allIntersections = intersectionRepository.findAll();
         List<Road> allRoads = roadRepository.findAll();
-        allTrafficLights = trafficLightRepository.findAll(); // Load traffic lights
 
         if (allIntersections.isEmpty()) {
-            System.err.println("Warning: No intersections found. Cannot build road network.");
-            return;
+            log.warn("No intersections found. Cannot build road network.");
         }
         if (allRoads.isEmpty()) {
-            System.err.println("Warning: No roads found. Cannot build road network.");
+            log.warn("No roads found. Cannot build road network.");
         }
 
-        // Initialize adjacency list
-        for (Intersection intersection : allIntersections) {
-            adjacencyList.put(intersection.getId(), new ArrayList<>());
+        // Compile the entities into the array-backed graph; the entities themselves are not kept
+        RoadGraph graph = RoadGraph.builder()
+                .addIntersections(allIntersections)
+                .addRoads(allRoads)
+                .build();
+        log.info("Road network built: {} nodes, {} directed edges.", graph.nodeCount(), graph.edgeCount());
+        return graph;
+    }
+
+    // Covers the map's bounding box; vehicles are always on roads, so they never leave it
+    private SpatialGrid createGrid(RoadGraph graph) {
+        double minX = 0, minY = 0, maxX = 0, maxY = 0;
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            double x = graph.x(node);
+            double y = graph.y(node);
+            if (node == 0 || x < minX) minX = x;
+            if (node == 0 || y < minY) minY = y;
+            if (node == 0 || x > maxX) maxX = x;
+            if (node == 0 || y > maxY) maxY = y;
         }
-        // Populate adjacency list based on roads (bidirectional)
-        for (Road road : allRoads) {
-            if (road.getStartIntersection() != null && road.getEndIntersection() != null) {
-                adjacencyList.get(road.getStartIntersection().getId()).add(road.getEndIntersection());
-                adjacencyList.get(road.getEndIntersection().getId()).add(road.getStartIntersection());
+        return new SpatialGrid(minX, minY, maxX, maxY, properties.getStream().getCellSize());
+    }
+
+    // hierarchy is null unless routing mode is CH, or while it is rebuilt after an edit. The timer sits outermost,
+    // so it sees cache hits too. With live travel times, A* over them replaces both the hierarchy (built for fixed
+    // lengths) and the cache. Cached routes stay valid across routers over the same graph, since all of them
+    // find shortest paths by length; edits drop what they change in adoptNetwork().
+    private Router createRouter(RoadGraph graph, ContractionHierarchy hierarchy, TravelTimes travelTimes) {
+        if (travelTimes != null) return metrics.meter(new AStarRouter(graph, travelTimes));
+        Router base = hierarchy != null ? new ContractionHierarchyRouter(graph, hierarchy) : new AStarRouter(graph);
+        if (routeCache == null) return metrics.meter(base);
+        return metrics.meter(new CachingRouter(base, routeCache));
+    }
+
+    /**
+     * Applies {@code edit} to the newest version of the road network; the simulation switches to the result
+     * between two ticks, with every vehicle still on the road. Safe to call from any thread: edits are applied
+     * one at a time, each to the version the previous one produced, and several edits arriving within one tick
+     * are taken up together. If the edit changes which roads are open, the contraction hierarchy is rebuilt in
+     * the background, with A* standing in for it meanwhile.
+     * @return the edited network, or the newest one if the edit changed nothing
+     * @throws IllegalArgumentException if the edit is invalid for the network, e.g. names a road it lacks
+     * @throws IllegalStateException if the city is split across processes, whose networks must stay identical
+     */
+    public RoadGraph editNetwork(UnaryOperator<RoadGraph> edit) {
+        checkEditable();
+        synchronized (networkLock) {
+            RoadGraph previous = latestGraph;
+            RoadGraph next = edit.apply(previous);
+            if (next == previous) return next;
+            latestGraph = next;
+            networkVersion++;
+            pendingGraph.set(next);
+            if (hierarchyBuilder != null && next.fingerprint() != previous.fingerprint()) {
+                hierarchyBuilds.incrementAndGet();
+                hierarchyBuilder.execute(() -> buildHierarchy(next));
             }
+            return next;
         }
-        System.out.println("Road network adjacency list built.");
-        System.out.println("Loaded " + allTrafficLights.size() + " traffic lights."); // Log count
-    }
-
-    // --- A* Pathfinding (Keep as is) ---
-    public List<Intersection> findShortestPath(Intersection start, Intersection end) {
-        if (start == null || end == null || start.equals(end)) return Collections.emptyList();
-        PriorityQueue<PathNode> openSet = new PriorityQueue<>();
-        Set<Intersection> closedSet = new HashSet<>();
-        Map<Intersection, PathNode> nodeMap = new HashMap<>();
-
-        PathNode startNode = new PathNode(start);
-        startNode.setGCost(0);
-        startNode.setHCost(calculateHeuristic(start, end));
-        startNode.setFCost(startNode.getHCost());
-        nodeMap.put(start, startNode);
-        openSet.add(startNode);
-
-        while (!openSet.isEmpty()) {
-            PathNode current = openSet.poll();
-            if (current.getIntersection().equals(end)) return reconstructPath(current);
-            closedSet.add(current.getIntersection());
-
-            for (Intersection neighborIntersection : getNeighbors(current.getIntersection())) {
-                if (closedSet.contains(neighborIntersection)) continue;
-                PathNode neighborNode = nodeMap.computeIfAbsent(neighborIntersection, PathNode::new);
-                double tentativeGCost = current.getGCost() + calculateDistance(current.getIntersection(), neighborIntersection);
-
-                if (tentativeGCost < neighborNode.getGCost()) {
-                    neighborNode.setParent(current);
-                    neighborNode.setGCost(tentativeGCost);
-                    neighborNode.setHCost(calculateHeuristic(neighborIntersection, end));
-                    neighborNode.setFCost(neighborNode.getGCost() + neighborNode.getHCost());
-                    if (!openSet.contains(neighborNode)) openSet.add(neighborNode);
-                    else { openSet.remove(neighborNode); openSet.add(neighborNode); }
-                }
+    }
+
+    /**
+     * Checks that {@link #editNetwork} would accept {@code edit} now, without applying it, e.g. before writing
+     * it to the database. Roads are only ever added, closed or changed, so an edit valid for the newest network
+     * stays valid for the versions after it.
+     * @throws IllegalArgumentException if the edit is invalid for the network
+     * @throws IllegalStateException if the city is split across processes
+     */
+    public void validateEdit(UnaryOperator<RoadGraph> edit) {
+        checkEditable();
+        edit.apply(getLatestGraph());
+    }
+
+    private void checkEditable() {
+        if (properties.getPartition().getRole() != PartitionRole.NONE) {
+            throw new IllegalStateException("The road network cannot be edited while it is partitioned");
+        }
+    }
+
+    /** The newest version of the road network, including edits the simulation takes up at its next tick. */
+    public RoadGraph getLatestGraph() {
+        synchronized (networkLock) {
+            return latestGraph;
+        }
+    }
+
+    /** Edits applied to the road network since startup. */
+    public long getNetworkVersion() {
+        synchronized (networkLock) {
+            return networkVersion;
+        }
+    }
+
+    /** Whether routing waits on a contraction hierarchy being rebuilt after an edit, using A* meanwhile. */
+    public boolean isRebuildingHierarchy() {
+        return hierarchyBuilds.get() > 0;
+    }
+
+    // Hierarchy builder thread; versions whose open roads were edited again before their turn are skipped
+    private void buildHierarchy(RoadGraph graph) {
+        try {
+            synchronized (networkLock) {
+                if (graph.fingerprint() != latestGraph.fingerprint()) return;
             }
+            long startedAt = System.nanoTime();
+            ContractionHierarchyStore store = new ContractionHierarchyStore(Path.of(properties.getRouting().getChCacheDir()));
+            readyHierarchy.set(store.loadOrBuild(graph));
+            log.info("Contraction hierarchy for the edited network ready in {} ms.", (System.nanoTime() - startedAt) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Could not rebuild the contraction hierarchy; routing stays on A*.", e);
+        } finally {
+            hierarchyBuilds.decrementAndGet();
         }
-        return Collections.emptyList();
     }
-    private List<Intersection> getNeighbors(Intersection intersection) { return adjacencyList.getOrDefault(intersection.getId(), Collections.emptyList()); }
-    private double calculateDistance(Intersection a, Intersection b) { double dx = a.getXCoordinate() - b.getXCoordinate(); double dy = a.getYCoordinate() - b.getYCoordinate(); return Math.sqrt(dx * dx + dy * dy); }
-    private double calculateHeuristic(Intersection from, Intersection to) { return calculateDistance(from, to); }
-    private List<Intersection> reconstructPath(PathNode endNode) { List<Intersection> path = new LinkedList<>(); PathNode current = endNode; while (current != null) { path.add(0, current.getIntersection()); current = current.getParent(); } return path; }
-    // --- End A* ---
 
+    // Simulation thread, between ticks
+    private void adoptNetworkChanges() {
+        RoadGraph edited = pendingGraph.getAndSet(null);
+        if (edited != null) adoptNetwork(edited);
+        ContractionHierarchy built = readyHierarchy.getAndSet(null);
+        if (built != null && built.getGraphFingerprint() == engine.getGraph().fingerprint()) {
+            hierarchy = built;
+            engine.setRouter(createRouter(engine.getGraph(), built, engine.getTravelTimes()));
+            liveRouter = engine.getRouter();
+            log.info("Routing on the rebuilt contraction hierarchy.");
+        }
+    }
 
-    public void spawnCar() {
-        if (allIntersections.isEmpty() || allIntersections.size() < 2) {
-            System.err.println("Cannot spawn car: Need at least two intersections.");
-            return;
+    private void adoptNetwork(RoadGraph next) {
+        long startedAt = System.nanoTime();
+        // A speed limit leaves the hierarchy valid; a closure or a new road needs the one being rebuilt
+        ContractionHierarchy kept = hierarchy != null && hierarchy.getGraphFingerprint() == next.fingerprint() ? hierarchy : null;
+        hierarchy = kept;
+        NetworkSwitch change = switchNetwork(engine, next, routeCache, travelTimes -> createRouter(next, kept, travelTimes));
+        if (routeAssigner != null) {
+            TravelTimes travelTimes = engine.getTravelTimes();
+            routeAssigner.setRouter(travelTimes != null ? new OneToManyRouter(next, travelTimes) : new OneToManyRouter(next));
         }
-        Intersection start = allIntersections.get(random.nextInt(allIntersections.size()));
-        Intersection destination;
-        do { destination = allIntersections.get(random.nextInt(allIntersections.size())); } while (destination.getId().equals(start.getId()));
-        List<Intersection> path = findShortestPath(start, destination);
-        if (path.isEmpty() || path.size() < 2) { System.err.println("Could not find a valid path for the car from " + start.getId() + " to " + destination.getId()); return; }
-        Car newCar = new Car(start, path);
-        cars.add(newCar);
-        // System.out.println("Spawned Car ID: " + newCar.getId() + " at (" + start.getXCoordinate() + "," + start.getYCoordinate() + ") Path length: " + path.size()); // Optional detailed spawn log
+        liveGraph = next;
+        liveRouter = engine.getRouter();
+        metrics.recordNetworkEdit(change.rerouted());
+        log.info("Edited road network in use after {} ms: {} vehicles rerouted, {} cached routes dropped.",
+                (System.nanoTime() - startedAt) / 1_000_000, change.rerouted(), change.droppedRoutes());
+    }
+
+    /** Vehicles rerouted and cached routes dropped by switching to an edited road network. */
+    record NetworkSwitch(int rerouted, int droppedRoutes) {
+    }
+
+    /**
+     * Switches the engine to {@code next}. The cached routes the edit invalidates are dropped first: rerouting
+     * around closures goes through the cache, which would otherwise hand back routes over the roads just closed.
+     * @param routeCache the cache behind the engine's router, or null
+     */
+    static NetworkSwitch switchNetwork(SimulationEngine engine, RoadGraph next, RouteCache routeCache,
+                                       Function<TravelTimes, Router> routers) {
+        RoadGraph previous = engine.getGraph();
+        int[] mapping = previous.edgeMapping(next);
+        int dropped = routeCache != null ? routeCache.invalidateChanges(previous, next, mapping) : 0;
+        int rerouted = engine.replaceNetwork(next, mapping, routers);
+        return new NetworkSwitch(rerouted, dropped);
+    }
+
+    /** Counters of the route cache, or null if caching is disabled. */
+    public RouteCacheStats getRouteCacheStats() {
+        return routeCache != null ? routeCache.stats() : null;
+    }
+
+    // --- Pathfinding (delegates to the configured router) ---
+    public int[] findShortestPath(int start, int end) {
+        return liveRouter.route(start, end);
+    }
+    // --- End Pathfinding ---
+
+
+    /**
+     * Requests a new car. The car is created on the simulation thread at the start of the next tick,
+     * since the vehicle store is owned by that thread.
+     */
+    public void spawnCar() {
+        pendingSpawns.incrementAndGet();
     }
 
 
     // --- Simulation Loop Logic (Updated) ---
     @PostConstruct
     public void startSimulationLoop() {
-        scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(this::updateSimulation, 0, SIMULATION_TICK_RATE_MS, TimeUnit.MILLISECONDS);
-        System.out.println("Simulation loop started.");
+        AetheriumProperties.Simulation simulation = properties.getSimulation();
+        loop = new SimulationLoop("simulation", this::updateSimulation, simulation.getTickSeconds(),
+                simulation.getPacing(), simulation.getSpeed());
+        if (regionWorker != null) {
+            startRegionWorker(); // The coordinator paces the ticks, so the loop never starts
+            return;
+        }
+        if (properties.getPartition().getRole() == PartitionRole.COORDINATOR) coordinator = createCoordinator();
+        loop.start();
+        log.info("Simulation loop started ({}).", simulation.getPacing());
     }
-    @PreDestroy
-    public void stopSimulationLoop() {
-        if (scheduler != null && !scheduler.isShutdown()) {
-            scheduler.shutdown();
-            System.out.println("Simulation loop stopped.");
+
+    // Blocks startup until every region has a worker, since no tick can run without all of them
+    private PartitionCoordinator createCoordinator() {
+        AetheriumProperties.Partition partitioning = properties.getPartition();
+        RoadGraph graph = engine.getGraph();
+        SignalController signals = engine.getSignals();
+        lightIntersectionIds = new long[signals.signalCount()];
+        for (int i = 0; i < lightIntersectionIds.length; i++) {
+            lightIntersectionIds[i] = graph.nodeId(signals.node(i));
+        }
+        PartitionCoordinator created = null;
+        try {
+            created = new PartitionCoordinator(GraphPartition.bisect(graph, partitioning.getRegions()), signals,
+                    new InetSocketAddress(partitioning.getCoordinatorPort()));
+            log.info("Waiting up to {} for {} region workers.", partitioning.getConnectTimeout(), partitioning.getRegions());
+            created.awaitWorkers(partitioning.getConnectTimeout());
+            metrics.bindCoordinator(created);
+            return created;
+        } catch (IOException e) {
+            if (created != null) {
+                try {
+                    created.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            throw new UncheckedIOException("Could not start the partitioned simulation", e);
         }
     }
 
-    private void updateSimulation() {
-        // Spawn new cars periodically if below the limit
-        boolean spawnedNewCar = false;
-        if (cars.size() < MAX_CARS && random.nextInt(100) < 5) { // Approx 5% chance each tick to spawn
-            spawnCar();
-            spawnedNewCar = true; // Mark that a car was potentially spawned
-        }
-
-        // Update Traffic Lights
-        boolean trafficLightChanged = false;
-        for (TrafficLight light : allTrafficLights) {
-            if (light.updateState(SIMULATION_TICK_RATE_SECONDS)) { // Pass delta time in seconds
-                trafficLightChanged = true;
+    private void startRegionWorker() {
+        AetheriumProperties.Partition partitioning = properties.getPartition();
+        InetSocketAddress address = new InetSocketAddress(partitioning.getCoordinatorHost(), partitioning.getCoordinatorPort());
+        regionWorkerThread = new Thread(() -> {
+            try {
+                regionWorker.connect(address, partitioning.getConnectTimeout());
+                regionWorker.run();
+            } catch (IOException e) {
+                if (!stopping) log.error("Region {} lost its coordinator at {}.", partitioning.getRegion(), address, e);
             }
+        }, "region-worker");
+        regionWorkerThread.start();
+    }
+
+    @PreDestroy
+    public void stopSimulationLoop() {
+        stopping = true;
+        if (loop != null) {
+            loop.close();
+            log.info("Simulation loop stopped.");
+        }
+        try {
+            if (coordinator != null) coordinator.close(); // Stops the workers too
+            if (regionWorker != null) {
+                regionWorker.close();
+                regionWorkerThread.join();
+            }
+        } catch (IOException e) {
+            log.warn("Error while disconnecting regions", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        if (hierarchyBuilder != null) hierarchyBuilder.shutdownNow();
+        if (routeAssigner != null) routeAssigner.close();
+        if (recorder != null) recorder.close(); // Flushes the ticks still queued
+        if (tripStatistics != null) tripStatistics.close(); // Writes the last, partial interval
+        tickExecutor.close();
+    }
 
-        double speed = 2.0;
-        boolean carsMovedOrRemoved = false; // Track car state changes separately
+    /** Switches between real-time and headless pacing; takes effect from the next tick. */
+    public void setPacing(PacingMode mode, double speed) {
+        loop.setPacing(mode, speed);
+    }
 
-        // Use iterator for safe removal
-        Iterator<Car> iterator = cars.iterator();
-        while (iterator.hasNext()) {
-            Car car = iterator.next();
+    /**
+     * Runs the next {@code seconds} of simulated time as fast as possible, then resumes the current pacing.
+     * Returns immediately; viewers keep receiving frames at the usual rate meanwhile.
+     */
+    public void fastForward(double seconds) {
+        loop.fastForward((long) Math.ceil(seconds / loop.getTickSeconds()));
+    }
 
-            // Basic Traffic Light Check (will be enhanced later)
-            Intersection nextIntersection = car.getCurrentTargetIntersection();
-            if (nextIntersection != null && nextIntersection.isHasTrafficLight()) {
-                TrafficLight lightAtIntersection = findTrafficLightAt(nextIntersection);
-                if (lightAtIntersection != null) {
-                    // TODO: Add logic here later to check light state and potentially stop the car
-                    // System.out.println("Car " + car.getId() + " approaching light " + lightAtIntersection.getId() + " state: " + lightAtIntersection.getCurrentState());
-                }
-            }
+    public SimulationLoop getLoop() {
+        return loop;
+    }
 
+    private void updateSimulation() {
+        if (coordinator != null) {
+            updateRegions();
+            return;
+        }
+        adoptNetworkChanges();
+        for (int requested = pendingSpawns.getAndSet(0); requested > 0; requested--) {
+            engine.spawnVehicle();
+        }
+        engine.tick();
+        metrics.recordTick(engine);
+        if (recorder != null) recorder.record(engine.getSnapshot());
+        long now = System.nanoTime();
+        if (isFrameDue(now)) {
+            lastBroadcastNanos = now;
+            broadcastFrame(engine.getTickCount(), engine.getVehicles(), null);
+            metrics.recordBroadcast(System.nanoTime() - now);
+        }
+    }
 
-            if (car.hasReachedFinalDestination()) {
-                // System.out.println("Car ID: " + car.getId() + " arrived at final destination."); // Optional arrival log
-                iterator.remove();
-                carsMovedOrRemoved = true;
-                continue;
-            }
+    // Every region ticks on its worker; their vehicles are only gathered for ticks that are streamed or recorded
+    private void updateRegions() {
+        if (regionsLost) return;
+        long now = System.nanoTime();
+        boolean frameDue = isFrameDue(now);
+        boolean viewDue = frameDue || recorder != null;
+        try {
+            coordinator.step(viewDue, pendingSpawns.getAndSet(0));
+        } catch (IOException e) {
+            regionsLost = true;
+            log.error("A region worker disconnected; the partitioned simulation has stopped.", e);
+            return;
+        }
+        if (!viewDue) return;
+        mergedSnapshot = coordinator.getView().snapshot(coordinator.getTick(), lightIntersectionIds,
+                coordinator.getLightStates().clone());
+        if (recorder != null) recorder.record(mergedSnapshot);
+        if (frameDue) {
+            lastBroadcastNanos = now;
+            broadcastFrame(coordinator.getTick(), coordinator.getView(), coordinator.getLightStates());
+            metrics.recordBroadcast(System.nanoTime() - now);
+        }
+    }
 
-            Intersection target = car.getCurrentTargetIntersection();
-            if (target == null) {
-                iterator.remove();
-                carsMovedOrRemoved = true;
-                continue;
-            }
+    // Ticks can run much faster than viewers can draw (headless, fast-forward, small time steps); the
+    // encoder diffs against the last frame it encoded, so skipped ticks are folded into the next delta.
+    // The 10% slack keeps a 33 ms tick from missing a 33.3 ms frame slot.
+    private boolean isFrameDue(long now) {
+        if (!liveBroadcast) return false;
+        long frameNanos = (long) (0.9e9 / properties.getStream().getMaxFramesPerSecond());
+        return framesBroadcast == 0 || now - lastBroadcastNanos >= frameNanos;
+    }
 
-            double deltaX = target.getXCoordinate() - car.getX();
-            double deltaY = target.getYCoordinate() - car.getY();
-            double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
-
-            if (distance < speed) {
-                car.setX(target.getXCoordinate());
-                car.setY(target.getYCoordinate());
-                car.advanceToNextTarget();
-                // System.out.println("Car ID: " + car.getId() + " reached intersection " + target.getId()); // Optional intersection log
-                carsMovedOrRemoved = true;
-            } else {
-                double normalizedX = deltaX / distance;
-                double normalizedY = deltaY / distance;
-                double moveX = normalizedX * speed;
-                double moveY = normalizedY * speed;
-                car.setX(car.getX() + moveX);
-                car.setY(car.getY() + moveY);
-                carsMovedOrRemoved = true; // Car position updated
-            }
+    // Changes are encoded once per grid cell; each client receives the cells in its viewport, and everyone
+    // periodically gets a keyframe. lightStates null = the signals' own states.
+    private void broadcastFrame(long tick, VehicleStore vehicles, byte[] lightStates) {
+        TickFrames frames = frameEncoder.encode(tick, vehicles, engine.getSignals(), lightStates);
+        boolean periodicKeyframe = framesBroadcast++ % properties.getStream().getKeyframeInterval() == 0;
+        if (keyframeDue) {
+            keyframeDue = false;
+            periodicKeyframe = true;
         }
+        webSocketHandler.broadcast(frameEncoder, frames, periodicKeyframe);
+    }
 
-        // --- TEMPORARY CHANGE FOR DEBUGGING ---
-        // Always broadcast the current state on every tick, regardless of state changes
-        // TODO: Later, change this back to: if (spawnedNewCar || carsMovedOrRemoved || trafficLightChanged)
-        webSocketHandler.broadcast(getCars());
-        // --- END TEMPORARY CHANGE ---
+    /**
+     * Stops or resumes streaming the live simulation to viewers, which keeps running either way. Viewers
+     * get a keyframe when it resumes, since they may have been shown something else meanwhile.
+     */
+    public void setLiveBroadcast(boolean enabled) {
+        if (enabled && !liveBroadcast) keyframeDue = true;
+        liveBroadcast = enabled;
+    }
 
+    /** A frame encoder over the same viewer grid as the live stream, with a delta baseline of its own. */
+    public FrameEncoder newFrameEncoder() {
+        return new FrameEncoder(createGrid(getGraph()));
     }
     // --- End Simulation Loop ---
 
-    // Helper method to find traffic light at an intersection
-    private TrafficLight findTrafficLightAt(Intersection intersection) {
-        if (intersection == null) return null;
-        for (TrafficLight light : allTrafficLights) {
-            if (light.getIntersection() != null && light.getIntersection().getId().equals(intersection.getId())) {
-                return light;
-            }
-        }
-        return null;
+
+    /**
+     * The version of the road network being simulated. Immutable, so safe to read from any thread; edits
+     * replace it with a new version.
+     */
+    public RoadGraph getGraph() {
+        return liveGraph;
+    }
+
+    /** The traffic lights; only their placement, not their current state, may be read outside the simulation thread. */
+    public SignalController getSignals() {
+        return engine.getSignals();
     }
 
+    /** When this run started, as yyyyMMdd-HHmmss; names its recording and its rows in the rollup tables. */
+    public String getRunName() {
+        return runName;
+    }
 
-    public List<Car> getCars() {
-        // Return a copy for thread safety when broadcasting
-        List<Car> carCopy = new ArrayList<>();
-        for (Car car : cars) {
-            // Create a simple copy (adjust if Car becomes more complex)
-            if (car.getPath() == null || car.getPath().isEmpty()) continue; // Skip cars with no path (shouldn't happen)
-            Car copy = new Car(car.getPath().get(0), new ArrayList<>(car.getPath())); // Recreate with path start
-            copy.setId(car.getId());
-            copy.setX(car.getX());
-            copy.setY(car.getY());
-            copy.setCurrentPathIndex(car.getCurrentPathIndex());
-            carCopy.add(copy);
-        }
-        return carCopy;
+    /** The contraction hierarchy routing runs on, or null; it may lag behind {@link #getGraph()}, so check its fingerprint. */
+    ContractionHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    /** Statistics of the trips completed so far, or null if disabled or on the coordinator. */
+    public TripStatistics getTripStatistics() {
+        return tripStatistics;
+    }
+
+    /** The latest published simulation state, merged from every region when partitioned; safe to read from request threads. */
+    public SimulationSnapshot getSnapshot() {
+        return coordinator != null ? mergedSnapshot : engine.getSnapshot();
     }
-}
\ No newline at end of file
+}
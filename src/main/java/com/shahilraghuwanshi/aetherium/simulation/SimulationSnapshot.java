@@ -0,0 +1,64 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+/**
+ * Immutable copy of the simulation state at the end of one tick, published by {@link SimulationEngine}
+ * for readers on other threads (REST endpoints, recorders).
+ * <p>
+ * Vehicle attributes are flat primitive columns indexed {@code [0, size())}, copied in bulk from the
+ * {@link VehicleStore}; paths are shared rather than copied, since node sequences are never mutated.
+ * Readers get a consistent state simply by holding on to one snapshot: nothing in it changes after
+ * publication, and the next tick publishes a new instance, sharing the light states with this one if no
+ * signal changed. The arrays are exposed only through index accessors so callers cannot modify them.
+ */
+public final class SimulationSnapshot {
+
+    public static final SimulationSnapshot EMPTY = new SimulationSnapshot(0, 0, new long[0], new double[0],
+            new double[0], new double[0], new int[0], new int[0][], new long[0], new byte[0]);
+
+    private final long sequence;
+    private final int size;
+    private final long[] ids;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] speeds;
+    private final int[] pathIndices;
+    private final int[][] paths;
+    private final long[] lightIntersectionIds; // Shared between snapshots; the light set is fixed
+    private final byte[] lightStates;          // TrafficLight.State ordinals
+
+    SimulationSnapshot(long sequence, int size, long[] ids, double[] xs, double[] ys, double[] speeds,
+                       int[] pathIndices, int[][] paths, long[] lightIntersectionIds, byte[] lightStates) {
+        this.sequence = sequence;
+        this.size = size;
+        this.ids = ids;
+        this.xs = xs;
+        this.ys = ys;
+        this.speeds = speeds;
+        this.pathIndices = pathIndices;
+        this.paths = paths;
+        this.lightIntersectionIds = lightIntersectionIds;
+        this.lightStates = lightStates;
+    }
+
+    /** Number of ticks completed when this snapshot was taken; increases by one per tick. */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int size() { return size; }
+    public long id(int index) { return ids[index]; }
+    public double x(int index) { return xs[index]; }
+    public double y(int index) { return ys[index]; }
+    public double speed(int index) { return speeds[index]; }
+
+    /** Index into {@link #path} of the node the vehicle is heading to. */
+    public int pathIndex(int index) { return pathIndices[index]; }
+
+    /** Node {@code position} of the vehicle's path, as a dense RoadGraph node index. */
+    public int pathNode(int index, int position) { return paths[index][position]; }
+    public int pathLength(int index) { return paths[index].length; }
+
+    public int lightCount() { return lightStates.length; }
+    public long lightIntersectionId(int light) { return lightIntersectionIds[light]; }
+    public byte lightState(int light) { return lightStates[light]; }
+}
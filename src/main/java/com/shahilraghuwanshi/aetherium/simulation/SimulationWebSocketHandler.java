@@ -1,77 +1,173 @@
 package com.shahilraghuwanshi.aetherium.simulation;
 
-import com.fasterxml.jackson.databind.ObjectMapper; // Jackson for JSON conversion
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shahilraghuwanshi.aetherium.config.AetheriumProperties;
+import com.shahilraghuwanshi.aetherium.metrics.SimulationMetrics;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.SpatialGrid;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.TickFrames;
+import com.shahilraghuwanshi.aetherium.simulation.scenario.Scenario;
+import io.micrometer.core.instrument.Meter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Streams the simulation to every connected client. Each session watches one simulation: the live one by
+ * default, or a scenario named on connect ({@code /ws/simulation?scenario=<id>}) or later by message.
+ */
 @Component // Make it a Spring bean
-public class SimulationWebSocketHandler extends TextWebSocketHandler {
+public class SimulationWebSocketHandler extends TextWebSocketHandler implements Scenario.Viewers {
 
-    // A thread-safe list to keep track of all connected clients
-    private final List<WebSocketSession> sessions = new CopyOnWriteArrayList<>();
-    // Jackson's ObjectMapper to convert Java objects to JSON strings
+    private static final Logger log = LoggerFactory.getLogger(SimulationWebSocketHandler.class);
+
+    // Every connected client with its outbound queue
+    private final Map<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+    private final Map<String, List<Meter>> sessionMeters = new ConcurrentHashMap<>();
+    // Threads that perform the (blocking) sends, so a slow client never stalls the simulation thread
+    private final ExecutorService senders;
+    private final AetheriumProperties.Stream settings;
+    private final SimulationMetrics metrics;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private boolean[] keyframeCells = new boolean[0]; // Scratch for broadcast()
+
+    public SimulationWebSocketHandler(AetheriumProperties properties, SimulationMetrics metrics) {
+        this.settings = properties.getStream();
+        this.metrics = metrics;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, settings.getSenderThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "ws-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     // Called when a new client connects
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        sessions.add(session);
-        System.out.println("WebSocket connection established: " + session.getId());
+        SessionOutbox outbox = new SessionOutbox(session, senders, settings.getOutboxCapacity(),
+                settings.getOverflowPolicy(), settings.getSlowClientTimeout().toNanos());
+        sessionMeters.put(session.getId(), metrics.bindSession(session.getId(), outbox, SessionOutbox::getBytesSent,
+                SessionOutbox::getFramesDropped, SessionOutbox::queuedFrames));
+        outbox.setScenario(scenarioParameter(session.getUri()));
+        outboxes.put(session.getId(), outbox);
+        log.info("WebSocket connection established: {}{}", session.getId(),
+                outbox.getScenario() != null ? " watching scenario " + outbox.getScenario() : "");
     }
 
     // Called when a client disconnects
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        sessions.remove(session);
-        System.out.println("WebSocket connection closed: " + session.getId());
+        SessionOutbox outbox = outboxes.remove(session.getId());
+        if (outbox != null) outbox.close(status);
+        List<Meter> meters = sessionMeters.remove(session.getId());
+        if (meters != null) metrics.unbind(meters);
+        log.info("WebSocket connection closed: {}", session.getId());
     }
 
-    // This method sends a message (our simulation state) to ALL connected clients
-    public void broadcast(List<Car> cars) {
-        // --- ADD DEBUG LINES ---
-        System.out.println("Attempting to broadcast. Number of cars: " + (cars != null ? cars.size() : "null"));
-        if (cars == null || cars.isEmpty()) {
-            // Don't try to send if there's nothing to send (or print why)
-            System.out.println("Skipping broadcast: Car list is null or empty.");
-            // return; // Optional: uncomment if you don't want to send empty arrays
+    /** Hands one tick's frames of the live simulation to its viewers; see {@link #broadcast(String, FrameEncoder, TickFrames, boolean)}. */
+    public void broadcast(FrameEncoder encoder, TickFrames frames, boolean periodicKeyframe) {
+        broadcast(null, encoder, frames, periodicKeyframe);
+    }
+
+    /**
+     * Hands one tick's frames to the outbox of every client watching {@code scenario} (null = the live
+     * simulation) and returns immediately. Keyframe blocks are only encoded for cells some client needs in
+     * full this tick (it just connected, fell behind, or scrolled them into view), and each block is encoded
+     * once however many clients watch the cell. Synchronized because a replay can take over the stream from
+     * the simulation thread, scenarios broadcast from the scheduler's threads, and a session must not switch
+     * scenarios between plan() and offer().
+     */
+    @Override
+    public synchronized void broadcast(String scenario, FrameEncoder encoder, TickFrames frames, boolean periodicKeyframe) {
+        SpatialGrid grid = encoder.getGrid();
+        if (keyframeCells.length != grid.cellCount()) keyframeCells = new boolean[grid.cellCount()];
+        // Iterate a snapshot so plan() and offer() see the same sessions
+        SessionOutbox[] targets = outboxes.values().stream()
+                .filter(outbox -> Objects.equals(outbox.getScenario(), scenario))
+                .toArray(SessionOutbox[]::new);
+        if (targets.length == 0) return;
+        for (SessionOutbox outbox : targets) {
+            outbox.plan(grid, periodicKeyframe, keyframeCells);
         }
-        // --- END DEBUG LINES ---
+        encoder.encodeKeyframeBlocks(frames, keyframeCells);
+        for (SessionOutbox outbox : targets) {
+            outbox.offer(frames);
+        }
+    }
 
-        try {
-            // Convert the list of cars to a JSON string
-            String carsJson = objectMapper.writeValueAsString(cars);
+    @Override
+    public boolean isWatched(String scenario) {
+        for (SessionOutbox outbox : outboxes.values()) {
+            if (Objects.equals(outbox.getScenario(), scenario)) return true;
+        }
+        return false;
+    }
 
-            // --- ADD DEBUG LINE ---
-            System.out.println("Broadcasting JSON: " + carsJson);
-            // --- END DEBUG LINE ---
+    /** Moves every session watching {@code scenario} back to the live simulation, e.g. once the scenario is gone. */
+    public void unsubscribeAll(String scenario) {
+        for (SessionOutbox outbox : outboxes.values()) {
+            if (scenario.equals(outbox.getScenario())) subscribe(outbox, null);
+        }
+    }
 
-            TextMessage message = new TextMessage(carsJson);
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
 
-            // Send the message to each session
-            for (WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    session.sendMessage(message);
-                }
-            }
+    // Clients tell us what part of the map they show, in map units:
+    // {"type": "viewport", "minX": 0, "minY": 0, "maxX": 1280, "maxY": 720}
+    // and which simulation to watch, a scenario id or null for the live one:
+    // {"type": "subscribe", "scenario": "3"}
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        SessionOutbox outbox = outboxes.get(session.getId());
+        if (outbox == null) return;
+        JsonNode json;
+        try {
+            json = objectMapper.readTree(message.getPayload());
         } catch (IOException e) {
-            // --- IMPROVE ERROR LOGGING ---
-            System.err.println("!!! Error broadcasting WebSocket message: " + e.getMessage());
-            e.printStackTrace(); // Print the full error stack trace
-            // --- END IMPROVED LOGGING ---
+            log.debug("Ignoring malformed message from {}: {}", session.getId(), e.getMessage());
+            return;
+        }
+        if ("viewport".equals(json.path("type").asText())) {
+            outbox.setViewport(json.path("minX").asDouble(), json.path("minY").asDouble(),
+                    json.path("maxX").asDouble(), json.path("maxY").asDouble());
+        } else if ("subscribe".equals(json.path("type").asText())) {
+            JsonNode scenario = json.path("scenario");
+            subscribe(outbox, scenario.isTextual() || scenario.isNumber() ? scenario.asText() : null);
+            log.info("WebSocket session {} now watching {}.", session.getId(),
+                    outbox.getScenario() != null ? "scenario " + outbox.getScenario() : "the live simulation");
+        } else {
+            log.debug("Ignoring unknown message from {}: {}", session.getId(), message.getPayload());
         }
     }
 
-    // We don't need to handle incoming messages for this project, but the method is required
-    @Override
-    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        // Do nothing for incoming messages in this simulation
-        System.out.println("Received message (ignored): " + message.getPayload());
+    private synchronized void subscribe(SessionOutbox outbox, String scenario) {
+        outbox.setScenario(scenario);
+    }
+
+    private static String scenarioParameter(URI uri) {
+        if (uri == null) return null;
+        String scenario = UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst("scenario");
+        return scenario == null || scenario.isBlank() ? null : scenario;
     }
-}
\ No newline at end of file
+}
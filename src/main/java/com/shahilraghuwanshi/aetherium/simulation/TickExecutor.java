@@ -0,0 +1,71 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs per-tick work over index ranges on a dedicated {@link ForkJoinPool}.
+ * <p>
+ * A range is split into chunks of at least {@code minChunkSize} indices that are processed in parallel.
+ * Tasks must only write state belonging to their own indices and only read state that nobody writes
+ * during the same phase (the front buffers of {@link VehicleStore}); results are then independent of
+ * how the range was split and of the number of threads.
+ */
+public final class TickExecutor implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface RangeTask {
+        /** Processes indices {@code [from, to)}. */
+        void run(int from, int to);
+    }
+
+    private final ForkJoinPool pool;
+    private final int minChunkSize;
+
+    public TickExecutor(int parallelism, int minChunkSize) {
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.minChunkSize = Math.max(1, minChunkSize);
+    }
+
+    public int getParallelism() {
+        return pool != null ? pool.getParallelism() : 1;
+    }
+
+    public void forEachRange(int count, RangeTask task) {
+        if (count <= 0) return;
+        if (pool == null || count <= minChunkSize) {
+            task.run(0, count); // Not worth a fork
+            return;
+        }
+        pool.invoke(new RangeAction(task, 0, count, minChunkSize));
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) pool.shutdown();
+    }
+
+    private static final class RangeAction extends RecursiveAction {
+        private final RangeTask task;
+        private final int from;
+        private final int to;
+        private final int minChunkSize;
+
+        RangeAction(RangeTask task, int from, int to, int minChunkSize) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.minChunkSize = minChunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= minChunkSize) {
+                task.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeAction(task, from, middle, minChunkSize), new RangeAction(task, middle, to, minChunkSize));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+/** The parts of a tick that {@link SimulationEngine} times separately. */
+public enum TickPhase {
+    /** Removing arrived vehicles and spawning new ones, routing included. */
+    SPAWN,
+    /** Checking vehicles' remaining routes against live travel times and rerouting some. */
+    REROUTE,
+    /** Advancing the traffic signals. */
+    SIGNALS,
+    /** Car following for every vehicle. */
+    MOVEMENT,
+    /** Swapping the vehicle buffers and moving vehicles onto their next edge. */
+    COMMIT,
+    /** Publishing the immutable snapshot. */
+    SNAPSHOT
+}
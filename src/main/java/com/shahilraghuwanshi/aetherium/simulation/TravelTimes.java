@@ -0,0 +1,134 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.EdgeWeights;
+
+import java.util.Arrays;
+
+/**
+ * Rolling travel-time estimates per directed edge, learned from the vehicles that drive them.
+ * <p>
+ * The engine reports every completed edge traversal through {@link #record}; at the end of each update
+ * interval {@link #publish} folds the interval's mean into an exponential moving average. An edge
+ * nobody left during the interval keeps its estimate if its front vehicle has been on it longer
+ * (a queue that isn't moving), and otherwise relaxes towards free flow. Estimates never drop below the
+ * free-flow time at the desired speed, or at the road's speed limit where that is lower.
+ * <p>
+ * As {@link EdgeWeights} the estimates are in seconds, with the straight-line distance at the desired speed
+ * as A*'s lower bound. Recording and publishing belong to the simulation thread, and since the accumulators
+ * are only ever touched there they need no locks or atomics; routers on any thread read the last
+ * published array, which is replaced, never modified. Closed edges are published at +inf, so routers avoid
+ * them; when the network is edited, {@link #remap} carries the estimates over to the new version.
+ */
+public final class TravelTimes implements EdgeWeights {
+
+    private final RoadGraph graph;
+    private final double desiredSpeed;
+    private final double smoothing; // Weight of the newest interval
+    private final double[] freeFlowSeconds;
+    private final double[] estimates; // Working copy
+    private final double[] sums;      // Traversal seconds recorded this interval
+    private final int[] counts;
+    private volatile double[] published;
+
+    public TravelTimes(RoadGraph graph, double desiredSpeed, double smoothing) {
+        this.graph = graph;
+        this.desiredSpeed = desiredSpeed;
+        this.smoothing = smoothing;
+        freeFlowSeconds = new double[graph.edgeCount()];
+        for (int edge = 0; edge < freeFlowSeconds.length; edge++) {
+            freeFlowSeconds[edge] = graph.length(edge) / Math.min(desiredSpeed, graph.speedLimit(edge));
+        }
+        estimates = freeFlowSeconds.clone();
+        sums = new double[graph.edgeCount()];
+        counts = new int[graph.edgeCount()];
+        published = publishable(estimates);
+    }
+
+    /**
+     * Estimates for {@code next}, a later version of this graph, starting from this instance's: an edge keeps
+     * its estimate, at least its new free-flow time, and an added edge starts at free flow. The traversals
+     * recorded in the current interval are carried over too. Simulation thread only.
+     * @param mapping {@code graph.edgeMapping(next)}
+     */
+    public TravelTimes remap(RoadGraph next, int[] mapping) {
+        TravelTimes remapped = new TravelTimes(next, desiredSpeed, smoothing);
+        for (int edge = 0; edge < mapping.length; edge++) {
+            int target = mapping[edge];
+            if (target < 0) continue;
+            remapped.estimates[target] = Math.max(estimates[edge], remapped.freeFlowSeconds[target]);
+            remapped.sums[target] = sums[edge];
+            remapped.counts[target] = counts[edge];
+        }
+        remapped.published = remapped.publishable(remapped.estimates);
+        return remapped;
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /** Simulation thread only. */
+    public void record(int edge, double seconds) {
+        sums[edge] += seconds;
+        counts[edge]++;
+    }
+
+    /**
+     * Ends the update interval and makes the new estimates visible to routers. Simulation thread only.
+     * @param now simulated time, to tell how long the vehicles still on an edge have been there
+     */
+    public void publish(VehicleStore vehicles, EdgeOccupancy occupancy, double now) {
+        for (int edge = 0; edge < estimates.length; edge++) {
+            double estimate = estimates[edge];
+            if (counts[edge] > 0) {
+                estimate += smoothing * (sums[edge] / counts[edge] - estimate);
+            } else {
+                int front = occupancy.frontmost(edge);
+                double waited = front >= 0 ? now - vehicles.enteredAt(vehicles.slotOf(front)) : 0;
+                estimate = waited > estimate ? waited : estimate + smoothing * (freeFlowSeconds[edge] - estimate);
+            }
+            estimates[edge] = Math.max(estimate, freeFlowSeconds[edge]);
+        }
+        Arrays.fill(sums, 0);
+        Arrays.fill(counts, 0);
+        published = publishable(estimates);
+    }
+
+    // A copy for routers, with closed edges out of reach
+    private double[] publishable(double[] values) {
+        double[] copy = values.clone();
+        if (graph.closedEdgeCount() > 0) {
+            for (int edge = 0; edge < copy.length; edge++) {
+                if (graph.isClosed(edge)) copy[edge] = Double.POSITIVE_INFINITY;
+            }
+        }
+        return copy;
+    }
+
+    /** Current estimate for the edge, in seconds. */
+    @Override
+    public double cost(int edge) {
+        return published[edge];
+    }
+
+    @Override
+    public double lowerBound(int from, int to) {
+        return graph.distance(from, to) / desiredSpeed;
+    }
+
+    public double freeFlowSeconds(int edge) {
+        return freeFlowSeconds[edge];
+    }
+
+    /** Estimated seconds to drive {@code path} from node {@code fromIndex} to its end. */
+    public double pathSeconds(int[] path, int fromIndex) {
+        double[] current = published;
+        double total = 0;
+        for (int i = fromIndex; i < path.length - 1; i++) {
+            int edge = graph.findEdge(path[i], path[i + 1]);
+            if (edge >= 0) total += current[edge];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,11 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+/**
+ * Decides which vehicles enter the simulation. Called once per tick from the engine's serial phase,
+ * before vehicles move; it adds vehicles through {@link SimulationEngine#spawnVehicle(int[])}.
+ */
+public interface TripSource {
+
+    /** @param time simulated seconds at the start of the tick */
+    void release(SimulationEngine engine, double time);
+}
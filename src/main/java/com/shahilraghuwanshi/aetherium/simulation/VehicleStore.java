@@ -0,0 +1,312 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage for every vehicle in the simulation.
+ * <p>
+ * Live vehicles occupy the dense slot range {@code [0, size())}, one parallel primitive array per
+ * attribute, so a tick is a linear scan over contiguous memory. Removal swaps the last vehicle into
+ * the freed slot, which keeps the range dense but moves vehicles between slots; code that needs a
+ * stable reference to a vehicle holds its handle instead, resolved through {@link #slotOf(int)}.
+ * Handles of removed vehicles are recycled through a free list.
+ * <p>
+ * Besides its world position, a vehicle has a position along the road graph: the directed edge it is
+ * on and the distance travelled along it, with the simulated time it entered that edge and the time it
+ * is expected to arrive at the end of its path. For trip statistics, it also keeps where and when its trip
+ * began, and the distance and free-flow time of the roads it has completed so far.
+ * <p>
+ * The columns a tick updates (position, offset, speed, path index, state) are double-buffered: the movement
+ * phase reads the front buffers and writes the back buffers through {@link #setNext}, possibly from
+ * several threads at once, and {@link #swapBuffers()} publishes the results. Every other operation
+ * belongs to the simulation tick thread.
+ */
+public final class VehicleStore {
+
+    public static final byte STATE_MOVING = 0;
+    public static final byte STATE_ARRIVED = 1;
+
+    private long[] ids;
+    private double[] xs;
+    private double[] ys;
+    private double[] speeds;
+    private int[][] paths;        // shared, immutable node sequences
+    private int[] pathIndices;    // index of the node each vehicle is heading to
+    private int[] edges;          // directed edge being driven, from path[pathIndex - 1] to path[pathIndex]; -1 if none
+    private double[] offsets;     // distance travelled along the edge
+    private double[] enteredAt;   // simulated time the vehicle entered its edge
+    private double[] expectedArrivals; // simulated time it should reach the end of its path, as last estimated
+    private int[] origins;        // node the trip started from; paths lose it when rerouted
+    private double[] departedAt;  // simulated time the trip started
+    private double[] distances;   // length of the edges completed so far
+    private double[] freeFlowSeconds; // time those edges take at the desired speed or their limit
+    private byte[] states;
+    private int[] handles;        // slot -> handle
+
+    // Back buffers, fully rewritten for every live slot during a tick
+    private double[] nextXs;
+    private double[] nextYs;
+    private double[] nextSpeeds;
+    private double[] nextOffsets;
+    private int[] nextPathIndices;
+    private byte[] nextStates;
+    private int size;
+
+    private int[] slotsByHandle;  // handle -> slot, or -1 when the handle is free
+    private int[] freeHandles;    // stack of recycled handles
+    private int freeCount;
+    private int handleCount;      // handles ever issued
+
+    private long nextId;
+    private long idStep = 1;
+
+    public VehicleStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        ids = new long[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        speeds = new double[capacity];
+        paths = new int[capacity][];
+        pathIndices = new int[capacity];
+        edges = new int[capacity];
+        offsets = new double[capacity];
+        enteredAt = new double[capacity];
+        expectedArrivals = new double[capacity];
+        origins = new int[capacity];
+        departedAt = new double[capacity];
+        distances = new double[capacity];
+        freeFlowSeconds = new double[capacity];
+        states = new byte[capacity];
+        handles = new int[capacity];
+        nextXs = new double[capacity];
+        nextYs = new double[capacity];
+        nextSpeeds = new double[capacity];
+        nextOffsets = new double[capacity];
+        nextPathIndices = new int[capacity];
+        nextStates = new byte[capacity];
+        slotsByHandle = new int[capacity];
+        freeHandles = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a vehicle positioned at the first node of {@code path}, heading for the second, not yet
+     * placed on an edge (see {@link #setEdge}).
+     * @return the vehicle's handle.
+     */
+    public int add(double x, double y, double speed, int[] path) {
+        long id = nextId;
+        int handle = add(id, x, y, speed, path);
+        nextId = id + idStep;
+        return handle;
+    }
+
+    /**
+     * As {@link #add(double, double, double, int[])}, keeping an id assigned elsewhere, e.g. by a recording being
+     * replayed or by the store of another region.
+     */
+    public int add(long id, double x, double y, double speed, int[] path) {
+        if (size == ids.length) grow(size * 2);
+        int slot = size++;
+        ids[slot] = id;
+        if (idStep == 1) nextId = Math.max(nextId, id + 1); // With a step, other ids belong to other stores' sequences
+        xs[slot] = x;
+        ys[slot] = y;
+        speeds[slot] = speed;
+        paths[slot] = path;
+        pathIndices[slot] = 1;
+        edges[slot] = -1;
+        offsets[slot] = 0;
+        enteredAt[slot] = 0;
+        expectedArrivals[slot] = 0;
+        origins[slot] = path.length > 0 ? path[0] : -1; // Views and replays keep no paths
+        departedAt[slot] = 0;
+        distances[slot] = 0;
+        freeFlowSeconds[slot] = 0;
+        states[slot] = STATE_MOVING;
+
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            if (handleCount == slotsByHandle.length) {
+                slotsByHandle = Arrays.copyOf(slotsByHandle, handleCount * 2);
+                freeHandles = Arrays.copyOf(freeHandles, handleCount * 2);
+            }
+            handle = handleCount++;
+        }
+        handles[slot] = handle;
+        slotsByHandle[handle] = slot;
+        return handle;
+    }
+
+    /** Issues the ids {@code first, first + step, ...} to vehicles added from now on, e.g. so several stores never share one. */
+    public void setIdSequence(long first, long step) {
+        nextId = first;
+        idStep = step;
+    }
+
+    /**
+     * Removes the vehicle in {@code slot} by moving the last vehicle into it. Callers iterating
+     * over slots must revisit {@code slot} afterwards.
+     */
+    public void removeAt(int slot) {
+        int last = --size;
+        int handle = handles[slot];
+        slotsByHandle[handle] = -1;
+        freeHandles[freeCount++] = handle;
+
+        if (slot != last) {
+            ids[slot] = ids[last];
+            xs[slot] = xs[last];
+            ys[slot] = ys[last];
+            speeds[slot] = speeds[last];
+            paths[slot] = paths[last];
+            pathIndices[slot] = pathIndices[last];
+            edges[slot] = edges[last];
+            offsets[slot] = offsets[last];
+            enteredAt[slot] = enteredAt[last];
+            expectedArrivals[slot] = expectedArrivals[last];
+            origins[slot] = origins[last];
+            departedAt[slot] = departedAt[last];
+            distances[slot] = distances[last];
+            freeFlowSeconds[slot] = freeFlowSeconds[last];
+            states[slot] = states[last];
+            handles[slot] = handles[last];
+            slotsByHandle[handles[slot]] = slot;
+        }
+        paths[last] = null; // Don't keep the path alive through a dead slot
+    }
+
+    public void clear() {
+        while (size > 0) removeAt(size - 1);
+    }
+
+    /** @return the current slot of the vehicle, or -1 if it has been removed. */
+    public int slotOf(int handle) {
+        return handle >= 0 && handle < handleCount ? slotsByHandle[handle] : -1;
+    }
+
+    public int handle(int slot) { return handles[slot]; }
+    public long id(int slot) { return ids[slot]; }
+    public double x(int slot) { return xs[slot]; }
+    public double y(int slot) { return ys[slot]; }
+    public double speed(int slot) { return speeds[slot]; }
+    public int[] path(int slot) { return paths[slot]; }
+    public int pathIndex(int slot) { return pathIndices[slot]; }
+    public int edge(int slot) { return edges[slot]; }
+    public double offset(int slot) { return offsets[slot]; }
+    public byte state(int slot) { return states[slot]; }
+    public double enteredAt(int slot) { return enteredAt[slot]; }
+    public double expectedArrival(int slot) { return expectedArrivals[slot]; }
+    public int origin(int slot) { return origins[slot]; }
+    public double departedAt(int slot) { return departedAt[slot]; }
+    public double distanceDriven(int slot) { return distances[slot]; }
+    public double freeFlowSeconds(int slot) { return freeFlowSeconds[slot]; }
+
+    public void setPosition(int slot, double x, double y) {
+        xs[slot] = x;
+        ys[slot] = y;
+    }
+
+    public void setSpeed(int slot, double speed) { speeds[slot] = speed; }
+    public void setPathIndex(int slot, int pathIndex) { pathIndices[slot] = pathIndex; }
+
+    /** Places the vehicle {@code offset} along {@code edge}; does not move its world position. */
+    public void setEdge(int slot, int edge, double offset) {
+        edges[slot] = edge;
+        offsets[slot] = offset;
+    }
+    public void setState(int slot, byte state) { states[slot] = state; }
+    public void setEnteredAt(int slot, double time) { enteredAt[slot] = time; }
+    public void setExpectedArrival(int slot, double time) { expectedArrivals[slot] = time; }
+
+    /** Sets where the trip began and what it has driven so far, e.g. for a vehicle handed over by another region. */
+    public void setTrip(int slot, int origin, double departedAt, double distance, double freeFlowSeconds) {
+        origins[slot] = origin;
+        this.departedAt[slot] = departedAt;
+        distances[slot] = distance;
+        this.freeFlowSeconds[slot] = freeFlowSeconds;
+    }
+
+    /** Adds a completed edge to the trip's distance and free-flow time. */
+    public void addDriven(int slot, double distance, double freeFlowSeconds) {
+        distances[slot] += distance;
+        this.freeFlowSeconds[slot] += freeFlowSeconds;
+    }
+
+    /** Replaces the vehicle's path, e.g. after rerouting; {@code pathIndex} must still point at the end of its current edge. */
+    public void setPath(int slot, int[] path, int pathIndex) {
+        paths[slot] = path;
+        pathIndices[slot] = pathIndex;
+    }
+
+    /** The node the vehicle is heading to, or -1 once it has passed the end of its path. */
+    public int targetNode(int slot) {
+        int index = pathIndices[slot];
+        int[] path = paths[slot];
+        return index < path.length ? path[index] : -1;
+    }
+
+    public void advanceToNextTarget(int slot) {
+        pathIndices[slot]++;
+    }
+
+    /** Writes the slot's state for the next tick into the back buffers. Safe to call for distinct slots concurrently. */
+    public void setNext(int slot, double x, double y, double speed, double offset, int pathIndex, byte state) {
+        nextXs[slot] = x;
+        nextYs[slot] = y;
+        nextSpeeds[slot] = speed;
+        nextOffsets[slot] = offset;
+        nextPathIndices[slot] = pathIndex;
+        nextStates[slot] = state;
+    }
+
+    /** Publishes the values written by {@link #setNext} for every live slot. */
+    public void swapBuffers() {
+        double[] swapD = xs; xs = nextXs; nextXs = swapD;
+        swapD = ys; ys = nextYs; nextYs = swapD;
+        swapD = speeds; speeds = nextSpeeds; nextSpeeds = swapD;
+        swapD = offsets; offsets = nextOffsets; nextOffsets = swapD;
+        int[] swapI = pathIndices; pathIndices = nextPathIndices; nextPathIndices = swapI;
+        byte[] swapB = states; states = nextStates; nextStates = swapB;
+    }
+
+    /**
+     * Copies the live slots into an immutable snapshot; the copies are bulk array copies, paths are shared.
+     * Allocates about 40 bytes per vehicle for the six columns, every tick.
+     */
+    SimulationSnapshot snapshot(long sequence, long[] lightIntersectionIds, byte[] lightStates) {
+        return new SimulationSnapshot(sequence, size, Arrays.copyOf(ids, size), Arrays.copyOf(xs, size),
+                Arrays.copyOf(ys, size), Arrays.copyOf(speeds, size), Arrays.copyOf(pathIndices, size),
+                Arrays.copyOf(paths, size), lightIntersectionIds, lightStates);
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        speeds = Arrays.copyOf(speeds, capacity);
+        paths = Arrays.copyOf(paths, capacity);
+        pathIndices = Arrays.copyOf(pathIndices, capacity);
+        edges = Arrays.copyOf(edges, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        enteredAt = Arrays.copyOf(enteredAt, capacity);
+        expectedArrivals = Arrays.copyOf(expectedArrivals, capacity);
+        origins = Arrays.copyOf(origins, capacity);
+        departedAt = Arrays.copyOf(departedAt, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+        freeFlowSeconds = Arrays.copyOf(freeFlowSeconds, capacity);
+        states = Arrays.copyOf(states, capacity);
+        handles = Arrays.copyOf(handles, capacity);
+        nextXs = Arrays.copyOf(nextXs, capacity);
+        nextYs = Arrays.copyOf(nextYs, capacity);
+        nextSpeeds = Arrays.copyOf(nextSpeeds, capacity);
+        nextOffsets = Arrays.copyOf(nextOffsets, capacity);
+        nextPathIndices = Arrays.copyOf(nextPathIndices, capacity);
+        nextStates = Arrays.copyOf(nextStates, capacity);
+    }
+}
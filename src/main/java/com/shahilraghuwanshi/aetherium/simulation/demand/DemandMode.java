@@ -0,0 +1,9 @@
+package com.shahilraghuwanshi.aetherium.simulation.demand;
+
+/** Where vehicles come from. */
+public enum DemandMode {
+    /** A car between two random intersections on about 5% of ticks, routed on the simulation thread. */
+    RANDOM,
+    /** Time-of-day origin-destination matrices, routed in batches on a worker pool ahead of departure. */
+    OD_MATRIX
+}
@@ -0,0 +1,177 @@
+package com.shahilraghuwanshi.aetherium.simulation.demand;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Trip demand as origin-destination matrices that change with the time of day.
+ * <p>
+ * The map is divided into zones; trips start and end at a few access nodes per zone, as in classic
+ * four-step transport models, so trips from one zone share origins and can be routed together. The day is
+ * divided into periods, each with a matrix of trips per hour from every zone to every zone. Within a
+ * window, the departures of each zone pair follow a Poisson process at the rate of the period.
+ * <p>
+ * Immutable and thread-safe.
+ */
+public final class DemandModel {
+
+    public static final double SECONDS_PER_DAY = 86_400;
+
+    private final int[][] accessNodes;    // Zone -> nodes where its trips start and end
+    private final double[] periodStarts;  // Seconds into the day, ascending, the first is 0
+    private final double[][] tripsPerHour; // Period -> origin zone * zones + destination zone
+
+    public DemandModel(int[][] accessNodes, double[] periodStarts, double[][] tripsPerHour) {
+        if (periodStarts.length == 0 || periodStarts[0] != 0) throw new IllegalArgumentException("The first period must start at 0");
+        if (periodStarts.length != tripsPerHour.length) throw new IllegalArgumentException("One matrix per period");
+        int cells = accessNodes.length * accessNodes.length;
+        for (int p = 0; p < periodStarts.length; p++) {
+            if (tripsPerHour[p].length != cells) throw new IllegalArgumentException("Period " + p + ": expected " + cells + " matrix cells");
+            if (p > 0 && periodStarts[p] <= periodStarts[p - 1]) throw new IllegalArgumentException("Periods must be in ascending order");
+        }
+        this.accessNodes = accessNodes;
+        this.periodStarts = periodStarts;
+        this.tripsPerHour = tripsPerHour;
+    }
+
+    /**
+     * Divides the map's bounding box into {@code columns} x {@code rows} zones, numbered row by row from
+     * the top left, and picks up to {@code accessNodesPerZone} random nodes of each as its access nodes.
+     */
+    public static int[][] gridZones(RoadGraph graph, int columns, int rows, int accessNodesPerZone, SplittableRandom random) {
+        // Bucket the nodes by zone, CSR style
+        int zones = columns * rows;
+        int[] zoneOf = zoneOf(graph, columns, rows);
+        int[] offsets = new int[zones + 1];
+        for (int node = 0; node < graph.nodeCount(); node++) offsets[zoneOf[node] + 1]++;
+        for (int z = 0; z < zones; z++) offsets[z + 1] += offsets[z];
+        int[] members = new int[graph.nodeCount()];
+        int[] fill = offsets.clone();
+        for (int node = 0; node < graph.nodeCount(); node++) members[fill[zoneOf[node]]++] = node;
+
+        int[][] accessNodes = new int[zones][];
+        for (int z = 0; z < zones; z++) {
+            int from = offsets[z];
+            int count = offsets[z + 1] - from;
+            int picked = Math.min(count, accessNodesPerZone);
+            // Partial Fisher-Yates shuffle of the zone's members
+            for (int i = 0; i < picked; i++) {
+                int j = i + random.nextInt(count - i);
+                int swap = members[from + i];
+                members[from + i] = members[from + j];
+                members[from + j] = swap;
+            }
+            accessNodes[z] = Arrays.copyOfRange(members, from, from + picked);
+        }
+        return accessNodes;
+    }
+
+    /** The zone of every node, on the grid of {@link #gridZones}. */
+    public static int[] zoneOf(RoadGraph graph, int columns, int rows) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            minX = Math.min(minX, graph.x(node));
+            minY = Math.min(minY, graph.y(node));
+            maxX = Math.max(maxX, graph.x(node));
+            maxY = Math.max(maxY, graph.y(node));
+        }
+        double width = Math.max(maxX - minX, 1e-9);
+        double height = Math.max(maxY - minY, 1e-9);
+        int[] zoneOf = new int[graph.nodeCount()];
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int x = Math.min(columns - 1, (int) ((graph.x(node) - minX) / width * columns));
+            int y = Math.min(rows - 1, (int) ((graph.y(node) - minY) / height * rows));
+            zoneOf[node] = y * columns + x;
+        }
+        return zoneOf;
+    }
+
+    /**
+     * Spreads {@code tripsPerHour} evenly over all pairs of non-empty zones, scaled hour by hour by
+     * {@code hourlyProfile} (one multiplier per hour of the day, 1.0 = average).
+     */
+    public static DemandModel uniform(int[][] accessNodes, double tripsPerHour, List<Double> hourlyProfile) {
+        int zones = accessNodes.length;
+        int usable = 0;
+        for (int[] nodes : accessNodes) if (nodes.length > 0) usable++;
+        int hours = Math.max(1, hourlyProfile.size());
+        double[] periodStarts = new double[hours];
+        double[][] matrices = new double[hours][zones * zones];
+        for (int h = 0; h < hours; h++) {
+            periodStarts[h] = h * SECONDS_PER_DAY / hours;
+            double perPair = usable == 0 ? 0 : tripsPerHour * (hourlyProfile.isEmpty() ? 1 : hourlyProfile.get(h)) / ((double) usable * usable);
+            for (int o = 0; o < zones; o++) {
+                for (int d = 0; d < zones; d++) {
+                    if (accessNodes[o].length > 0 && accessNodes[d].length > 0) matrices[h][o * zones + d] = perPair;
+                }
+            }
+        }
+        return new DemandModel(accessNodes, periodStarts, matrices);
+    }
+
+    public int zoneCount() {
+        return accessNodes.length;
+    }
+
+    /** Total trips per hour over all zone pairs at the given second of the day. */
+    public double tripsPerHour(double secondOfDay) {
+        double total = 0;
+        for (double rate : tripsPerHour[period(secondOfDay)]) total += rate;
+        return total;
+    }
+
+    private int period(double secondOfDay) {
+        double second = secondOfDay % SECONDS_PER_DAY;
+        if (second < 0) second += SECONDS_PER_DAY;
+        int period = 0;
+        while (period + 1 < periodStarts.length && periodStarts[period + 1] <= second) period++;
+        return period;
+    }
+
+    /**
+     * Draws the departures in the simulated time window {@code [from, to)}. Rates are those of the period
+     * containing the middle of the window; {@code startSecondOfDay} is the time of day at simulated time 0.
+     * Trips whose origin and destination happen to be the same node are dropped.
+     */
+    public Departures departures(double from, double to, double startSecondOfDay, SplittableRandom random) {
+        double[] rates = tripsPerHour[period(startSecondOfDay + (from + to) / 2)];
+        double hours = (to - from) / 3600;
+        int zones = accessNodes.length;
+        Departures departures = new Departures(1024);
+        for (int o = 0; o < zones; o++) {
+            int[] origins = accessNodes[o];
+            if (origins.length == 0) continue;
+            for (int d = 0; d < zones; d++) {
+                int[] destinations = accessNodes[d];
+                double mean = rates[o * zones + d] * hours;
+                if (destinations.length == 0 || mean <= 0) continue;
+                for (int n = poisson(mean, random); n > 0; n--) {
+                    int origin = origins[random.nextInt(origins.length)];
+                    int destination = destinations[random.nextInt(destinations.length)];
+                    if (origin != destination) departures.add(from + random.nextDouble() * (to - from), origin, destination);
+                }
+            }
+        }
+        return departures;
+    }
+
+    static int poisson(double mean, SplittableRandom random) {
+        if (mean < 30) {
+            // Knuth: count uniform draws until their product falls below e^-mean
+            double limit = Math.exp(-mean);
+            double product = random.nextDouble();
+            int count = 0;
+            while (product > limit) {
+                product *= random.nextDouble();
+                count++;
+            }
+            return count;
+        }
+        // Normal approximation; exact enough at this size and O(1)
+        return Math.max(0, (int) Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+    }
+}
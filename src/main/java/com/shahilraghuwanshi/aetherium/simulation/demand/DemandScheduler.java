@@ -0,0 +1,116 @@
+package com.shahilraghuwanshi.aetherium.simulation.demand;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.TripSource;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Releases the trips of a {@link DemandModel} into the simulation.
+ * <p>
+ * Simulated time is cut into windows of {@code batchSeconds}. Each window's departures are generated and
+ * routed by the {@link RouteAssigner} {@code lookaheadSeconds} before the window starts, so the simulation
+ * thread only moves finished trips into the engine. At most {@code maxReleasesPerTick} vehicles enter per
+ * tick, blocked and unroutable trips included; a surge is spread over the following ticks instead of stretching one.
+ * An engine driving one region of a partitioned city skips the trips starting in other regions, which their
+ * own engines release from the same, identically seeded demand.
+ * <p>
+ * Every window draws from its own generator, split off in window order, and its trips are released in
+ * departure order. Runs with the same seed therefore see the same vehicles in the same order. If a
+ * window is still being routed when it starts, the tick waits for it rather than skip its trips, and the
+ * wait is counted as a stall.
+ * <p>
+ * Not thread-safe: {@link #release} runs on the simulation thread; the getters may be read from anywhere.
+ */
+public final class DemandScheduler implements TripSource {
+
+    private record Window(double start, CompletableFuture<List<Trip>> trips) {
+    }
+
+    private final DemandModel model;
+    private final RouteAssigner assigner;
+    private final SplittableRandom random;
+    private final double startSecondOfDay;
+    private final double batchSeconds;
+    private final double lookaheadSeconds;
+    private final int maxReleasesPerTick;
+
+    private final ArrayDeque<Window> windows = new ArrayDeque<>(); // Generated or being routed, in time order
+    private final ArrayDeque<Trip> waiting = new ArrayDeque<>();  // Routed, in departure order
+    private final ArrayDeque<Trip> blocked = new ArrayDeque<>();  // Scratch: entries blocked this tick
+    private double generatedUntil;
+
+    private volatile int waitingTrips;
+    private volatile long releasedTrips;
+    private volatile long unroutableTrips;
+    private volatile long stalls;
+
+    public DemandScheduler(DemandModel model, RouteAssigner assigner, SplittableRandom random, double startSecondOfDay,
+                           double batchSeconds, double lookaheadSeconds, int maxReleasesPerTick) {
+        if (batchSeconds <= 0) throw new IllegalArgumentException("batchSeconds must be positive: " + batchSeconds);
+        this.model = model;
+        this.assigner = assigner;
+        this.random = random;
+        this.startSecondOfDay = startSecondOfDay;
+        this.batchSeconds = batchSeconds;
+        this.lookaheadSeconds = Math.max(0, lookaheadSeconds);
+        this.maxReleasesPerTick = Math.max(1, maxReleasesPerTick);
+    }
+
+    /** Routed trips whose departure time has not come, or that could not enter yet. */
+    public int getWaitingTrips() {
+        return waitingTrips;
+    }
+
+    public long getReleasedTrips() {
+        return releasedTrips;
+    }
+
+    /** Trips dropped because their destination cannot be reached from their origin. */
+    public long getUnroutableTrips() {
+        return unroutableTrips;
+    }
+
+    /** Ticks that had to wait for a window's routes. */
+    public long getStalls() {
+        return stalls;
+    }
+
+    @Override
+    public void release(SimulationEngine engine, double time) {
+        while (generatedUntil <= time + lookaheadSeconds) {
+            double from = generatedUntil;
+            double to = from + batchSeconds;
+            SplittableRandom windowRandom = random.split();
+            windows.addLast(new Window(from, assigner.assign(() -> model.departures(from, to, startSecondOfDay, windowRandom))));
+            generatedUntil = to;
+        }
+        while (!windows.isEmpty() && windows.peekFirst().start() <= time) {
+            Window window = windows.pollFirst();
+            if (!window.trips().isDone()) stalls++;
+            waiting.addAll(window.trips().join()); // Windows don't overlap, so this keeps departure order
+        }
+
+        int released = 0;
+        for (int attempts = 0; attempts < maxReleasesPerTick && engine.hasRoomForVehicles()
+                && !waiting.isEmpty() && waiting.peekFirst().departureTime() <= time; ) {
+            Trip trip = waiting.pollFirst();
+            if (trip.path().length >= 2 && !engine.ownsStart(trip.path())) continue; // Another region releases it
+            attempts++;
+            if (trip.path().length < 2) {
+                unroutableTrips++;
+            } else if (engine.spawnVehicle(trip.path())) {
+                released++;
+            } else {
+                blocked.addLast(trip); // A queue reaches back to the start of its first road
+            }
+        }
+        // Blocked trips go first next tick, still in departure order
+        while (!blocked.isEmpty()) waiting.addFirst(blocked.pollLast());
+        releasedTrips += released;
+        waitingTrips = waiting.size();
+    }
+}
@@ -0,0 +1,46 @@
+package com.shahilraghuwanshi.aetherium.simulation.demand;
+
+import java.util.Arrays;
+
+/** Departures generated for one window, in parallel arrays: time, origin node, destination node. */
+public final class Departures {
+
+    private double[] times;
+    private int[] origins;
+    private int[] destinations;
+    private int size;
+
+    public Departures(int initialCapacity) {
+        times = new double[Math.max(1, initialCapacity)];
+        origins = new int[times.length];
+        destinations = new int[times.length];
+    }
+
+    public void add(double time, int origin, int destination) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            origins = Arrays.copyOf(origins, size * 2);
+            destinations = Arrays.copyOf(destinations, size * 2);
+        }
+        times[size] = time;
+        origins[size] = origin;
+        destinations[size] = destination;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double time(int i) {
+        return times[i];
+    }
+
+    public int origin(int i) {
+        return origins[i];
+    }
+
+    public int destination(int i) {
+        return destinations[i];
+    }
+}
@@ -0,0 +1,69 @@
+package com.shahilraghuwanshi.aetherium.simulation.demand;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.TreeMap;
+
+/**
+ * Reads time-of-day OD matrices from CSV, one cell per line: {@code startHour,originZone,destinationZone,tripsPerHour}.
+ * A period runs from its start hour to the next start hour in the file; the last one wraps past midnight
+ * to the first. Zones are numbered as in {@link DemandModel#gridZones}; pairs missing from a
+ * period have no trips. Blank lines, lines starting with {@code #} and a header line are skipped.
+ */
+public final class OdMatrixReader {
+
+    private static final int COLUMNS = 4;
+
+    private OdMatrixReader() {
+    }
+
+    public static DemandModel read(BufferedReader in, int[][] accessNodes) throws IOException {
+        int zones = accessNodes.length;
+        TreeMap<Double, double[]> periods = new TreeMap<>(); // Start hour -> matrix
+        long lineNumber = 0;
+        boolean first = true;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            if (first && !Character.isDigit(trimmed.charAt(0))) {
+                first = false; // Header
+                continue;
+            }
+            first = false;
+            String[] fields = trimmed.split(",");
+            if (fields.length != COLUMNS) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected " + COLUMNS + " columns: " + line);
+            }
+            double startHour;
+            int origin;
+            int destination;
+            double rate;
+            try {
+                startHour = Double.parseDouble(fields[0].strip());
+                origin = Integer.parseInt(fields[1].strip());
+                destination = Integer.parseInt(fields[2].strip());
+                rate = Double.parseDouble(fields[3].strip());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": not a number: " + line);
+            }
+            if (startHour < 0 || startHour >= 24) throw new IllegalArgumentException("Line " + lineNumber + ": hour out of range: " + line);
+            if (origin < 0 || origin >= zones || destination < 0 || destination >= zones) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": zone out of range 0.." + (zones - 1) + ": " + line);
+            }
+            periods.computeIfAbsent(startHour, hour -> new double[zones * zones])[origin * zones + destination] += rate;
+        }
+        if (periods.isEmpty()) throw new IllegalArgumentException("No OD matrix entries");
+
+        // The first period starts at midnight, carrying over the day's last period
+        if (periods.firstKey() != 0) periods.put(0.0, periods.lastEntry().getValue());
+        double[] periodStarts = new double[periods.size()];
+        double[][] matrices = new double[periods.size()][];
+        int p = 0;
+        for (var period : periods.entrySet()) {
+            periodStarts[p] = period.getKey() * 3600;
+            matrices[p++] = period.getValue();
+        }
+        return new DemandModel(accessNodes, periodStarts, matrices);
+    }
+}
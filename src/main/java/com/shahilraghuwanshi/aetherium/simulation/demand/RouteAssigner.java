@@ -0,0 +1,126 @@
+package com.shahilraghuwanshi.aetherium.simulation.demand;
+
+import com.shahilraghuwanshi.aetherium.simulation.routing.OneToManyRouter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Generates and routes batches of departures on its own thread pool, off the simulation thread.
+ * <p>
+ * The departures of a batch are grouped by origin node and each group is routed with one
+ * {@link OneToManyRouter} search; groups are spread over the pool a few dozen at a time. The result is
+ * the batch's trips in departure order, ties kept in generation order, so a batch generated from the
+ * same random state always yields the same list whatever the thread count.
+ */
+public final class RouteAssigner implements AutoCloseable {
+
+    private static final int SEARCHES_PER_TASK = 32;
+    private static final Comparator<Trip> BY_DEPARTURE = Comparator.comparingDouble(Trip::departureTime);
+
+    private volatile OneToManyRouter router; // Replaced when the road network is edited
+    private final ExecutorService pool;
+    private final boolean ownsPool;
+    private final AtomicInteger pendingTrips = new AtomicInteger();
+
+    public RouteAssigner(OneToManyRouter router, int threads) {
+        this.router = router;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "route-assigner-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ownsPool = true;
+    }
+
+    /** Routes on {@code pool}, shared with other assigners; {@link #close} leaves it running. */
+    public RouteAssigner(OneToManyRouter router, ExecutorService pool) {
+        this.router = router;
+        this.pool = pool;
+        this.ownsPool = false;
+    }
+
+    /**
+     * Routes batches generated from now on over {@code router}, e.g. one for an edited road network. Batches
+     * already being routed finish on the previous one; the engine reroutes what they hand back if it takes a
+     * road closed meanwhile.
+     */
+    public void setRouter(OneToManyRouter router) {
+        this.router = router;
+    }
+
+    /** Departures being routed and not yet handed back. */
+    public int getPendingTrips() {
+        return pendingTrips.get();
+    }
+
+    /** Runs {@code generate} on the pool, then routes what it returns. */
+    public CompletableFuture<List<Trip>> assign(Supplier<Departures> generate) {
+        return CompletableFuture.supplyAsync(generate, pool).thenCompose(this::route);
+    }
+
+    private CompletableFuture<List<Trip>> route(Departures departures) {
+        int count = departures.size();
+        pendingTrips.addAndGet(count);
+        // Departure indices ordered by origin, packed as origin << 32 | index so a primitive sort does it
+        long[] byOrigin = new long[count];
+        for (int i = 0; i < count; i++) byOrigin[i] = (long) departures.origin(i) << 32 | i;
+        Arrays.sort(byOrigin);
+
+        Trip[] trips = new Trip[count];
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        int groupStart = 0;
+        while (groupStart < count) {
+            // Take the next SEARCHES_PER_TASK origin groups as one task
+            int taskStart = groupStart;
+            for (int groups = 0; groups < SEARCHES_PER_TASK && groupStart < count; groups++) {
+                groupStart = groupEnd(byOrigin, groupStart);
+            }
+            int taskEnd = groupStart;
+            tasks.add(CompletableFuture.runAsync(() -> routeGroups(departures, byOrigin, taskStart, taskEnd, trips), pool));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]))
+                .whenComplete((done, failure) -> pendingTrips.addAndGet(-count))
+                .thenApply(done -> {
+                    List<Trip> ordered = Arrays.asList(trips);
+                    ordered.sort(BY_DEPARTURE); // Stable, so ties stay in generation order
+                    return ordered;
+                });
+    }
+
+    private static int groupEnd(long[] byOrigin, int start) {
+        int origin = (int) (byOrigin[start] >>> 32);
+        int end = start + 1;
+        while (end < byOrigin.length && (int) (byOrigin[end] >>> 32) == origin) end++;
+        return end;
+    }
+
+    // Each task writes its own indices of trips; completing the future publishes them
+    private void routeGroups(Departures departures, long[] byOrigin, int from, int to, Trip[] trips) {
+        for (int start = from; start < to; ) {
+            int end = groupEnd(byOrigin, start);
+            int origin = (int) (byOrigin[start] >>> 32);
+            int[] destinations = new int[end - start];
+            for (int i = start; i < end; i++) destinations[i - start] = departures.destination((int) byOrigin[i]);
+            int[][] paths = router.routes(origin, destinations);
+            for (int i = start; i < end; i++) {
+                int index = (int) byOrigin[i];
+                trips[index] = new Trip(departures.time(index), origin, departures.destination(index), paths[i - start]);
+            }
+            start = end;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsPool) pool.shutdownNow();
+    }
+}
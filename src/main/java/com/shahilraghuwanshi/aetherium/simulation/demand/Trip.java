@@ -0,0 +1,8 @@
+package com.shahilraghuwanshi.aetherium.simulation.demand;
+
+/**
+ * A routed departure. {@code path} is the node sequence from origin to destination, empty if the
+ * destination cannot be reached.
+ */
+public record Trip(double departureTime, int origin, int destination, int[] path) {
+}
@@ -0,0 +1,353 @@
+package com.shahilraghuwanshi.aetherium.simulation.graph;
+
+import com.shahilraghuwanshi.aetherium.simulation.io.ArrayFileWriter;
+import com.shahilraghuwanshi.aetherium.simulation.io.MappedArrayReader;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Immutable, array-backed road network in compressed sparse row (CSR) form.
+ * <p>
+ * Nodes are addressed by a dense {@code int} index in {@code [0, nodeCount())}, assigned in
+ * ascending order of the database intersection id. The outgoing edges of node {@code n} occupy
+ * the index range {@code [firstEdge(n), endEdge(n))}; every edge carries its head node, its
+ * precomputed Euclidean length and the id of the road it was built from. Roads are two-way, so
+ * each road contributes one edge in each direction.
+ * <p>
+ * Roads may be closed and may carry a speed limit. A graph is never modified: {@link #withRoadClosed},
+ * {@link #withSpeedLimit} and {@link #withRoad} return a new version, sharing every array the edit leaves
+ * unchanged, so whoever holds the previous version keeps a consistent network. Intersections are never
+ * added or removed by an edit, so node indices are the same in every version; edge indices only change when
+ * a road is added, and {@link #edgeMapping} translates them.
+ */
+public final class RoadGraph {
+
+    private final long[] nodeIds;     // dense index -> intersections.id (sorted ascending)
+    private final double[] xs;
+    private final double[] ys;
+    private final boolean[] trafficLights;
+
+    private final int[] offsets;      // node -> first outgoing edge, length nodeCount + 1
+    private final int[] sources;      // edge -> tail node
+    private final int[] targets;      // edge -> head node
+    private final double[] lengths;   // edge -> Euclidean length
+    private final long[] roadIds;     // edge -> roads.id
+    private final boolean[] closed;   // edge -> no new vehicle may enter
+    private final double[] speedLimits; // edge -> speed limit, +inf = none
+    private final int closedCount;
+
+    private long fingerprint;         // lazily computed content hash, 0 = not yet computed
+
+    RoadGraph(long[] nodeIds, double[] xs, double[] ys, boolean[] trafficLights,
+              int[] offsets, int[] sources, int[] targets, double[] lengths, long[] roadIds,
+              boolean[] closed, double[] speedLimits) {
+        this.nodeIds = nodeIds;
+        this.xs = xs;
+        this.ys = ys;
+        this.trafficLights = trafficLights;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.targets = targets;
+        this.lengths = lengths;
+        this.roadIds = roadIds;
+        this.closed = closed;
+        this.speedLimits = speedLimits;
+        int count = 0;
+        for (boolean edgeClosed : closed) {
+            if (edgeClosed) count++;
+        }
+        this.closedCount = count;
+    }
+
+    public static RoadGraphBuilder builder() {
+        return new RoadGraphBuilder();
+    }
+
+    /** Writes the arrays as they are, so {@link #readFrom} needs no rebuilding. */
+    public void writeTo(ArrayFileWriter out) throws IOException {
+        out.writeLong(fingerprint());
+        out.writeLongs(nodeIds);
+        out.writeDoubles(xs);
+        out.writeDoubles(ys);
+        out.writeBooleans(trafficLights);
+        out.writeInts(offsets);
+        out.writeInts(sources);
+        out.writeInts(targets);
+        out.writeDoubles(lengths);
+        out.writeLongs(roadIds);
+        out.writeBooleans(closed);
+        out.writeDoubles(speedLimits);
+    }
+
+    public static RoadGraph readFrom(MappedArrayReader in) throws IOException {
+        long fingerprint = in.readLong();
+        RoadGraph graph = new RoadGraph(in.readLongs(), in.readDoubles(), in.readDoubles(), in.readBooleans(),
+                in.readInts(), in.readInts(), in.readInts(), in.readDoubles(), in.readLongs(),
+                in.readBooleans(), in.readDoubles());
+        int n = graph.nodeIds.length;
+        int m = graph.targets.length;
+        if (graph.xs.length != n || graph.ys.length != n || graph.trafficLights.length != n
+                || graph.offsets.length != n + 1 || graph.offsets[n] != m || graph.sources.length != m
+                || graph.lengths.length != m || graph.roadIds.length != m
+                || graph.closed.length != m || graph.speedLimits.length != m) {
+            throw new IOException("Inconsistent road graph arrays");
+        }
+        graph.fingerprint = fingerprint;
+        return graph;
+    }
+
+    public int nodeCount() {
+        return nodeIds.length;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Maps a database intersection id to its dense node index.
+     * @return the node index, or -1 if the intersection is not part of the graph.
+     */
+    public int indexOf(long intersectionId) {
+        int index = Arrays.binarySearch(nodeIds, intersectionId);
+        return index >= 0 ? index : -1;
+    }
+
+    public long nodeId(int node) {
+        return nodeIds[node];
+    }
+
+    public double x(int node) {
+        return xs[node];
+    }
+
+    public double y(int node) {
+        return ys[node];
+    }
+
+    public boolean hasTrafficLight(int node) {
+        return trafficLights[node];
+    }
+
+    public int firstEdge(int node) {
+        return offsets[node];
+    }
+
+    public int endEdge(int node) {
+        return offsets[node + 1];
+    }
+
+    public int degree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    public int source(int edge) {
+        return sources[edge];
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public double length(int edge) {
+        return lengths[edge];
+    }
+
+    public long roadId(int edge) {
+        return roadIds[edge];
+    }
+
+    /** Whether the road of this edge is closed to vehicles that are not on it yet. */
+    public boolean isClosed(int edge) {
+        return closed[edge];
+    }
+
+    /** Directed edges on closed roads. */
+    public int closedEdgeCount() {
+        return closedCount;
+    }
+
+    /** Speed limit on the edge, in the car-following model's units, or +inf if it has none. */
+    public double speedLimit(int edge) {
+        return speedLimits[edge];
+    }
+
+    /**
+     * Finds the edge leading directly from {@code from} to {@code to}. Where parallel roads join the two
+     * nodes, an open one is preferred.
+     * @return the edge index, or -1 if the two nodes are not adjacent.
+     */
+    public int findEdge(int from, int to) {
+        int found = -1;
+        for (int e = offsets[from], end = offsets[from + 1]; e < end; e++) {
+            if (targets[e] == to) {
+                if (!closed[e]) return e;
+                if (found < 0) found = e;
+            }
+        }
+        return found;
+    }
+
+    /** Whether the path from node {@code fromIndex} to its end takes a closed road. */
+    public boolean usesClosedEdge(int[] path, int fromIndex) {
+        if (closedCount == 0) return false;
+        for (int i = Math.max(fromIndex, 0); i < path.length - 1; i++) {
+            int edge = findEdge(path[i], path[i + 1]);
+            if (edge >= 0 && closed[edge]) return true;
+        }
+        return false;
+    }
+
+    /** The directed edges of a road, usually two; empty if the graph has no such road. */
+    public int[] edgesOf(long roadId) {
+        int[] edges = new int[2];
+        int count = 0;
+        for (int e = 0; e < roadIds.length; e++) {
+            if (roadIds[e] != roadId) continue;
+            if (count == edges.length) edges = Arrays.copyOf(edges, count * 2);
+            edges[count++] = e;
+        }
+        return Arrays.copyOf(edges, count);
+    }
+
+    /** A version of this graph with the road closed or reopened; this graph itself if that changes nothing. */
+    public RoadGraph withRoadClosed(long roadId, boolean close) {
+        int[] edges = requireRoad(roadId);
+        boolean[] nextClosed = null;
+        for (int edge : edges) {
+            if (closed[edge] == close) continue;
+            if (nextClosed == null) nextClosed = closed.clone();
+            nextClosed[edge] = close;
+        }
+        if (nextClosed == null) return this;
+        return new RoadGraph(nodeIds, xs, ys, trafficLights, offsets, sources, targets, lengths, roadIds,
+                nextClosed, speedLimits);
+    }
+
+    /**
+     * A version of this graph with a new speed limit on the road; this graph itself if that changes nothing.
+     * @param limit in the car-following model's units; +inf or NaN removes the limit
+     */
+    public RoadGraph withSpeedLimit(long roadId, double limit) {
+        double value = Double.isNaN(limit) ? Double.POSITIVE_INFINITY : limit;
+        if (value <= 0) throw new IllegalArgumentException("Speed limit must be positive, got " + limit);
+        int[] edges = requireRoad(roadId);
+        double[] nextLimits = null;
+        for (int edge : edges) {
+            if (speedLimits[edge] == value) continue;
+            if (nextLimits == null) nextLimits = speedLimits.clone();
+            nextLimits[edge] = value;
+        }
+        if (nextLimits == null) return this;
+        return new RoadGraph(nodeIds, xs, ys, trafficLights, offsets, sources, targets, lengths, roadIds,
+                closed, nextLimits);
+    }
+
+    /**
+     * A version of this graph with a new, open road between two of its intersections. The edge indices of the
+     * new version differ from this one's; see {@link #edgeMapping}.
+     * @param limit speed limit on the road, positive; +inf or NaN for none
+     */
+    public RoadGraph withRoad(long roadId, long startIntersectionId, long endIntersectionId, double limit) {
+        double value = Double.isNaN(limit) ? Double.POSITIVE_INFINITY : limit;
+        if (value <= 0) throw new IllegalArgumentException("Speed limit must be positive, got " + limit);
+        if (edgesOf(roadId).length > 0) throw new IllegalArgumentException("Road " + roadId + " already exists");
+        if (indexOf(startIntersectionId) < 0 || indexOf(endIntersectionId) < 0) {
+            throw new IllegalArgumentException("Road " + roadId + " references an unknown intersection");
+        }
+        return toBuilder()
+                .addRoad(roadId, startIntersectionId, endIntersectionId, false, value)
+                .build();
+    }
+
+    /** A builder holding this graph's intersections and roads, closures and speed limits included. */
+    public RoadGraphBuilder toBuilder() {
+        RoadGraphBuilder builder = new RoadGraphBuilder();
+        for (int n = 0; n < nodeIds.length; n++) {
+            builder.addIntersection(nodeIds[n], xs[n], ys[n], trafficLights[n]);
+        }
+        // Each road has one edge per direction; the first seen of the two stands for the road
+        boolean[] taken = new boolean[targets.length];
+        for (int e = 0; e < targets.length; e++) {
+            if (taken[e]) continue;
+            for (int r = offsets[targets[e]], end = offsets[targets[e] + 1]; r < end; r++) {
+                if (r != e && !taken[r] && targets[r] == sources[e] && roadIds[r] == roadIds[e]) {
+                    taken[r] = true;
+                    break;
+                }
+            }
+            builder.addRoad(roadIds[e], nodeIds[sources[e]], nodeIds[targets[e]], closed[e], speedLimits[e]);
+        }
+        return builder;
+    }
+
+    /**
+     * Where each edge of this graph is in {@code next}, a later version of it: the edge with the same
+     * endpoints and road, or -1 if {@code next} has none.
+     */
+    public int[] edgeMapping(RoadGraph next) {
+        int[] mapping = new int[targets.length];
+        if (next.targets == targets) { // Same topology, shared by the edit
+            for (int e = 0; e < mapping.length; e++) mapping[e] = e;
+            return mapping;
+        }
+        for (int e = 0; e < mapping.length; e++) {
+            mapping[e] = -1;
+            int from = next.indexOf(nodeIds[sources[e]]);
+            int to = next.indexOf(nodeIds[targets[e]]);
+            if (from < 0 || to < 0) continue;
+            for (int candidate = next.offsets[from], end = next.offsets[from + 1]; candidate < end; candidate++) {
+                if (next.targets[candidate] == to && next.roadIds[candidate] == roadIds[e]) {
+                    mapping[e] = candidate;
+                    break;
+                }
+            }
+        }
+        return mapping;
+    }
+
+    /** Straight-line distance between two nodes. */
+    public double distance(int a, int b) {
+        double dx = xs[a] - xs[b];
+        double dy = ys[a] - ys[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * A 64-bit hash over the node ids, coordinates, edge list and closures. Two graphs with the same
+     * fingerprint have the same open roads and edge lengths, so derived data such as routing
+     * preprocessing can be reused between them. Speed limits are left out: nothing derived from the
+     * graph alone depends on them.
+     */
+    public long fingerprint() {
+        long hash = fingerprint;
+        if (hash == 0) {
+            hash = 0x9E3779B97F4A7C15L;
+            for (int n = 0; n < nodeIds.length; n++) {
+                hash = mix(hash, nodeIds[n]);
+                hash = mix(hash, Double.doubleToLongBits(xs[n]));
+                hash = mix(hash, Double.doubleToLongBits(ys[n]));
+            }
+            for (int e = 0; e < targets.length; e++) {
+                hash = mix(hash, ((long) sources[e] << 32) | targets[e]);
+                hash = mix(hash, Double.doubleToLongBits(lengths[e]));
+                if (closed[e]) hash = mix(hash, ~(long) e);
+            }
+            if (hash == 0) hash = 1;
+            fingerprint = hash;
+        }
+        return hash;
+    }
+
+    private int[] requireRoad(long roadId) {
+        int[] edges = edgesOf(roadId);
+        if (edges.length == 0) throw new IllegalArgumentException("No road " + roadId);
+        return edges;
+    }
+
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,177 @@
+package com.shahilraghuwanshi.aetherium.simulation.graph;
+
+import com.shahilraghuwanshi.aetherium.model.Intersection;
+import com.shahilraghuwanshi.aetherium.model.Road;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects intersections and roads into growable primitive buffers and compiles them into a
+ * {@link RoadGraph}. Roads may be added before or after the intersections they reference;
+ * ids are resolved when {@link #build()} is called.
+ */
+public final class RoadGraphBuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(RoadGraphBuilder.class);
+
+    private long[] nodeIds = new long[16];
+    private double[] xs = new double[16];
+    private double[] ys = new double[16];
+    private boolean[] trafficLights = new boolean[16];
+    private int nodeCount;
+
+    private long[] roadIds = new long[16];
+    private long[] roadStarts = new long[16];
+    private long[] roadEnds = new long[16];
+    private boolean[] roadsClosed = new boolean[16];
+    private double[] roadSpeedLimits = new double[16];
+    private int roadCount;
+
+    RoadGraphBuilder() {
+    }
+
+    public RoadGraphBuilder addIntersection(long id, double x, double y, boolean hasTrafficLight) {
+        if (nodeCount == nodeIds.length) {
+            int capacity = nodeCount * 2;
+            nodeIds = Arrays.copyOf(nodeIds, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            trafficLights = Arrays.copyOf(trafficLights, capacity);
+        }
+        nodeIds[nodeCount] = id;
+        xs[nodeCount] = x;
+        ys[nodeCount] = y;
+        trafficLights[nodeCount] = hasTrafficLight;
+        nodeCount++;
+        return this;
+    }
+
+    public RoadGraphBuilder addRoad(long roadId, long startIntersectionId, long endIntersectionId) {
+        return addRoad(roadId, startIntersectionId, endIntersectionId, false, Double.POSITIVE_INFINITY);
+    }
+
+    /** @param speedLimit in the car-following model's units, +inf for none */
+    public RoadGraphBuilder addRoad(long roadId, long startIntersectionId, long endIntersectionId,
+                                    boolean closed, double speedLimit) {
+        if (roadCount == roadIds.length) {
+            int capacity = roadCount * 2;
+            roadIds = Arrays.copyOf(roadIds, capacity);
+            roadStarts = Arrays.copyOf(roadStarts, capacity);
+            roadEnds = Arrays.copyOf(roadEnds, capacity);
+            roadsClosed = Arrays.copyOf(roadsClosed, capacity);
+            roadSpeedLimits = Arrays.copyOf(roadSpeedLimits, capacity);
+        }
+        roadIds[roadCount] = roadId;
+        roadStarts[roadCount] = startIntersectionId;
+        roadEnds[roadCount] = endIntersectionId;
+        roadsClosed[roadCount] = closed;
+        roadSpeedLimits[roadCount] = speedLimit;
+        roadCount++;
+        return this;
+    }
+
+    public RoadGraphBuilder addIntersections(List<Intersection> intersections) {
+        for (Intersection intersection : intersections) {
+            addIntersection(intersection.getId(), intersection.getXCoordinate(),
+                    intersection.getYCoordinate(), intersection.isHasTrafficLight());
+        }
+        return this;
+    }
+
+    /** Adds every road whose two endpoints are set; dangling roads are skipped. */
+    public RoadGraphBuilder addRoads(List<Road> roads) {
+        for (Road road : roads) {
+            if (road.getStartIntersection() != null && road.getEndIntersection() != null) {
+                addRoad(road.getId(), road.getStartIntersection().getId(), road.getEndIntersection().getId(),
+                        road.isClosed(), road.getSpeedLimit() != null ? road.getSpeedLimit() : Double.POSITIVE_INFINITY);
+            }
+        }
+        return this;
+    }
+
+    public RoadGraph build() {
+        int n = nodeCount;
+
+        // Dense indices follow ascending intersection id so lookups can binary search.
+        long[] sortedIds = Arrays.copyOf(nodeIds, n);
+        Arrays.sort(sortedIds);
+        for (int i = 1; i < n; i++) {
+            if (sortedIds[i] == sortedIds[i - 1]) {
+                throw new IllegalArgumentException("Duplicate intersection id " + sortedIds[i]);
+            }
+        }
+        double[] nodeXs = new double[n];
+        double[] nodeYs = new double[n];
+        boolean[] nodeLights = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int dense = Arrays.binarySearch(sortedIds, nodeIds[i]);
+            nodeXs[dense] = xs[i];
+            nodeYs[dense] = ys[i];
+            nodeLights[dense] = trafficLights[i];
+        }
+
+        // Resolve road endpoints to dense indices, dropping roads that reference unknown intersections.
+        int[] from = new int[roadCount];
+        int[] to = new int[roadCount];
+        int[] degree = new int[n];
+        int validRoads = 0;
+        for (int r = 0; r < roadCount; r++) {
+            int a = Arrays.binarySearch(sortedIds, roadStarts[r]);
+            int b = Arrays.binarySearch(sortedIds, roadEnds[r]);
+            if (a < 0 || b < 0) {
+                log.warn("Road {} references an unknown intersection and was skipped.", roadIds[r]);
+                from[r] = -1;
+                continue;
+            }
+            from[r] = a;
+            to[r] = b;
+            degree[a]++;
+            degree[b]++;
+            validRoads++;
+        }
+
+        // Counting sort of both directions of every road into CSR order.
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + degree[i];
+        }
+        int m = validRoads * 2;
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        double[] lengths = new double[m];
+        long[] edgeRoadIds = new long[m];
+        boolean[] closed = new boolean[m];
+        double[] speedLimits = new double[m];
+        int[] cursor = Arrays.copyOf(offsets, n);
+        for (int r = 0; r < roadCount; r++) {
+            if (from[r] < 0) continue;
+            int a = from[r];
+            int b = to[r];
+            double dx = nodeXs[a] - nodeXs[b];
+            double dy = nodeYs[a] - nodeYs[b];
+            double length = Math.sqrt(dx * dx + dy * dy);
+
+            int e = cursor[a]++;
+            sources[e] = a;
+            targets[e] = b;
+            lengths[e] = length;
+            edgeRoadIds[e] = roadIds[r];
+            closed[e] = roadsClosed[r];
+            speedLimits[e] = roadSpeedLimits[r];
+
+            e = cursor[b]++;
+            sources[e] = b;
+            targets[e] = a;
+            lengths[e] = length;
+            edgeRoadIds[e] = roadIds[r];
+            closed[e] = roadsClosed[r];
+            speedLimits[e] = roadSpeedLimits[r];
+        }
+
+        return new RoadGraph(sortedIds, nodeXs, nodeYs, nodeLights, offsets, sources, targets, lengths, edgeRoadIds,
+                closed, speedLimits);
+    }
+}
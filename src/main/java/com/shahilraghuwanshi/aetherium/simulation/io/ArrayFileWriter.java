@@ -0,0 +1,135 @@
+package com.shahilraghuwanshi.aetherium.simulation.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes scalars and primitive arrays in the layout {@link MappedArrayReader} maps back: little-endian,
+ * each array as a u32 length followed by its elements starting on an 8-byte boundary. Arrays are copied
+ * into the file in bulk through a direct buffer, never element by element through a stream.
+ */
+public final class ArrayFileWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    private long position; // Bytes written, including those still in the buffer
+
+    public ArrayFileWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+        position += 4;
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+        position += 8;
+    }
+
+    public void writeDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+        position += 8;
+    }
+
+    public void writeInts(int[] values, int length) throws IOException {
+        startArray(length);
+        for (int done = 0; done < length; ) {
+            ensure(4);
+            int n = Math.min(length - done, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, done, n);
+            buffer.position(buffer.position() + n * 4);
+            done += n;
+        }
+        position += length * 4L;
+    }
+
+    public void writeInts(int[] values) throws IOException {
+        writeInts(values, values.length);
+    }
+
+    public void writeLongs(long[] values) throws IOException {
+        startArray(values.length);
+        for (int done = 0; done < values.length; ) {
+            ensure(8);
+            int n = Math.min(values.length - done, buffer.remaining() / 8);
+            buffer.asLongBuffer().put(values, done, n);
+            buffer.position(buffer.position() + n * 8);
+            done += n;
+        }
+        position += values.length * 8L;
+    }
+
+    public void writeDoubles(double[] values, int length) throws IOException {
+        startArray(length);
+        for (int done = 0; done < length; ) {
+            ensure(8);
+            int n = Math.min(length - done, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().put(values, done, n);
+            buffer.position(buffer.position() + n * 8);
+            done += n;
+        }
+        position += length * 8L;
+    }
+
+    public void writeDoubles(double[] values) throws IOException {
+        writeDoubles(values, values.length);
+    }
+
+    public void writeBytes(byte[] values, int length) throws IOException {
+        startArray(length);
+        for (int done = 0; done < length; ) {
+            ensure(1);
+            int n = Math.min(length - done, buffer.remaining());
+            buffer.put(values, done, n);
+            done += n;
+        }
+        position += length;
+    }
+
+    public void writeBooleans(boolean[] values) throws IOException {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) bytes[i] = values[i] ? (byte) 1 : 0;
+        writeBytes(bytes, bytes.length);
+    }
+
+    private void startArray(int length) throws IOException {
+        writeInt(length);
+        int padding = (int) (-position & 7);
+        ensure(padding);
+        for (int i = 0; i < padding; i++) buffer.put((byte) 0);
+        position += padding;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+        flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /** Flushes and forces the contents to disk, so a file renamed into place afterwards is complete. */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.shahilraghuwanshi.aetherium.simulation.io;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from long keys to int values, without boxing: about 12 bytes per entry at the
+ * default load, against ~80 for a {@code HashMap<Long, Integer>}. Used to track external node ids, of
+ * which a city import has millions, and the vehicles of a replayed recording. Not thread-safe.
+ */
+public final class LongIntHashMap {
+
+    private static final long EMPTY = Long.MIN_VALUE; // Reserved; never a valid key
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(long key, int missing) {
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : missing;
+    }
+
+    public boolean containsKey(long key) {
+        return keys[find(key)] == key;
+    }
+
+    public void put(long key, int value) {
+        checkKey(key);
+        int slot = find(key);
+        if (keys[slot] != key) {
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                values[slot] = value;
+                grow();
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /** Adds {@code delta} to the value of {@code key}, treating a missing key as 0; returns the new value. */
+    public int add(long key, int delta) {
+        checkKey(key);
+        int slot = find(key);
+        if (keys[slot] != key) {
+            keys[slot] = key;
+            values[slot] = delta;
+            if (++size * 2 > keys.length) grow();
+            return delta;
+        }
+        return values[slot] += delta;
+    }
+
+    /** Removes {@code key}; returns the value it had, or {@code missing} if it was absent. */
+    public int remove(long key, int missing) {
+        int slot = find(key);
+        if (keys[slot] != key) return missing;
+        int value = values[slot];
+        // Backward-shift deletion: pull later entries of the probe run into the gap, so no tombstones are needed
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return value;
+    }
+
+    /** Removes every entry, keeping the capacity. */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private int find(long key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = find(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) throw new IllegalArgumentException("Key " + key + " is reserved");
+    }
+}
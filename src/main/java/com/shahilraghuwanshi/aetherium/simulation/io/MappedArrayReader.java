@@ -0,0 +1,105 @@
+package com.shahilraghuwanshi.aetherium.simulation.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file written by {@link ArrayFileWriter}. Every array is memory-mapped and copied out with a
+ * single bulk get, which for little-endian platforms is a plain memory copy: nothing is parsed, and the
+ * page cache serves repeated startups. Mapping array by array also keeps each mapping under the 2 GB
+ * limit of a {@link MappedByteBuffer}, whatever the total file size.
+ */
+public final class MappedArrayReader implements Closeable {
+
+    private final FileChannel channel;
+    private final long size;
+    private final ByteBuffer scalar = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+
+    public MappedArrayReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+    }
+
+    public int readInt() throws IOException {
+        return readScalar(4).getInt();
+    }
+
+    public long readLong() throws IOException {
+        return readScalar(8).getLong();
+    }
+
+    public double readDouble() throws IOException {
+        return readScalar(8).getDouble();
+    }
+
+    public int[] readInts() throws IOException {
+        int length = readInt();
+        int[] values = new int[checkLength(length)];
+        map(length * 4L).asIntBuffer().get(values);
+        return values;
+    }
+
+    public long[] readLongs() throws IOException {
+        int length = readInt();
+        long[] values = new long[checkLength(length)];
+        map(length * 8L).asLongBuffer().get(values);
+        return values;
+    }
+
+    public double[] readDoubles() throws IOException {
+        int length = readInt();
+        double[] values = new double[checkLength(length)];
+        map(length * 8L).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    public byte[] readBytes() throws IOException {
+        int length = readInt();
+        byte[] values = new byte[checkLength(length)];
+        map(length).get(values);
+        return values;
+    }
+
+    public boolean[] readBooleans() throws IOException {
+        byte[] bytes = readBytes();
+        boolean[] values = new boolean[bytes.length];
+        for (int i = 0; i < bytes.length; i++) values[i] = bytes[i] != 0;
+        return values;
+    }
+
+    private ByteBuffer readScalar(int bytes) throws IOException {
+        if (position + bytes > size) throw new IOException("Truncated file");
+        scalar.clear().limit(bytes);
+        while (scalar.hasRemaining()) {
+            if (channel.read(scalar, position + scalar.position()) < 0) throw new IOException("Truncated file");
+        }
+        position += bytes;
+        return scalar.flip();
+    }
+
+    private ByteBuffer map(long bytes) throws IOException {
+        position += -position & 7; // Arrays start on an 8-byte boundary
+        if (position + bytes > size) throw new IOException("Truncated file");
+        if (bytes == 0) return ByteBuffer.allocate(0);
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+        position += bytes;
+        return mapped.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int checkLength(int length) throws IOException {
+        if (length < 0) throw new IOException("Corrupt array length " + length);
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,164 @@
+package com.shahilraghuwanshi.aetherium.simulation.partition;
+
+import com.shahilraghuwanshi.aetherium.simulation.RegionBoundary;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+import java.util.Arrays;
+
+/**
+ * A split of the road network into regions of about equal node count, each simulated by its own engine.
+ * <p>
+ * {@link #bisect} cuts the map in two across its longer side, at the node count that gives both halves their
+ * share of regions, and recurses, so regions are compact and the roads between them few. The result only
+ * depends on the graph and the region count: every process that computes it gets the same regions, which is
+ * how the coordinator and its workers agree on them without exchanging the assignment.
+ * <p>
+ * An edge belongs to the region of its source node. For every pair of regions, the partition lists the halo
+ * edges: the edges of one region that roads of the other lead into, whose rearmost vehicles the other region
+ * needs to see every tick. Immutable.
+ */
+public final class GraphPartition {
+
+    private final RoadGraph graph;
+    private final int regionCount;
+    private final int[] regions;       // Per node
+    private final int[][][] haloEdges; // [owner][viewer]: edges of owner that edges of viewer lead into
+    private final int cutEdgeCount;
+
+    GraphPartition(RoadGraph graph, int regionCount, int[] regions) {
+        this.graph = graph;
+        this.regionCount = regionCount;
+        this.regions = regions;
+
+        int[][] counts = new int[regionCount][regionCount];
+        int[][][] halo = new int[regionCount][regionCount][8];
+        int[] stamps = new int[graph.edgeCount()]; // Last viewer + 1 that listed the edge, to skip duplicates
+        int cut = 0;
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int owner = regions[node];
+            // Each cut edge into this node makes its source region a viewer of the node's outgoing edges
+            for (int viewer = 0; viewer < regionCount; viewer++) {
+                if (viewer == owner || !hasEdgeFrom(node, viewer)) continue;
+                for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++) {
+                    if (stamps[edge] == viewer + 1) continue;
+                    stamps[edge] = viewer + 1;
+                    int[] list = halo[owner][viewer];
+                    if (counts[owner][viewer] == list.length) halo[owner][viewer] = list = Arrays.copyOf(list, list.length * 2);
+                    list[counts[owner][viewer]++] = edge;
+                }
+            }
+            for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++) {
+                if (regions[graph.target(edge)] != owner) cut++;
+            }
+        }
+        for (int owner = 0; owner < regionCount; owner++) {
+            for (int viewer = 0; viewer < regionCount; viewer++) {
+                halo[owner][viewer] = Arrays.copyOf(halo[owner][viewer], counts[owner][viewer]);
+            }
+        }
+        this.haloEdges = halo;
+        this.cutEdgeCount = cut;
+    }
+
+    /** Splits {@code graph} into {@code regionCount} regions by recursive coordinate bisection. */
+    public static GraphPartition bisect(RoadGraph graph, int regionCount) {
+        if (regionCount < 1) throw new IllegalArgumentException("Need at least one region, got " + regionCount);
+        int[] nodes = new int[graph.nodeCount()];
+        for (int i = 0; i < nodes.length; i++) nodes[i] = i;
+        int[] regions = new int[graph.nodeCount()];
+        split(graph, nodes, 0, nodes.length, 0, regionCount, regions);
+        return new GraphPartition(graph, regionCount, regions);
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    public int regionCount() {
+        return regionCount;
+    }
+
+    public int regionOf(int node) {
+        return regions[node];
+    }
+
+    public int regionOfEdge(int edge) {
+        return regions[graph.source(edge)];
+    }
+
+    /** Directed edges whose ends lie in different regions. */
+    public int cutEdgeCount() {
+        return cutEdgeCount;
+    }
+
+    /** The edges of region {@code owner} that edges of region {@code viewer} lead into. Do not modify. */
+    public int[] haloEdges(int owner, int viewer) {
+        return haloEdges[owner][viewer];
+    }
+
+    /** A new boundary for an engine driving {@code region}. */
+    public RegionBoundary boundary(int region) {
+        boolean[] owned = new boolean[graph.nodeCount()];
+        for (int node = 0; node < owned.length; node++) owned[node] = regions[node] == region;
+        return new RegionBoundary(graph, region, regionCount, owned);
+    }
+
+    // Whether a road from a node of region leads into node; scans the node's incoming roads via their reverse edges
+    private boolean hasEdgeFrom(int node, int region) {
+        for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++) {
+            int neighbour = graph.target(edge);
+            if (regions[neighbour] == region && graph.findEdge(neighbour, node) >= 0) return true;
+        }
+        return false;
+    }
+
+    // Assigns regions [firstRegion, firstRegion + count) to nodes[from, to)
+    private static void split(RoadGraph graph, int[] nodes, int from, int to, int firstRegion, int count, int[] regions) {
+        if (count == 1) {
+            for (int i = from; i < to; i++) regions[nodes[i]] = firstRegion;
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            minX = Math.min(minX, graph.x(nodes[i]));
+            maxX = Math.max(maxX, graph.x(nodes[i]));
+            minY = Math.min(minY, graph.y(nodes[i]));
+            maxY = Math.max(maxY, graph.y(nodes[i]));
+        }
+        boolean byX = maxX - minX >= maxY - minY;
+        int left = count / 2;
+        int middle = from + (int) ((long) (to - from) * left / count);
+        if (middle > from && middle < to) select(graph, nodes, from, to - 1, middle, byX);
+        split(graph, nodes, from, middle, firstRegion, left, regions);
+        split(graph, nodes, middle, to, firstRegion + left, count - left, regions);
+    }
+
+    // Quickselect: reorders nodes[low..high] so that nodes before k sort before nodes[k] and nodes after it after
+    private static void select(RoadGraph graph, int[] nodes, int low, int high, int k, boolean byX) {
+        while (high > low) {
+            int pivot = nodes[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (before(graph, nodes[i], pivot, byX)) i++;
+                while (before(graph, pivot, nodes[j], byX)) j--;
+                if (i <= j) {
+                    int swap = nodes[i];
+                    nodes[i++] = nodes[j];
+                    nodes[j--] = swap;
+                }
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return;
+        }
+    }
+
+    // Orders by the coordinate, then by node index, so the split is the same everywhere it is computed
+    private static boolean before(RoadGraph graph, int a, int b, boolean byX) {
+        double ka = byX ? graph.x(a) : graph.y(a);
+        double kb = byX ? graph.x(b) : graph.y(b);
+        return ka < kb || (ka == kb && a < b);
+    }
+}
@@ -0,0 +1,299 @@
+package com.shahilraghuwanshi.aetherium.simulation.partition;
+
+import com.shahilraghuwanshi.aetherium.simulation.VehicleStore;
+import com.shahilraghuwanshi.aetherium.simulation.io.LongIntHashMap;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Runs a city split by a {@link GraphPartition} across one {@link RegionWorker} per region, each normally in a
+ * process of its own, and merges what they simulate into one view for the viewers.
+ * <p>
+ * Workers connect over TCP. Every {@link #step} sends each worker its input and waits for every report, so
+ * all regions complete tick {@code n} before any starts tick {@code n + 1}. Reports carry the vehicles handed
+ * to each other region and the rear of the edges each other region's roads lead into; the coordinator forwards
+ * them byte for byte in the next tick's inputs, so a star of connections serves any number of neighbours.
+ * <p>
+ * When asked for a view, workers also report their vehicles and lights. The merged {@link #getView() view}
+ * keeps every vehicle on one handle for as long as it exists, wherever it drives, so it streams through a
+ * {@link com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder} like a single engine's vehicles. Each
+ * light's state is taken from the region owning its intersection.
+ * <p>
+ * Not thread-safe: {@link #step} and the view belong to the thread driving the simulation.
+ */
+public final class PartitionCoordinator implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionCoordinator.class);
+    private static final int[] NO_PATH = new int[0];
+
+    private final GraphPartition partition;
+    private final ServerSocketChannel server;
+    private final RegionChannel[] workers;
+    private final int[] signalRegions; // Region owning each signal's intersection
+
+    // Where each section of the last reports starts, [source region][destination region]
+    private final ByteBuffer[] reports;
+    private final int[][] handoffCounts;
+    private final int[][] handoffStarts;
+    private final int[][] handoffBytes;
+    private final int[][] haloCounts;
+    private final int[][] haloStarts;
+    private final int[] viewStarts;
+
+    private final VehicleStore view = new VehicleStore(1024);
+    private final LongIntHashMap viewHandles = new LongIntHashMap(1024); // Vehicle id -> handle in the view
+    private int[] viewStamps = new int[1024]; // Per handle: the last merge that saw the vehicle
+    private int viewStamp;
+    private final byte[] lightStates;
+
+    private long tick;
+    private volatile int vehicleCount;
+    private volatile long handoffs;
+
+    /** Starts listening for workers on {@code address}; port 0 picks a free one. */
+    public PartitionCoordinator(GraphPartition partition, SignalController signals, InetSocketAddress address) throws IOException {
+        this.partition = partition;
+        int regions = partition.regionCount();
+        this.workers = new RegionChannel[regions];
+        this.reports = new ByteBuffer[regions];
+        this.handoffCounts = new int[regions][regions];
+        this.handoffStarts = new int[regions][regions];
+        this.handoffBytes = new int[regions][regions];
+        this.haloCounts = new int[regions][regions];
+        this.haloStarts = new int[regions][regions];
+        this.viewStarts = new int[regions];
+        this.signalRegions = new int[signals.signalCount()];
+        for (int signal = 0; signal < signalRegions.length; signal++) {
+            signalRegions[signal] = partition.regionOf(signals.node(signal));
+        }
+        this.lightStates = new byte[signals.signalCount()];
+        this.server = ServerSocketChannel.open().bind(address);
+        log.info("Coordinating {} regions ({} roads cut) on {}.", regions, partition.cutEdgeCount() / 2, getAddress());
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Accepts workers until every region has one. Workers for a region that is taken, or that loaded another
+     * road network or partition, are turned away.
+     * @throws IOException if some region has no worker after {@code timeout}
+     */
+    public void awaitWorkers(Duration timeout) throws IOException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        server.configureBlocking(false);
+        int connected = (int) Arrays.stream(workers).filter(Objects::nonNull).count();
+        while (connected < workers.length) {
+            SocketChannel socket = server.accept();
+            if (socket == null) {
+                if (System.nanoTime() > deadline) {
+                    throw new IOException("Only " + connected + " of " + workers.length + " regions connected within " + timeout);
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for workers", e);
+                }
+                continue;
+            }
+            RegionChannel channel = new RegionChannel(socket);
+            ByteBuffer hello = channel.receive();
+            int magic = hello.getInt();
+            short version = hello.getShort();
+            hello.getShort();
+            int region = hello.getInt();
+            int regionCount = hello.getInt();
+            long fingerprint = hello.getLong();
+            boolean accepted = magic == RegionProtocol.MAGIC && version == RegionProtocol.VERSION
+                    && regionCount == workers.length && region >= 0 && region < workers.length && workers[region] == null
+                    && fingerprint == partition.getGraph().fingerprint();
+            channel.begin().put(accepted ? RegionProtocol.ACCEPTED : RegionProtocol.REJECTED);
+            channel.send();
+            if (!accepted) {
+                log.warn("Rejected worker {} for region {} of {}: wrong protocol, network or region.",
+                        socket.getRemoteAddress(), region, regionCount);
+                channel.close();
+                continue;
+            }
+            workers[region] = channel;
+            connected++;
+            log.info("Region {} connected from {} ({} of {}).", region, socket.getRemoteAddress(), connected, workers.length);
+        }
+    }
+
+    /**
+     * Runs one tick in every region and waits for all of them to complete it.
+     * @param requestView    whether to merge the regions' vehicles and lights into the view after the tick
+     * @param spawnRequests  extra random vehicles to spawn, as {@code SimulationEngine.spawnVehicle()} would
+     * @throws IOException if a worker's connection fails; the partitioned simulation cannot continue without it
+     */
+    public void step(boolean requestView, int spawnRequests) throws IOException {
+        byte flags = requestView ? RegionProtocol.FLAG_VIEW : 0;
+        for (int region = 0; region < workers.length; region++) {
+            sendInput(region, flags, spawnRequests);
+        }
+        int vehicles = 0;
+        long handedOff = 0;
+        for (int region = 0; region < workers.length; region++) {
+            reports[region] = workers[region].receive();
+            long reportedTick = reports[region].getLong();
+            if (region == 0) tick = reportedTick;
+            else if (reportedTick != tick) {
+                throw new IllegalStateException("Region " + region + " is at tick " + reportedTick + ", region 0 at " + tick);
+            }
+            vehicles += reports[region].getInt();
+            handedOff += indexReport(region);
+        }
+        vehicleCount = vehicles;
+        handoffs += handedOff;
+        if (requestView) mergeView();
+    }
+
+    /** Vehicles of every region as of the last step that requested a view, on stable handles. */
+    public VehicleStore getView() {
+        return view;
+    }
+
+    /** TrafficLight.State ordinals, indexed like the signals, as of the last view. */
+    public byte[] getLightStates() {
+        return lightStates;
+    }
+
+    /** Ticks every region has completed. */
+    public long getTick() {
+        return tick;
+    }
+
+    /** Vehicles in all regions together after the last step. */
+    public int getVehicleCount() {
+        return vehicleCount;
+    }
+
+    /** Vehicles handed from one region to another so far. */
+    public long getHandoffs() {
+        return handoffs;
+    }
+
+    public GraphPartition getPartition() {
+        return partition;
+    }
+
+    /** Tells every connected worker to stop, and closes the connections. */
+    @Override
+    public void close() throws IOException {
+        for (RegionChannel worker : workers) {
+            if (worker == null) continue;
+            try {
+                worker.begin().put(RegionProtocol.FLAG_STOP);
+                worker.send();
+            } catch (IOException e) {
+                log.debug("Could not stop a worker; it is gone already", e);
+            }
+            worker.close();
+        }
+        server.close();
+    }
+
+    // Forwards what the other regions reported for this one in the last tick
+    private void sendInput(int destination, byte flags, int spawnRequests) throws IOException {
+        RegionChannel channel = workers[destination];
+        ByteBuffer out = channel.begin();
+        out.put(flags);
+        out.putInt(spawnRequests);
+        int count = 0;
+        int bytes = 0;
+        for (int source = 0; source < workers.length; source++) {
+            count += handoffCounts[source][destination];
+            bytes += handoffBytes[source][destination];
+        }
+        out = channel.reserve(4 + bytes);
+        out.putInt(count);
+        for (int source = 0; source < workers.length; source++) {
+            if (handoffCounts[source][destination] == 0) continue;
+            out.put(reports[source].slice(handoffStarts[source][destination], handoffBytes[source][destination]));
+        }
+        count = 0;
+        for (int source = 0; source < workers.length; source++) count += haloCounts[source][destination];
+        out = channel.reserve(4 + count * RegionProtocol.HALO_ENTRY_BYTES);
+        out.putInt(count);
+        for (int source = 0; source < workers.length; source++) {
+            if (haloCounts[source][destination] == 0) continue;
+            out.put(reports[source].slice(haloStarts[source][destination],
+                    haloCounts[source][destination] * RegionProtocol.HALO_ENTRY_BYTES));
+        }
+        channel.send();
+    }
+
+    // Notes where the sections for each destination start; returns the number of vehicles handed off
+    private long indexReport(int source) {
+        ByteBuffer report = reports[source];
+        long handedOff = 0;
+        for (int destination = 0; destination < workers.length; destination++) {
+            handoffCounts[source][destination] = report.getInt();
+            handoffBytes[source][destination] = report.getInt();
+            handoffStarts[source][destination] = report.position();
+            handedOff += handoffCounts[source][destination];
+            report.position(report.position() + handoffBytes[source][destination]);
+            haloCounts[source][destination] = report.getInt();
+            haloStarts[source][destination] = report.position();
+            report.position(report.position() + haloCounts[source][destination] * RegionProtocol.HALO_ENTRY_BYTES);
+        }
+        viewStarts[source] = report.position();
+        return handedOff;
+    }
+
+    private void mergeView() {
+        viewStamp++;
+        for (int region = 0; region < workers.length; region++) {
+            ByteBuffer report = reports[region];
+            report.position(viewStarts[region]);
+            if (report.get() == 0) throw new IllegalStateException("Region " + region + " sent no view");
+            int n = report.getInt();
+            int base = report.position();
+            for (int i = 0; i < n; i++) {
+                long id = report.getLong(base + i * 8);
+                double x = report.getFloat(base + n * 8 + i * 4);
+                double y = report.getFloat(base + n * 12 + i * 4);
+                double speed = report.getFloat(base + n * 16 + i * 4);
+                int slot = view.slotOf(viewHandles.get(id, -1));
+                int handle;
+                if (slot < 0) {
+                    handle = view.add(id, x, y, speed, NO_PATH);
+                    viewHandles.put(id, handle);
+                } else {
+                    handle = view.handle(slot);
+                    view.setPosition(slot, x, y);
+                    view.setSpeed(slot, speed);
+                }
+                if (handle >= viewStamps.length) viewStamps = Arrays.copyOf(viewStamps, Math.max(handle + 1, viewStamps.length * 2));
+                viewStamps[handle] = viewStamp;
+            }
+            report.position(base + n * 20);
+            int signals = report.getInt();
+            base = report.position();
+            for (int signal = 0; signal < signals; signal++) {
+                if (signalRegions[signal] == region) lightStates[signal] = report.get(base + signal);
+            }
+        }
+        for (int slot = 0; slot < view.size(); ) {
+            if (viewStamps[view.handle(slot)] != viewStamp) {
+                viewHandles.remove(view.id(slot), -1);
+                view.removeAt(slot); // The last vehicle moves into this slot, so don't advance
+            } else {
+                slot++;
+            }
+        }
+    }
+}
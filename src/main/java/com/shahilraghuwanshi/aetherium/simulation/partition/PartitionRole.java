@@ -0,0 +1,11 @@
+package com.shahilraghuwanshi.aetherium.simulation.partition;
+
+/** The part this process plays when one city is simulated across several processes. */
+public enum PartitionRole {
+    /** The whole city is simulated in this process. */
+    NONE,
+    /** Drives the workers in lockstep and streams their merged view; simulates no vehicles itself. */
+    COORDINATOR,
+    /** Simulates one region, as instructed by the coordinator. */
+    WORKER
+}
@@ -0,0 +1,75 @@
+package com.shahilraghuwanshi.aetherium.simulation.partition;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Length-prefixed binary messages over a blocking socket between the coordinator and one worker.
+ * <p>
+ * A message is a little-endian u32 payload length followed by the payload. Both buffers are reused and grow
+ * on demand, so steady-state ticks allocate nothing. Not thread-safe.
+ */
+final class RegionChannel implements AutoCloseable {
+
+    private final SocketChannel socket;
+    private ByteBuffer out = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer in = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    RegionChannel(SocketChannel socket) throws IOException {
+        this.socket = socket;
+        socket.configureBlocking(true);
+        socket.setOption(StandardSocketOptions.TCP_NODELAY, true); // Every tick waits for these messages
+    }
+
+    /** Starts a new outgoing message and returns its buffer, positioned after the length prefix. */
+    ByteBuffer begin() {
+        out.clear();
+        out.position(4);
+        return out;
+    }
+
+    /** The outgoing buffer with room for at least {@code bytes} more; a new instance if it had to grow. */
+    ByteBuffer reserve(int bytes) {
+        if (out.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            out.flip();
+            grown.put(out);
+            out = grown;
+        }
+        return out;
+    }
+
+    /** Sends the message written since {@link #begin()}. */
+    void send() throws IOException {
+        out.putInt(0, out.position() - 4);
+        out.flip();
+        while (out.hasRemaining()) socket.write(out);
+    }
+
+    /** Blocks for the next message; the returned buffer is valid until the next call. */
+    ByteBuffer receive() throws IOException {
+        in.clear().limit(4);
+        readFully();
+        int length = in.getInt(0);
+        if (in.capacity() < length) in = ByteBuffer.allocate(Math.max(length, in.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        in.clear().limit(length);
+        readFully();
+        return in.flip();
+    }
+
+    private void readFully() throws IOException {
+        while (in.hasRemaining()) {
+            if (socket.read(in) < 0) throw new EOFException("Connection closed by " + socket.getRemoteAddress());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,91 @@
+package com.shahilraghuwanshi.aetherium.simulation.partition;
+
+import com.shahilraghuwanshi.aetherium.simulation.Handoff;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Messages between the coordinator and its workers, each sent through a {@link RegionChannel}. All values are
+ * little-endian. A worker opens with:
+ * <pre>
+ *   u32 magic          {@link #MAGIC}
+ *   u16 version        {@link #VERSION}
+ *   u16 reserved
+ *   u32 region
+ *   u32 regionCount
+ *   i64 graph          fingerprint of the road network it loaded
+ * </pre>
+ * and the coordinator answers with a single u8, {@link #ACCEPTED} or {@link #REJECTED}. Then, for every tick,
+ * the coordinator sends each worker its input:
+ * <pre>
+ *   u8  flags          {@link #FLAG_STOP}: close instead of ticking; {@link #FLAG_VIEW}: report vehicles after the tick
+ *   u32 spawnRequests  random spawns requested by viewers, drawn by every region alike
+ *   u32 n, then n handoffs                                   (vehicles entering the region)
+ *   u32 n, then n x (u32 edge, f64 offset, f64 speed)        (halo: rear of neighbouring edges; offset NaN = empty)
+ * </pre>
+ * and each worker answers, after the tick, with its report:
+ * <pre>
+ *   i64 tick           ticks completed
+ *   u32 vehicles       in the region
+ *   for every region, in order:
+ *     u32 n, u32 bytes, then n handoffs                      (vehicles leaving for that region)
+ *     u32 n, then n halo entries                             (rear of the edges that region's roads lead into)
+ *   u8  view           1 if requested, then:
+ *     u32 n, then i64 id[n], f32 x[n], f32 y[n], f32 speed[n]
+ *     u32 signalCount, then u8 state[signalCount]           (TrafficLight.State ordinals)
+ * </pre>
+ * The coordinator forwards sections byte for byte, so it never decodes a handoff. A handoff is:
+ * <pre>
+ *   i64 id, f64 offset, f64 speed, f64 enteredAt, f64 expectedArrival
+ *   u32 origin, f64 departedAt, f64 distance, f64 freeFlowSeconds    (the trip so far)
+ *   u32 n, then u32 node[n]                                  (the rest of its path)
+ * </pre>
+ */
+final class RegionProtocol {
+
+    static final int MAGIC = 0x4E475241; // "ARGN"
+    static final short VERSION = 2;
+    static final byte ACCEPTED = 0;
+    static final byte REJECTED = 1;
+    static final byte FLAG_STOP = 1;
+    static final byte FLAG_VIEW = 2;
+    static final int HALO_ENTRY_BYTES = 20;
+
+    private RegionProtocol() {
+    }
+
+    static int handoffBytes(Handoff handoff) {
+        return 72 + 4 * handoff.path().length;
+    }
+
+    static void writeHandoff(ByteBuffer out, Handoff handoff) {
+        out.putLong(handoff.id());
+        out.putDouble(handoff.offset());
+        out.putDouble(handoff.speed());
+        out.putDouble(handoff.enteredAt());
+        out.putDouble(handoff.expectedArrival());
+        out.putInt(handoff.origin());
+        out.putDouble(handoff.departedAt());
+        out.putDouble(handoff.distance());
+        out.putDouble(handoff.freeFlowSeconds());
+        out.putInt(handoff.path().length);
+        out.asIntBuffer().put(handoff.path());
+        out.position(out.position() + 4 * handoff.path().length);
+    }
+
+    static Handoff readHandoff(ByteBuffer in) {
+        long id = in.getLong();
+        double offset = in.getDouble();
+        double speed = in.getDouble();
+        double enteredAt = in.getDouble();
+        double expectedArrival = in.getDouble();
+        int origin = in.getInt();
+        double departedAt = in.getDouble();
+        double distance = in.getDouble();
+        double freeFlowSeconds = in.getDouble();
+        int[] path = new int[in.getInt()];
+        in.asIntBuffer().get(path);
+        in.position(in.position() + 4 * path.length);
+        return new Handoff(id, path, offset, speed, enteredAt, expectedArrival, origin, departedAt, distance, freeFlowSeconds);
+    }
+}
@@ -0,0 +1,210 @@
+package com.shahilraghuwanshi.aetherium.simulation.partition;
+
+import com.shahilraghuwanshi.aetherium.simulation.EdgeOccupancy;
+import com.shahilraghuwanshi.aetherium.simulation.Handoff;
+import com.shahilraghuwanshi.aetherium.simulation.RegionBoundary;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.VehicleStore;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives the engine of one region in lockstep with the other regions, as instructed by a
+ * {@link PartitionCoordinator}.
+ * <p>
+ * Every tick, the worker waits for its input (vehicles handed over by neighbouring regions, and the rear of
+ * their boundary edges), admits those vehicles, ticks the engine, and reports back the vehicles that left
+ * and the rear of its own boundary edges, plus its vehicles and lights when the coordinator asks for a view.
+ * Waiting for the input is the barrier that keeps every region on the same tick.
+ * <p>
+ * A vehicle handed off during a tick is only admitted by its new region before the next one, so for that
+ * tick the halo the neighbour reports does not include it yet; the worker keeps it as the rear of the edge
+ * it entered itself, so vehicles following it across the boundary don't lose sight of it.
+ * <p>
+ * The engine must have its region set, and belongs to the thread calling {@link #run()}.
+ */
+public final class RegionWorker implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RegionWorker.class);
+
+    private final SimulationEngine engine;
+    private final GraphPartition partition;
+    private final RegionBoundary boundary;
+    private final Runnable afterTick; // e.g. metrics; may be null
+    private final List<List<Handoff>> outgoing = new ArrayList<>(); // Per destination region, this tick
+    private List<Handoff> departures = List.of(); // Vehicles handed off in the last tick
+    private RegionChannel channel;
+    private volatile long handedOff;
+    private volatile long admitted;
+
+    public RegionWorker(SimulationEngine engine, GraphPartition partition, Runnable afterTick) {
+        this.engine = engine;
+        this.partition = partition;
+        this.boundary = engine.getRegion();
+        this.afterTick = afterTick;
+        if (boundary == null) throw new IllegalArgumentException("The engine has no region");
+        if (boundary.getRegionCount() != partition.regionCount()) {
+            throw new IllegalArgumentException("The engine's region is from a partition into "
+                    + boundary.getRegionCount() + " regions, not " + partition.regionCount());
+        }
+        for (int region = 0; region < partition.regionCount(); region++) outgoing.add(new ArrayList<>());
+    }
+
+    /**
+     * Connects to the coordinator, retrying while it is not listening yet for up to {@code timeout}.
+     * @throws IOException if it cannot be reached in time, or rejects this worker
+     */
+    public void connect(InetSocketAddress coordinator, Duration timeout) throws IOException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        SocketChannel socket;
+        while (true) {
+            try {
+                socket = SocketChannel.open(coordinator);
+                break;
+            } catch (ConnectException e) {
+                if (System.nanoTime() > deadline) throw e;
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while connecting to " + coordinator, interrupted);
+                }
+            }
+        }
+        channel = new RegionChannel(socket);
+        ByteBuffer hello = channel.begin();
+        hello.putInt(RegionProtocol.MAGIC);
+        hello.putShort(RegionProtocol.VERSION);
+        hello.putShort((short) 0);
+        hello.putInt(boundary.getRegion());
+        hello.putInt(boundary.getRegionCount());
+        hello.putLong(engine.getGraph().fingerprint());
+        channel.send();
+        if (channel.receive().get() != RegionProtocol.ACCEPTED) {
+            channel.close();
+            throw new IOException("Coordinator " + coordinator + " rejected region " + boundary.getRegion());
+        }
+        log.info("Region {} of {} connected to {}.", boundary.getRegion(), boundary.getRegionCount(), coordinator);
+    }
+
+    /**
+     * Runs ticks as the coordinator sends their input, until it says to stop.
+     * @throws IOException if the connection fails, including when {@link #close()} is called meanwhile
+     */
+    public void run() throws IOException {
+        if (channel == null) throw new IllegalStateException("Not connected");
+        while (true) {
+            ByteBuffer input = channel.receive();
+            byte flags = input.get();
+            if ((flags & RegionProtocol.FLAG_STOP) != 0) {
+                log.info("Region {} stopped by the coordinator after {} ticks.", boundary.getRegion(), engine.getTickCount());
+                return;
+            }
+            applyInput(input);
+            engine.tick();
+            if (afterTick != null) afterTick.run();
+            sendReport((flags & RegionProtocol.FLAG_VIEW) != 0);
+        }
+    }
+
+    public SimulationEngine getEngine() {
+        return engine;
+    }
+
+    /** Vehicles that left this region for another. */
+    public long getHandedOff() {
+        return handedOff;
+    }
+
+    /** Vehicles that entered this region from another. */
+    public long getAdmitted() {
+        return admitted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+
+    private void applyInput(ByteBuffer input) {
+        for (int requested = input.getInt(); requested > 0; requested--) {
+            engine.spawnVehicle();
+        }
+        int count = input.getInt();
+        for (int i = 0; i < count; i++) {
+            engine.admit(RegionProtocol.readHandoff(input));
+        }
+        admitted += count;
+        count = input.getInt();
+        for (int i = 0; i < count; i++) {
+            boundary.setRear(input.getInt(), input.getDouble(), input.getDouble());
+        }
+        // The neighbour reported before admitting what this region handed it last tick
+        for (Handoff handoff : departures) {
+            int edge = engine.getGraph().findEdge(handoff.path()[0], handoff.path()[1]);
+            double rear = boundary.rearOffset(edge);
+            boundary.setRear(edge, Double.isNaN(rear) ? handoff.offset() : Math.min(rear, handoff.offset()), handoff.speed());
+        }
+    }
+
+    private void sendReport(boolean view) throws IOException {
+        departures = boundary.drainDepartures();
+        handedOff += departures.size();
+        for (Handoff handoff : departures) {
+            outgoing.get(partition.regionOf(handoff.path()[0])).add(handoff);
+        }
+
+        ByteBuffer out = channel.begin();
+        out.putLong(engine.getTickCount());
+        out.putInt(engine.getVehicles().size());
+        EdgeOccupancy occupancy = engine.getOccupancy();
+        VehicleStore vehicles = engine.getVehicles();
+        for (int region = 0; region < partition.regionCount(); region++) {
+            List<Handoff> handoffs = outgoing.get(region);
+            int bytes = 0;
+            for (Handoff handoff : handoffs) bytes += RegionProtocol.handoffBytes(handoff);
+            out = channel.reserve(8 + bytes);
+            out.putInt(handoffs.size());
+            out.putInt(bytes);
+            for (Handoff handoff : handoffs) RegionProtocol.writeHandoff(out, handoff);
+            handoffs.clear();
+
+            int[] halo = partition.haloEdges(boundary.getRegion(), region);
+            out = channel.reserve(4 + halo.length * RegionProtocol.HALO_ENTRY_BYTES);
+            out.putInt(halo.length);
+            for (int edge : halo) {
+                int rear = occupancy.rearmost(edge);
+                int slot = rear >= 0 ? vehicles.slotOf(rear) : -1;
+                out.putInt(edge);
+                out.putDouble(slot >= 0 ? vehicles.offset(slot) : Double.NaN);
+                out.putDouble(slot >= 0 ? vehicles.speed(slot) : 0);
+            }
+        }
+
+        out = channel.reserve(1);
+        out.put((byte) (view ? 1 : 0));
+        if (view) {
+            SignalController signals = engine.getSignals();
+            int n = vehicles.size();
+            out = channel.reserve(8 + n * 20 + signals.signalCount());
+            out.putInt(n);
+            for (int slot = 0; slot < n; slot++) out.putLong(vehicles.id(slot));
+            for (int slot = 0; slot < n; slot++) out.putFloat((float) vehicles.x(slot));
+            for (int slot = 0; slot < n; slot++) out.putFloat((float) vehicles.y(slot));
+            for (int slot = 0; slot < n; slot++) out.putFloat((float) vehicles.speed(slot));
+            out.putInt(signals.signalCount());
+            for (int signal = 0; signal < signals.signalCount(); signal++) out.put(signals.state(signal));
+        }
+        channel.send();
+    }
+}
@@ -0,0 +1,22 @@
+package com.shahilraghuwanshi.aetherium.simulation.protocol;
+
+/**
+ * Inclusive rectangle of grid cells, {@code [minX, maxX] x [minY, maxY]}. An empty rectangle has
+ * {@code minX > maxX}.
+ */
+public record CellRect(int minX, int minY, int maxX, int maxY) {
+
+    public static final CellRect EMPTY = new CellRect(0, 0, -1, -1);
+
+    public boolean isEmpty() {
+        return minX > maxX || minY > maxY;
+    }
+
+    public boolean contains(int cellX, int cellY) {
+        return cellX >= minX && cellX <= maxX && cellY >= minY && cellY <= maxY;
+    }
+
+    public int area() {
+        return isEmpty() ? 0 : (maxX - minX + 1) * (maxY - minY + 1);
+    }
+}
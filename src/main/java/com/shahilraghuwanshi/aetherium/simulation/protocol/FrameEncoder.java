@@ -0,0 +1,347 @@
+package com.shahilraghuwanshi.aetherium.simulation.protocol;
+
+import com.shahilraghuwanshi.aetherium.simulation.VehicleStore;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Encodes simulation state into compact binary WebSocket frames, split by the cells of a
+ * {@link SpatialGrid} so each client only receives the part of the map it is looking at.
+ * <p>
+ * All values are little-endian. Positions are fixed-point with {@link #POSITION_SCALE} steps per
+ * distance unit. Every frame is:
+ * <pre>
+ *   u8  type          1 = keyframe (drop all state first), 2 = delta
+ *   u8  version       {@link #VERSION}
+ *   u16 reserved
+ *   u32 tick
+ *   u32 droppedCellCount, then per cell: u32 cell   (cells the client stopped watching; forget their vehicles)
+ *   u32 blockCount, then the blocks
+ * </pre>
+ * Each block describes one cell:
+ * <pre>
+ *   u32 cell          row * columns + column
+ *   u8  flags         {@link #BLOCK_RESET}: forget the cell's vehicles before applying the block
+ *   u32 upsertCount,  then per vehicle: u64 id, i32 x, i32 y     (entered the cell, or moved too far for i16)
+ *   u32 despawnCount, then per vehicle: u64 id                   (left the cell or the simulation)
+ *   u32 moveCount,    then per vehicle: u64 id, i16 dx, i16 dy   (relative to the last position sent)
+ *   u32 lightCount,   then per light:   u64 intersectionId, u8 state
+ * </pre>
+ * A vehicle crossing between cells is despawned from the old cell and upserted into the new one in the
+ * same tick. Blocks are independent, so clients should only honour a despawn if the vehicle is still in
+ * that block's cell. Vehicles whose quantised position did not change are omitted entirely.
+ * <p>
+ * Not thread-safe: ticks must be encoded in order from one thread.
+ */
+public final class FrameEncoder {
+
+    public static final byte TYPE_KEYFRAME = 1;
+    public static final byte TYPE_DELTA = 2;
+    public static final byte VERSION = 3; // 3: vehicle and intersection ids widened to u64
+    public static final int POSITION_SCALE = 16;
+    public static final byte BLOCK_RESET = 1;
+
+    static final int HEADER_BYTES = 8;
+    private static final int BLOCK_HEADER_BYTES = 5 + 4 * 4;
+
+    private static final int UPSERT = 0;
+    private static final int DESPAWN = 1;
+    private static final int MOVE = 2;
+    private static final int LIGHT = 3;
+    private static final int[] EVENT_BYTES = {16, 8, 12, 9};
+
+    private final SpatialGrid grid;
+
+    // Last transmitted state, indexed by vehicle handle
+    private long[] sentIds = new long[1024]; // Vehicle ids are sent whole, so they never collide on the wire
+    private int[] sentXs = new int[1024];
+    private int[] sentYs = new int[1024];
+    private int[] sentCells = new int[1024];
+    private int[] seenStamps = new int[1024];
+    private int[] sentHandles = new int[1024]; // Handles present in the previously encoded tick
+    private int[] nextHandles = new int[1024];
+    private int sentCount;
+    private int stamp;
+
+    private byte[] sentLightStates = new byte[0];
+    private long[] lightIds = new long[0];
+    private int[][] lightsByCell; // Signal indices per cell; rebuilt when the number of signals changes
+
+    // This tick's changes, bucketed by cell before encoding
+    private int eventCount;
+    private int[] eventCells = new int[1024];
+    private int[] eventKinds = new int[1024];
+    private long[] eventIds = new long[1024]; // Vehicle id, or intersection id for a light
+    private int[] eventAs = new int[1024];
+    private int[] eventBs = new int[1024];
+    private final int[] kindCounts; // cell * 4 + kind
+    private int[] dirtyCells = new int[64];
+    private int dirtyCount;
+    private int[] order = new int[1024];
+
+    private ByteBuffer buffer = ByteBuffer.allocate(16 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    public FrameEncoder(SpatialGrid grid) {
+        this.grid = grid;
+        this.kindCounts = new int[grid.cellCount() * 4];
+    }
+
+    public SpatialGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Encodes the changes since the previously encoded tick into per-cell delta blocks, moves vehicles between grid
+     * cells, and makes the current state the new baseline.
+     */
+    public TickFrames encode(long tick, VehicleStore vehicles, SignalController signals) {
+        return encode(tick, vehicles, signals, null);
+    }
+
+    /**
+     * As {@link #encode(long, VehicleStore, SignalController)}, with the light states taken from {@code lightStates}
+     * (indexed like the signals) instead of the controller; used to stream recorded state.
+     */
+    public TickFrames encode(long tick, VehicleStore vehicles, SignalController signals, byte[] lightStates) {
+        int count = vehicles.size();
+        stamp++;
+        eventCount = 0;
+        if (nextHandles.length < count) nextHandles = new int[Math.max(count, nextHandles.length * 2)];
+
+        for (int slot = 0; slot < count; slot++) {
+            int handle = vehicles.handle(slot);
+            ensureHandleCapacity(handle);
+            long id = vehicles.id(slot);
+            int qx = quantize(vehicles.x(slot));
+            int qy = quantize(vehicles.y(slot));
+            int cell = grid.cellOf(vehicles.x(slot), vehicles.y(slot));
+
+            boolean known = seenStamps[handle] == stamp - 1;
+            if (known && sentIds[handle] != id) {
+                // The handle was recycled since the last encoded tick: the old vehicle is gone
+                addEvent(sentCells[handle], DESPAWN, sentIds[handle], 0, 0);
+                known = false;
+            }
+            if (!known) {
+                addEvent(cell, UPSERT, id, qx, qy);
+            } else if (cell != sentCells[handle]) {
+                addEvent(sentCells[handle], DESPAWN, id, 0, 0);
+                addEvent(cell, UPSERT, id, qx, qy);
+            } else if (qx != sentXs[handle] || qy != sentYs[handle]) {
+                int dx = qx - sentXs[handle];
+                int dy = qy - sentYs[handle];
+                if (fitsShort(dx) && fitsShort(dy)) addEvent(cell, MOVE, id, dx, dy);
+                else addEvent(cell, UPSERT, id, qx, qy);
+            }
+
+            grid.place(handle, cell);
+            sentIds[handle] = id;
+            sentXs[handle] = qx;
+            sentYs[handle] = qy;
+            sentCells[handle] = cell;
+            seenStamps[handle] = stamp;
+            nextHandles[slot] = handle;
+        }
+
+        for (int i = 0; i < sentCount; i++) {
+            int handle = sentHandles[i];
+            if (seenStamps[handle] != stamp) {
+                addEvent(sentCells[handle], DESPAWN, sentIds[handle], 0, 0);
+                grid.remove(handle);
+            }
+        }
+        int[] swap = sentHandles;
+        sentHandles = nextHandles;
+        nextHandles = swap;
+        sentCount = count;
+
+        if (lightIds.length != signals.signalCount()) indexLights(signals);
+        for (int i = 0; i < lightIds.length; i++) {
+            byte state = lightStates != null ? lightStates[i] : signals.state(i);
+            if (sentLightStates[i] != state) {
+                sentLightStates[i] = state;
+                addEvent(lightCell(signals, i), LIGHT, lightIds[i], state, 0);
+            }
+        }
+
+        return encodeDeltaBlocks(tick);
+    }
+
+    /**
+     * Encodes a reset block with the current state of every cell marked in {@code cells} (indexed by cell),
+     * attaches them to {@code frames} and clears the marks. Must be called after {@link #encode} for the
+     * same tick and before the frames are handed to other threads.
+     */
+    public void encodeKeyframeBlocks(TickFrames frames, boolean[] cells) {
+        byte[][] blocks = null;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (!cells[cell]) continue;
+            cells[cell] = false;
+            int vehicles = grid.memberCount(cell);
+            int[] cellLights = lightsByCell != null ? lightsByCell[cell] : null;
+            int lights = cellLights != null ? cellLights.length : 0;
+            if (vehicles == 0 && lights == 0) continue; // Nothing to reset: the client has no state for it
+
+            ensureBufferCapacity(BLOCK_HEADER_BYTES + vehicles * 16 + lights * 9);
+            buffer.putInt(cell).put(BLOCK_RESET);
+            buffer.putInt(vehicles);
+            for (int i = 0; i < vehicles; i++) {
+                int handle = grid.member(cell, i);
+                buffer.putLong(sentIds[handle]).putInt(sentXs[handle]).putInt(sentYs[handle]);
+            }
+            buffer.putInt(0).putInt(0);
+            buffer.putInt(lights);
+            for (int i = 0; i < lights; i++) {
+                buffer.putLong(lightIds[cellLights[i]]).put(sentLightStates[cellLights[i]]);
+            }
+            if (blocks == null) blocks = new byte[grid.cellCount()][];
+            blocks[cell] = toBytes();
+        }
+        if (blocks != null) frames.setKeyframeBlocks(blocks);
+    }
+
+    private TickFrames encodeDeltaBlocks(long tick) {
+        // Count events per cell and kind, remembering which cells changed
+        dirtyCount = 0;
+        for (int e = 0; e < eventCount; e++) {
+            int cell = eventCells[e];
+            if (kindCounts[cell * 4] + kindCounts[cell * 4 + 1] + kindCounts[cell * 4 + 2] + kindCounts[cell * 4 + 3] == 0) {
+                if (dirtyCount == dirtyCells.length) dirtyCells = Arrays.copyOf(dirtyCells, dirtyCount * 2);
+                dirtyCells[dirtyCount++] = cell;
+            }
+            kindCounts[cell * 4 + eventKinds[e]]++;
+        }
+
+        // Counting sort of the events into (cell, kind) runs; kindCounts becomes the run start offsets
+        if (order.length < eventCount) order = new int[Math.max(eventCount, order.length * 2)];
+        int offset = 0;
+        for (int d = 0; d < dirtyCount; d++) {
+            int base = dirtyCells[d] * 4;
+            for (int kind = 0; kind < 4; kind++) {
+                int n = kindCounts[base + kind];
+                kindCounts[base + kind] = offset;
+                offset += n;
+            }
+        }
+        int[] runEnds = new int[dirtyCount * 4];
+        for (int e = 0; e < eventCount; e++) {
+            order[kindCounts[eventCells[e] * 4 + eventKinds[e]]++] = e;
+        }
+
+        byte[][] blocks = new byte[grid.cellCount()][];
+        int start = 0;
+        for (int d = 0; d < dirtyCount; d++) {
+            int cell = dirtyCells[d];
+            int bytes = BLOCK_HEADER_BYTES;
+            for (int kind = 0; kind < 4; kind++) {
+                runEnds[d * 4 + kind] = kindCounts[cell * 4 + kind];
+                kindCounts[cell * 4 + kind] = 0; // Reset for the next tick
+            }
+            int runStart = start;
+            for (int kind = 0; kind < 4; kind++) {
+                bytes += (runEnds[d * 4 + kind] - runStart) * EVENT_BYTES[kind];
+                runStart = runEnds[d * 4 + kind];
+            }
+
+            ensureBufferCapacity(bytes);
+            buffer.putInt(cell).put((byte) 0);
+            runStart = start;
+            for (int kind = 0; kind < 4; kind++) {
+                int runEnd = runEnds[d * 4 + kind];
+                buffer.putInt(runEnd - runStart);
+                for (int i = runStart; i < runEnd; i++) writeEvent(order[i]);
+                runStart = runEnd;
+            }
+            start = runStart;
+            blocks[cell] = toBytes();
+        }
+        return new TickFrames(tick, grid.columns(), blocks, Arrays.copyOf(dirtyCells, dirtyCount));
+    }
+
+    private void writeEvent(int e) {
+        switch (eventKinds[e]) {
+            case UPSERT -> buffer.putLong(eventIds[e]).putInt(eventAs[e]).putInt(eventBs[e]);
+            case MOVE -> buffer.putLong(eventIds[e]).putShort((short) eventAs[e]).putShort((short) eventBs[e]);
+            case LIGHT -> buffer.putLong(eventIds[e]).put((byte) eventAs[e]);
+            default -> buffer.putLong(eventIds[e]);
+        }
+    }
+
+    private void addEvent(int cell, int kind, long id, int a, int b) {
+        if (eventCount == eventCells.length) {
+            int capacity = eventCount * 2;
+            eventCells = Arrays.copyOf(eventCells, capacity);
+            eventKinds = Arrays.copyOf(eventKinds, capacity);
+            eventIds = Arrays.copyOf(eventIds, capacity);
+            eventAs = Arrays.copyOf(eventAs, capacity);
+            eventBs = Arrays.copyOf(eventBs, capacity);
+        }
+        eventCells[eventCount] = cell;
+        eventKinds[eventCount] = kind;
+        eventIds[eventCount] = id;
+        eventAs[eventCount] = a;
+        eventBs[eventCount] = b;
+        eventCount++;
+    }
+
+    // Signals don't move: assign each to a cell once. Every signal starts out unsent, so the first tick reports all of them.
+    private void indexLights(SignalController signals) {
+        int n = signals.signalCount();
+        lightIds = new long[n];
+        sentLightStates = new byte[n];
+        Arrays.fill(sentLightStates, (byte) -1);
+        int[] perCell = new int[grid.cellCount()];
+        for (int i = 0; i < n; i++) {
+            lightIds[i] = signals.getGraph().nodeId(signals.node(i));
+            perCell[lightCell(signals, i)]++;
+        }
+        lightsByCell = new int[grid.cellCount()][];
+        for (int i = 0; i < n; i++) {
+            int cell = lightCell(signals, i);
+            if (lightsByCell[cell] == null) lightsByCell[cell] = new int[perCell[cell]];
+            lightsByCell[cell][lightsByCell[cell].length - perCell[cell]--] = i;
+        }
+    }
+
+    private int lightCell(SignalController signals, int signal) {
+        RoadGraph graph = signals.getGraph();
+        int node = signals.node(signal);
+        return grid.cellOf(graph.x(node), graph.y(node));
+    }
+
+    private void ensureHandleCapacity(int handle) {
+        if (handle < sentIds.length) return;
+        int capacity = Math.max(handle + 1, sentIds.length * 2);
+        sentIds = Arrays.copyOf(sentIds, capacity);
+        sentXs = Arrays.copyOf(sentXs, capacity);
+        sentYs = Arrays.copyOf(sentYs, capacity);
+        sentCells = Arrays.copyOf(sentCells, capacity);
+        seenStamps = Arrays.copyOf(seenStamps, capacity);
+    }
+
+    private void ensureBufferCapacity(int bytes) {
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+    }
+
+    private byte[] toBytes() {
+        byte[] block = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(block);
+        return block;
+    }
+
+    static int quantize(double coordinate) {
+        return (int) Math.round(coordinate * POSITION_SCALE);
+    }
+
+    private static boolean fitsShort(int value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+}
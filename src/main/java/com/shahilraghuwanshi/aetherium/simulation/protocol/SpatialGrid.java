@@ -0,0 +1,127 @@
+package com.shahilraghuwanshi.aetherium.simulation.protocol;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the map that tracks which vehicles are in which cell.
+ * <p>
+ * Vehicles are identified by their {@code VehicleStore} handle. Each cell keeps an unordered member
+ * array with swap-remove, and each handle remembers its cell and index, so adding, removing and moving
+ * a vehicle between cells are all O(1). Positions outside the grid are clamped to the border cells.
+ */
+public final class SpatialGrid {
+
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+
+    private final int[][] members;
+    private final int[] memberCounts;
+    private int[] cellOfHandle = new int[1024];
+    private int[] indexOfHandle = new int[1024];
+
+    public SpatialGrid(double minX, double minY, double maxX, double maxY, double cellSize) {
+        this.cellSize = cellSize;
+        this.originX = minX;
+        this.originY = minY;
+        this.columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize) + 1);
+        this.rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize) + 1);
+        this.members = new int[columns * rows][];
+        this.memberCounts = new int[columns * rows];
+        Arrays.fill(cellOfHandle, -1);
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cellCount() {
+        return columns * rows;
+    }
+
+    public int cellX(double x) {
+        return clamp((int) Math.floor((x - originX) / cellSize), columns);
+    }
+
+    public int cellY(double y) {
+        return clamp((int) Math.floor((y - originY) / cellSize), rows);
+    }
+
+    public int cellOf(double x, double y) {
+        return cellY(y) * columns + cellX(x);
+    }
+
+    /** Cells overlapping the world-space rectangle. */
+    public CellRect cellsIn(double minX, double minY, double maxX, double maxY) {
+        if (maxX < minX || maxY < minY) return CellRect.EMPTY;
+        return new CellRect(cellX(minX), cellY(minY), cellX(maxX), cellY(maxY));
+    }
+
+    public CellRect allCells() {
+        return new CellRect(0, 0, columns - 1, rows - 1);
+    }
+
+    /** The cell the handle was last placed in, or -1. */
+    public int cellOfHandle(int handle) {
+        return handle < cellOfHandle.length ? cellOfHandle[handle] : -1;
+    }
+
+    public int memberCount(int cell) {
+        return memberCounts[cell];
+    }
+
+    /** Handle of the {@code index}-th member of the cell, {@code index < memberCount(cell)}. */
+    public int member(int cell, int index) {
+        return members[cell][index];
+    }
+
+    /** Places the handle in {@code cell}, moving it out of its previous cell if needed. */
+    public void place(int handle, int cell) {
+        ensureHandleCapacity(handle);
+        int previous = cellOfHandle[handle];
+        if (previous == cell) return;
+        if (previous >= 0) removeFromCell(handle, previous);
+
+        int[] list = members[cell];
+        if (list == null) list = members[cell] = new int[8];
+        else if (memberCounts[cell] == list.length) list = members[cell] = Arrays.copyOf(list, list.length * 2);
+        int index = memberCounts[cell]++;
+        list[index] = handle;
+        cellOfHandle[handle] = cell;
+        indexOfHandle[handle] = index;
+    }
+
+    public void remove(int handle) {
+        if (handle >= cellOfHandle.length || cellOfHandle[handle] < 0) return;
+        removeFromCell(handle, cellOfHandle[handle]);
+        cellOfHandle[handle] = -1;
+    }
+
+    private void removeFromCell(int handle, int cell) {
+        int[] list = members[cell];
+        int index = indexOfHandle[handle];
+        int last = --memberCounts[cell];
+        int moved = list[last];
+        list[index] = moved;
+        indexOfHandle[moved] = index;
+    }
+
+    private void ensureHandleCapacity(int handle) {
+        if (handle < cellOfHandle.length) return;
+        int oldLength = cellOfHandle.length;
+        int capacity = Math.max(handle + 1, oldLength * 2);
+        cellOfHandle = Arrays.copyOf(cellOfHandle, capacity);
+        indexOfHandle = Arrays.copyOf(indexOfHandle, capacity);
+        Arrays.fill(cellOfHandle, oldLength, capacity, -1);
+    }
+
+    private static int clamp(int value, int size) {
+        return value < 0 ? 0 : Math.min(value, size - 1);
+    }
+}
@@ -0,0 +1,125 @@
+package com.shahilraghuwanshi.aetherium.simulation.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The encoded output of one tick: a delta block for every cell that changed, plus keyframe blocks for
+ * the cells some client has just started watching. Blocks are encoded once and shared; a client's
+ * frame is assembled by concatenating the blocks of the cells in its viewport.
+ * <p>
+ * Immutable once published by {@link FrameEncoder#encodeKeyframeBlocks}, so frames can be assembled on
+ * any thread while the encoder moves on to the next tick.
+ */
+public final class TickFrames {
+
+    private final long tick;
+    private final int columns;
+    private final byte[][] deltaBlocks; // By cell; null if the cell did not change
+    private final int[] dirtyCells;
+    private byte[][] keyframeBlocks; // By cell; null if not requested this tick or the cell is empty
+
+    TickFrames(long tick, int columns, byte[][] deltaBlocks, int[] dirtyCells) {
+        this.tick = tick;
+        this.columns = columns;
+        this.deltaBlocks = deltaBlocks;
+        this.dirtyCells = dirtyCells;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    void setKeyframeBlocks(byte[][] keyframeBlocks) {
+        this.keyframeBlocks = keyframeBlocks;
+    }
+
+    /**
+     * Builds one client's frame. A keyframe carries the full state of every cell in {@code cells}. A
+     * delta tells the client to drop the cells of {@code previousCells} it no longer watches, resets the
+     * cells it has started watching, and carries the changes of the cells it kept.
+     */
+    public byte[] assemble(CellRect cells, CellRect previousCells, boolean keyframe) {
+        CellRect kept = keyframe ? CellRect.EMPTY : intersect(cells, previousCells);
+        int droppedCount = keyframe ? 0 : previousCells.area() - kept.area();
+        int blockCount = 0;
+        int bytes = FrameEncoder.HEADER_BYTES + 8 + droppedCount * 4;
+        // Cells to send in full; usually none, since viewports rarely change between ticks
+        CellRect added = kept.equals(cells) ? CellRect.EMPTY : cells;
+
+        // Sizing pass
+        for (int y = added.minY(); y <= added.maxY(); y++) {
+            for (int x = added.minX(); x <= added.maxX(); x++) {
+                if (kept.contains(x, y)) continue;
+                byte[] block = keyframeBlock(y * columns + x);
+                if (block != null) {
+                    blockCount++;
+                    bytes += block.length;
+                }
+            }
+        }
+        boolean scanDirty = dirtyCells.length < kept.area();
+        if (scanDirty) {
+            for (int cell : dirtyCells) {
+                if (kept.contains(cell % columns, cell / columns)) {
+                    blockCount++;
+                    bytes += deltaBlocks[cell].length;
+                }
+            }
+        } else {
+            for (int y = kept.minY(); y <= kept.maxY(); y++) {
+                for (int x = kept.minX(); x <= kept.maxX(); x++) {
+                    byte[] block = deltaBlocks[y * columns + x];
+                    if (block != null) {
+                        blockCount++;
+                        bytes += block.length;
+                    }
+                }
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(keyframe ? FrameEncoder.TYPE_KEYFRAME : FrameEncoder.TYPE_DELTA)
+                .put(FrameEncoder.VERSION).putShort((short) 0).putInt((int) tick);
+        out.putInt(droppedCount);
+        if (droppedCount > 0) {
+            for (int y = previousCells.minY(); y <= previousCells.maxY(); y++) {
+                for (int x = previousCells.minX(); x <= previousCells.maxX(); x++) {
+                    if (!kept.contains(x, y)) out.putInt(y * columns + x);
+                }
+            }
+        }
+        out.putInt(blockCount);
+        for (int y = added.minY(); y <= added.maxY(); y++) {
+            for (int x = added.minX(); x <= added.maxX(); x++) {
+                if (kept.contains(x, y)) continue;
+                byte[] block = keyframeBlock(y * columns + x);
+                if (block != null) out.put(block);
+            }
+        }
+        if (scanDirty) {
+            for (int cell : dirtyCells) {
+                if (kept.contains(cell % columns, cell / columns)) out.put(deltaBlocks[cell]);
+            }
+        } else {
+            for (int y = kept.minY(); y <= kept.maxY(); y++) {
+                for (int x = kept.minX(); x <= kept.maxX(); x++) {
+                    byte[] block = deltaBlocks[y * columns + x];
+                    if (block != null) out.put(block);
+                }
+            }
+        }
+        return out.array();
+    }
+
+    private byte[] keyframeBlock(int cell) {
+        return keyframeBlocks != null ? keyframeBlocks[cell] : null;
+    }
+
+    private static CellRect intersect(CellRect a, CellRect b) {
+        if (a.isEmpty() || b.isEmpty()) return CellRect.EMPTY;
+        CellRect result = new CellRect(Math.max(a.minX(), b.minX()), Math.max(a.minY(), b.minY()),
+                Math.min(a.maxX(), b.maxX()), Math.min(a.maxY(), b.maxY()));
+        return result.isEmpty() ? CellRect.EMPTY : result;
+    }
+}
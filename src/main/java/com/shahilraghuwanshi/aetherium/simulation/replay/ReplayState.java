@@ -0,0 +1,100 @@
+package com.shahilraghuwanshi.aetherium.simulation.replay;
+
+import com.shahilraghuwanshi.aetherium.simulation.VehicleStore;
+import com.shahilraghuwanshi.aetherium.simulation.io.LongIntHashMap;
+
+import java.nio.ByteBuffer;
+/**
+ * The simulation state rebuilt from a recording, as of {@link #getTick()}: every vehicle's recorded id,
+ * position and speed in a {@link VehicleStore}, so it can be streamed like live state, and the light states
+ * indexed like the signals. Replayed vehicles have no path.
+ * <p>
+ * Positions are exactly the recorded fixed-point values, so applying deltas never accumulates rounding
+ * error. Not thread-safe.
+ */
+public final class ReplayState {
+
+    private static final int[] NO_PATH = new int[0];
+
+    private final VehicleStore vehicles = new VehicleStore(1024);
+    private final LongIntHashMap handles = new LongIntHashMap(1024); // Vehicle id -> handle
+    private final byte[] lightStates;
+    private long tick = -1;
+
+    public ReplayState(int signalCount) {
+        lightStates = new byte[signalCount];
+    }
+
+    public VehicleStore getVehicles() {
+        return vehicles;
+    }
+
+    /** TrafficLight.State ordinals, indexed like the signals; changes as records are applied. */
+    public byte[] getLightStates() {
+        return lightStates;
+    }
+
+    /** The tick of the last record applied, or -1. */
+    public long getTick() {
+        return tick;
+    }
+
+    void applyKeyframe(long tick, ByteBuffer payload) {
+        vehicles.clear();
+        handles.clear();
+        int n = payload.getInt();
+        payload.position(upsertAll(n, payload, payload.position()));
+        payload.get(lightStates);
+        this.tick = tick;
+    }
+
+    void applyDelta(long tick, ByteBuffer payload) {
+        int n = payload.getInt();
+        for (int i = 0; i < n; i++) {
+            int handle = handles.remove(payload.getLong(), -1);
+            if (handle >= 0) vehicles.removeAt(vehicles.slotOf(handle));
+        }
+
+        n = payload.getInt();
+        payload.position(upsertAll(n, payload, payload.position()));
+
+        n = payload.getInt();
+        int base = payload.position();
+        for (int i = 0; i < n; i++) {
+            int slot = vehicles.slotOf(handles.get(payload.getLong(base + i * 8), -1));
+            if (slot < 0) continue;
+            int x = TrajectoryFormat.quantize(vehicles.x(slot)) + payload.getShort(base + n * 8 + i * 2);
+            int y = TrajectoryFormat.quantize(vehicles.y(slot)) + payload.getShort(base + n * 10 + i * 2);
+            vehicles.setPosition(slot, TrajectoryFormat.dequantize(x), TrajectoryFormat.dequantize(y));
+            vehicles.setSpeed(slot, TrajectoryFormat.dequantize(payload.getShort(base + n * 12 + i * 2)));
+        }
+        payload.position(base + n * 14);
+
+        n = payload.getInt();
+        base = payload.position();
+        for (int i = 0; i < n; i++) {
+            lightStates[payload.getInt(base + i * 4)] = payload.get(base + n * 4 + i);
+        }
+        this.tick = tick;
+    }
+
+    // Columns of n upserts starting at base: i64 ids, i32 xs, i32 ys, i16 speeds; returns the position after them
+    private int upsertAll(int n, ByteBuffer payload, int base) {
+        for (int i = 0; i < n; i++) {
+            upsert(payload.getLong(base + i * 8), payload.getInt(base + n * 8 + i * 4), payload.getInt(base + n * 12 + i * 4),
+                    payload.getShort(base + n * 16 + i * 2));
+        }
+        return base + n * 18;
+    }
+
+    private void upsert(long id, int x, int y, short speed) {
+        int slot = vehicles.slotOf(handles.get(id, -1));
+        if (slot < 0) {
+            handles.put(id, vehicles.add(id, TrajectoryFormat.dequantize(x), TrajectoryFormat.dequantize(y),
+                    TrajectoryFormat.dequantize(speed), NO_PATH));
+        } else {
+            vehicles.setPosition(slot, TrajectoryFormat.dequantize(x), TrajectoryFormat.dequantize(y));
+            vehicles.setSpeed(slot, TrajectoryFormat.dequantize(speed));
+        }
+    }
+}
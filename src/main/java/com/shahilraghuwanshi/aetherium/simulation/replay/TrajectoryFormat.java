@@ -0,0 +1,79 @@
+package com.shahilraghuwanshi.aetherium.simulation.replay;
+
+import com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder;
+
+import java.nio.file.Path;
+
+/**
+ * Layout of a recording: a directory of segment files named {@code segment-<first tick>.atr}, each one
+ * self-contained, since it starts with a keyframe. All values are little-endian. A segment is:
+ * <pre>
+ *   u32 magic          {@link #MAGIC}
+ *   u16 version        {@link #VERSION}
+ *   u16 reserved
+ *   i64 graph          fingerprint of the road network recorded
+ *   f64 tickSeconds
+ *   i64 firstTick
+ *   u32 signalCount
+ *   u32 reserved
+ *   then records until the end of the file
+ * </pre>
+ * Each record holds one tick, its payload deflated:
+ * <pre>
+ *   u8  type           1 = keyframe, 2 = delta against the previous record
+ *   u8[3] reserved
+ *   i64 tick
+ *   u32 rawLength
+ *   u32 storedLength, then the deflated payload
+ * </pre>
+ * Payloads are columnar, which deflates better than interleaved records. Positions and speeds are
+ * fixed-point with {@link FrameEncoder#POSITION_SCALE} steps per unit, as on the wire. A keyframe is:
+ * <pre>
+ *   u32 n, then i64 id[n], i32 x[n], i32 y[n], i16 speed[n]
+ *   u8  state[signalCount]                                        (TrafficLight.State ordinals)
+ * </pre>
+ * A delta is:
+ * <pre>
+ *   u32 n, then i64 id[n]                                         (despawned)
+ *   u32 n, then i64 id[n], i32 x[n], i32 y[n], i16 speed[n]       (spawned, or moved too far for i16)
+ *   u32 n, then i64 id[n], i16 dx[n], i16 dy[n], i16 speed[n]     (moved, or changed speed)
+ *   u32 n, then u32 signal[n], u8 state[n]                        (lights that changed)
+ * </pre>
+ * Ticks may skip: a tick the writer could not keep up with is folded into the next delta. A crash can
+ * leave a truncated last record, which readers ignore.
+ */
+final class TrajectoryFormat {
+
+    static final int MAGIC = 0x4A525441; // "ATRJ"
+    static final short VERSION = 2; // 2: vehicle ids widened to i64
+    static final int SEGMENT_HEADER_BYTES = 40;
+    static final int RECORD_HEADER_BYTES = 20;
+    static final byte TYPE_KEYFRAME = 1;
+    static final byte TYPE_DELTA = 2;
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".atr";
+
+    private TrajectoryFormat() {
+    }
+
+    static Path segmentFile(Path directory, long firstTick) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, firstTick, SEGMENT_SUFFIX));
+    }
+
+    static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    static int quantize(double value) {
+        return (int) Math.round(value * FrameEncoder.POSITION_SCALE);
+    }
+
+    static short quantizeSpeed(double speed) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, quantize(speed)));
+    }
+
+    static double dequantize(int value) {
+        return (double) value / FrameEncoder.POSITION_SCALE;
+    }
+}
@@ -0,0 +1,196 @@
+package com.shahilraghuwanshi.aetherium.simulation.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a recording written by {@link TrajectoryRecorder}. Every segment is memory-mapped, and opening
+ * only walks the record headers to index each record's tick and place, so opening is fast whatever the
+ * length of the run and the page cache serves repeated seeks. A seek rebuilds the state from the
+ * nearest keyframe at or before the target, which is at most one keyframe interval of records away.
+ * <p>
+ * A recording that is still being written can be opened; records appended afterwards are not seen.
+ * Not thread-safe.
+ */
+public final class TrajectoryReader implements AutoCloseable {
+
+    private final Path directory;
+    private final ByteBuffer[] segments;
+    private final long graphFingerprint;
+    private final double tickSeconds;
+    private final int signalCount;
+    private final Inflater inflater = new Inflater();
+    private byte[] raw = new byte[64 * 1024];
+
+    // Per record, in tick order
+    private long[] ticks = new long[1024];
+    private int[] segmentOf = new int[1024];
+    private int[] positions = new int[1024]; // Of the record header within its segment
+    private boolean[] keyframes = new boolean[1024];
+    private int count;
+
+    public TrajectoryReader(Path directory) throws IOException {
+        this.directory = directory;
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(TrajectoryFormat::isSegment).sorted().toList();
+        }
+        if (files.isEmpty()) throw new IOException("No recording segments in " + directory);
+
+        segments = new ByteBuffer[files.size()];
+        long fingerprint = 0;
+        double seconds = 0;
+        int signals = 0;
+        for (int s = 0; s < segments.length; s++) {
+            ByteBuffer segment = map(files.get(s));
+            if (segment.remaining() < TrajectoryFormat.SEGMENT_HEADER_BYTES
+                    || segment.getInt() != TrajectoryFormat.MAGIC || segment.getShort() != TrajectoryFormat.VERSION) {
+                throw new IOException("Not a recording segment (or an unsupported version): " + files.get(s));
+            }
+            segment.getShort();
+            long segmentFingerprint = segment.getLong();
+            double segmentTickSeconds = segment.getDouble();
+            segment.getLong();
+            int segmentSignals = segment.getInt();
+            segment.getInt();
+            if (s == 0) {
+                fingerprint = segmentFingerprint;
+                seconds = segmentTickSeconds;
+                signals = segmentSignals;
+            } else if (segmentFingerprint != fingerprint || segmentSignals != signals) {
+                throw new IOException("Segment " + files.get(s) + " belongs to a different network than the rest of " + directory);
+            }
+            segments[s] = segment;
+            index(s, segment);
+        }
+        graphFingerprint = fingerprint;
+        tickSeconds = seconds;
+        signalCount = signals;
+        if (count == 0 || !keyframes[0]) throw new IOException("Recording " + directory + " holds no complete keyframe");
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getGraphFingerprint() {
+        return graphFingerprint;
+    }
+
+    public double getTickSeconds() {
+        return tickSeconds;
+    }
+
+    public int getSignalCount() {
+        return signalCount;
+    }
+
+    public int recordCount() {
+        return count;
+    }
+
+    public long tick(int record) {
+        return ticks[record];
+    }
+
+    public long firstTick() {
+        return ticks[0];
+    }
+
+    public long lastTick() {
+        return ticks[count - 1];
+    }
+
+    /** The last record at or before {@code tick}, or the first record if {@code tick} precedes the recording. */
+    public int recordAt(long tick) {
+        int index = Arrays.binarySearch(ticks, 0, count, tick);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    /** Rebuilds the state as of {@code record}, from the nearest keyframe at or before it. */
+    public void seek(int record, ReplayState state) {
+        int keyframe = record;
+        while (!keyframes[keyframe]) keyframe--;
+        for (int r = keyframe; r <= record; r++) apply(r, state);
+    }
+
+    /** Applies one record to a state that is as of the previous record; keyframes apply to any state. */
+    public void apply(int record, ReplayState state) {
+        ByteBuffer segment = segments[segmentOf[record]];
+        int position = positions[record];
+        int rawLength = segment.getInt(position + 12);
+        int storedLength = segment.getInt(position + 16);
+        if (raw.length < rawLength) raw = new byte[Math.max(rawLength, raw.length * 2)];
+
+        inflater.reset();
+        inflater.setInput(segment.slice(position + TrajectoryFormat.RECORD_HEADER_BYTES, storedLength));
+        try {
+            for (int inflated = 0; inflated < rawLength; ) {
+                int n = inflater.inflate(raw, inflated, rawLength - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new DataFormatException("payload ends after " + inflated + " of " + rawLength + " bytes");
+                }
+                inflated += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt record for tick " + ticks[record] + " in " + directory + ": " + e.getMessage(), e);
+        }
+
+        ByteBuffer payload = ByteBuffer.wrap(raw, 0, rawLength).order(ByteOrder.LITTLE_ENDIAN);
+        if (keyframes[record]) state.applyKeyframe(ticks[record], payload);
+        else state.applyDelta(ticks[record], payload);
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+    }
+
+    // Walks the record headers; a truncated last record (the writer was killed mid-write) ends the segment
+    private void index(int segmentIndex, ByteBuffer segment) {
+        int position = TrajectoryFormat.SEGMENT_HEADER_BYTES;
+        int limit = segment.limit();
+        while (position + TrajectoryFormat.RECORD_HEADER_BYTES <= limit) {
+            byte type = segment.get(position);
+            long tick = segment.getLong(position + 4);
+            int storedLength = segment.getInt(position + 16);
+            int end = position + TrajectoryFormat.RECORD_HEADER_BYTES + storedLength;
+            if (storedLength < 0 || end > limit || end < 0) break;
+            if (type != TrajectoryFormat.TYPE_KEYFRAME && type != TrajectoryFormat.TYPE_DELTA) break;
+            if (count > 0 && tick <= ticks[count - 1]) break;
+            if (count == ticks.length) {
+                int capacity = count * 2;
+                ticks = Arrays.copyOf(ticks, capacity);
+                segmentOf = Arrays.copyOf(segmentOf, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+                keyframes = Arrays.copyOf(keyframes, capacity);
+            }
+            ticks[count] = tick;
+            segmentOf[count] = segmentIndex;
+            positions[count] = position;
+            keyframes[count] = type == TrajectoryFormat.TYPE_KEYFRAME;
+            count++;
+            position = end;
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Recording segment too large to map: " + file);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size); // Stays valid after close
+            return mapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
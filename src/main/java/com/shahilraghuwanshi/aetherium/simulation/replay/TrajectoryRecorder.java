@@ -0,0 +1,381 @@
+package com.shahilraghuwanshi.aetherium.simulation.replay;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationSnapshot;
+import com.shahilraghuwanshi.aetherium.simulation.io.LongIntHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Records every tick's vehicle and signal state into an append-only, segmented recording (see
+ * {@link TrajectoryFormat}) on a writer thread of its own.
+ * <p>
+ * The simulation thread only hands over the tick's {@link SimulationSnapshot}, which the engine publishes
+ * anyway and which never changes afterwards; diffing, deflating and writing all happen on the writer. If
+ * the writer falls {@code queueCapacity} ticks behind, further ticks are not queued, and the next one
+ * that is gets written as a delta against the last tick written, so the recording skips ticks instead of
+ * slowing the simulation down. A keyframe every {@code keyframeInterval} records bounds the work of a
+ * seek, and a new segment, starting with a keyframe, is begun once the current one reaches
+ * {@code segmentBytes}.
+ */
+public final class TrajectoryRecorder implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TrajectoryRecorder.class);
+
+    private final Path directory;
+    private final long graphFingerprint;
+    private final double tickSeconds;
+    private final int keyframeInterval;
+    private final long segmentBytes;
+    private final BlockingQueue<SimulationSnapshot> queue;
+    private final Thread writer;
+    private volatile boolean closing;
+    private volatile boolean failed;
+    private volatile long recordedTicks; // Written by the writer thread only
+    private volatile long bytesWritten;  // Written by the writer thread only
+    private volatile long droppedTicks;  // Written by the simulation thread only
+
+    // Writer thread only
+    private final Deflater deflater;
+    private final ByteBuffer recordHeader = ByteBuffer.allocateDirect(TrajectoryFormat.RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer payload = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private byte[] deflated = new byte[64 * 1024];
+    private FileChannel channel;
+    private long segmentPosition;
+    private int sinceKeyframe;
+    private int signalCount = -1;
+
+    // The last tick written and the one being written, quantised
+    private Ticks previous = new Ticks();
+    private Ticks current = new Ticks();
+    private final LongIntHashMap indices = new LongIntHashMap(1024); // Vehicle id -> index in the last tick written
+    private byte[] previousLights = new byte[0];
+    private boolean[] kept = new boolean[1024]; // Per index of previous: still present in current
+    private long[] despawns = new long[1024];   // Ids
+    private int[] upserts = new int[1024];      // Indices into current
+    private long[] moveIds = new long[1024];
+    private short[] moveDxs = new short[1024];
+    private short[] moveDys = new short[1024];
+    private short[] moveSpeeds = new short[1024];
+    private int[] lightChanges = new int[64];
+
+    /**
+     * @param graphFingerprint {@link com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph#fingerprint()} of
+     *                         the network simulated, checked on replay
+     * @param compressionLevel {@link Deflater} level; 1 keeps up with large fleets, higher levels write less
+     */
+    public TrajectoryRecorder(Path directory, long graphFingerprint, double tickSeconds, int keyframeInterval,
+                              long segmentBytes, int queueCapacity, int compressionLevel) throws IOException {
+        if (segmentBytes > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Segments are memory-mapped whole and must stay under 1 GB: " + segmentBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.graphFingerprint = graphFingerprint;
+        this.tickSeconds = tickSeconds;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.segmentBytes = segmentBytes;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.deflater = new Deflater(compressionLevel);
+        this.writer = new Thread(this::run, "trajectory-recorder");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** Ticks written so far. */
+    public long getRecordedTicks() {
+        return recordedTicks;
+    }
+
+    /** Ticks the writer had no room for, folded into the next tick written. */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /** Bytes written to segments so far, headers included. */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /** False if an I/O error stopped the recording; the error has been logged. */
+    public boolean isHealthy() {
+        return !failed;
+    }
+
+    /**
+     * Queues the state at the end of a tick; never blocks. Snapshots must be passed in tick order from one
+     * thread.
+     * @return false if the tick was not queued, because the writer is behind, failed or closed.
+     */
+    public boolean record(SimulationSnapshot snapshot) {
+        if (closing || failed || !queue.offer(snapshot)) {
+            droppedTicks++;
+            return false;
+        }
+        return true;
+    }
+
+    /** Writes out every queued tick, then closes the recording. */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deflater.end();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                SimulationSnapshot snapshot = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (snapshot != null) write(snapshot);
+                else if (closing) break;
+            }
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            queue.clear();
+            log.error("Recording to {} failed; no further ticks will be recorded.", directory, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+        }
+    }
+
+    private void write(SimulationSnapshot snapshot) throws IOException {
+        if (signalCount < 0) {
+            signalCount = snapshot.lightCount();
+            previousLights = new byte[signalCount];
+        }
+        current.fill(snapshot);
+        boolean newSegment = channel == null || segmentPosition >= segmentBytes;
+        if (newSegment) openSegment(snapshot.getSequence());
+        boolean keyframe = newSegment || sinceKeyframe >= keyframeInterval;
+
+        payload.clear();
+        if (keyframe) {
+            encodeKeyframe(snapshot);
+            sinceKeyframe = 1;
+        } else {
+            encodeDelta(snapshot);
+            sinceKeyframe++;
+        }
+        writeRecord(keyframe ? TrajectoryFormat.TYPE_KEYFRAME : TrajectoryFormat.TYPE_DELTA, snapshot.getSequence());
+
+        for (int i = 0; i < signalCount; i++) previousLights[i] = snapshot.lightState(i);
+        Ticks swap = previous;
+        previous = current;
+        current = swap;
+        recordedTicks++;
+    }
+
+    private void encodeKeyframe(SimulationSnapshot snapshot) {
+        int n = current.count;
+        indices.clear();
+        for (int i = 0; i < n; i++) indices.put(current.ids[i], i);
+
+        ensurePayload(4 + n * 18 + signalCount);
+        payload.putInt(n);
+        putLongs(current.ids, n);
+        putInts(current.xs, n);
+        putInts(current.ys, n);
+        putShorts(current.speeds, n);
+        for (int i = 0; i < signalCount; i++) payload.put(snapshot.lightState(i));
+    }
+
+    // Vehicles keep their index from tick to tick, except the few moved into the slot of one that arrived,
+    // so the id index is only consulted, and updated, for those
+    private void encodeDelta(SimulationSnapshot snapshot) {
+        if (kept.length < previous.count) kept = new boolean[Math.max(previous.count, kept.length * 2)];
+        Arrays.fill(kept, 0, previous.count, false);
+        int upsertCount = 0;
+        int moveCount = 0;
+        for (int i = 0; i < current.count; i++) {
+            long id = current.ids[i];
+            int before = i < previous.count && previous.ids[i] == id ? i : indices.get(id, -1);
+            if (before != i) indices.put(id, i);
+            if (before >= 0) {
+                kept[before] = true;
+                int dx = current.xs[i] - previous.xs[before];
+                int dy = current.ys[i] - previous.ys[before];
+                short speed = current.speeds[i];
+                if (dx == 0 && dy == 0 && speed == previous.speeds[before]) continue;
+                if (fitsShort(dx) && fitsShort(dy)) {
+                    if (moveCount == moveIds.length) growMoves();
+                    moveIds[moveCount] = id;
+                    moveDxs[moveCount] = (short) dx;
+                    moveDys[moveCount] = (short) dy;
+                    moveSpeeds[moveCount] = speed;
+                    moveCount++;
+                    continue;
+                }
+            }
+            upserts = append(upserts, upsertCount++, i);
+        }
+        int despawnCount = 0;
+        for (int i = 0; i < previous.count; i++) {
+            if (kept[i]) continue;
+            despawns = append(despawns, despawnCount++, previous.ids[i]);
+            indices.remove(previous.ids[i], -1);
+        }
+        int lightCount = 0;
+        for (int i = 0; i < signalCount; i++) {
+            if (snapshot.lightState(i) != previousLights[i]) lightChanges = append(lightChanges, lightCount++, i);
+        }
+
+        ensurePayload(16 + despawnCount * 8 + upsertCount * 18 + moveCount * 14 + lightCount * 5);
+        payload.putInt(despawnCount);
+        putLongs(despawns, despawnCount);
+        payload.putInt(upsertCount);
+        for (int i = 0; i < upsertCount; i++) payload.putLong(current.ids[upserts[i]]);
+        for (int i = 0; i < upsertCount; i++) payload.putInt(current.xs[upserts[i]]);
+        for (int i = 0; i < upsertCount; i++) payload.putInt(current.ys[upserts[i]]);
+        for (int i = 0; i < upsertCount; i++) payload.putShort(current.speeds[upserts[i]]);
+        payload.putInt(moveCount);
+        putLongs(moveIds, moveCount);
+        putShorts(moveDxs, moveCount);
+        putShorts(moveDys, moveCount);
+        putShorts(moveSpeeds, moveCount);
+        payload.putInt(lightCount);
+        putInts(lightChanges, lightCount);
+        for (int i = 0; i < lightCount; i++) payload.put(snapshot.lightState(lightChanges[i]));
+    }
+
+    // Bulk copies; on little-endian hardware these are plain memory copies
+    private void putLongs(long[] values, int length) {
+        payload.asLongBuffer().put(values, 0, length);
+        payload.position(payload.position() + length * 8);
+    }
+
+    private void putInts(int[] values, int length) {
+        payload.asIntBuffer().put(values, 0, length);
+        payload.position(payload.position() + length * 4);
+    }
+
+    private void putShorts(short[] values, int length) {
+        payload.asShortBuffer().put(values, 0, length);
+        payload.position(payload.position() + length * 2);
+    }
+
+    private void growMoves() {
+        int capacity = moveIds.length * 2;
+        moveIds = Arrays.copyOf(moveIds, capacity);
+        moveDxs = Arrays.copyOf(moveDxs, capacity);
+        moveDys = Arrays.copyOf(moveDys, capacity);
+        moveSpeeds = Arrays.copyOf(moveSpeeds, capacity);
+    }
+
+    private void writeRecord(byte type, long tick) throws IOException {
+        int rawLength = payload.position();
+        deflater.reset();
+        deflater.setInput(payload.array(), 0, rawLength);
+        deflater.finish();
+        int stored = 0;
+        while (!deflater.finished()) {
+            if (stored == deflated.length) deflated = Arrays.copyOf(deflated, deflated.length * 2);
+            stored += deflater.deflate(deflated, stored, deflated.length - stored);
+        }
+        recordHeader.clear();
+        recordHeader.put(type).put((byte) 0).putShort((short) 0).putLong(tick).putInt(rawLength).putInt(stored);
+        recordHeader.flip();
+        writeFully(recordHeader, ByteBuffer.wrap(deflated, 0, stored));
+    }
+
+    private void openSegment(long firstTick) throws IOException {
+        closeSegment();
+        Path file = TrajectoryFormat.segmentFile(directory, firstTick);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        segmentPosition = 0;
+        ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.SEGMENT_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(TrajectoryFormat.MAGIC).putShort(TrajectoryFormat.VERSION).putShort((short) 0)
+                .putLong(graphFingerprint).putDouble(tickSeconds).putLong(firstTick).putInt(signalCount).putInt(0);
+        header.flip();
+        writeFully(header);
+        log.debug("Recording segment {} started.", file);
+    }
+
+    private void writeFully(ByteBuffer... buffers) throws IOException {
+        long total = 0;
+        for (ByteBuffer buffer : buffers) total += buffer.remaining();
+        for (long remaining = total; remaining > 0; ) remaining -= channel.write(buffers);
+        segmentPosition += total;
+        bytesWritten += total;
+    }
+
+    private void closeSegment() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Could not close recording segment in {}: {}", directory, e.getMessage());
+        }
+        channel = null;
+    }
+
+    private void ensurePayload(int bytes) {
+        if (payload.capacity() < bytes) {
+            payload = ByteBuffer.allocate(Math.max(bytes, payload.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private static int[] append(int[] array, int index, int value) {
+        if (index == array.length) array = Arrays.copyOf(array, array.length * 2);
+        array[index] = value;
+        return array;
+    }
+
+    private static long[] append(long[] array, int index, long value) {
+        if (index == array.length) array = Arrays.copyOf(array, array.length * 2);
+        array[index] = value;
+        return array;
+    }
+
+    private static boolean fitsShort(int value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    // One tick's vehicles, quantised as they are written
+    private static final class Ticks {
+        int count;
+        long[] ids = new long[1024];
+        int[] xs = new int[1024];
+        int[] ys = new int[1024];
+        short[] speeds = new short[1024];
+
+        void fill(SimulationSnapshot snapshot) {
+            count = snapshot.size();
+            if (ids.length < count) {
+                int capacity = Math.max(count, ids.length * 2);
+                ids = new long[capacity];
+                xs = new int[capacity];
+                ys = new int[capacity];
+                speeds = new short[capacity];
+            }
+            for (int i = 0; i < count; i++) {
+                ids[i] = snapshot.id(i);
+                xs[i] = TrajectoryFormat.quantize(snapshot.x(i));
+                ys[i] = TrajectoryFormat.quantize(snapshot.y(i));
+                speeds[i] = TrajectoryFormat.quantizeSpeed(snapshot.speed(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+/**
+ * A* shortest-path search over a {@link RoadGraph}. By default edges cost their length and the heuristic
+ * is the straight-line distance; other {@link EdgeWeights}, such as live travel times, can be plugged in.
+ * <p>
+ * Search state lives in a per-thread {@link SearchState} that is reused across queries, so a query
+ * allocates nothing except the returned path. Instances are thread-safe.
+ */
+public final class AStarRouter implements Router {
+
+    private static final int[] NO_PATH = new int[0];
+
+    private final RoadGraph graph;
+    private final EdgeWeights weights;
+    private final ThreadLocal<SearchState> searchStates;
+
+    public AStarRouter(RoadGraph graph) {
+        this(graph, EdgeWeights.lengths(graph));
+    }
+
+    public AStarRouter(RoadGraph graph, EdgeWeights weights) {
+        this.graph = graph;
+        this.weights = weights;
+        this.searchStates = ThreadLocal.withInitial(() -> new SearchState(graph.nodeCount()));
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public int[] route(int start, int end) {
+        if (start < 0 || end < 0 || start == end) return NO_PATH;
+        SearchState state = searchStates.get();
+        state.reset(graph.nodeCount());
+        IndexedMinHeap openSet = state.openSet;
+
+        state.reach(start, 0, -1);
+        openSet.insertOrDecrease(start, weights.lowerBound(start, end));
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.poll();
+            if (current == end) return state.extractPath(end);
+            state.close(current);
+            double currentCost = state.gCosts[current];
+
+            for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++) {
+                int neighbor = graph.target(edge);
+                if (state.isClosed(neighbor)) continue;
+                double tentativeGCost = currentCost + weights.cost(edge);
+                if (tentativeGCost < state.gCost(neighbor)) {
+                    state.reach(neighbor, tentativeGCost, current);
+                    openSet.insertOrDecrease(neighbor, tentativeGCost + weights.lowerBound(neighbor, end));
+                }
+            }
+        }
+        return NO_PATH;
+    }
+}
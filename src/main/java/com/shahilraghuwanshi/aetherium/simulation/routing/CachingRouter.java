@@ -0,0 +1,42 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+/**
+ * Decorates a {@link Router} with a {@link RouteCache}. Unreachable pairs are cached as well, so
+ * repeated requests for them don't re-run a full search either.
+ */
+public final class CachingRouter implements Router {
+
+    private final Router delegate;
+    private final RouteCache cache;
+
+    public CachingRouter(Router delegate, RouteCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return delegate.getGraph();
+    }
+
+    public Router getDelegate() {
+        return delegate;
+    }
+
+    public RouteCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public int[] route(int start, int end) {
+        if (start < 0 || end < 0 || start == end) return delegate.route(start, end);
+        int[] path = cache.get(start, end);
+        if (path == null) {
+            path = delegate.route(start, end);
+            cache.put(start, end, path);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,95 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.io.ArrayFileWriter;
+import com.shahilraghuwanshi.aetherium.simulation.io.MappedArrayReader;
+
+import java.io.IOException;
+
+/**
+ * Result of Contraction Hierarchies preprocessing: a node ranking plus two CSR edge sets.
+ * <p>
+ * The upward set stores, at each node {@code v}, the edges {@code v -> w} with {@code rank(w) > rank(v)}.
+ * The downward set stores, at each node {@code v}, the edges {@code u -> v} with {@code rank(u) > rank(v)},
+ * indexed by their head so that a backward search can walk them in reverse. Shortcut edges record the
+ * contracted node they bypass in {@code middle}; original edges have {@code middle == -1}.
+ */
+public final class ContractionHierarchy {
+
+    final long graphFingerprint;
+    final int[] ranks;
+
+    final int[] upOffsets;
+    final int[] upTargets;
+    final double[] upWeights;
+    final int[] upMiddles;
+
+    final int[] downOffsets;
+    final int[] downSources;
+    final double[] downWeights;
+    final int[] downMiddles;
+
+    ContractionHierarchy(long graphFingerprint, int[] ranks,
+                         int[] upOffsets, int[] upTargets, double[] upWeights, int[] upMiddles,
+                         int[] downOffsets, int[] downSources, double[] downWeights, int[] downMiddles) {
+        this.graphFingerprint = graphFingerprint;
+        this.ranks = ranks;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downWeights = downWeights;
+        this.downMiddles = downMiddles;
+    }
+
+    public void writeTo(ArrayFileWriter out) throws IOException {
+        out.writeLong(graphFingerprint);
+        out.writeInts(ranks);
+        out.writeInts(upOffsets);
+        out.writeInts(upTargets);
+        out.writeDoubles(upWeights);
+        out.writeInts(upMiddles);
+        out.writeInts(downOffsets);
+        out.writeInts(downSources);
+        out.writeDoubles(downWeights);
+        out.writeInts(downMiddles);
+    }
+
+    public static ContractionHierarchy readFrom(MappedArrayReader in) throws IOException {
+        return new ContractionHierarchy(in.readLong(), in.readInts(),
+                in.readInts(), in.readInts(), in.readDoubles(), in.readInts(),
+                in.readInts(), in.readInts(), in.readDoubles(), in.readInts());
+    }
+
+    public long getGraphFingerprint() {
+        return graphFingerprint;
+    }
+
+    public int nodeCount() {
+        return ranks.length;
+    }
+
+    /** Number of upward plus downward edges, shortcuts included. */
+    public int edgeCount() {
+        return upTargets.length + downSources.length;
+    }
+
+    /** Index of the upward edge {@code from -> to}, the lightest if there are several, or -1 if there is none. */
+    int findUpEdge(int from, int to) {
+        int best = -1;
+        for (int e = upOffsets[from], end = upOffsets[from + 1]; e < end; e++) {
+            if (upTargets[e] == to && (best < 0 || upWeights[e] < upWeights[best])) best = e;
+        }
+        return best;
+    }
+
+    /** Index of the downward edge {@code from -> to} stored at {@code to}, or -1 if there is none. */
+    int findDownEdge(int from, int to) {
+        int best = -1;
+        for (int e = downOffsets[to], end = downOffsets[to + 1]; e < end; e++) {
+            if (downSources[e] == from && (best < 0 || downWeights[e] < downWeights[best])) best = e;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,289 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+import java.util.Arrays;
+
+/**
+ * Contracts every node of a {@link RoadGraph} in order of increasing importance and produces a
+ * {@link ContractionHierarchy}.
+ * <p>
+ * Importance is the usual edge difference (shortcuts added minus edges removed) plus the number of
+ * already-contracted neighbours, updated lazily when a node reaches the top of the queue. Witness
+ * searches are bounded by {@link #WITNESS_SETTLE_LIMIT}; giving up early only adds a redundant
+ * shortcut and never affects correctness. Closed roads are left out, so a hierarchy is only valid for
+ * the closures of the graph it was built from, which its fingerprint covers.
+ */
+public final class ContractionHierarchyBuilder {
+
+    // Witness searches are cut off after this many settled nodes; priority estimates use a cheaper limit
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int ESTIMATE_SETTLE_LIMIT = 50;
+
+    private final RoadGraph graph;
+    private final int n;
+
+    // Working graph of the not-yet-contracted nodes, one growable edge list per node and direction
+    private final int[][] outTargets;
+    private final double[][] outWeights;
+    private final int[][] outMiddles;
+    private final int[] outSizes;
+    private final int[][] inSources;
+    private final double[][] inWeights;
+    private final int[][] inMiddles;
+    private final int[] inSizes;
+
+    private final int[] contractedNeighbors;
+    private final int[] levels;
+    private final SearchState witness;
+
+    // Final hierarchy edges, collected as (owner, other, weight, middle) and compacted at the end
+    private final EdgeBuffer up = new EdgeBuffer();
+    private final EdgeBuffer down = new EdgeBuffer();
+
+    public ContractionHierarchyBuilder(RoadGraph graph) {
+        this.graph = graph;
+        this.n = graph.nodeCount();
+        outTargets = new int[n][];
+        outWeights = new double[n][];
+        outMiddles = new int[n][];
+        outSizes = new int[n];
+        inSources = new int[n][];
+        inWeights = new double[n][];
+        inMiddles = new int[n][];
+        inSizes = new int[n];
+        contractedNeighbors = new int[n];
+        levels = new int[n];
+        witness = new SearchState(n);
+
+        for (int v = 0; v < n; v++) {
+            int capacity = Math.max(graph.degree(v), 2);
+            outTargets[v] = new int[capacity];
+            outWeights[v] = new double[capacity];
+            outMiddles[v] = new int[capacity];
+            inSources[v] = new int[capacity];
+            inWeights[v] = new double[capacity];
+            inMiddles[v] = new int[capacity];
+        }
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (graph.source(e) != graph.target(e) && !graph.isClosed(e)) {
+                addOrImprove(graph.source(e), graph.target(e), graph.length(e), -1);
+            }
+        }
+    }
+
+    public ContractionHierarchy build() {
+        IndexedMinHeap queue = new IndexedMinHeap(n);
+        for (int v = 0; v < n; v++) {
+            queue.insertOrDecrease(v, priority(v));
+        }
+
+        int[] ranks = new int[n];
+        int rank = 0;
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            // Lazy update: if the node got less attractive since it was queued, put it back
+            double current = priority(v);
+            if (!queue.isEmpty() && current > queue.peekKey()) {
+                queue.insertOrDecrease(v, current);
+                continue;
+            }
+            contract(v);
+            ranks[v] = rank++;
+        }
+
+        int[] upOffsets = new int[n + 1];
+        int[] upTargets = new int[up.size];
+        double[] upWeights = new double[up.size];
+        int[] upMiddles = new int[up.size];
+        up.compact(n, upOffsets, upTargets, upWeights, upMiddles);
+
+        int[] downOffsets = new int[n + 1];
+        int[] downSources = new int[down.size];
+        double[] downWeights = new double[down.size];
+        int[] downMiddles = new int[down.size];
+        down.compact(n, downOffsets, downSources, downWeights, downMiddles);
+
+        return new ContractionHierarchy(graph.fingerprint(), ranks,
+                upOffsets, upTargets, upWeights, upMiddles,
+                downOffsets, downSources, downWeights, downMiddles);
+    }
+
+    private double priority(int v) {
+        int shortcuts = processShortcuts(v, false);
+        return 2.0 * (shortcuts - (inSizes[v] + outSizes[v])) + contractedNeighbors[v] + levels[v];
+    }
+
+    private void contract(int v) {
+        processShortcuts(v, true);
+
+        // Every remaining neighbour ranks higher than v, so its edges become part of the hierarchy
+        for (int i = 0; i < outSizes[v]; i++) {
+            int w = outTargets[v][i];
+            up.add(v, w, outWeights[v][i], outMiddles[v][i]);
+            removeIn(w, v);
+            contractedNeighbors[w]++;
+            levels[w] = Math.max(levels[w], levels[v] + 1);
+        }
+        for (int i = 0; i < inSizes[v]; i++) {
+            int u = inSources[v][i];
+            down.add(v, u, inWeights[v][i], inMiddles[v][i]);
+            removeOut(u, v);
+            contractedNeighbors[u]++;
+            levels[u] = Math.max(levels[u], levels[v] + 1);
+        }
+    }
+
+    /**
+     * Counts (and, if {@code apply}, inserts) the shortcuts needed to preserve shortest paths when
+     * {@code v} is removed.
+     */
+    private int processShortcuts(int v, boolean apply) {
+        int shortcuts = 0;
+        for (int i = 0; i < inSizes[v]; i++) {
+            int u = inSources[v][i];
+            double inWeight = inWeights[v][i];
+
+            double maxCost = -1;
+            for (int j = 0; j < outSizes[v]; j++) {
+                if (outTargets[v][j] != u) maxCost = Math.max(maxCost, inWeight + outWeights[v][j]);
+            }
+            if (maxCost < 0) continue; // u is v's only neighbour
+            witnessSearch(u, v, maxCost, apply ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT);
+
+            for (int j = 0; j < outSizes[v]; j++) {
+                int w = outTargets[v][j];
+                if (w == u) continue;
+                double viaCost = inWeight + outWeights[v][j];
+                if (witness.gCost(w) <= viaCost) continue;
+                shortcuts++;
+                if (apply) addOrImprove(u, w, viaCost, v);
+            }
+        }
+        return shortcuts;
+    }
+
+    /** Bounded Dijkstra from {@code source} over uncontracted nodes, never passing through {@code excluded}. */
+    private void witnessSearch(int source, int excluded, double maxCost, int settleLimit) {
+        witness.reset(n);
+        IndexedMinHeap heap = witness.openSet;
+        witness.reach(source, 0, -1);
+        heap.insertOrDecrease(source, 0);
+        int settled = 0;
+        while (!heap.isEmpty() && settled < settleLimit) {
+            if (heap.peekKey() > maxCost) break;
+            int x = heap.poll();
+            settled++;
+            double cost = witness.gCost(x);
+            for (int i = 0; i < outSizes[x]; i++) {
+                int y = outTargets[x][i];
+                if (y == excluded) continue;
+                double candidate = cost + outWeights[x][i];
+                if (candidate < witness.gCost(y)) {
+                    witness.reach(y, candidate, x);
+                    heap.insertOrDecrease(y, candidate);
+                }
+            }
+        }
+    }
+
+    private void addOrImprove(int u, int w, double weight, int middle) {
+        for (int i = 0; i < outSizes[u]; i++) {
+            if (outTargets[u][i] == w) {
+                if (weight < outWeights[u][i]) {
+                    outWeights[u][i] = weight;
+                    outMiddles[u][i] = middle;
+                    for (int k = 0; k < inSizes[w]; k++) {
+                        if (inSources[w][k] == u) {
+                            inWeights[w][k] = weight;
+                            inMiddles[w][k] = middle;
+                            break;
+                        }
+                    }
+                }
+                return;
+            }
+        }
+        if (outSizes[u] == outTargets[u].length) {
+            int capacity = outSizes[u] * 2;
+            outTargets[u] = Arrays.copyOf(outTargets[u], capacity);
+            outWeights[u] = Arrays.copyOf(outWeights[u], capacity);
+            outMiddles[u] = Arrays.copyOf(outMiddles[u], capacity);
+        }
+        int slot = outSizes[u]++;
+        outTargets[u][slot] = w;
+        outWeights[u][slot] = weight;
+        outMiddles[u][slot] = middle;
+
+        if (inSizes[w] == inSources[w].length) {
+            int capacity = inSizes[w] * 2;
+            inSources[w] = Arrays.copyOf(inSources[w], capacity);
+            inWeights[w] = Arrays.copyOf(inWeights[w], capacity);
+            inMiddles[w] = Arrays.copyOf(inMiddles[w], capacity);
+        }
+        slot = inSizes[w]++;
+        inSources[w][slot] = u;
+        inWeights[w][slot] = weight;
+        inMiddles[w][slot] = middle;
+    }
+
+    private void removeOut(int u, int target) {
+        for (int i = 0; i < outSizes[u]; i++) {
+            if (outTargets[u][i] == target) {
+                int last = --outSizes[u];
+                outTargets[u][i] = outTargets[u][last];
+                outWeights[u][i] = outWeights[u][last];
+                outMiddles[u][i] = outMiddles[u][last];
+                return;
+            }
+        }
+    }
+
+    private void removeIn(int w, int source) {
+        for (int i = 0; i < inSizes[w]; i++) {
+            if (inSources[w][i] == source) {
+                int last = --inSizes[w];
+                inSources[w][i] = inSources[w][last];
+                inWeights[w][i] = inWeights[w][last];
+                inMiddles[w][i] = inMiddles[w][last];
+                return;
+            }
+        }
+    }
+
+    /** Growable (owner, other, weight, middle) edge list compacted into CSR by owner. */
+    private static final class EdgeBuffer {
+        int[] owners = new int[64];
+        int[] others = new int[64];
+        double[] weights = new double[64];
+        int[] middles = new int[64];
+        int size;
+
+        void add(int owner, int other, double weight, int middle) {
+            if (size == owners.length) {
+                int capacity = size * 2;
+                owners = Arrays.copyOf(owners, capacity);
+                others = Arrays.copyOf(others, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                middles = Arrays.copyOf(middles, capacity);
+            }
+            owners[size] = owner;
+            others[size] = other;
+            weights[size] = weight;
+            middles[size] = middle;
+            size++;
+        }
+
+        void compact(int nodeCount, int[] offsets, int[] outOthers, double[] outWeights, int[] outMiddles) {
+            for (int i = 0; i < size; i++) offsets[owners[i] + 1]++;
+            for (int v = 0; v < nodeCount; v++) offsets[v + 1] += offsets[v];
+            int[] cursor = Arrays.copyOf(offsets, nodeCount);
+            for (int i = 0; i < size; i++) {
+                int slot = cursor[owners[i]]++;
+                outOthers[slot] = others[i];
+                outWeights[slot] = weights[i];
+                outMiddles[slot] = middles[i];
+            }
+        }
+    }
+}
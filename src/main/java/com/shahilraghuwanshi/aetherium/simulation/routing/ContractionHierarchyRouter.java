@@ -0,0 +1,168 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+import java.util.Arrays;
+
+/**
+ * Bidirectional upward Dijkstra over a {@link ContractionHierarchy}. The forward search only follows
+ * upward edges from the start, the backward search only follows downward edges into the end, and the
+ * best meeting node yields the shortest path once its shortcuts are unpacked.
+ * <p>
+ * Like {@link AStarRouter}, the two search states are kept per thread and reused across queries.
+ */
+public final class ContractionHierarchyRouter implements Router {
+
+    private static final int[] NO_PATH = new int[0];
+
+    private final RoadGraph graph;
+    private final ContractionHierarchy hierarchy;
+    private final ThreadLocal<SearchState[]> searchStates;
+
+    public ContractionHierarchyRouter(RoadGraph graph, ContractionHierarchy hierarchy) {
+        if (hierarchy.getGraphFingerprint() != graph.fingerprint() || hierarchy.nodeCount() != graph.nodeCount()) {
+            throw new IllegalArgumentException("Contraction hierarchy was built for a different road graph");
+        }
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+        this.searchStates = ThreadLocal.withInitial(() -> new SearchState[] {
+                new SearchState(graph.nodeCount()), new SearchState(graph.nodeCount())
+        });
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    public ContractionHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    @Override
+    public int[] route(int start, int end) {
+        if (start < 0 || end < 0 || start == end) return NO_PATH;
+        SearchState[] states = searchStates.get();
+        SearchState forward = states[0];
+        SearchState backward = states[1];
+        forward.reset(graph.nodeCount());
+        backward.reset(graph.nodeCount());
+
+        forward.reach(start, 0, -1, -1);
+        forward.openSet.insertOrDecrease(start, 0);
+        backward.reach(end, 0, -1, -1);
+        backward.openSet.insertOrDecrease(end, 0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        while (true) {
+            double forwardKey = forward.openSet.isEmpty() ? Double.POSITIVE_INFINITY : forward.openSet.peekKey();
+            double backwardKey = backward.openSet.isEmpty() ? Double.POSITIVE_INFINITY : backward.openSet.peekKey();
+            if (Math.min(forwardKey, backwardKey) >= best) break; // Neither side can improve on the best meeting
+
+            if (forwardKey <= backwardKey) {
+                int node = forward.openSet.poll();
+                double cost = forward.gCost(node);
+                double total = cost + backward.gCost(node);
+                if (total < best) { best = total; meeting = node; }
+                if (isStalledForward(forward, node, cost)) continue;
+                for (int e = hierarchy.upOffsets[node], last = hierarchy.upOffsets[node + 1]; e < last; e++) {
+                    int next = hierarchy.upTargets[e];
+                    double candidate = cost + hierarchy.upWeights[e];
+                    if (candidate < forward.gCost(next)) {
+                        forward.reach(next, candidate, node, e);
+                        forward.openSet.insertOrDecrease(next, candidate);
+                    }
+                }
+            } else {
+                int node = backward.openSet.poll();
+                double cost = backward.gCost(node);
+                double total = cost + forward.gCost(node);
+                if (total < best) { best = total; meeting = node; }
+                if (isStalledBackward(backward, node, cost)) continue;
+                for (int e = hierarchy.downOffsets[node], last = hierarchy.downOffsets[node + 1]; e < last; e++) {
+                    int previous = hierarchy.downSources[e];
+                    double candidate = cost + hierarchy.downWeights[e];
+                    if (candidate < backward.gCost(previous)) {
+                        backward.reach(previous, candidate, node, e);
+                        backward.openSet.insertOrDecrease(previous, candidate);
+                    }
+                }
+            }
+        }
+        if (meeting < 0) return NO_PATH;
+        return unpack(forward, backward, start, meeting);
+    }
+
+    /*
+     * Stall-on-demand: if a higher-ranked node already reached by the same search offers a cheaper way
+     * into this node, its tentative cost is not a shortest distance and relaxing its edges is wasted work.
+     */
+    private boolean isStalledForward(SearchState forward, int node, double cost) {
+        for (int e = hierarchy.downOffsets[node], last = hierarchy.downOffsets[node + 1]; e < last; e++) {
+            if (forward.gCost(hierarchy.downSources[e]) + hierarchy.downWeights[e] < cost) return true;
+        }
+        return false;
+    }
+
+    private boolean isStalledBackward(SearchState backward, int node, double cost) {
+        for (int e = hierarchy.upOffsets[node], last = hierarchy.upOffsets[node + 1]; e < last; e++) {
+            if (backward.gCost(hierarchy.upTargets[e]) + hierarchy.upWeights[e] < cost) return true;
+        }
+        return false;
+    }
+
+    private int[] unpack(SearchState forward, SearchState backward, int start, int meeting) {
+        PathBuffer path = new PathBuffer();
+        path.add(start);
+
+        // Forward half: collect hierarchy edges from the meeting node back to the start, then replay them in order
+        int forwardHops = 0;
+        for (int node = meeting; forward.parents[node] >= 0; node = forward.parents[node]) forwardHops++;
+        int[] forwardEdges = new int[forwardHops];
+        for (int node = meeting, i = forwardHops; forward.parents[node] >= 0; node = forward.parents[node]) {
+            forwardEdges[--i] = forward.parentEdges[node];
+        }
+        int from = start;
+        for (int edge : forwardEdges) {
+            int to = hierarchy.upTargets[edge];
+            unpackEdge(from, to, hierarchy.upMiddles[edge], path);
+            from = to;
+        }
+
+        // Backward half: parents already point towards the end
+        for (int node = meeting; backward.parents[node] >= 0; node = backward.parents[node]) {
+            int edge = backward.parentEdges[node];
+            int to = backward.parents[node];
+            unpackEdge(node, to, hierarchy.downMiddles[edge], path);
+        }
+        return path.toArray();
+    }
+
+    /** Appends the original nodes after {@code from} up to and including {@code to}. */
+    private void unpackEdge(int from, int to, int middle, PathBuffer path) {
+        if (middle < 0) {
+            path.add(to);
+            return;
+        }
+        // The middle node ranks below both ends: from -> middle is stored downward, middle -> to upward
+        int first = hierarchy.findDownEdge(from, middle);
+        int second = hierarchy.findUpEdge(middle, to);
+        unpackEdge(from, middle, hierarchy.downMiddles[first], path);
+        unpackEdge(middle, to, hierarchy.upMiddles[second], path);
+    }
+
+    private static final class PathBuffer {
+        private int[] nodes = new int[32];
+        private int size;
+
+        void add(int node) {
+            if (size == nodes.length) nodes = Arrays.copyOf(nodes, size * 2);
+            nodes[size++] = node;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(nodes, size);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.io.ArrayFileWriter;
+import com.shahilraghuwanshi.aetherium.simulation.io.MappedArrayReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Persists {@link ContractionHierarchy} instances in a directory, one file per road graph fingerprint,
+ * so that preprocessing only runs the first time a given network is loaded.
+ */
+public final class ContractionHierarchyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ContractionHierarchyStore.class);
+
+    private static final int MAGIC = 0x41434831; // "ACH1"
+    private static final int FORMAT_VERSION = 2; // 2: mapped array layout
+
+    private final Path directory;
+
+    public ContractionHierarchyStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the stored hierarchy for {@code graph}, building and storing it first if there is none.
+     * A missing or unwritable cache directory only costs the preprocessing time; it is never fatal.
+     */
+    public ContractionHierarchy loadOrBuild(RoadGraph graph) {
+        Path file = fileFor(graph);
+        if (Files.exists(file)) {
+            try {
+                ContractionHierarchy hierarchy = read(file);
+                if (hierarchy.getGraphFingerprint() == graph.fingerprint() && hierarchy.nodeCount() == graph.nodeCount()) {
+                    log.info("Loaded contraction hierarchy from {}", file);
+                    return hierarchy;
+                }
+                log.warn("Contraction hierarchy in {} does not match the road graph; rebuilding.", file);
+            } catch (IOException e) {
+                log.warn("Could not read contraction hierarchy from {}: {}", file, e.getMessage());
+            }
+        }
+
+        long startedAt = System.nanoTime();
+        ContractionHierarchy hierarchy = new ContractionHierarchyBuilder(graph).build();
+        log.info("Built contraction hierarchy in {} ms ({} edges).", (System.nanoTime() - startedAt) / 1_000_000,
+                hierarchy.edgeCount());
+        try {
+            write(hierarchy, file);
+        } catch (IOException e) {
+            log.warn("Could not store contraction hierarchy in {}: {}", file, e.getMessage());
+        }
+        return hierarchy;
+    }
+
+    Path fileFor(RoadGraph graph) {
+        return directory.resolve("ch-" + Long.toHexString(graph.fingerprint()) + ".bin");
+    }
+
+    static void write(ContractionHierarchy hierarchy, Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        // Write to a temporary file first so a crash never leaves a truncated cache behind
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "ch-", ".tmp");
+        try {
+            try (ArrayFileWriter out = new ArrayFileWriter(temp)) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                hierarchy.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static ContractionHierarchy read(Path file) throws IOException {
+        try (MappedArrayReader in = new MappedArrayReader(file)) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a contraction hierarchy file");
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) throw new IOException("Unsupported format version " + version);
+            return ContractionHierarchy.readFrom(in);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+/**
+ * Edge costs for a shortest-path search, with the lower bound A* needs as its heuristic. Implementations
+ * must be safe to read from several threads; costs may change between queries.
+ */
+public interface EdgeWeights {
+
+    double cost(int edge);
+
+    /** Never more than the cost of any path from {@code from} to {@code to}. */
+    double lowerBound(int from, int to);
+
+    /** Edge lengths, bounded below by the straight-line distance. Closed edges cost +inf, so no search takes them. */
+    static EdgeWeights lengths(RoadGraph graph) {
+        return new EdgeWeights() {
+            @Override
+            public double cost(int edge) {
+                return graph.isClosed(edge) ? Double.POSITIVE_INFINITY : graph.length(edge);
+            }
+
+            @Override
+            public double lowerBound(int from, int to) {
+                return graph.distance(from, to);
+            }
+        };
+    }
+}
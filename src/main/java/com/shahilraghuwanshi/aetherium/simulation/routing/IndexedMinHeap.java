@@ -0,0 +1,119 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of node indices keyed by a {@code double} priority, backed entirely by primitive
+ * arrays. Each node can be in the heap at most once and its position is tracked, so
+ * {@link #insertOrDecrease} is O(log n) instead of the O(n) remove/re-add a {@code PriorityQueue}
+ * needs. The heap is cleared in O(size) and reused across searches.
+ */
+final class IndexedMinHeap {
+
+    private int[] heap;       // heap slot -> node
+    private double[] keys;    // heap slot -> priority
+    private int[] positions;  // node -> heap slot, or -1 when not queued
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        heap = new int[Math.max(capacity, 1)];
+        keys = new double[heap.length];
+        positions = new int[heap.length];
+        Arrays.fill(positions, -1);
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= positions.length) return;
+        int oldLength = positions.length;
+        heap = Arrays.copyOf(heap, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        Arrays.fill(positions, oldLength, capacity, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    double peekKey() {
+        return keys[0];
+    }
+
+    boolean contains(int node) {
+        return positions[node] >= 0;
+    }
+
+    /** Inserts the node, or lowers its key if it is already queued with a higher one. */
+    void insertOrDecrease(int node, double key) {
+        int slot = positions[node];
+        if (slot < 0) {
+            slot = size++;
+            heap[slot] = node;
+            keys[slot] = key;
+            positions[node] = slot;
+            siftUp(slot);
+        } else if (key < keys[slot]) {
+            keys[slot] = key;
+            siftUp(slot);
+        }
+    }
+
+    int poll() {
+        int top = heap[0];
+        positions[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            keys[0] = keys[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int slot) {
+        int node = heap[slot];
+        double key = keys[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            heap[slot] = heap[parent];
+            keys[slot] = keys[parent];
+            positions[heap[slot]] = slot;
+            slot = parent;
+        }
+        heap[slot] = node;
+        keys[slot] = key;
+        positions[node] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int node = heap[slot];
+        double key = keys[slot];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < size && keys[right] < keys[child]) child = right;
+            if (key <= keys[child]) break;
+            heap[slot] = heap[child];
+            keys[slot] = keys[child];
+            positions[heap[slot]] = slot;
+            slot = child;
+        }
+        heap[slot] = node;
+        keys[slot] = key;
+        positions[node] = slot;
+    }
+}
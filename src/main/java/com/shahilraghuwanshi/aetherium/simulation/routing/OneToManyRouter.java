@@ -0,0 +1,99 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+import java.util.Arrays;
+
+/**
+ * Shortest paths from one node to many, from a single Dijkstra search that stops once every target is
+ * settled. Far cheaper than one point-to-point query per target when many trips share an origin, as
+ * they do when demand is assigned zone by zone.
+ * <p>
+ * Search state lives in a per-thread {@link SearchState}, as in {@link AStarRouter}. Instances are thread-safe.
+ */
+public final class OneToManyRouter {
+
+    private static final int[] NO_PATH = new int[0];
+
+    private final RoadGraph graph;
+    private final EdgeWeights weights;
+    private final ThreadLocal<Scratch> scratch;
+
+    // Targets still to settle are marked with the current query number, so no clearing between queries
+    private static final class Scratch {
+        final SearchState state;
+        final int[] targetMarks;
+        int query;
+
+        Scratch(int nodeCount) {
+            state = new SearchState(nodeCount);
+            targetMarks = new int[nodeCount];
+        }
+    }
+
+    public OneToManyRouter(RoadGraph graph) {
+        this(graph, EdgeWeights.lengths(graph));
+    }
+
+    public OneToManyRouter(RoadGraph graph, EdgeWeights weights) {
+        this.graph = graph;
+        this.weights = weights;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(graph.nodeCount()));
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Finds the shortest path from {@code start} to each of {@code ends}.
+     * @return one node sequence per entry of {@code ends}, as {@link Router#route} would return it.
+     */
+    public int[][] routes(int start, int[] ends) {
+        int[][] paths = new int[ends.length][];
+        Scratch scratch = this.scratch.get();
+        if (++scratch.query == Integer.MAX_VALUE) {
+            Arrays.fill(scratch.targetMarks, 0);
+            scratch.query = 1;
+        }
+        int remaining = 0;
+        for (int end : ends) {
+            if (end != start && scratch.targetMarks[end] != scratch.query) {
+                scratch.targetMarks[end] = scratch.query;
+                remaining++;
+            }
+        }
+
+        SearchState state = scratch.state;
+        state.reset(graph.nodeCount());
+        IndexedMinHeap openSet = state.openSet;
+        state.reach(start, 0, -1);
+        openSet.insertOrDecrease(start, 0);
+        while (remaining > 0 && !openSet.isEmpty()) {
+            int current = openSet.poll();
+            state.close(current);
+            if (scratch.targetMarks[current] == scratch.query) remaining--;
+            double currentCost = state.gCosts[current];
+
+            for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++) {
+                int neighbor = graph.target(edge);
+                if (state.isClosed(neighbor)) continue;
+                double cost = currentCost + weights.cost(edge);
+                if (cost < state.gCost(neighbor)) {
+                    state.reach(neighbor, cost, current);
+                    openSet.insertOrDecrease(neighbor, cost);
+                }
+            }
+        }
+
+        for (int i = 0; i < ends.length; i++) {
+            int end = ends[i];
+            if (end == start || !state.isClosed(end)) {
+                paths[i] = NO_PATH;
+            } else {
+                paths[i] = state.extractPath(end);
+            }
+        }
+        return paths;
+    }
+}
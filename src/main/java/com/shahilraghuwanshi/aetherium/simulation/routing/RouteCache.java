@@ -0,0 +1,193 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded LRU cache of routes keyed by (start, end) node pair.
+ * <p>
+ * The cache is split into independently locked segments so concurrent routing threads rarely contend.
+ * Each segment enforces its share of both limits: the entry count and the estimated heap footprint of
+ * the cached path arrays. Cached arrays are handed out as-is and shared by every caller, which is safe
+ * because routers never mutate a path after returning it.
+ * <p>
+ * When the road network is edited, {@link #invalidateChanges} drops only the routes the edit can have
+ * changed, since node indices stay the same across versions of a graph.
+ */
+public final class RouteCache {
+
+    private static final int SEGMENTS = 16;
+    // Rough per-entry overhead: LinkedHashMap entry, boxed key and the int[] header
+    private static final long ENTRY_OVERHEAD_BYTES = 80;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RouteCache(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Route cache limits must be positive");
+        }
+        int entriesPerSegment = Math.max(1, maxEntries / SEGMENTS);
+        long bytesPerSegment = Math.max(1, maxBytes / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(entriesPerSegment, bytesPerSegment);
+        }
+    }
+
+    /** Returns the cached route, or null on a miss. */
+    public int[] get(int start, int end) {
+        long key = key(start, end);
+        int[] path = segmentFor(key).get(key);
+        if (path != null) hits.increment();
+        else misses.increment();
+        return path;
+    }
+
+    public void put(int start, int end, int[] path) {
+        long key = key(start, end);
+        segmentFor(key).put(key, path);
+    }
+
+    /** Drops every entry, e.g. after the road network or its edge weights changed. */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /** Drops the entries whose path matches {@code stale}; an unreachable pair is cached as an empty path. */
+    public int invalidateIf(Predicate<int[]> stale) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            removed += segment.removeIf(stale);
+        }
+        return removed;
+    }
+
+    /**
+     * Drops the routes computed on {@code previous} that may not be shortest on {@code next}, a later
+     * version of it, assuming they were weighed by {@link EdgeWeights#lengths}: routes over a road that is
+     * closed now, and routes that a newly opened or added road could shorten. A route is only considered
+     * shortened if going through the new road is shorter even in a straight line from its start and to its
+     * end, so an edit on one side of the city leaves routes on the other side cached. Unreachable pairs are
+     * dropped if any road opened.
+     * @param mapping {@code previous.edgeMapping(next)}
+     * @return the number of routes dropped
+     */
+    public int invalidateChanges(RoadGraph previous, RoadGraph next, int[] mapping) {
+        boolean[] wasOpen = new boolean[next.edgeCount()];
+        boolean closures = false;
+        for (int edge = 0; edge < mapping.length; edge++) {
+            if (mapping[edge] < 0) continue;
+            wasOpen[mapping[edge]] = !previous.isClosed(edge);
+            closures |= !previous.isClosed(edge) && next.isClosed(mapping[edge]);
+        }
+        int[] opened = new int[8];
+        int openedCount = 0;
+        for (int edge = 0; edge < wasOpen.length; edge++) {
+            if (wasOpen[edge] || next.isClosed(edge)) continue;
+            if (openedCount == opened.length) opened = Arrays.copyOf(opened, openedCount * 2);
+            opened[openedCount++] = edge;
+        }
+        if (!closures && openedCount == 0) return 0;
+        boolean anyClosed = closures;
+        int[] openedEdges = Arrays.copyOf(opened, openedCount);
+        return invalidateIf(path -> {
+            if (path.length < 2) return openedEdges.length > 0;
+            double length = 0;
+            for (int i = 0; i < path.length - 1; i++) {
+                int edge = next.findEdge(path[i], path[i + 1]);
+                if (edge < 0 || (anyClosed && next.isClosed(edge))) return true;
+                length += next.length(edge);
+            }
+            int start = path[0];
+            int end = path[path.length - 1];
+            for (int edge : openedEdges) {
+                double through = next.distance(start, next.source(edge)) + next.length(edge) + next.distance(next.target(edge), end);
+                if (through < length) return true;
+            }
+            return false;
+        });
+    }
+
+    public RouteCacheStats stats() {
+        int entries = 0;
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries += segment.map.size();
+                bytes += segment.bytes;
+            }
+        }
+        return new RouteCacheStats(hits.sum(), misses.sum(), evictions.sum(), entries, bytes);
+    }
+
+    private Segment segmentFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (h >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private static long key(int start, int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    static long weigh(int[] path) {
+        return ENTRY_OVERHEAD_BYTES + 4L * path.length;
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<Long, int[]> map = new LinkedHashMap<>(64, 0.75f, true); // access order = LRU
+        private final int maxEntries;
+        private final long maxBytes;
+        private long bytes;
+
+        Segment(int maxEntries, long maxBytes) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized int[] get(long key) {
+            return map.get(key);
+        }
+
+        synchronized void put(long key, int[] path) {
+            int[] previous = map.put(key, path);
+            if (previous != null) bytes -= weigh(previous);
+            bytes += weigh(path);
+
+            Iterator<Map.Entry<Long, int[]>> eldest = map.entrySet().iterator();
+            while ((map.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+                Map.Entry<Long, int[]> entry = eldest.next();
+                if (entry.getKey() == key) continue; // Never evict the entry we just inserted
+                bytes -= weigh(entry.getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        synchronized int removeIf(Predicate<int[]> stale) {
+            int removed = 0;
+            for (Iterator<int[]> paths = map.values().iterator(); paths.hasNext(); ) {
+                int[] path = paths.next();
+                if (!stale.test(path)) continue;
+                bytes -= weigh(path);
+                paths.remove();
+                removed++;
+            }
+            return removed;
+        }
+
+        synchronized void clear() {
+            map.clear();
+            bytes = 0;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+/**
+ * Point-in-time counters of a {@link RouteCache}. Hit, miss and eviction counts are cumulative.
+ */
+public record RouteCacheStats(long hits, long misses, long evictions, int entries, long estimatedBytes) {
+
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
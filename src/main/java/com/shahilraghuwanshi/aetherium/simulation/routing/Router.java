@@ -0,0 +1,18 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+
+/**
+ * Point-to-point shortest-path query over a {@link RoadGraph}. Implementations are thread-safe.
+ */
+public interface Router {
+
+    RoadGraph getGraph();
+
+    /**
+     * Finds the shortest path between two nodes.
+     * @return the node sequence from {@code start} to {@code end} inclusive, or an empty array if
+     *         the nodes are equal or not connected. The returned array is never mutated afterwards.
+     */
+    int[] route(int start, int end);
+}
@@ -0,0 +1,11 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+/**
+ * Selects the shortest-path implementation used by the simulation.
+ */
+public enum RoutingMode {
+    /** Plain A* over the road graph; no preprocessing. */
+    ASTAR,
+    /** Contraction Hierarchies; preprocessed once per network and cached on disk. */
+    CH
+}
@@ -0,0 +1,84 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch space for a shortest-path search. Cost and parent entries are only valid
+ * for nodes whose stamp equals the current generation, so starting a new search is O(1): bump
+ * the generation instead of clearing {@code nodeCount}-sized arrays.
+ */
+final class SearchState {
+
+    private int[] stamps;
+    private int[] closedStamps;
+    double[] gCosts;
+    int[] parents;
+    int[] parentEdges;
+    final IndexedMinHeap openSet;
+    private int generation;
+
+    SearchState(int nodeCount) {
+        stamps = new int[nodeCount];
+        closedStamps = new int[nodeCount];
+        gCosts = new double[nodeCount];
+        parents = new int[nodeCount];
+        parentEdges = new int[nodeCount];
+        openSet = new IndexedMinHeap(nodeCount);
+    }
+
+    /** Prepares the state for a new search over a graph with {@code nodeCount} nodes. */
+    void reset(int nodeCount) {
+        if (nodeCount > stamps.length) {
+            stamps = Arrays.copyOf(stamps, nodeCount);
+            closedStamps = Arrays.copyOf(closedStamps, nodeCount);
+            gCosts = Arrays.copyOf(gCosts, nodeCount);
+            parents = Arrays.copyOf(parents, nodeCount);
+            parentEdges = Arrays.copyOf(parentEdges, nodeCount);
+            openSet.ensureCapacity(nodeCount);
+        }
+        openSet.clear();
+        if (++generation == Integer.MAX_VALUE) {
+            // Stamps would become ambiguous after wrapping, so pay for one full clear
+            Arrays.fill(stamps, 0);
+            Arrays.fill(closedStamps, 0);
+            generation = 1;
+        }
+    }
+
+    boolean isReached(int node) {
+        return stamps[node] == generation;
+    }
+
+    double gCost(int node) {
+        return stamps[node] == generation ? gCosts[node] : Double.POSITIVE_INFINITY;
+    }
+
+    void reach(int node, double gCost, int parent) {
+        reach(node, gCost, parent, -1);
+    }
+
+    /** Records the node's best cost so far together with the edge it was reached through. */
+    void reach(int node, double gCost, int parent, int parentEdge) {
+        stamps[node] = generation;
+        gCosts[node] = gCost;
+        parents[node] = parent;
+        parentEdges[node] = parentEdge;
+    }
+
+    boolean isClosed(int node) {
+        return closedStamps[node] == generation;
+    }
+
+    void close(int node) {
+        closedStamps[node] = generation;
+    }
+
+    /** Walks the parent chain back from {@code end} and returns the path in travel order. */
+    int[] extractPath(int end) {
+        int length = 0;
+        for (int node = end; node >= 0; node = parents[node]) length++;
+        int[] path = new int[length];
+        for (int node = end; node >= 0; node = parents[node]) path[--length] = node;
+        return path;
+    }
+}
@@ -0,0 +1,186 @@
+package com.shahilraghuwanshi.aetherium.simulation.scenario;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationSnapshot;
+import com.shahilraghuwanshi.aetherium.simulation.TravelTimes;
+import com.shahilraghuwanshi.aetherium.simulation.demand.RouteAssigner;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.TickFrames;
+import com.shahilraghuwanshi.aetherium.simulation.routing.OneToManyRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * One of several independent simulations of the same city in this process: an engine with its own
+ * vehicles, signals, random generator, demand and version of the road network, ticked by a shared
+ * {@link ScenarioScheduler}.
+ * <p>
+ * Everything a scenario only reads is shared with the others: the road graph it started from, and the
+ * router over it, whose search state is kept per thread rather than per scenario. Editing a scenario's
+ * network gives it versions of its own, which no other scenario sees. Frames are only encoded while a
+ * viewer watches the scenario.
+ * <p>
+ * The engine belongs to whichever scheduler thread runs the current tick; the other methods are safe to
+ * call from any thread.
+ */
+public final class Scenario implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(Scenario.class);
+
+    /** Where the frames of scenarios go. */
+    public interface Viewers {
+
+        /** Whether anyone watches the scenario; frames are only encoded while someone does. */
+        boolean isWatched(String scenarioId);
+
+        void broadcast(String scenarioId, FrameEncoder encoder, TickFrames frames, boolean periodicKeyframe);
+    }
+
+    private final String id;
+    private final ScenarioSpec spec;
+    private final SimulationEngine engine;
+    private final RouteAssigner routeAssigner; // null unless demand mode is OD_MATRIX
+    private final BiFunction<RoadGraph, TravelTimes, Router> routers; // Router for a version of the network
+    private final FrameEncoder frameEncoder;
+    private final Viewers viewers;
+    private final long frameNanos;
+    private final int keyframeInterval;
+    private final ScenarioScheduler.Task task;
+
+    private final AtomicInteger pendingSpawns = new AtomicInteger();
+    private long lastBroadcastNanos; // Tick only
+    private long framesBroadcast;    // Tick only
+
+    // Edits are chained under networkLock and taken up by the next tick, as in the live simulation
+    private final Object networkLock = new Object();
+    private RoadGraph latestGraph; // Guarded by networkLock
+    private long networkVersion;   // Guarded by networkLock
+    private final AtomicReference<RoadGraph> pendingGraph = new AtomicReference<>();
+
+    /**
+     * Schedules the scenario, paused until {@link #resume}.
+     * @param routeAssigner routes the engine's OD demand, null if it has none; closed with the scenario
+     * @param routers       builds the router for an edited version of the network, given its travel times
+     *                      (null without congestion routing)
+     */
+    public Scenario(String id, ScenarioSpec spec, SimulationEngine engine, RouteAssigner routeAssigner,
+                    BiFunction<RoadGraph, TravelTimes, Router> routers, FrameEncoder frameEncoder, Viewers viewers,
+                    double maxFramesPerSecond, int keyframeInterval, ScenarioScheduler scheduler) {
+        this.id = id;
+        this.spec = spec;
+        this.engine = engine;
+        this.routeAssigner = routeAssigner;
+        this.routers = routers;
+        this.frameEncoder = frameEncoder;
+        this.viewers = viewers;
+        this.frameNanos = (long) (0.9e9 / maxFramesPerSecond); // 10% slack, as in the live stream
+        this.keyframeInterval = keyframeInterval;
+        this.latestGraph = engine.getGraph();
+        this.task = scheduler.schedule("scenario " + id, this::tick, engine.getTickSeconds(), spec.pacing(), spec.speed());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ScenarioSpec getSpec() {
+        return spec;
+    }
+
+    /** Pacing, speed and progress of the scenario's ticks. */
+    public ScenarioScheduler.Task getClock() {
+        return task;
+    }
+
+    public boolean isPaused() {
+        return task.isPaused();
+    }
+
+    public void pause() {
+        task.pause();
+    }
+
+    public void resume() {
+        task.resume();
+    }
+
+    /** The state as of the last completed tick; safe to read from any thread. */
+    public SimulationSnapshot getSnapshot() {
+        return engine.getSnapshot();
+    }
+
+    /** Requests a new car, created at the start of the next tick. */
+    public void spawnCar() {
+        pendingSpawns.incrementAndGet();
+    }
+
+    /**
+     * Applies {@code edit} to the newest version of this scenario's road network, taken up between two ticks
+     * as in the live simulation; other scenarios keep theirs.
+     * @return the edited network, or the newest one if the edit changed nothing
+     * @throws IllegalArgumentException if the edit is invalid for the network
+     */
+    public RoadGraph editNetwork(UnaryOperator<RoadGraph> edit) {
+        synchronized (networkLock) {
+            RoadGraph next = edit.apply(latestGraph);
+            if (next == latestGraph) return next;
+            latestGraph = next;
+            networkVersion++;
+            pendingGraph.set(next);
+            return next;
+        }
+    }
+
+    /** The newest version of this scenario's road network, including edits taken up at its next tick. */
+    public RoadGraph getLatestGraph() {
+        synchronized (networkLock) {
+            return latestGraph;
+        }
+    }
+
+    /** Edits applied to this scenario's road network since it was created. */
+    public long getNetworkVersion() {
+        synchronized (networkLock) {
+            return networkVersion;
+        }
+    }
+
+    private void tick() {
+        RoadGraph edited = pendingGraph.getAndSet(null);
+        if (edited != null) {
+            int rerouted = engine.replaceNetwork(edited, travelTimes -> routers.apply(edited, travelTimes));
+            if (routeAssigner != null) {
+                TravelTimes travelTimes = engine.getTravelTimes();
+                routeAssigner.setRouter(travelTimes != null
+                        ? new OneToManyRouter(edited, travelTimes) : new OneToManyRouter(edited));
+            }
+            log.info("Scenario {} uses its edited road network: {} vehicles rerouted.", id, rerouted);
+        }
+        for (int requested = pendingSpawns.getAndSet(0); requested > 0; requested--) {
+            engine.spawnVehicle();
+        }
+        engine.tick();
+        // Nobody watching: nothing to encode. A viewer who subscribes later asks for a keyframe first.
+        if (!viewers.isWatched(id)) return;
+        long now = System.nanoTime();
+        if (framesBroadcast == 0 || now - lastBroadcastNanos >= frameNanos) {
+            lastBroadcastNanos = now;
+            TickFrames frames = frameEncoder.encode(engine.getTickCount(), engine.getVehicles(), engine.getSignals(), null);
+            viewers.broadcast(id, frameEncoder, frames, framesBroadcast++ % keyframeInterval == 0);
+        }
+    }
+
+    /** Stops the scenario for good, after the tick in progress. */
+    @Override
+    public void close() {
+        task.cancel();
+        if (routeAssigner != null) routeAssigner.close();
+    }
+}
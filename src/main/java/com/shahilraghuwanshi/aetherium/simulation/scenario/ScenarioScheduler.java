@@ -0,0 +1,266 @@
+package com.shahilraghuwanshi.aetherium.simulation.scenario;
+
+import com.shahilraghuwanshi.aetherium.simulation.PacingMode;
+import com.shahilraghuwanshi.aetherium.simulation.SampledLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives any number of fixed-timestep simulations on a fixed pool of threads, one tick at a time.
+ * <p>
+ * Each {@link Task} is paced like a {@link com.shahilraghuwanshi.aetherium.simulation.SimulationLoop}: in
+ * {@link PacingMode#REALTIME} its next tick is due one period after the last one was, in
+ * {@link PacingMode#HEADLESS} (or while fast-forwarding) as soon as the last one finished. Due ticks run
+ * earliest deadline first, so a task that is late goes before one that just ran, and headless tasks take
+ * turns, one tick each, with whatever capacity real-time tasks leave. No task runs on two threads at once,
+ * and a task is never starved however many others are headless.
+ * <p>
+ * The pool never grows with the number of tasks; when it cannot keep up, every real-time task falls behind
+ * alike, dropping its backlog past {@link #MAX_BACKLOG_TICKS} as a loop does.
+ */
+public final class ScenarioScheduler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ScenarioScheduler.class);
+
+    private static final int MAX_BACKLOG_TICKS = 5;
+
+    private final DelayQueue<Task> queue = new DelayQueue<>();
+    private final AtomicLong sequence = new AtomicLong(); // Orders tasks due at the same instant by arrival
+    private final SampledLog errorLog = new SampledLog(TimeUnit.SECONDS.toNanos(10));
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running = true;
+    private final AtomicLong ticks = new AtomicLong();
+
+    public ScenarioScheduler(int threadCount) {
+        for (int i = 0; i < Math.max(1, threadCount); i++) {
+            Thread thread = new Thread(this::work, "scenario-worker-" + (i + 1));
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    public int getThreadCount() {
+        return threads.size();
+    }
+
+    /** Ticks run by every task so far. */
+    public long getTicks() {
+        return ticks.get();
+    }
+
+    /** Tasks waiting for their next tick, due or not; paused tasks are not counted. */
+    public int getQueuedTasks() {
+        return queue.size();
+    }
+
+    /**
+     * Schedules {@code tick} to run every {@code tickSeconds} of simulated time, paused until {@link Task#resume}.
+     * @param tick one simulation step; exceptions it throws are logged and the task continues
+     */
+    public Task schedule(String name, Runnable tick, double tickSeconds, PacingMode mode, double speed) {
+        if (!(tickSeconds > 0)) throw new IllegalArgumentException("tickSeconds must be positive: " + tickSeconds);
+        return new Task(name, tick, tickSeconds, mode, checkSpeed(speed));
+    }
+
+    private void work() {
+        while (running) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return; // Closing
+            }
+            task.runOnce();
+        }
+    }
+
+    /** Stops every thread after its current tick; tasks are not closed. */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread thread : threads) thread.interrupt();
+        for (Thread thread : threads) {
+            try {
+                thread.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static double checkSpeed(double speed) {
+        if (!(speed > 0)) throw new IllegalArgumentException("speed must be positive: " + speed);
+        return speed;
+    }
+
+    /** One simulation driven by the scheduler. All methods are safe to call from any thread. */
+    public final class Task implements Delayed {
+
+        private final String name;
+        private final Runnable tick;
+        private final double tickSeconds;
+
+        // Guarded by this
+        private PacingMode mode;
+        private double speed;
+        private long fastForwardUntilTick = -1; // Run headless until this many ticks have completed; -1 = off
+        private boolean paused = true;
+        private boolean cancelled;
+        private boolean queued;  // In the queue; deadline and order must not change meanwhile
+        private Thread worker;   // The thread running the tick, or null
+        private long deadline;   // System.nanoTime() the next tick is due
+        private long order;
+
+        private volatile long taskTicks; // Written by the worker running the tick only
+
+        private Task(String name, Runnable tick, double tickSeconds, PacingMode mode, double speed) {
+            this.name = name;
+            this.tick = tick;
+            this.tickSeconds = tickSeconds;
+            this.mode = mode;
+            this.speed = speed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getTickSeconds() {
+            return tickSeconds;
+        }
+
+        public synchronized PacingMode getMode() {
+            return mode;
+        }
+
+        /** Simulated seconds per wall-clock second in {@link PacingMode#REALTIME}. */
+        public synchronized double getSpeed() {
+            return speed;
+        }
+
+        /** Ticks run so far. */
+        public long getTicks() {
+            return taskTicks;
+        }
+
+        /** Ticks left in the current fast-forward, or 0. */
+        public synchronized long getFastForwardRemaining() {
+            return fastForwardUntilTick < 0 ? 0 : Math.max(0, fastForwardUntilTick - taskTicks);
+        }
+
+        public synchronized boolean isPaused() {
+            return paused;
+        }
+
+        /** Takes effect from the next tick. */
+        public synchronized void setPacing(PacingMode mode, double speed) {
+            this.speed = checkSpeed(speed);
+            this.mode = mode;
+            requeueNow(); // Don't wait out a deadline computed for the old speed
+        }
+
+        /** Runs the next {@code tickCount} ticks without pacing, then resumes the configured mode. */
+        public synchronized void fastForward(long tickCount) {
+            if (tickCount < 0) throw new IllegalArgumentException("tickCount must not be negative: " + tickCount);
+            fastForwardUntilTick = taskTicks + tickCount;
+            requeueNow();
+        }
+
+        /** Stops ticking after the tick in progress, if any. */
+        public synchronized void pause() {
+            paused = true;
+            if (queued && queue.remove(this)) queued = false;
+        }
+
+        /** Ticks again from now; tasks start paused. */
+        public synchronized void resume() {
+            if (!paused || cancelled) return;
+            paused = false;
+            if (!queued && worker == null) enqueue(System.nanoTime());
+        }
+
+        /** Never ticks again; waits for the tick in progress unless called from it. */
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                paused = true;
+                if (queued && queue.remove(this)) queued = false;
+                while (worker != null && worker != Thread.currentThread()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void runOnce() {
+            synchronized (this) {
+                queued = false;
+                if (paused) return; // Paused while due
+                worker = Thread.currentThread();
+            }
+            try {
+                tick.run();
+            } catch (RuntimeException e) {
+                // As in the loop: keep the scenario alive, and rate limit a tick that fails every time
+                if (errorLog.tryAcquire()) {
+                    log.error("Error during tick of scenario {} ({} similar errors suppressed)", name, errorLog.drainSuppressed(), e);
+                }
+            }
+            taskTicks++;
+            ticks.incrementAndGet();
+            synchronized (this) {
+                worker = null;
+                notifyAll();
+                if (paused) return;
+                long now = System.nanoTime();
+                long next;
+                if (mode == PacingMode.HEADLESS || fastForwardUntilTick > taskTicks) {
+                    next = now; // Behind everything already due, so headless tasks take turns
+                } else {
+                    long period = (long) (tickSeconds * 1e9 / speed);
+                    next = deadline + period;
+                    if (now - next > MAX_BACKLOG_TICKS * period) next = now; // Too far behind: drop the backlog
+                }
+                enqueue(next);
+            }
+        }
+
+        // Guarded by this
+        private void enqueue(long at) {
+            deadline = at;
+            order = sequence.incrementAndGet();
+            queued = true;
+            queue.add(this);
+        }
+
+        // Guarded by this
+        private void requeueNow() {
+            if (queued && queue.remove(this)) enqueue(System.nanoTime());
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Task task = (Task) other;
+            int byDeadline = Long.compare(deadline - task.deadline, 0);
+            return byDeadline != 0 ? byDeadline : Long.compare(order, task.order);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.shahilraghuwanshi.aetherium.simulation.scenario;
+
+import com.shahilraghuwanshi.aetherium.simulation.PacingMode;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandMode;
+
+/**
+ * What makes one scenario differ from another simulation of the same city.
+ * @param seed         of every random choice in the scenario; the same seed and spec replay the same run
+ * @param tripsPerHour OD_MATRIX demand spread evenly over the zone pairs; NaN = the configured demand
+ * @param startHour    hour of the day the scenario starts at, for time-of-day demand
+ */
+public record ScenarioSpec(String name, long seed, DemandMode demandMode, double tripsPerHour, double startHour,
+                           int maxVehicles, PacingMode pacing, double speed) {
+
+    public ScenarioSpec {
+        if (maxVehicles <= 0) throw new IllegalArgumentException("maxVehicles must be positive: " + maxVehicles);
+        if (!(speed > 0)) throw new IllegalArgumentException("speed must be positive: " + speed);
+        if (!Double.isNaN(tripsPerHour) && !(tripsPerHour >= 0)) {
+            throw new IllegalArgumentException("tripsPerHour must not be negative: " + tripsPerHour);
+        }
+        if (!(startHour >= 0 && startHour < 24)) throw new IllegalArgumentException("startHour must be in [0, 24): " + startHour);
+    }
+}
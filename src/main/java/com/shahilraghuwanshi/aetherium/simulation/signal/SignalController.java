@@ -0,0 +1,227 @@
+package com.shahilraghuwanshi.aetherium.simulation.signal;
+
+import com.shahilraghuwanshi.aetherium.model.TrafficLight;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.io.ArrayFileWriter;
+import com.shahilraghuwanshi.aetherium.simulation.io.MappedArrayReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every traffic signal in the network, stored as primitive arrays.
+ * <p>
+ * Signals are numbered densely in the order they are added. Each has a node, a shared
+ * {@link SignalPlan} and an offset in seconds; a signal's state at simulation time {@code t} is the
+ * plan's state at {@code (t + offset) mod cycle}, so states are a pure function of time and a batch
+ * update is a single pass with no per-signal timers. Giving consecutive signals offsets that match the
+ * travel time between them produces a green wave.
+ * <p>
+ * The current state is also kept per graph node, so {@link #stateAt(int)} is an array lookup for the
+ * vehicles approaching an intersection. {@link #update} ranges may run concurrently; everything else
+ * belongs to the simulation thread.
+ */
+public final class SignalController {
+
+    private static final Logger log = LoggerFactory.getLogger(SignalController.class);
+
+    /** {@link #stateAt} value for nodes without a signal. */
+    public static final byte NO_SIGNAL = -1;
+
+    private static final byte NS_GREEN = (byte) TrafficLight.State.NS_GREEN.ordinal();
+    private static final byte EW_GREEN = (byte) TrafficLight.State.EW_GREEN.ordinal();
+
+    private final RoadGraph graph;
+    private final byte[] stateByNode;
+    private final int[] signalByNode;
+
+    private int count;
+    private int[] nodes = new int[16];
+    private double[] offsets = new double[16];
+    private SignalPlan[] plans = new SignalPlan[16];
+    private byte[] states = new byte[16];
+
+    public SignalController(RoadGraph graph) {
+        this.graph = graph;
+        this.stateByNode = new byte[graph.nodeCount()];
+        this.signalByNode = new int[graph.nodeCount()];
+        Arrays.fill(stateByNode, NO_SIGNAL);
+        Arrays.fill(signalByNode, -1);
+    }
+
+    /**
+     * Builds signals from the persisted lights. Each light runs a two-phase plan with its own green time,
+     * starting in its stored state at time zero, shifted by its configured offset.
+     */
+    public static SignalController fromTrafficLights(RoadGraph graph, List<TrafficLight> lights, double clearanceSeconds) {
+        SignalController signals = new SignalController(graph);
+        Map<Integer, SignalPlan> plansByGreenTime = new HashMap<>(); // Most lights share a handful of timings
+        for (TrafficLight light : lights) {
+            int node = light.getIntersection() != null ? graph.indexOf(light.getIntersection().getId()) : -1;
+            if (node < 0) {
+                log.warn("Skipping traffic light {} with unknown intersection.", light.getId());
+                continue;
+            }
+            if (light.getStateDurationSeconds() <= 0) {
+                log.warn("Skipping traffic light {} with non-positive state duration {}.", light.getId(),
+                        light.getStateDurationSeconds());
+                continue;
+            }
+            SignalPlan plan = plansByGreenTime.computeIfAbsent(light.getStateDurationSeconds(),
+                    green -> SignalPlan.twoPhase(green, clearanceSeconds));
+            double offset = light.getOffsetSeconds();
+            if (light.getCurrentState() == TrafficLight.State.EW_GREEN) offset += plan.phaseStart(plan.phaseCount() / 2);
+            signals.addSignal(node, plan, offset);
+        }
+        return signals;
+    }
+
+    /** Writes every signal with its timing; plans shared between signals are written once. */
+    public void writeTo(ArrayFileWriter out) throws IOException {
+        Map<SignalPlan, Integer> planIndices = new IdentityHashMap<>();
+        List<SignalPlan> distinctPlans = new ArrayList<>();
+        int[] planBySignal = new int[count];
+        for (int signal = 0; signal < count; signal++) {
+            planBySignal[signal] = planIndices.computeIfAbsent(plans[signal], plan -> {
+                distinctPlans.add(plan);
+                return distinctPlans.size() - 1;
+            });
+        }
+        out.writeInt(distinctPlans.size());
+        for (SignalPlan plan : distinctPlans) {
+            out.writeBytes(plan.phaseStates(), plan.phaseCount());
+            out.writeDoubles(plan.phaseEnds());
+        }
+        out.writeInts(nodes, count);
+        out.writeDoubles(offsets, count);
+        out.writeInts(planBySignal);
+    }
+
+    /** Reads signals written by {@link #writeTo} for the same graph. */
+    public static SignalController readFrom(MappedArrayReader in, RoadGraph graph) throws IOException {
+        SignalPlan[] distinctPlans = new SignalPlan[in.readInt()];
+        for (int i = 0; i < distinctPlans.length; i++) {
+            byte[] phaseStates = in.readBytes();
+            double[] phaseEnds = in.readDoubles();
+            if (phaseStates.length == 0 || phaseStates.length != phaseEnds.length) throw new IOException("Corrupt signal plan");
+            distinctPlans[i] = new SignalPlan(phaseStates, phaseEnds);
+        }
+        int[] nodes = in.readInts();
+        double[] offsets = in.readDoubles();
+        int[] planBySignal = in.readInts();
+        if (offsets.length != nodes.length || planBySignal.length != nodes.length) throw new IOException("Corrupt signals");
+        SignalController signals = new SignalController(graph);
+        for (int signal = 0; signal < nodes.length; signal++) {
+            if (nodes[signal] < 0 || nodes[signal] >= graph.nodeCount()
+                    || planBySignal[signal] < 0 || planBySignal[signal] >= distinctPlans.length) {
+                throw new IOException("Corrupt signal " + signal);
+            }
+            signals.addSignal(nodes[signal], distinctPlans[planBySignal[signal]], offsets[signal]);
+        }
+        return signals;
+    }
+
+    /**
+     * An independent controller with the same signals and timings, its states set for time zero, e.g. for
+     * another simulation of the same city. Plans are shared, since they are immutable.
+     */
+    public SignalController copy() {
+        SignalController copy = new SignalController(graph);
+        for (int signal = 0; signal < count; signal++) {
+            copy.addSignal(nodes[signal], plans[signal], offsets[signal]);
+        }
+        return copy;
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Adds a signal at {@code node} and sets its state for time zero.
+     * @return the signal's index
+     */
+    public int addSignal(int node, SignalPlan plan, double offsetSeconds) {
+        if (signalByNode[node] >= 0) {
+            throw new IllegalArgumentException("Node " + graph.nodeId(node) + " already has a signal");
+        }
+        if (count == nodes.length) {
+            int capacity = count * 2;
+            nodes = Arrays.copyOf(nodes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            plans = Arrays.copyOf(plans, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+        int signal = count++;
+        nodes[signal] = node;
+        signalByNode[node] = signal;
+        setTiming(signal, plan, offsetSeconds);
+        update(0, signal, signal + 1);
+        return signal;
+    }
+
+    /** Replaces a signal's plan and offset; takes effect on the next update. */
+    public void setTiming(int signal, SignalPlan plan, double offsetSeconds) {
+        plans[signal] = plan;
+        offsets[signal] = offsetSeconds;
+    }
+
+    /** Sets the state of signals {@code [from, to)} for simulation time {@code timeSeconds}. */
+    public void update(double timeSeconds, int from, int to) {
+        for (int signal = from; signal < to; signal++) {
+            SignalPlan plan = plans[signal];
+            double cycleTime = (timeSeconds + offsets[signal]) % plan.cycleSeconds();
+            if (cycleTime < 0) cycleTime += plan.cycleSeconds();
+            byte state = plan.stateAt(cycleTime);
+            states[signal] = state;
+            stateByNode[nodes[signal]] = state;
+        }
+    }
+
+    public int signalCount() {
+        return count;
+    }
+
+    public int node(int signal) {
+        return nodes[signal];
+    }
+
+    public double offset(int signal) {
+        return offsets[signal];
+    }
+
+    public SignalPlan plan(int signal) {
+        return plans[signal];
+    }
+
+    /** The signal's current {@link TrafficLight.State} ordinal. */
+    public byte state(int signal) {
+        return states[signal];
+    }
+
+    /** The signal index at {@code node}, or -1. */
+    public int signalAt(int node) {
+        return signalByNode[node];
+    }
+
+    /** The current state ordinal of the signal at {@code node}, or {@link #NO_SIGNAL}. */
+    public byte stateAt(int node) {
+        return stateByNode[node];
+    }
+
+    /**
+     * Whether traffic may enter {@code node} travelling mainly north-south ({@code northSouth}) or
+     * east-west. Nodes without a signal are always green.
+     */
+    public boolean isGreen(int node, boolean northSouth) {
+        byte state = stateByNode[node];
+        return state == NO_SIGNAL || state == (northSouth ? NS_GREEN : EW_GREEN);
+    }
+}
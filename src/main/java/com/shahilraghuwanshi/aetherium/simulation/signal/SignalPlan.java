@@ -0,0 +1,87 @@
+package com.shahilraghuwanshi.aetherium.simulation.signal;
+
+import com.shahilraghuwanshi.aetherium.model.TrafficLight;
+
+/**
+ * A fixed-time signal program: an ordered list of phases, each showing one {@link TrafficLight.State}
+ * for a number of seconds, repeated every {@link #cycleSeconds()}. Immutable, so one plan can be shared by
+ * any number of signals; each signal shifts it by its own offset.
+ */
+public final class SignalPlan {
+
+    private final byte[] phaseStates;  // TrafficLight.State ordinals
+    private final double[] phaseEnds;  // Cumulative seconds from the start of the cycle
+    private final double cycleSeconds;
+
+    SignalPlan(byte[] phaseStates, double[] phaseEnds) {
+        this.phaseStates = phaseStates;
+        this.phaseEnds = phaseEnds;
+        this.cycleSeconds = phaseEnds[phaseEnds.length - 1];
+    }
+
+    /**
+     * @param states    the state shown in each phase, in order
+     * @param durations how long each phase lasts, in seconds; all positive
+     */
+    public static SignalPlan of(TrafficLight.State[] states, double[] durations) {
+        if (states.length == 0 || states.length != durations.length) {
+            throw new IllegalArgumentException("A plan needs one duration per phase and at least one phase");
+        }
+        byte[] phaseStates = new byte[states.length];
+        double[] phaseEnds = new double[states.length];
+        double end = 0;
+        for (int i = 0; i < states.length; i++) {
+            if (!(durations[i] > 0)) {
+                throw new IllegalArgumentException("Phase " + i + " has non-positive duration " + durations[i]);
+            }
+            end += durations[i];
+            phaseStates[i] = (byte) states[i].ordinal();
+            phaseEnds[i] = end;
+        }
+        return new SignalPlan(phaseStates, phaseEnds);
+    }
+
+    /**
+     * The classic plan: north-south green, then east-west green, each for {@code greenSeconds}, with an
+     * all-red clearance phase after each if {@code clearanceSeconds} is positive.
+     */
+    public static SignalPlan twoPhase(double greenSeconds, double clearanceSeconds) {
+        if (clearanceSeconds > 0) {
+            return of(new TrafficLight.State[] {TrafficLight.State.NS_GREEN, TrafficLight.State.ALL_RED,
+                            TrafficLight.State.EW_GREEN, TrafficLight.State.ALL_RED},
+                    new double[] {greenSeconds, clearanceSeconds, greenSeconds, clearanceSeconds});
+        }
+        return of(new TrafficLight.State[] {TrafficLight.State.NS_GREEN, TrafficLight.State.EW_GREEN},
+                new double[] {greenSeconds, greenSeconds});
+    }
+
+    public double cycleSeconds() {
+        return cycleSeconds;
+    }
+
+    public int phaseCount() {
+        return phaseStates.length;
+    }
+
+    /** Seconds from the start of the cycle until phase {@code phase} begins. */
+    public double phaseStart(int phase) {
+        return phase == 0 ? 0 : phaseEnds[phase - 1];
+    }
+
+    byte[] phaseStates() {
+        return phaseStates;
+    }
+
+    double[] phaseEnds() {
+        return phaseEnds;
+    }
+
+    /** The state ordinal shown {@code cycleTime} seconds into the cycle, {@code 0 <= cycleTime < cycleSeconds()}. */
+    byte stateAt(double cycleTime) {
+        // Plans have a handful of phases, so a linear scan beats a binary search
+        for (int i = 0; i < phaseEnds.length - 1; i++) {
+            if (cycleTime < phaseEnds[i]) return phaseStates[i];
+        }
+        return phaseStates[phaseStates.length - 1];
+    }
+}
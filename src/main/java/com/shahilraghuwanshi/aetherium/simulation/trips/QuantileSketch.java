@@ -0,0 +1,140 @@
+package com.shahilraghuwanshi.aetherium.simulation.trips;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable histogram of non-negative values that answers quantile queries within a relative error.
+ * <p>
+ * Values fall into logarithmic buckets, bucket {@code i} holding the values in {@code (gamma^(i-1), gamma^i]}
+ * with {@code gamma = (1 + accuracy) / (1 - accuracy)}, and a quantile is answered with the middle of its
+ * bucket, which is within {@code accuracy} of every value in it. Only the range of buckets between the
+ * smallest and largest value seen is allocated, so a sketch of travel times spanning two orders of magnitude
+ * at 2% takes about a hundred counters. Two sketches of the same accuracy merge by adding their counters,
+ * and the merge answers exactly as one sketch fed both streams would.
+ * <p>
+ * Values below {@link #MIN_VALUE} are counted as zero. Not thread-safe.
+ */
+public final class QuantileSketch {
+
+    public static final double MIN_VALUE = 1e-3;
+
+    private final double accuracy;
+    private final double gamma;
+    private final double logGamma;
+    private long[] counts = new long[0]; // counts[i] is bucket firstBucket + i
+    private int firstBucket;
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /** @param accuracy relative error of quantiles, between 0 and 1 exclusive; e.g. 0.02 for 2% */
+    public QuantileSketch(double accuracy) {
+        if (!(accuracy > 0 && accuracy < 1)) throw new IllegalArgumentException("Accuracy must be in (0, 1): " + accuracy);
+        this.accuracy = accuracy;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    public void add(double value) {
+        if (!(value >= 0)) throw new IllegalArgumentException("Values must be non-negative: " + value);
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value < MIN_VALUE) {
+            zeroCount++;
+            return;
+        }
+        int bucket = (int) Math.ceil(Math.log(value) / logGamma);
+        ensureBucket(bucket);
+        counts[bucket - firstBucket]++;
+    }
+
+    /** Adds every value {@code other} has seen. */
+    public void merge(QuantileSketch other) {
+        if (other.accuracy != accuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of accuracy " + other.accuracy + " and " + accuracy);
+        }
+        if (other.count == 0) return;
+        if (other.counts.length > 0) {
+            ensureBucket(other.firstBucket);
+            ensureBucket(other.firstBucket + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) counts[other.firstBucket - firstBucket + i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(accuracy);
+        copy.merge(this);
+        return copy;
+    }
+
+    /** The value at quantile {@code q} (0 = minimum, 1 = maximum), within the accuracy; NaN if empty. */
+    public double quantile(double q) {
+        if (count == 0) return Double.NaN;
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+        long rank = (long) Math.floor(q * (count - 1)); // Zero-based rank of the value wanted
+        if (rank < zeroCount) return min;
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                double middle = 2 * Math.pow(gamma, firstBucket + i) / (gamma + 1);
+                return Math.max(min, Math.min(max, middle));
+            }
+        }
+        return max;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double sum() {
+        return sum;
+    }
+
+    /** NaN if empty. */
+    public double mean() {
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    public double min() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double max() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    // Widens the allocated range to include bucket
+    private void ensureBucket(int bucket) {
+        if (counts.length == 0) {
+            counts = new long[8];
+            firstBucket = bucket - 4;
+            return;
+        }
+        int last = firstBucket + counts.length - 1;
+        if (bucket < firstBucket) {
+            int grow = Math.max(firstBucket - bucket, counts.length / 2);
+            long[] grown = new long[counts.length + grow];
+            System.arraycopy(counts, 0, grown, grow, counts.length);
+            counts = grown;
+            firstBucket -= grow;
+        } else if (bucket > last) {
+            counts = Arrays.copyOf(counts, counts.length + Math.max(bucket - last, counts.length / 2));
+        }
+    }
+}
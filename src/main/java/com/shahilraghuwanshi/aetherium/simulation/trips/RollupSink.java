@@ -0,0 +1,11 @@
+package com.shahilraghuwanshi.aetherium.simulation.trips;
+
+import java.util.List;
+
+/** Persists the rollups of completed intervals, e.g. to the database; called from the statistics thread. */
+@FunctionalInterface
+public interface RollupSink {
+
+    /** Writes every rollup, or throws and writes none, leaving them to be retried. */
+    void write(List<TripStatistics.Rollup> rollups);
+}
@@ -0,0 +1,17 @@
+package com.shahilraghuwanshi.aetherium.simulation.trips;
+
+/**
+ * Travel times of a set of trips or road traversals, in simulated seconds, with quantiles within the accuracy
+ * of the {@link QuantileSketch} they were read from. Delay is the time taken beyond free flow, driving every
+ * road at the desired speed or its limit. Means are NaN when {@code count} is 0.
+ */
+public record TravelStats(long count, double meanSeconds, double p50Seconds, double p90Seconds, double p99Seconds,
+                          double maxSeconds, double meanDelaySeconds, double meanDistance) {
+
+    static TravelStats of(QuantileSketch seconds, double delaySum, double distanceSum) {
+        long count = seconds.count();
+        return new TravelStats(count, seconds.mean(), seconds.quantile(0.5), seconds.quantile(0.9),
+                seconds.quantile(0.99), seconds.max(), count > 0 ? delaySum / count : Double.NaN,
+                count > 0 ? distanceSum / count : Double.NaN);
+    }
+}
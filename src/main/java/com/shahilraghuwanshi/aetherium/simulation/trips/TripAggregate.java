@@ -0,0 +1,98 @@
+package com.shahilraghuwanshi.aetherium.simulation.trips;
+
+import com.shahilraghuwanshi.aetherium.simulation.io.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Travel-time sketches of the trips and road traversals in some span of simulated time: all trips, trips per
+ * pair of origin and destination zone, and traversals per road. Aggregates of two spans merge into the
+ * aggregate of both. Not thread-safe.
+ */
+final class TripAggregate {
+
+    // Travel times of one group of trips or traversals
+    static final class Cell {
+        final long key; // Zone pair index or road id
+        final QuantileSketch seconds;
+        double delaySum;
+        double distanceSum;
+
+        Cell(long key, double accuracy) {
+            this.key = key;
+            this.seconds = new QuantileSketch(accuracy);
+        }
+
+        void add(double seconds, double delay, double distance) {
+            this.seconds.add(seconds);
+            delaySum += delay;
+            distanceSum += distance;
+        }
+
+        void merge(Cell other) {
+            seconds.merge(other.seconds);
+            delaySum += other.delaySum;
+            distanceSum += other.distanceSum;
+        }
+
+        TravelStats stats() {
+            return TravelStats.of(seconds, delaySum, distanceSum);
+        }
+    }
+
+    private final double accuracy;
+    private final int zoneCount;
+    final Cell trips;
+    final Cell[] zonePairs; // origin zone * zoneCount + destination zone; null until a trip between them
+    private final LongIntHashMap roadIndices = new LongIntHashMap(1024); // Road id -> index into roads
+    final List<Cell> roads = new ArrayList<>();
+    long traversals;
+
+    TripAggregate(int zoneCount, double accuracy) {
+        this.accuracy = accuracy;
+        this.zoneCount = zoneCount;
+        this.trips = new Cell(-1, accuracy);
+        this.zonePairs = new Cell[zoneCount * zoneCount];
+    }
+
+    void addTrip(int originZone, int destinationZone, double seconds, double delay, double distance) {
+        trips.add(seconds, delay, distance);
+        int pair = originZone * zoneCount + destinationZone;
+        Cell cell = zonePairs[pair];
+        if (cell == null) zonePairs[pair] = cell = new Cell(pair, accuracy);
+        cell.add(seconds, delay, distance);
+    }
+
+    void addTraversal(long roadId, double seconds, double delay, double length) {
+        road(roadId, true).add(seconds, delay, length);
+        traversals++;
+    }
+
+    /** The cell of a road; null if it has no traversals and {@code create} is false. */
+    Cell road(long roadId, boolean create) {
+        int index = roadIndices.get(roadId, -1);
+        if (index >= 0) return roads.get(index);
+        if (!create) return null;
+        Cell cell = new Cell(roadId, accuracy);
+        roadIndices.put(roadId, roads.size());
+        roads.add(cell);
+        return cell;
+    }
+
+    boolean isEmpty() {
+        return trips.seconds.count() == 0 && roads.isEmpty();
+    }
+
+    void merge(TripAggregate other) {
+        trips.merge(other.trips);
+        for (int pair = 0; pair < zonePairs.length; pair++) {
+            Cell cell = other.zonePairs[pair];
+            if (cell == null) continue;
+            if (zonePairs[pair] == null) zonePairs[pair] = new Cell(pair, accuracy);
+            zonePairs[pair].merge(cell);
+        }
+        for (Cell cell : other.roads) road(cell.key, true).merge(cell);
+        traversals += other.traversals;
+    }
+}
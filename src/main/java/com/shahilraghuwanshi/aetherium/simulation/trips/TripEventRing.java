@@ -0,0 +1,131 @@
+package com.shahilraghuwanshi.aetherium.simulation.trips;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free single-producer single-consumer queue of trip events: completed trips and completed
+ * road traversals, as the engine reports them during the commit of a tick.
+ * <p>
+ * Events are stored struct-of-arrays in preallocated slots, so offering one allocates nothing and costs a few
+ * array stores and one release write of the tail. The producer only re-reads the consumer's head when the
+ * ring looks full; a full ring drops the event and counts it rather than stall the simulation. Exactly one
+ * thread may offer and one other thread may {@link #drain}.
+ */
+public final class TripEventRing {
+
+    /** Receives drained events, in the order they were offered. */
+    public interface Handler {
+
+        void trip(int origin, int destination, double departedAt, double arrivedAt, double distance, double freeFlowSeconds);
+
+        void traversal(long roadId, double enteredAt, double leftAt, double length, double freeFlowSeconds);
+    }
+
+    private static final byte TRIP = 0;
+    private static final byte TRAVERSAL = 1;
+
+    private final int mask;
+    private final byte[] kinds;
+    private final long[] roadIds;
+    private final int[] origins;
+    private final int[] destinations;
+    private final double[] starts;
+    private final double[] ends;
+    private final double[] distances;
+    private final double[] freeFlowSeconds;
+
+    private final AtomicLong head = new AtomicLong(); // Next slot to drain; written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next slot to fill; written by the producer
+    private long cachedHead;   // Producer only: the head as last read
+    private volatile long dropped; // Written by the producer only
+
+    /** @param capacity rounded up to a power of two */
+    public TripEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        kinds = new byte[size];
+        roadIds = new long[size];
+        origins = new int[size];
+        destinations = new int[size];
+        starts = new double[size];
+        ends = new double[size];
+        distances = new double[size];
+        freeFlowSeconds = new double[size];
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /** Events waiting to be drained; approximate while either side is active. */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /** Events that found the ring full. */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /** A vehicle reached {@code destination}; producer only. */
+    public boolean offerTrip(int origin, int destination, double departedAt, double arrivedAt, double distance,
+                             double freeFlowSeconds) {
+        int slot = claim();
+        if (slot < 0) return false;
+        kinds[slot] = TRIP;
+        origins[slot] = origin;
+        destinations[slot] = destination;
+        publish(slot, 0, departedAt, arrivedAt, distance, freeFlowSeconds);
+        return true;
+    }
+
+    /** A vehicle drove a road from start to end; producer only. */
+    public boolean offerTraversal(long roadId, double enteredAt, double leftAt, double length, double freeFlowSeconds) {
+        int slot = claim();
+        if (slot < 0) return false;
+        kinds[slot] = TRAVERSAL;
+        publish(slot, roadId, enteredAt, leftAt, length, freeFlowSeconds);
+        return true;
+    }
+
+    /**
+     * Hands up to {@code max} waiting events to {@code handler}, then frees their slots; consumer only.
+     * @return the number of events drained
+     */
+    public int drain(Handler handler, int max) {
+        long from = head.get();
+        long available = Math.min(tail.get() - from, max); // Acquires the producer's writes up to the tail
+        for (long i = 0; i < available; i++) {
+            int slot = (int) (from + i) & mask;
+            if (kinds[slot] == TRIP) {
+                handler.trip(origins[slot], destinations[slot], starts[slot], ends[slot], distances[slot], freeFlowSeconds[slot]);
+            } else {
+                handler.traversal(roadIds[slot], starts[slot], ends[slot], distances[slot], freeFlowSeconds[slot]);
+            }
+        }
+        if (available > 0) head.lazySet(from + available);
+        return (int) available;
+    }
+
+    // The next free slot, or -1 if the ring is full
+    private int claim() {
+        long next = tail.get();
+        if (next - cachedHead > mask) {
+            cachedHead = head.get();
+            if (next - cachedHead > mask) {
+                dropped++;
+                return -1;
+            }
+        }
+        return (int) next & mask;
+    }
+
+    private void publish(int slot, long roadId, double start, double end, double distance, double freeFlow) {
+        roadIds[slot] = roadId;
+        starts[slot] = start;
+        ends[slot] = end;
+        distances[slot] = distance;
+        freeFlowSeconds[slot] = freeFlow;
+        tail.lazySet(tail.get() + 1); // Release: the slot's columns become visible with the new tail
+    }
+}
@@ -0,0 +1,303 @@
+package com.shahilraghuwanshi.aetherium.simulation.trips;
+
+import com.shahilraghuwanshi.aetherium.simulation.SampledLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Aggregates the trip events the engine offers to a {@link TripEventRing} into travel-time statistics, on a
+ * thread of its own, and writes rolled-up intervals behind to a {@link RollupSink}.
+ * <p>
+ * Simulated time is cut into intervals of {@code intervalSeconds}. The events of the open interval go into a
+ * {@link TripAggregate}: travel times of all trips, per pair of origin and destination zone, and per road.
+ * Events arrive in time order, so the first event past the end of the interval closes it: its statistics
+ * become a {@link Rollup} queued for the sink and its sketches are merged into the totals of the run. Queries
+ * merge the totals with the open interval, and never touch the database. Queued rollups are written every
+ * {@code flushNanos} of wall time; a failed write is retried at the next flush, and once more than
+ * {@code maxPendingRows} rows wait, the oldest rollups are given up.
+ * <p>
+ * Queries are safe from any thread; they wait at most for one batch of events to be aggregated.
+ */
+public final class TripStatistics implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TripStatistics.class);
+    private static final SampledLog WRITE_FAILURE_LOG = new SampledLog(TimeUnit.SECONDS.toNanos(60));
+    private static final int DRAIN_BATCH = 4096;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /** Trips between a pair of zones; zones are numbered as by {@code DemandModel.gridZones}. */
+    public record ZonePair(int originZone, int destinationZone, TravelStats stats) {
+    }
+
+    /** Traversals of one road, in either direction. */
+    public record Road(long roadId, TravelStats stats) {
+    }
+
+    /** Trips completed in one interval, starting {@code startSeconds} into the run. */
+    public record Interval(double startSeconds, TravelStats trips) {
+    }
+
+    /** The statistics of one closed interval, one row per zone pair and per road with at least one trip. */
+    public record Rollup(double startSeconds, double intervalSeconds, List<ZonePair> zonePairs, List<Road> roads) {
+
+        public int rowCount() {
+            return zonePairs.size() + roads.size();
+        }
+    }
+
+    private final TripEventRing ring;
+    private final int[] zoneOfNode;
+    private final int zoneCount;
+    private final double intervalSeconds;
+    private final double accuracy;
+    private final RollupSink sink; // null = statistics are kept in memory only
+    private final long flushNanos;
+    private final int maxPendingRows;
+    private final Thread consumer;
+    private volatile boolean closing;
+
+    // Guarded by this
+    private final TripAggregate total;
+    private TripAggregate open;
+    private long openInterval; // Index of the open interval
+    private final List<Interval> intervals = new ArrayList<>(); // Closed ones, in order
+
+    // Consumer thread only
+    private final Deque<Rollup> pending = new ArrayDeque<>();
+    private int pendingRows;
+    private final Handler handler = new Handler();
+
+    private volatile long events;
+    private volatile long rowsWritten;
+    private volatile long rowsDropped;
+    private volatile long failedWrites;
+
+    /**
+     * @param zoneOfNode     zone of every node of the road network, {@code 0} to {@code zoneCount - 1}
+     * @param accuracy       relative error of the travel-time quantiles
+     * @param sink           where rollups of closed intervals are written; null to keep statistics in memory only
+     */
+    public TripStatistics(TripEventRing ring, int[] zoneOfNode, int zoneCount, double intervalSeconds, double accuracy,
+                          RollupSink sink, long flushNanos, int maxPendingRows) {
+        if (!(intervalSeconds > 0)) throw new IllegalArgumentException("The interval must be positive: " + intervalSeconds);
+        this.ring = ring;
+        this.zoneOfNode = zoneOfNode;
+        this.zoneCount = zoneCount;
+        this.intervalSeconds = intervalSeconds;
+        this.accuracy = accuracy;
+        this.sink = sink;
+        this.flushNanos = flushNanos;
+        this.maxPendingRows = maxPendingRows;
+        this.total = new TripAggregate(zoneCount, accuracy);
+        this.open = new TripAggregate(zoneCount, accuracy);
+        this.consumer = new Thread(this::run, "trip-statistics");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    public TripEventRing getRing() {
+        return ring;
+    }
+
+    public int zoneCount() {
+        return zoneCount;
+    }
+
+    public double getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    /** Events aggregated so far. */
+    public long getEvents() {
+        return events;
+    }
+
+    /** Rollup rows the sink has written. */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /** Rollup rows given up after the sink failed for too long. */
+    public long getRowsDropped() {
+        return rowsDropped;
+    }
+
+    /** Writes to the sink that failed, to be retried. */
+    public long getFailedWrites() {
+        return failedWrites;
+    }
+
+    /** All trips completed so far. */
+    public synchronized TravelStats trips() {
+        TripAggregate.Cell cell = new TripAggregate.Cell(-1, accuracy);
+        cell.merge(total.trips);
+        cell.merge(open.trips);
+        return cell.stats();
+    }
+
+    /** Road traversals completed so far. */
+    public synchronized long traversals() {
+        return total.traversals + open.traversals;
+    }
+
+    /** Trips from one zone to another so far; null if there were none. */
+    public synchronized TravelStats zonePair(int originZone, int destinationZone) {
+        if (originZone < 0 || originZone >= zoneCount || destinationZone < 0 || destinationZone >= zoneCount) return null;
+        return merged(total.zonePairs[originZone * zoneCount + destinationZone],
+                open.zonePairs[originZone * zoneCount + destinationZone]);
+    }
+
+    /** The zone pairs with the most trips so far, busiest first. */
+    public synchronized List<ZonePair> busiestZonePairs(int limit) {
+        List<ZonePair> pairs = new ArrayList<>();
+        for (int pair = 0; pair < zoneCount * zoneCount; pair++) {
+            TravelStats stats = merged(total.zonePairs[pair], open.zonePairs[pair]);
+            if (stats != null) pairs.add(new ZonePair(pair / zoneCount, pair % zoneCount, stats));
+        }
+        pairs.sort(Comparator.comparingLong((ZonePair pair) -> pair.stats().count()).reversed());
+        return pairs.subList(0, Math.min(limit, pairs.size()));
+    }
+
+    /** Traversals of a road so far; null if there were none. */
+    public synchronized TravelStats road(long roadId) {
+        return merged(total.road(roadId, false), open.road(roadId, false));
+    }
+
+    /** Trips completed per interval, the last one still open and partial. */
+    public synchronized List<Interval> throughput() {
+        List<Interval> series = new ArrayList<>(intervals.size() + 1);
+        series.addAll(intervals);
+        series.add(new Interval(openInterval * intervalSeconds, open.trips.stats()));
+        return series;
+    }
+
+    /** Aggregates the events still in the ring, closes the open interval and writes every rollup, then stops. */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long nextFlush = System.nanoTime() + flushNanos;
+        while (true) {
+            int drained;
+            synchronized (this) {
+                drained = ring.drain(handler, DRAIN_BATCH);
+            }
+            events += drained;
+            long now = System.nanoTime();
+            if (now >= nextFlush) {
+                flush();
+                nextFlush = now + flushNanos;
+            }
+            if (drained == 0) {
+                if (closing) break;
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+        synchronized (this) {
+            closeInterval(openInterval + 1);
+        }
+        flush();
+        log.info("Trip statistics stopped after {} events; {} rollup rows written, {} given up.", events, rowsWritten, rowsDropped);
+    }
+
+    // Hands every queued rollup to the sink; keeps them for the next flush if it fails
+    private void flush() {
+        if (sink == null || pending.isEmpty()) return;
+        List<Rollup> batch = new ArrayList<>(pending);
+        try {
+            sink.write(batch);
+        } catch (RuntimeException e) {
+            failedWrites++;
+            if (WRITE_FAILURE_LOG.tryAcquire()) {
+                log.warn("Could not write {} trip rollups, retrying at the next flush ({} similar messages suppressed): {}",
+                        batch.size(), WRITE_FAILURE_LOG.drainSuppressed(), e.getMessage());
+            }
+            return;
+        }
+        rowsWritten += pendingRows;
+        pending.clear();
+        pendingRows = 0;
+    }
+
+    // Closes the open interval and opens the one with index next, skipping empty intervals in between. Guarded by this
+    private void closeInterval(long next) {
+        double start = openInterval * intervalSeconds;
+        intervals.add(new Interval(start, open.trips.stats()));
+        if (!open.isEmpty()) {
+            if (sink != null) queue(rollup(start, open));
+            total.merge(open);
+            open = new TripAggregate(zoneCount, accuracy);
+        }
+        for (long skipped = openInterval + 1; skipped < next; skipped++) {
+            intervals.add(new Interval(skipped * intervalSeconds, open.trips.stats()));
+        }
+        openInterval = next;
+    }
+
+    private Rollup rollup(double start, TripAggregate aggregate) {
+        List<ZonePair> pairs = new ArrayList<>();
+        for (int pair = 0; pair < aggregate.zonePairs.length; pair++) {
+            TripAggregate.Cell cell = aggregate.zonePairs[pair];
+            if (cell != null) pairs.add(new ZonePair(pair / zoneCount, pair % zoneCount, cell.stats()));
+        }
+        List<Road> roads = new ArrayList<>(aggregate.roads.size());
+        for (TripAggregate.Cell cell : aggregate.roads) roads.add(new Road(cell.key, cell.stats()));
+        return new Rollup(start, intervalSeconds, pairs, roads);
+    }
+
+    private void queue(Rollup rollup) {
+        pending.addLast(rollup);
+        pendingRows += rollup.rowCount();
+        while (pendingRows > maxPendingRows && pending.size() > 1) {
+            Rollup oldest = pending.removeFirst();
+            pendingRows -= oldest.rowCount();
+            rowsDropped += oldest.rowCount();
+        }
+    }
+
+    private TravelStats merged(TripAggregate.Cell a, TripAggregate.Cell b) {
+        if (a == null && b == null) return null;
+        TripAggregate.Cell cell = new TripAggregate.Cell(-1, accuracy);
+        if (a != null) cell.merge(a);
+        if (b != null) cell.merge(b);
+        return cell.stats();
+    }
+
+    private final class Handler implements TripEventRing.Handler {
+
+        @Override
+        public void trip(int origin, int destination, double departedAt, double arrivedAt, double distance,
+                         double freeFlowSeconds) {
+            advanceTo(arrivedAt);
+            double seconds = arrivedAt - departedAt;
+            open.addTrip(zoneOfNode[origin], zoneOfNode[destination], seconds, Math.max(0, seconds - freeFlowSeconds), distance);
+        }
+
+        @Override
+        public void traversal(long roadId, double enteredAt, double leftAt, double length, double freeFlowSeconds) {
+            advanceTo(leftAt);
+            double seconds = leftAt - enteredAt;
+            open.addTraversal(roadId, seconds, Math.max(0, seconds - freeFlowSeconds), length);
+        }
+
+        private void advanceTo(double time) {
+            long interval = (long) Math.floor(time / intervalSeconds);
+            if (interval > openInterval) closeInterval(interval);
+        }
+    }
+}
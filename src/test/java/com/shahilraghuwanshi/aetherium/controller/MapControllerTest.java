@@ -0,0 +1,57 @@
+package com.shahilraghuwanshi.aetherium.controller;
+
+import com.shahilraghuwanshi.aetherium.service.EncodedResponse;
+import com.shahilraghuwanshi.aetherium.service.MapService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MapControllerTest {
+
+	private static final byte[] IDENTITY = {1, 2, 3};
+	private static final byte[] GZIP = {4, 5};
+
+	private final MapController controller = controllerServing(new EncodedResponse(IDENTITY, GZIP, "\"abc\""));
+
+	@Test
+	void eachCodingIsServedUnderItsOwnEtag() {
+		ResponseEntity<byte[]> gzip = controller.getMapLayout(null, "gzip, deflate");
+		assertArrayEquals(GZIP, gzip.getBody());
+		assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals("\"abc-gz\"", gzip.getHeaders().getETag());
+
+		ResponseEntity<byte[]> identity = controller.getMapLayout(null, null);
+		assertArrayEquals(IDENTITY, identity.getBody());
+		assertNull(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals("\"abc\"", identity.getHeaders().getETag());
+
+		// Either tag validates, and the 304 names the coding this client would have been sent
+		ResponseEntity<byte[]> revalidated = controller.getMapLayout("\"abc-gz\"", null);
+		assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+		assertEquals("\"abc\"", revalidated.getHeaders().getETag());
+		assertEquals(HttpStatus.NOT_MODIFIED, controller.getMapLayout("W/\"abc\"", "gzip").getStatusCode());
+		assertEquals(HttpStatus.OK, controller.getMapLayout("\"other\"", "gzip").getStatusCode());
+	}
+
+	@Test
+	void gzipIsOnlySentWhenAcceptedWithANonZeroQuality() {
+		assertArrayEquals(IDENTITY, controller.getMapLayout(null, "gzip;q=0").getBody());
+		assertArrayEquals(IDENTITY, controller.getMapLayout(null, "br, gzip; q=0.0").getBody());
+		assertArrayEquals(IDENTITY, controller.getMapLayout(null, "*;q=0").getBody());
+		assertArrayEquals(IDENTITY, controller.getMapLayout(null, "gzip;q=0, *").getBody());
+		assertArrayEquals(IDENTITY, controller.getMapLayout(null, "deflate").getBody());
+		assertArrayEquals(GZIP, controller.getMapLayout(null, "deflate, GZIP;q=0.5").getBody());
+		assertArrayEquals(GZIP, controller.getMapLayout(null, "*").getBody());
+	}
+
+	private static MapController controllerServing(EncodedResponse response) {
+		MapService maps = mock(MapService.class);
+		when(maps.getMapLayout()).thenReturn(response);
+		return new MapController(maps);
+	}
+}
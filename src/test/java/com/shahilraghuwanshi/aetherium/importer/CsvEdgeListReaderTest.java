@@ -0,0 +1,36 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvEdgeListReaderTest {
+
+	@Test
+	void readsRoadsAndDeduplicatesIntersections() throws Exception {
+		String csv = """
+				from_id,from_x,from_y,to_id,to_x,to_y
+				# comment
+				1,0,0,2,100,0
+
+				2,100,0,3,100,100
+				3, 100, 100, 1, 0, 0
+				""";
+		RecordingSink sink = new RecordingSink();
+		assertEquals(3, CsvEdgeListReader.read(new BufferedReader(new StringReader(csv)), sink));
+		assertEquals(3, sink.intersections.size());
+		assertArrayEquals(new double[] {100, 100, 0}, sink.intersections.get(3L));
+		assertArrayEquals(new long[] {3, 1}, sink.roads.get(2));
+	}
+
+	@Test
+	void rejectsMalformedLinesWithTheirNumber() {
+		String csv = "1,0,0,2,100,0\n2,100,0,3\n";
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> CsvEdgeListReader.read(new BufferedReader(new StringReader(csv)), new RecordingSink()));
+		assertTrue(e.getMessage().startsWith("Line 2"), e.getMessage());
+	}
+}
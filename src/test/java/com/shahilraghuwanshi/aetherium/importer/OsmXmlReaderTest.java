@@ -0,0 +1,62 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OsmXmlReaderTest {
+
+	// A T junction at node 2: way 10 runs 1-5-2-3 (5 only shapes it), way 11 runs 2-4; way 12 is a footpath
+	private static final String EXTRACT = """
+			<?xml version="1.0" encoding="UTF-8"?>
+			<osm version="0.6">
+			  <bounds minlat="51.000" minlon="0.000" maxlat="51.010" maxlon="0.010"/>
+			  <node id="1" lat="51.005" lon="0.000"/>
+			  <node id="5" lat="51.005" lon="0.002"/>
+			  <node id="2" lat="51.005" lon="0.005">
+			    <tag k="highway" v="traffic_signals"/>
+			  </node>
+			  <node id="3" lat="51.005" lon="0.010"/>
+			  <node id="4" lat="51.000" lon="0.005"/>
+			  <node id="6" lat="51.001" lon="0.001"/>
+			  <way id="10">
+			    <nd ref="1"/><nd ref="5"/><nd ref="2"/><nd ref="3"/>
+			    <tag k="highway" v="residential"/>
+			  </way>
+			  <way id="11">
+			    <nd ref="2"/><nd ref="4"/>
+			    <tag k="highway" v="primary"/>
+			  </way>
+			  <way id="12">
+			    <nd ref="4"/><nd ref="6"/>
+			    <tag k="highway" v="footway"/>
+			  </way>
+			</osm>
+			""";
+
+	@Test
+	void splitsRoadWaysAtIntersectionsAndDropsShapeNodes() throws Exception {
+		RecordingSink sink = new RecordingSink();
+		OsmXmlReader reader = new OsmXmlReader(Set.of("residential", "primary"), 1.0);
+		byte[] bytes = EXTRACT.getBytes(StandardCharsets.UTF_8);
+
+		assertEquals(3, reader.read(() -> new ByteArrayInputStream(bytes), sink));
+
+		assertEquals(Set.of(1L, 2L, 3L, 4L), sink.intersections.keySet());
+		assertEquals(3, sink.roads.size());
+		assertArrayEquals(new long[] {1, 2}, sink.roads.get(0));
+		assertArrayEquals(new long[] {2, 3}, sink.roads.get(1));
+		assertArrayEquals(new long[] {2, 4}, sink.roads.get(2));
+		assertEquals(1, sink.intersections.get(2L)[2]);
+		assertEquals(0, sink.intersections.get(1L)[2]);
+
+		// Projected around the north-west corner of the bounds, in metres, y pointing south
+		double[] junction = sink.intersections.get(2L);
+		assertEquals(0.005 * 111_320 * Math.cos(Math.toRadians(51)), junction[0], 1);
+		assertEquals(0.005 * 111_320, junction[1], 1);
+	}
+}
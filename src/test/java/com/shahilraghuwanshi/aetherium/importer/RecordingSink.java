@@ -0,0 +1,26 @@
+package com.shahilraghuwanshi.aetherium.importer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps everything a reader delivers, enforcing the NetworkSink contract
+class RecordingSink implements NetworkSink {
+
+	final Map<Long, double[]> intersections = new LinkedHashMap<>(); // id -> {x, y, light ? 1 : 0}
+	final List<long[]> roads = new ArrayList<>();
+
+	@Override
+	public void intersection(long id, double x, double y, boolean trafficLight) {
+		intersections.putIfAbsent(id, new double[] {x, y, trafficLight ? 1 : 0});
+	}
+
+	@Override
+	public void road(long startIntersectionId, long endIntersectionId) {
+		if (!intersections.containsKey(startIntersectionId) || !intersections.containsKey(endIntersectionId)) {
+			throw new AssertionError("road " + startIntersectionId + "-" + endIntersectionId + " before its intersections");
+		}
+		roads.add(new long[] {startIntersectionId, endIntersectionId});
+	}
+}
@@ -0,0 +1,62 @@
+package com.shahilraghuwanshi.aetherium.metrics;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.TestEngines;
+import com.shahilraghuwanshi.aetherium.simulation.TickExecutor;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationMetricsTest {
+
+	private static final RoadGraph GRAPH = TestGraphs.jitteredGrid(10, 10, 0.1, 3);
+
+	@Test
+	void recordsEveryPhaseAndTheEngineCounters() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		SimulationMetrics metrics = new SimulationMetrics(registry);
+		try (TickExecutor executor = new TickExecutor(1, 1)) {
+			SimulationEngine engine = new SimulationEngine(GRAPH, metrics.meter(new AStarRouter(GRAPH)), new SignalController(GRAPH),
+					TestEngines.DRIVER, executor, new SplittableRandom(7), 20, 0.033);
+			for (int i = 0; i < 10; i++) engine.spawnVehicle();
+			for (int i = 0; i < 3000; i++) {
+				engine.tick();
+				metrics.recordTick(engine);
+			}
+
+			assertEquals(3000, registry.get("aetherium.tick.duration").timer().count());
+			for (String phase : List.of("spawn", "signals", "movement", "commit", "snapshot")) {
+				assertEquals(3000, registry.get("aetherium.tick.phase.duration").tag("phase", phase).timer().count());
+			}
+			assertEquals(engine.getSpawnedCount(), registry.get("aetherium.vehicles.spawned").counter().count());
+			assertTrue(registry.get("aetherium.vehicles.arrived").counter().count() > 0);
+			assertEquals(engine.getArrivedCount(), registry.get("aetherium.vehicles.arrived").counter().count());
+			assertEquals(engine.getVehicles().size(), registry.get("aetherium.vehicles.active").gauge().value());
+			// Every spawn routes once; so do attempts that find no route or a blocked entry
+			assertTrue(registry.get("aetherium.routing.duration").timer().count() >= engine.getSpawnedCount() + engine.getFailedSpawnCount());
+		}
+	}
+
+	@Test
+	void sessionMetersAreRemovedOnUnbind() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		SimulationMetrics metrics = new SimulationMetrics(registry);
+		long[] session = {1234, 5, 2}; // Bytes sent, frames dropped, queued
+		List<Meter> meters = metrics.bindSession("a", session, s -> s[0], s -> s[1], s -> s[2]);
+
+		assertEquals(1234, registry.get("aetherium.stream.bytes.sent").tag("session", "a").functionCounter().count());
+		assertEquals(5, registry.get("aetherium.stream.frames.dropped").tag("session", "a").functionCounter().count());
+		assertEquals(2, registry.get("aetherium.stream.queue.depth").tag("session", "a").gauge().value());
+		metrics.unbind(meters);
+		assertNull(registry.find("aetherium.stream.bytes.sent").meter());
+	}
+}
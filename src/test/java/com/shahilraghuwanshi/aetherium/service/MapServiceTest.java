@@ -0,0 +1,98 @@
+package com.shahilraghuwanshi.aetherium.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shahilraghuwanshi.aetherium.config.AetheriumProperties;
+import com.shahilraghuwanshi.aetherium.dto.MapLayoutDto;
+import com.shahilraghuwanshi.aetherium.dto.MapTileIndexDto;
+import com.shahilraghuwanshi.aetherium.model.TrafficLight;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationService;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalPlan;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MapServiceTest {
+
+	private static final ObjectMapper JSON = new ObjectMapper();
+	private static final SignalPlan PLAN = SignalPlan.of(new TrafficLight.State[] {TrafficLight.State.NS_GREEN, TrafficLight.State.EW_GREEN}, new double[] {20, 20});
+
+	@Test
+	void layoutIsEncodedOncePerNetworkAndGzipsToTheSameJson() throws IOException {
+		SimulationService simulation = simulationOf(TestGraphs.jitteredGrid(10, 10, 0.1, 4));
+		MapService maps = mapService(simulation, 2000);
+
+		EncodedResponse first = maps.getMapLayout();
+		assertSame(first, maps.getMapLayout());
+		assertArrayEquals(first.identity(), new GZIPInputStream(new ByteArrayInputStream(first.gzip())).readAllBytes());
+		assertTrue(first.gzip().length < first.identity().length);
+
+		MapLayoutDto layout = JSON.readValue(first.identity(), MapLayoutDto.class);
+		assertEquals(100, layout.getIntersectionIds().length);
+		assertEquals(simulation.getGraph().edgeCount() / 2, layout.getRoadIds().length);
+		assertEquals(simulation.getSignals().signalCount(), layout.getTrafficLights().length);
+
+		// A different network gets a new version
+		RoadGraph other = TestGraphs.jitteredGrid(10, 10, 0.1, 5);
+		when(simulation.getGraph()).thenReturn(other);
+		when(simulation.getSignals()).thenReturn(signalsOf(other));
+		assertNotEquals(first.etag(), maps.getMapLayout().etag());
+	}
+
+	@Test
+	void tilesCoverEveryRoadOnceAndCarryTheIntersectionsTheyReference() throws IOException {
+		RoadGraph graph = TestGraphs.jitteredGrid(12, 12, 0.1, 8);
+		MapService maps = mapService(simulationOf(graph), 300);
+		MapTileIndexDto index = JSON.readValue(maps.getTileIndex().identity(), MapTileIndexDto.class);
+		assertTrue(index.getTiles().length > 1);
+
+		Set<Long> roads = new HashSet<>();
+		for (int tile : index.getTiles()) {
+			EncodedResponse encoded = maps.getTile(tile % index.getColumns(), tile / index.getColumns());
+			assertSame(encoded, maps.getTile(tile % index.getColumns(), tile / index.getColumns()));
+			MapLayoutDto dto = JSON.readValue(encoded.identity(), MapLayoutDto.class);
+			Set<Long> intersections = new HashSet<>();
+			for (long id : dto.getIntersectionIds()) intersections.add(id);
+			for (int i = 0; i < dto.getRoadIds().length; i++) {
+				assertTrue(roads.add(dto.getRoadIds()[i]), "road " + dto.getRoadIds()[i] + " is in two tiles");
+				assertTrue(intersections.contains(dto.getRoadStarts()[i]));
+				assertTrue(intersections.contains(dto.getRoadEnds()[i]));
+			}
+		}
+		assertEquals(graph.edgeCount() / 2, roads.size());
+		assertNull(maps.getTile(index.getColumns(), 0));
+		assertNull(maps.getTile(-1, 0));
+	}
+
+	private static SimulationService simulationOf(RoadGraph graph) {
+		SimulationService simulation = mock(SimulationService.class);
+		when(simulation.getGraph()).thenReturn(graph);
+		when(simulation.getSignals()).thenReturn(signalsOf(graph));
+		return simulation;
+	}
+
+	// A signal wherever the test graph marks one
+	private static SignalController signalsOf(RoadGraph graph) {
+		SignalController signals = new SignalController(graph);
+		for (int node = 0; node < graph.nodeCount(); node++) {
+			if (graph.hasTrafficLight(node)) signals.addSignal(node, PLAN, 0);
+		}
+		return signals;
+	}
+
+	private static MapService mapService(SimulationService simulation, double tileSize) {
+		AetheriumProperties properties = new AetheriumProperties();
+		properties.getMapLayout().setTileSize(tileSize);
+		return new MapService(simulation, JSON, properties);
+	}
+}
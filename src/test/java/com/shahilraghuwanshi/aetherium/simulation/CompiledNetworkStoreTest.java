@@ -0,0 +1,86 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchy;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchyBuilder;
+import com.shahilraghuwanshi.aetherium.simulation.routing.ContractionHierarchyRouter;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledNetworkStoreTest {
+
+	private static final RoadGraph GRAPH = TestGraphs.jitteredGrid(12, 12, 0.1, 8);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void roundTripsTheGraphSignalsAndHierarchy() {
+		SignalController signals = signals();
+		ContractionHierarchy hierarchy = new ContractionHierarchyBuilder(GRAPH).build();
+		CompiledNetworkStore store = new CompiledNetworkStore(directory);
+		store.store(7, GRAPH, signals, hierarchy);
+
+		CompiledNetworkStore.CompiledNetwork loaded = store.load(7);
+		assertNotNull(loaded);
+		RoadGraph graph = loaded.graph();
+		assertEquals(GRAPH.fingerprint(), graph.fingerprint());
+		assertEquals(GRAPH.nodeCount(), graph.nodeCount());
+		assertEquals(GRAPH.edgeCount(), graph.edgeCount());
+		for (int node = 0; node < graph.nodeCount(); node++) {
+			assertEquals(GRAPH.nodeId(node), graph.nodeId(node));
+			assertEquals(GRAPH.hasTrafficLight(node), graph.hasTrafficLight(node));
+		}
+		for (int edge = 0; edge < graph.edgeCount(); edge++) assertEquals(GRAPH.roadId(edge), graph.roadId(edge));
+
+		assertEquals(signals.signalCount(), loaded.signals().signalCount());
+		assertSame(loaded.signals().plan(0), loaded.signals().plan(2), "shared plans stay shared");
+		for (double time : new double[] {0, 13, 41, 95}) {
+			signals.update(time, 0, signals.signalCount());
+			loaded.signals().update(time, 0, signals.signalCount());
+			for (int s = 0; s < signals.signalCount(); s++) {
+				assertEquals(signals.node(s), loaded.signals().node(s));
+				assertEquals(signals.state(s), loaded.signals().state(s));
+			}
+		}
+
+		ContractionHierarchyRouter original = new ContractionHierarchyRouter(GRAPH, hierarchy);
+		ContractionHierarchyRouter mapped = new ContractionHierarchyRouter(graph, loaded.hierarchy());
+		assertArrayEquals(original.route(0, graph.nodeCount() - 1), mapped.route(0, graph.nodeCount() - 1));
+	}
+
+	@Test
+	void ignoresStaleOrDamagedFiles() throws IOException {
+		CompiledNetworkStore store = new CompiledNetworkStore(directory);
+		assertNull(store.load(7), "no file yet");
+		store.store(7, GRAPH, signals(), null);
+		assertNull(store.load(8), "compiled from other data");
+		CompiledNetworkStore.CompiledNetwork loaded = store.load(7);
+		assertNotNull(loaded);
+		assertNull(loaded.hierarchy());
+
+		byte[] bytes = Files.readAllBytes(store.getFile());
+		Files.write(store.getFile(), Arrays.copyOf(bytes, bytes.length / 2));
+		assertNull(store.load(7));
+	}
+
+	private static SignalController signals() {
+		SignalController signals = new SignalController(GRAPH);
+		SignalPlan slow = SignalPlan.twoPhase(30, 3);
+		SignalPlan fast = SignalPlan.twoPhase(15, 0);
+		for (int node = 0; node < GRAPH.nodeCount(); node += 3) {
+			signals.addSignal(node, node % 2 == 0 ? slow : fast, node * 1.5);
+		}
+		return signals;
+	}
+}
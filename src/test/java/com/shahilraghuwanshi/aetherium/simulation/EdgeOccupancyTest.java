@@ -0,0 +1,33 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeOccupancyTest {
+
+	@Test
+	void keepsVehiclesInEntryOrderPerEdge() {
+		EdgeOccupancy occupancy = new EdgeOccupancy(2);
+		occupancy.enter(5, 0);
+		occupancy.enter(7, 0);
+		occupancy.enter(2000, 0); // Grows the per-handle arrays
+
+		assertEquals(5, occupancy.frontmost(0));
+		assertEquals(2000, occupancy.rearmost(0));
+		assertEquals(-1, occupancy.leader(5));
+		assertEquals(5, occupancy.leader(7));
+		assertEquals(7, occupancy.leader(2000));
+
+		occupancy.enter(7, 1); // Moves to the next edge
+		assertEquals(5, occupancy.leader(2000));
+		assertEquals(7, occupancy.frontmost(1));
+		assertEquals(1, occupancy.edgeOf(7));
+
+		occupancy.leave(5);
+		occupancy.leave(5); // Already gone
+		assertEquals(2000, occupancy.frontmost(0));
+		assertEquals(-1, occupancy.leader(2000));
+		assertEquals(-1, occupancy.edgeOf(5));
+	}
+}
@@ -0,0 +1,88 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RerouterTest {
+
+	// A -> B, then straight on to D or round through C, about 41% further
+	private static final RoadGraph FORK = RoadGraph.builder()
+			.addIntersection(1, 0, 0, false)
+			.addIntersection(2, 100, 0, false)
+			.addIntersection(3, 150, 50, false)
+			.addIntersection(4, 200, 0, false)
+			.addRoad(1, 1, 2)
+			.addRoad(2, 2, 4)
+			.addRoad(3, 2, 3)
+			.addRoad(4, 3, 4)
+			.build();
+	private static final int A = 0, B = 1, C = 2, D = 3;
+
+	@Test
+	void movesVehiclesOffARoadThatJammedAfterTheySetOff() {
+		TravelTimes times = new TravelTimes(FORK, 10, 1);
+		Rerouter rerouter = new Rerouter(new AStarRouter(FORK, times), times, 0.25, 0.1, 10, 100);
+		VehicleStore vehicles = new VehicleStore(16);
+		int slot = onFirstEdge(vehicles, times);
+
+		times.record(FORK.findEdge(B, D), 100);
+		publish(times);
+		rerouter.run(vehicles, FORK, 0);
+
+		assertArrayEquals(new int[] {A, B, C, D}, vehicles.path(slot));
+		assertEquals(1, vehicles.pathIndex(slot));
+		assertEquals(FORK.findEdge(A, B), vehicles.edge(slot));
+		assertEquals(times.pathSeconds(new int[] {A, B, C, D}, 0), vehicles.expectedArrival(slot), 1e-9);
+		assertEquals(1, rerouter.getSearches());
+		assertEquals(1, rerouter.getReroutes());
+	}
+
+	@Test
+	void leavesTripsThatAreOnScheduleAlone() {
+		TravelTimes times = new TravelTimes(FORK, 10, 1);
+		Rerouter rerouter = new Rerouter(new AStarRouter(FORK, times), times, 0.25, 0.1, 10, 100);
+		VehicleStore vehicles = new VehicleStore(16);
+		int slot = onFirstEdge(vehicles, times);
+
+		times.record(FORK.findEdge(B, D), 12); // Slower, but within the threshold
+		publish(times);
+		rerouter.run(vehicles, FORK, 0);
+
+		assertArrayEquals(new int[] {A, B, D}, vehicles.path(slot));
+		assertEquals(0, rerouter.getSearches());
+	}
+
+	@Test
+	void keepsTheRouteIfNothingBetterExistsAndStopsAsking() {
+		TravelTimes times = new TravelTimes(FORK, 10, 1);
+		Rerouter rerouter = new Rerouter(new AStarRouter(FORK, times), times, 0.25, 0.1, 10, 100);
+		VehicleStore vehicles = new VehicleStore(16);
+		int slot = onFirstEdge(vehicles, times);
+
+		times.record(FORK.findEdge(B, D), 100);
+		times.record(FORK.findEdge(C, D), 200);
+		publish(times);
+		rerouter.run(vehicles, FORK, 0);
+		rerouter.run(vehicles, FORK, 0);
+
+		assertArrayEquals(new int[] {A, B, D}, vehicles.path(slot));
+		assertEquals(1, rerouter.getSearches(), "the expected arrival should have been updated after the first search");
+		assertEquals(0, rerouter.getReroutes());
+	}
+
+	// One vehicle at the start of A -> B, headed for D the short way, expected at the free-flow time
+	private static int onFirstEdge(VehicleStore vehicles, TravelTimes times) {
+		int[] path = {A, B, D};
+		int slot = vehicles.slotOf(vehicles.add(0, 0, 0, path));
+		vehicles.setEdge(slot, FORK.findEdge(A, B), 0);
+		vehicles.setExpectedArrival(slot, times.pathSeconds(path, 0));
+		return slot;
+	}
+
+	private static void publish(TravelTimes times) {
+		times.publish(new VehicleStore(16), new EdgeOccupancy(FORK.edgeCount()), 0);
+	}
+}
@@ -0,0 +1,23 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampledLogTest {
+
+	@Test
+	void letsOneMessageThroughPerIntervalAndCountsTheRest() throws InterruptedException {
+		SampledLog log = new SampledLog(TimeUnit.MILLISECONDS.toNanos(50));
+		assertTrue(log.tryAcquire());
+		assertFalse(log.tryAcquire());
+		assertFalse(log.tryAcquire());
+
+		Thread.sleep(60);
+		assertTrue(log.tryAcquire());
+		assertEquals(2, log.drainSuppressed());
+		assertEquals(0, log.drainSuppressed());
+	}
+}
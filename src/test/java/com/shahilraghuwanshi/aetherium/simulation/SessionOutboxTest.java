@@ -0,0 +1,136 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.SpatialGrid;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.TickFrames;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SessionOutboxTest {
+
+	private static final long NEVER = Long.MAX_VALUE;
+
+	private final List<Runnable> pendingDrains = new ArrayList<>();
+	private final WebSocketSession session = mock(WebSocketSession.class);
+	private final SpatialGrid grid = new SpatialGrid(0, 0, 1000, 1000, 100);
+	private final FrameEncoder encoder = new FrameEncoder(grid);
+	private final VehicleStore vehicles = new VehicleStore(16);
+	private final SignalController signals = new SignalController(RoadGraph.builder().build());
+	private long tick;
+
+	@Test
+	void startsWithKeyframeAndSendsInOrder() throws Exception {
+		when(session.isOpen()).thenReturn(true);
+		SessionOutbox outbox = new SessionOutbox(session, pendingDrains::add, 8, OverflowPolicy.CONFLATE, NEVER);
+		assertTrue(outbox.isKeyframeRequested());
+
+		offer(outbox, false);
+		offer(outbox, false);
+		runDrains();
+
+		List<BinaryMessage> sent = sentMessages(2);
+		assertEquals(FrameEncoder.TYPE_KEYFRAME, sent.get(0).getPayload().get(0));
+		assertEquals(FrameEncoder.TYPE_DELTA, sent.get(1).getPayload().get(0));
+		assertEquals(2 * 16, outbox.getBytesSent()); // Nothing on the map: headers only
+	}
+
+	@Test
+	void viewportChangesOnlyRequestTheNewCells() {
+		SessionOutbox outbox = new SessionOutbox(session, pendingDrains::add, 8, OverflowPolicy.CONFLATE, NEVER);
+		outbox.setViewport(0, 0, 199, 199);
+		assertEquals(4, plannedKeyframeCells(outbox, false)); // Initial keyframe of the 2x2 cells in view
+		offer(outbox, false);
+
+		assertEquals(0, plannedKeyframeCells(outbox, false));
+		offer(outbox, false);
+
+		outbox.setViewport(100, 0, 299, 199);
+		assertEquals(2, plannedKeyframeCells(outbox, false)); // Only the column that scrolled into view
+		offer(outbox, false);
+		assertEquals(4, plannedKeyframeCells(outbox, true));
+	}
+
+	@Test
+	void conflateClearsQueueAndRequestsKeyframeOnOverflow() {
+		SessionOutbox outbox = new SessionOutbox(session, pendingDrains::add, 2, OverflowPolicy.CONFLATE, NEVER);
+		offer(outbox, false);
+		offer(outbox, false);
+		assertFalse(outbox.isKeyframeRequested());
+
+		offer(outbox, false); // queue is full and the client hasn't read anything
+		assertTrue(outbox.isKeyframeRequested());
+		assertEquals(3, outbox.getFramesDropped());
+	}
+
+	@Test
+	void dropOldestWaitsForTheNextPeriodicKeyframe() throws Exception {
+		when(session.isOpen()).thenReturn(true);
+		SessionOutbox outbox = new SessionOutbox(session, pendingDrains::add, 2, OverflowPolicy.DROP_OLDEST, NEVER);
+		offer(outbox, false);
+		offer(outbox, false);
+		offer(outbox, false); // overflow: keyframe at the head can't be kept alone
+
+		assertFalse(outbox.isKeyframeRequested());
+		offer(outbox, false); // ignored until a keyframe arrives
+		offer(outbox, true);
+		runDrains();
+
+		List<BinaryMessage> sent = sentMessages(1);
+		assertEquals(FrameEncoder.TYPE_KEYFRAME, sent.get(0).getPayload().get(0));
+		assertEquals(tick, sent.get(0).getPayload().order(ByteOrder.LITTLE_ENDIAN).getInt(4));
+	}
+
+	@Test
+	void disconnectsClientsThatStayTooSlow() throws Exception {
+		when(session.isOpen()).thenReturn(true);
+		SessionOutbox outbox = new SessionOutbox(session, pendingDrains::add, 1, OverflowPolicy.CONFLATE, 0);
+		offer(outbox, false);
+		offer(outbox, false); // first overflow starts the clock
+		offer(outbox, false); // resync keyframe
+		offer(outbox, false); // still behind after the (zero) timeout
+		verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+	}
+
+	// One tick of SimulationWebSocketHandler.broadcast for a single session
+	private void offer(SessionOutbox outbox, boolean periodicKeyframe) {
+		boolean[] cells = new boolean[grid.cellCount()];
+		outbox.plan(grid, periodicKeyframe, cells);
+		TickFrames frames = encoder.encode(++tick, vehicles, signals);
+		encoder.encodeKeyframeBlocks(frames, cells);
+		outbox.offer(frames);
+	}
+
+	private int plannedKeyframeCells(SessionOutbox outbox, boolean periodicKeyframe) {
+		boolean[] cells = new boolean[grid.cellCount()];
+		outbox.plan(grid, periodicKeyframe, cells);
+		int marked = 0;
+		for (boolean cell : cells) {
+			if (cell) marked++;
+		}
+		return marked;
+	}
+
+	private void runDrains() {
+		while (!pendingDrains.isEmpty()) {
+			pendingDrains.remove(0).run();
+		}
+	}
+
+	private List<BinaryMessage> sentMessages(int expected) throws Exception {
+		ArgumentCaptor<BinaryMessage> captor = ArgumentCaptor.forClass(BinaryMessage.class);
+		verify(session, times(expected)).sendMessage(captor.capture());
+		return captor.getAllValues();
+	}
+}
@@ -0,0 +1,346 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.model.TrafficLight;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalPlan;
+import com.shahilraghuwanshi.aetherium.simulation.trips.TripEventRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationEngineTest {
+
+	private static final RoadGraph GRAPH = TestGraphs.jitteredGrid(15, 15, 0.1, 21);
+	// Green for north-south traffic only, so east-west roads never get through
+	private static final RoadGraph LINE = RoadGraph.builder()
+			.addIntersection(1, 0, 0, false)
+			.addIntersection(2, 400, 0, true)
+			.addIntersection(3, 800, 0, false)
+			.addRoad(1, 1, 2)
+			.addRoad(2, 2, 3)
+			.build();
+	private static final SignalPlan NORTH_SOUTH_ONLY = SignalPlan.of(new TrafficLight.State[] {TrafficLight.State.NS_GREEN}, new double[] {60});
+
+	@Test
+	void parallelTicksProduceTheSameStateAsSingleThreadedTicks() {
+		SimulationSnapshot sequential = run(new TickExecutor(1, 1));
+		SimulationSnapshot parallel = run(new TickExecutor(4, 8));
+
+		assertTrue(sequential.size() > 0);
+		assertEquals(sequential.size(), parallel.size());
+		for (int i = 0; i < sequential.size(); i++) {
+			assertEquals(sequential.id(i), parallel.id(i));
+			assertEquals(sequential.x(i), parallel.x(i));
+			assertEquals(sequential.y(i), parallel.y(i));
+			assertEquals(sequential.pathIndex(i), parallel.pathIndex(i));
+		}
+	}
+
+	@Test
+	void theSameSeedReplaysTheSameRun() {
+		SimulationSnapshot first = runSeeded(42);
+		SimulationSnapshot second = runSeeded(42);
+		SimulationSnapshot other = runSeeded(43);
+
+		assertTrue(first.size() > 0);
+		assertEquals(first.size(), second.size());
+		boolean differs = first.size() != other.size();
+		for (int i = 0; i < first.size(); i++) {
+			assertEquals(first.id(i), second.id(i));
+			assertEquals(first.x(i), second.x(i));
+			assertEquals(first.y(i), second.y(i));
+			assertEquals(first.speed(i), second.speed(i));
+			if (!differs && (first.x(i) != other.x(i) || first.y(i) != other.y(i))) differs = true;
+		}
+		assertTrue(differs, "a different seed should give a different run");
+	}
+
+	@Test
+	void publishedSnapshotsAreNotAffectedByLaterTicks() {
+		try (TickExecutor executor = new TickExecutor(1, 1)) {
+			SimulationEngine engine = TestEngines.engine(GRAPH, executor, 5, 10, 0.033);
+			assertSame(SimulationSnapshot.EMPTY, engine.getSnapshot());
+			assertTrue(engine.spawnVehicle());
+			engine.tick();
+			SimulationSnapshot first = engine.getSnapshot();
+			double x = first.x(0);
+			double y = first.y(0);
+
+			engine.tick();
+			SimulationSnapshot second = engine.getSnapshot();
+			assertEquals(1, first.getSequence());
+			assertEquals(2, second.getSequence());
+			assertEquals(x, first.x(0));
+			assertEquals(y, first.y(0));
+			assertNotEquals(List.of(x, y), List.of(second.x(0), second.y(0)));
+		}
+	}
+
+	@Test
+	void snapshotsFollowTheSignalsThroughPhaseChanges() {
+		SignalController signals = new SignalController(LINE);
+		signals.addSignal(1, SignalPlan.twoPhase(1, 0), 0);
+		SimulationEngine engine = new SimulationEngine(LINE, fixedRoute(LINE), signals, TestEngines.DRIVER,
+				new TickExecutor(1, 1), new SplittableRandom(8), 1, 0.1);
+		Set<Byte> seen = new HashSet<>();
+		for (int i = 0; i < 50; i++) {
+			engine.tick();
+			SimulationSnapshot snapshot = engine.getSnapshot();
+			assertEquals(signals.state(0), snapshot.lightState(0), "tick " + snapshot.getSequence());
+			seen.add(snapshot.lightState(0));
+		}
+		assertTrue(seen.size() > 1, "the signal should have changed phase");
+	}
+
+	@Test
+	void removesVehiclesAfterTheyArrive() {
+		try (TickExecutor executor = new TickExecutor(1, 1)) {
+			SimulationEngine engine = TestEngines.engine(GRAPH, executor, 3, 10, 0.033);
+			assertTrue(engine.spawnVehicle());
+			long id = engine.getVehicles().id(0);
+			int ticks = 0;
+			while (contains(engine.getVehicles(), id) && ticks++ < 100_000) {
+				engine.tick();
+			}
+			assertTrue(ticks < 100_000, "vehicle never arrived");
+		}
+	}
+
+	@Test
+	void vehiclesWaitAtRedSignals() {
+		SimulationEngine engine = throughSignal(1);
+		assertTrue(engine.spawnVehicle());
+		for (int i = 0; i < 1000; i++) engine.tick();
+		VehicleStore vehicles = engine.getVehicles();
+		assertEquals(1, vehicles.size());
+		assertEquals(1, vehicles.pathIndex(0));
+		assertEquals(0, vehicles.speed(0), 1e-2); // IDM creeps up to the line asymptotically
+		double toStopLine = LINE.length(vehicles.edge(0)) - vehicles.offset(0);
+		assertTrue(toStopLine >= TestEngines.DRIVER.minimumGap() - 1e-6 && toStopLine < TestEngines.DRIVER.minimumGap() + 1, "stopped " + toStopLine + " before the signal");
+	}
+
+	@Test
+	void queuesFormBehindARedSignalWithoutOverlapping() {
+		SimulationEngine engine = throughSignal(12);
+		for (int i = 0; i < 2000; i++) {
+			engine.spawnVehicle();
+			engine.tick();
+		}
+		VehicleStore vehicles = engine.getVehicles();
+		assertEquals(12, vehicles.size());
+		int edge = LINE.findEdge(0, 1);
+		int queued = 0;
+		double previousOffset = LINE.length(edge) + TestEngines.DRIVER.vehicleLength(); // The signal acts like a stopped car at the node
+		for (int handle = engine.getOccupancy().frontmost(edge); handle >= 0; handle = behind(engine, edge, handle)) {
+			int slot = vehicles.slotOf(handle);
+			assertEquals(0, vehicles.speed(slot), 1e-2);
+			double gap = previousOffset - vehicles.offset(slot) - TestEngines.DRIVER.vehicleLength();
+			assertTrue(gap > TestEngines.DRIVER.minimumGap() - 0.5, "gap " + gap);
+			previousOffset = vehicles.offset(slot);
+			queued++;
+		}
+		assertEquals(12, queued);
+	}
+
+	@Test
+	void congestionRoutingLearnsHowLongVehiclesWaitAtARedLight() {
+		SimulationEngine engine = throughSignal(5);
+		TravelTimes times = new TravelTimes(LINE, 60, 0.5);
+		engine.setCongestionRouting(times, 1, null);
+		int edge = LINE.findEdge(0, 1);
+		assertTrue(engine.spawnVehicle());
+
+		for (int i = 0; i < 400; i++) engine.tick(); // About 13 simulated seconds, stuck at the signal
+		assertTrue(times.cost(edge) > 12, "estimate " + times.cost(edge));
+		assertEquals(times.freeFlowSeconds(LINE.findEdge(1, 2)), times.cost(LINE.findEdge(1, 2)), 1e-9);
+	}
+
+	@Test
+	void closingARoadReroutesOnlyTheVehiclesHeadingOntoIt() {
+		try (TickExecutor executor = new TickExecutor(1, 1)) {
+			SimulationEngine engine = TestEngines.engine(GRAPH, executor, 17, 500, 0.033);
+			for (int i = 0; i < 300; i++) engine.spawnVehicle();
+			for (int i = 0; i < 100; i++) engine.tick();
+			VehicleStore vehicles = engine.getVehicles();
+			int slot = 0;
+			while (vehicles.pathIndex(slot) >= vehicles.path(slot).length - 1) slot++;
+			int[] ahead = vehicles.path(slot);
+			long road = GRAPH.roadId(GRAPH.findEdge(ahead[vehicles.pathIndex(slot)], ahead[vehicles.pathIndex(slot) + 1]));
+			RoadGraph closed = GRAPH.withRoadClosed(road, true);
+
+			boolean[] affected = new boolean[vehicles.size()];
+			int[][] paths = new int[vehicles.size()][];
+			int affectedCount = 0;
+			Set<Long> onClosedRoad = new HashSet<>();
+			for (int i = 0; i < vehicles.size(); i++) {
+				paths[i] = vehicles.path(i);
+				affected[i] = vehicles.state(i) != VehicleStore.STATE_ARRIVED && closed.usesClosedEdge(paths[i], vehicles.pathIndex(i));
+				if (affected[i]) affectedCount++;
+				if (GRAPH.roadId(vehicles.edge(i)) == road) onClosedRoad.add(vehicles.id(i));
+			}
+			assertTrue(affectedCount > 0);
+			assertEquals(affectedCount, engine.replaceNetwork(closed, travelTimes -> new AStarRouter(closed)));
+			assertSame(closed, engine.getGraph());
+			for (int i = 0; i < vehicles.size(); i++) {
+				assertEquals(affected[i], vehicles.path(i) != paths[i], "only vehicles heading onto the road get a new path");
+				assertFalse(closed.usesClosedEdge(vehicles.path(i), vehicles.pathIndex(i)));
+			}
+
+			// Only the vehicles that were on the road when it closed are ever seen on it
+			for (int tick = 0; tick < 1500; tick++) {
+				engine.spawnVehicle();
+				engine.tick();
+				for (int i = 0; i < vehicles.size(); i++) {
+					if (closed.isClosed(vehicles.edge(i)) && vehicles.state(i) != VehicleStore.STATE_ARRIVED) {
+						assertTrue(onClosedRoad.contains(vehicles.id(i)), "vehicle " + vehicles.id(i) + " entered the closed road");
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void addingARoadKeepsEveryVehicleWhereItWas() {
+		try (TickExecutor executor = new TickExecutor(1, 1)) {
+			SimulationEngine engine = TestEngines.engine(GRAPH, executor, 23, 500, 0.033);
+			for (int i = 0; i < 300; i++) engine.spawnVehicle();
+			for (int i = 0; i < 100; i++) engine.tick();
+			VehicleStore vehicles = engine.getVehicles();
+			long[][] before = new long[vehicles.size()][];
+			for (int i = 0; i < vehicles.size(); i++) {
+				int edge = vehicles.edge(i);
+				before[i] = new long[] {vehicles.id(i), GRAPH.roadId(edge), GRAPH.nodeId(GRAPH.source(edge)),
+						Double.doubleToLongBits(vehicles.offset(i))};
+			}
+
+			RoadGraph extended = GRAPH.withRoad(10_000, 1, 17, Double.NaN); // A diagonal the grid does not have
+			assertEquals(0, engine.replaceNetwork(extended, travelTimes -> new AStarRouter(extended)));
+			for (int i = 0; i < vehicles.size(); i++) {
+				int edge = vehicles.edge(i);
+				assertArrayEquals(before[i], new long[] {vehicles.id(i), extended.roadId(edge),
+						extended.nodeId(extended.source(edge)), Double.doubleToLongBits(vehicles.offset(i))});
+				if (vehicles.state(i) != VehicleStore.STATE_ARRIVED) assertEquals(edge, engine.getOccupancy().edgeOf(vehicles.handle(i)));
+			}
+			for (int tick = 0; tick < 500; tick++) engine.tick();
+			assertTrue(engine.getArrivedCount() > 0);
+		}
+	}
+
+	@Test
+	void vehiclesKeepToTheSpeedLimitOfTheirRoad() {
+		RoadGraph limited = LINE.withSpeedLimit(1, 10);
+		Router westToEast = fixedRoute(limited);
+		SimulationEngine engine = new SimulationEngine(limited, westToEast, new SignalController(limited), TestEngines.DRIVER,
+				new TickExecutor(1, 1), new SplittableRandom(8), 1, 0.033);
+		assertTrue(engine.spawnVehicle());
+		for (int i = 0; i < 200; i++) engine.tick();
+		VehicleStore vehicles = engine.getVehicles();
+		assertEquals(1, vehicles.pathIndex(0));
+		assertTrue(vehicles.speed(0) > 9 && vehicles.speed(0) <= 10, "speed " + vehicles.speed(0));
+
+		RoadGraph unlimited = limited.withSpeedLimit(1, Double.NaN);
+		engine.replaceNetwork(unlimited, travelTimes -> westToEast);
+		for (int i = 0; i < 60; i++) engine.tick();
+		assertTrue(vehicles.speed(0) > 20, "speed " + vehicles.speed(0));
+	}
+
+	@Test
+	void completedTripsAreReportedRoadByRoadAndWhole() {
+		SimulationEngine engine = new SimulationEngine(LINE, fixedRoute(LINE), new SignalController(LINE), TestEngines.DRIVER,
+				new TickExecutor(1, 1), new SplittableRandom(8), 1, 0.033);
+		TripEventRing events = new TripEventRing(16);
+		engine.setTripEvents(events);
+		assertTrue(engine.spawnVehicle());
+		for (int i = 0; i < 2000 && engine.getArrivedCount() == 0; i++) engine.tick();
+		assertEquals(1, engine.getArrivedCount());
+
+		List<String> drained = new ArrayList<>();
+		double[] trip = new double[4];
+		events.drain(new TripEventRing.Handler() {
+			@Override
+			public void trip(int origin, int destination, double departedAt, double arrivedAt, double distance, double freeFlowSeconds) {
+				drained.add("trip " + origin + "->" + destination);
+				trip[0] = departedAt;
+				trip[1] = arrivedAt;
+				trip[2] = distance;
+				trip[3] = freeFlowSeconds;
+			}
+
+			@Override
+			public void traversal(long roadId, double enteredAt, double leftAt, double length, double freeFlowSeconds) {
+				drained.add("road " + roadId);
+				assertEquals(400, length, 1e-9);
+				if (roadId == 1) assertTrue(leftAt - enteredAt > freeFlowSeconds, "a vehicle starting at rest takes longer than free flow");
+			}
+		}, 16);
+		assertEquals(List.of("road 1", "road 2", "trip 0->2"), drained);
+		assertEquals(0, trip[0]);
+		assertEquals(800, trip[2], 1e-9);
+		assertEquals(800.0 / 60, trip[3], 1e-9);
+		assertTrue(trip[1] - trip[0] > trip[3]);
+	}
+
+	// Every vehicle drives west to east along LINE through a signal that is never green for it
+	private static SimulationEngine throughSignal(int maxVehicles) {
+		SignalController signals = new SignalController(LINE);
+		signals.addSignal(1, NORTH_SOUTH_ONLY, 0);
+		return new SimulationEngine(LINE, fixedRoute(LINE), signals, TestEngines.DRIVER, new TickExecutor(1, 1), new SplittableRandom(8), maxVehicles, 0.033); // Single-threaded: nothing to close
+	}
+
+	private static Router fixedRoute(RoadGraph line) {
+		return new Router() {
+			@Override
+			public RoadGraph getGraph() {
+				return line;
+			}
+
+			@Override
+			public int[] route(int start, int end) {
+				return new int[] {0, 1, 2};
+			}
+		};
+	}
+
+	// The vehicle whose leader is handle, found through the occupancy lists
+	private static int behind(SimulationEngine engine, int edge, int handle) {
+		for (int h = engine.getOccupancy().rearmost(edge); h >= 0; h = engine.getOccupancy().leader(h)) {
+			if (engine.getOccupancy().leader(h) == handle) return h;
+		}
+		return -1;
+	}
+
+	private static boolean contains(VehicleStore vehicles, long id) {
+		for (int slot = 0; slot < vehicles.size(); slot++) {
+			if (vehicles.id(slot) == id) return true;
+		}
+		return false;
+	}
+
+	// Only the engine's own random spawns, so the seed decides everything
+	private static SimulationSnapshot runSeeded(long seed) {
+		try (TickExecutor executor = new TickExecutor(1, 1)) {
+			SimulationEngine engine = TestEngines.engine(GRAPH, executor, seed, 50, 0.033);
+			for (int i = 0; i < 2000; i++) engine.tick();
+			return engine.getSnapshot();
+		}
+	}
+
+	private static SimulationSnapshot run(TickExecutor executor) {
+		try (executor) {
+			SimulationEngine engine = TestEngines.engine(GRAPH, executor, 99, 500, 0.033);
+			for (int i = 0; i < 300; i++) engine.spawnVehicle();
+			for (int i = 0; i < 200; i++) engine.tick();
+			return engine.getSnapshot();
+		}
+	}
+}
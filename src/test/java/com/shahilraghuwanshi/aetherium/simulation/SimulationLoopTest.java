@@ -0,0 +1,62 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationLoopTest {
+
+	@Test
+	void realtimePacingSpacesTicksByTheTimeStep() throws InterruptedException {
+		AtomicLong ticks = new AtomicLong();
+		try (SimulationLoop loop = new SimulationLoop("test", ticks::incrementAndGet, 0.05, PacingMode.REALTIME, 1.0)) {
+			loop.start();
+			Thread.sleep(500);
+		}
+		// About 10 ticks; generous bounds for a busy machine
+		assertTrue(ticks.get() >= 3 && ticks.get() <= 15, ticks.get() + " ticks");
+	}
+
+	@Test
+	void fastForwardRunsTheRequestedTicksWithoutWaiting() throws InterruptedException {
+		AtomicLong ticks = new AtomicLong();
+		// One tick per minute of wall time: only a fast-forward can get anywhere
+		try (SimulationLoop loop = new SimulationLoop("test", ticks::incrementAndGet, 60, PacingMode.REALTIME, 1.0)) {
+			loop.start();
+			loop.fastForward(10_000);
+			long deadline = System.currentTimeMillis() + 5_000;
+			while (loop.isFastForwarding() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+			assertFalse(loop.isFastForwarding());
+			Thread.sleep(100);
+			assertEquals(PacingMode.REALTIME, loop.getMode());
+			long after = ticks.get();
+			assertTrue(after >= 10_000 && after <= 10_002, after + " ticks");
+		}
+	}
+
+	@Test
+	void headlessModeRunsTicksBackToBack() throws InterruptedException {
+		AtomicLong ticks = new AtomicLong();
+		try (SimulationLoop loop = new SimulationLoop("test", ticks::incrementAndGet, 60, PacingMode.REALTIME, 1.0)) {
+			loop.start();
+			loop.setPacing(PacingMode.HEADLESS, 1.0);
+			Thread.sleep(200);
+			assertTrue(ticks.get() > 1000, ticks.get() + " ticks");
+		}
+	}
+
+	@Test
+	void aFailingTickDoesNotStopTheLoop() throws InterruptedException {
+		AtomicLong ticks = new AtomicLong();
+		Runnable failFirst = () -> {
+			if (ticks.incrementAndGet() == 1) throw new IllegalStateException("boom");
+		};
+		try (SimulationLoop loop = new SimulationLoop("test", failFirst, 60, PacingMode.HEADLESS, 1.0)) {
+			loop.start();
+			Thread.sleep(100);
+		}
+		assertTrue(ticks.get() > 1);
+	}
+}
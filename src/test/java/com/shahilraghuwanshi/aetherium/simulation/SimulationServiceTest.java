@@ -0,0 +1,53 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.CachingRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.RouteCache;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationServiceTest {
+
+	// 1 -> 2 -> 3 along the bottom, 1 -> 4 -> 3 as the detour over the top
+	private static final RoadGraph LINE_WITH_DETOUR = RoadGraph.builder()
+			.addIntersection(1, 0, 0, false)
+			.addIntersection(2, 400, 0, false)
+			.addIntersection(3, 800, 0, false)
+			.addIntersection(4, 400, 300, false)
+			.addRoad(1, 1, 2)
+			.addRoad(2, 2, 3)
+			.addRoad(3, 1, 4)
+			.addRoad(4, 4, 3)
+			.build();
+
+	@Test
+	void closingARoadDropsCachedRoutesOverItBeforeReroutingThroughTheCache() {
+		RoadGraph graph = LINE_WITH_DETOUR;
+		int n1 = graph.indexOf(1), n2 = graph.indexOf(2), n3 = graph.indexOf(3);
+		RouteCache cache = new RouteCache(1024, Long.MAX_VALUE);
+		CachingRouter router = new CachingRouter(new AStarRouter(graph), cache);
+		try (TickExecutor executor = new TickExecutor(1, 1)) {
+			SimulationEngine engine = new SimulationEngine(graph, router, new SignalController(graph), TestEngines.DRIVER, executor,
+					new SplittableRandom(1), 10, 0.1);
+			assertArrayEquals(new int[] {n1, n2, n3}, router.route(n1, n3));
+			assertArrayEquals(new int[] {n2, n3}, router.route(n2, n3)); // Where the vehicle is rerouted from
+			assertTrue(engine.spawnVehicle(new int[] {n1, n2, n3}));
+
+			RoadGraph closed = graph.withRoadClosed(2, true);
+			SimulationService.NetworkSwitch change = SimulationService.switchNetwork(engine, closed, cache,
+					travelTimes -> new CachingRouter(new AStarRouter(closed), cache));
+
+			assertEquals(1, change.rerouted());
+			assertTrue(change.droppedRoutes() >= 2);
+			VehicleStore vehicles = engine.getVehicles();
+			int[] path = vehicles.path(0);
+			assertFalse(closed.usesClosedEdge(path, vehicles.pathIndex(0)), "rerouted over the closed road from the cache");
+			assertEquals(n3, path[path.length - 1]);
+		}
+	}
+}
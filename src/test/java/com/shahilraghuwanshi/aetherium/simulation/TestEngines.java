@@ -0,0 +1,36 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+
+import java.util.SplittableRandom;
+
+/**
+ * The driver and engines shared by unit tests.
+ */
+public final class TestEngines {
+
+	/** Car-following parameters of every test engine. */
+	public static final IntelligentDriverModel DRIVER = new IntelligentDriverModel(60, 30, 45, 4, 1.0, 8, 120);
+
+	private TestEngines() {
+	}
+
+	/** An engine on {@code graph} routing with A*, without signals. */
+	public static SimulationEngine engine(RoadGraph graph, TickExecutor executor, long seed, int maxVehicles, double tickSeconds) {
+		return engine(graph, executor, new SplittableRandom(seed), maxVehicles, tickSeconds);
+	}
+
+	/** As {@link #engine(RoadGraph, TickExecutor, long, int, double)}, drawing from {@code random}. */
+	public static SimulationEngine engine(RoadGraph graph, TickExecutor executor, SplittableRandom random, int maxVehicles,
+										  double tickSeconds) {
+		return new SimulationEngine(graph, new AStarRouter(graph), new SignalController(graph), DRIVER, executor, random,
+				maxVehicles, tickSeconds);
+	}
+
+	/** The vehicles in {@code vehicles} as the snapshot of tick {@code sequence}, without signals. */
+	public static SimulationSnapshot snapshot(long sequence, VehicleStore vehicles) {
+		return vehicles.snapshot(sequence, new long[0], new byte[0]);
+	}
+}
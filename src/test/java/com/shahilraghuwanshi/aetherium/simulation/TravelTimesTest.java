@@ -0,0 +1,83 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TravelTimesTest {
+
+	// 0 -> 1 -> 2 along a 100-unit line; free flow at speed 10 is 10 s per edge
+	private static final RoadGraph LINE = RoadGraph.builder()
+			.addIntersection(1, 0, 0, false)
+			.addIntersection(2, 100, 0, false)
+			.addIntersection(3, 200, 0, false)
+			.addRoad(1, 1, 2)
+			.addRoad(2, 2, 3)
+			.build();
+
+	@Test
+	void startsAtFreeFlowAndOnlyChangesWhenPublished() {
+		TravelTimes times = new TravelTimes(LINE, 10, 0.5);
+		int edge = LINE.findEdge(0, 1);
+		assertEquals(10, times.cost(edge), 1e-9);
+		assertEquals(20, times.pathSeconds(new int[] {0, 1, 2}, 0), 1e-9);
+		assertEquals(10, times.pathSeconds(new int[] {0, 1, 2}, 1), 1e-9);
+
+		times.record(edge, 30);
+		times.record(edge, 50);
+		assertEquals(10, times.cost(edge), 1e-9);
+
+		times.publish(new VehicleStore(16), new EdgeOccupancy(LINE.edgeCount()), 60);
+		assertEquals(10 + 0.5 * (40 - 10), times.cost(edge), 1e-9);
+		assertEquals(10, times.cost(LINE.findEdge(1, 2)), 1e-9);
+	}
+
+	@Test
+	void queuesThatDoNotMoveRaiseTheEstimateAndClearedRoadsRelaxBack() {
+		TravelTimes times = new TravelTimes(LINE, 10, 0.5);
+		int edge = LINE.findEdge(0, 1);
+		VehicleStore vehicles = new VehicleStore(16);
+		EdgeOccupancy occupancy = new EdgeOccupancy(LINE.edgeCount());
+		int handle = vehicles.add(0, 0, 0, new int[] {0, 1, 2});
+		vehicles.setEdge(vehicles.slotOf(handle), edge, 0);
+		vehicles.setEnteredAt(vehicles.slotOf(handle), 5);
+		occupancy.enter(handle, edge);
+
+		times.publish(vehicles, occupancy, 45);
+		assertEquals(40, times.cost(edge), 1e-9);
+
+		occupancy.leave(handle);
+		times.publish(vehicles, occupancy, 55);
+		assertEquals(25, times.cost(edge), 1e-9);
+		for (int i = 0; i < 60; i++) times.publish(vehicles, occupancy, 60 + i);
+		assertEquals(10, times.cost(edge), 1e-6);
+	}
+
+	@Test
+	void neverEstimatesBelowFreeFlow() {
+		TravelTimes times = new TravelTimes(LINE, 10, 1);
+		int edge = LINE.findEdge(1, 2);
+		times.record(edge, 2);
+		times.publish(new VehicleStore(16), new EdgeOccupancy(LINE.edgeCount()), 10);
+		assertEquals(10, times.cost(edge), 1e-9);
+		assertEquals(10, times.lowerBound(1, 2), 1e-9);
+	}
+
+	@Test
+	void editedNetworksKeepTheEstimatesAndPriceClosedRoadsOutOfReach() {
+		TravelTimes times = new TravelTimes(LINE, 10, 0.5);
+		int first = LINE.findEdge(0, 1);
+		int second = LINE.findEdge(1, 2);
+		times.record(first, 30);
+		times.publish(new VehicleStore(16), new EdgeOccupancy(LINE.edgeCount()), 60);
+
+		RoadGraph edited = LINE.withRoadClosed(2, true).withSpeedLimit(1, 2);
+		TravelTimes remapped = times.remap(edited, LINE.edgeMapping(edited));
+		assertEquals(50, remapped.freeFlowSeconds(first), 1e-9); // 100 units at the limit of 2
+		assertEquals(50, remapped.cost(first), 1e-9);             // The learnt 20 s is below the new free flow
+		assertEquals(Double.POSITIVE_INFINITY, remapped.cost(second));
+		assertEquals(Double.POSITIVE_INFINITY, remapped.pathSeconds(new int[] {0, 1, 2}, 0));
+		assertEquals(20, times.cost(first), 1e-9);
+	}
+}
@@ -0,0 +1,44 @@
+package com.shahilraghuwanshi.aetherium.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VehicleStoreTest {
+
+	@Test
+	void swapRemoveKeepsSlotsDenseAndHandlesStable() {
+		VehicleStore store = new VehicleStore(1);
+		int[] path = {0, 1, 2};
+		int a = store.add(0, 0, 1, path);
+		int b = store.add(10, 0, 1, path);
+		int c = store.add(20, 0, 1, path);
+		assertEquals(3, store.size());
+
+		store.removeAt(store.slotOf(a));
+		assertEquals(2, store.size());
+		assertEquals(-1, store.slotOf(a));
+		assertEquals(20, store.x(store.slotOf(c)));
+		assertEquals(10, store.x(store.slotOf(b)));
+		assertEquals(0, store.slotOf(c)); // last vehicle moved into the freed slot
+
+		int d = store.add(30, 0, 1, path);
+		assertEquals(a, d); // handle recycled from the free list
+		assertEquals(3, store.id(store.slotOf(d))); // ids are never reused
+		assertEquals(1, store.targetNode(store.slotOf(d)));
+	}
+
+	@Test
+	void growsBeyondInitialCapacity() {
+		VehicleStore store = new VehicleStore(16);
+		int[] path = {4, 5};
+		for (int i = 0; i < 10_000; i++) {
+			store.add(i, i, 1, path);
+		}
+		assertEquals(10_000, store.size());
+		store.advanceToNextTarget(9_999);
+		assertEquals(-1, store.targetNode(9_999));
+		store.clear();
+		assertEquals(0, store.size());
+	}
+}
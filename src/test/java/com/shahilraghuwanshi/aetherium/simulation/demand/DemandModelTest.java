@@ -0,0 +1,62 @@
+package com.shahilraghuwanshi.aetherium.simulation.demand;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DemandModelTest {
+
+	private static final RoadGraph GRAPH = TestGraphs.jitteredGrid(20, 20, 0.1, 2);
+
+	@Test
+	void departuresFollowTheRateOfTheTimeOfDay() {
+		int[][] zones = DemandModel.gridZones(GRAPH, 4, 4, 3, new SplittableRandom(1));
+		for (int[] zone : zones) assertEquals(3, zone.length);
+		// 1000 trips per hour at night, 10000 from 07:00
+		DemandModel model = DemandModel.uniform(zones, 1000, List.of(1.0, 10.0));
+		assertEquals(1000, model.tripsPerHour(0), 1e-6);
+		assertEquals(10000, model.tripsPerHour(13 * 3600), 1e-6);
+
+		Departures night = model.departures(0, 3600, 0, new SplittableRandom(2));
+		Departures day = model.departures(0, 3600, 13 * 3600, new SplittableRandom(2));
+		assertEquals(1000, night.size(), 150); // Minus the few trips that start and end at the same node
+		assertEquals(10000, day.size(), 500);
+		for (int i = 0; i < day.size(); i++) {
+			assertTrue(day.time(i) >= 0 && day.time(i) < 3600);
+			assertNotEquals(day.origin(i), day.destination(i));
+		}
+
+		Departures again = model.departures(0, 3600, 13 * 3600, new SplittableRandom(2));
+		assertEquals(day.size(), again.size());
+		for (int i = 0; i < day.size(); i++) {
+			assertEquals(day.time(i), again.time(i));
+			assertEquals(day.destination(i), again.destination(i));
+		}
+	}
+
+	@Test
+	void readsPeriodsFromCsv() throws Exception {
+		int[][] zones = DemandModel.gridZones(GRAPH, 2, 1, 4, new SplittableRandom(1));
+		String csv = """
+				startHour,originZone,destinationZone,tripsPerHour
+				# Morning peak into zone 1
+				7,0,1,900
+				7,1,0,100
+				10,0,1,50
+				""";
+		DemandModel model = OdMatrixReader.read(new BufferedReader(new StringReader(csv)), zones);
+		assertEquals(1000, model.tripsPerHour(8 * 3600), 1e-6);
+		assertEquals(50, model.tripsPerHour(12 * 3600), 1e-6);
+		assertEquals(50, model.tripsPerHour(3 * 3600), 1e-6); // The last period wraps past midnight
+
+		assertThrows(IllegalArgumentException.class,
+				() -> OdMatrixReader.read(new BufferedReader(new StringReader("7,0,2,10")), zones));
+	}
+}
@@ -0,0 +1,74 @@
+package com.shahilraghuwanshi.aetherium.simulation.demand;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.TestEngines;
+import com.shahilraghuwanshi.aetherium.simulation.TickExecutor;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import com.shahilraghuwanshi.aetherium.simulation.routing.OneToManyRouter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DemandSchedulerTest {
+
+	private static final RoadGraph GRAPH = TestGraphs.jitteredGrid(30, 30, 0.1, 6);
+
+	@Test
+	void spreadsARushHourSurgeOverTicksAtTheReleaseLimit() {
+		// 50k departures within the first second, none after
+		int[][] zones = DemandModel.gridZones(GRAPH, 6, 6, 8, new SplittableRandom(3));
+		double[] surge = new double[36 * 36];
+		Arrays.fill(surge, 50_000 * 3600.0 / surge.length);
+		DemandModel model = new DemandModel(zones, new double[] {0, 1}, new double[][] {surge, new double[surge.length]});
+		try (RouteAssigner assigner = new RouteAssigner(new OneToManyRouter(GRAPH), 4);
+			 TickExecutor executor = new TickExecutor(1, 1)) {
+			DemandScheduler scheduler = new DemandScheduler(model, assigner, new SplittableRandom(5), 0, 1, 2, 500);
+			SimulationEngine engine = TestEngines.engine(GRAPH, executor, 1, 100_000, 0.033);
+			engine.setTripSource(scheduler);
+
+			long previous = 0;
+			long mostInOneTick = 0;
+			for (int tick = 0; tick < 200; tick++) {
+				engine.tick();
+				long entered = scheduler.getReleasedTrips() - previous;
+				mostInOneTick = Math.max(mostInOneTick, entered);
+				previous = scheduler.getReleasedTrips();
+			}
+			assertTrue(mostInOneTick <= 500, mostInOneTick + " vehicles entered in one tick");
+			assertTrue(scheduler.getReleasedTrips() > 2_000, "released " + scheduler.getReleasedTrips());
+			assertEquals(engine.getSpawnedCount(), scheduler.getReleasedTrips());
+			// Entries admit a car every second or so, so most of the surge is still waiting its turn
+			assertEquals(50_000, scheduler.getReleasedTrips() + scheduler.getWaitingTrips() + scheduler.getUnroutableTrips(), 2_000);
+		}
+	}
+
+	@Test
+	void theSameSeedReleasesTheSameTripsWhateverTheThreadCount() {
+		assertEquals(releasedPaths(1), releasedPaths(6));
+	}
+
+	// The first node and length of the path of every vehicle alive after a while, in store order
+	private static List<String> releasedPaths(int routeThreads) {
+		int[][] zones = DemandModel.gridZones(GRAPH, 4, 4, 4, new SplittableRandom(3));
+		DemandModel model = DemandModel.uniform(zones, 20_000, List.of());
+		try (RouteAssigner assigner = new RouteAssigner(new OneToManyRouter(GRAPH), routeThreads);
+			 TickExecutor executor = new TickExecutor(1, 1)) {
+			SimulationEngine engine = TestEngines.engine(GRAPH, executor, 1, 10_000, 0.033);
+			engine.setTripSource(new DemandScheduler(model, assigner, new SplittableRandom(9), 0, 10, 20, 50));
+			for (int tick = 0; tick < 1000; tick++) engine.tick();
+			List<String> paths = new ArrayList<>();
+			for (int slot = 0; slot < engine.getVehicles().size(); slot++) {
+				int[] path = engine.getVehicles().path(slot);
+				paths.add(engine.getVehicles().id(slot) + ":" + path[0] + "->" + path[path.length - 1]);
+			}
+			assertFalse(paths.isEmpty());
+			return paths;
+		}
+	}
+}
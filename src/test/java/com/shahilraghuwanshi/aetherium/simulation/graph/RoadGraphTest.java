@@ -0,0 +1,124 @@
+package com.shahilraghuwanshi.aetherium.simulation.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoadGraphTest {
+
+	@Test
+	void buildsBidirectionalCsrWithDenseIdsInIntersectionOrder() {
+		RoadGraph graph = RoadGraph.builder()
+				.addIntersection(30, 0, 0, false)
+				.addIntersection(10, 3, 4, true)
+				.addIntersection(20, 6, 8, false)
+				.addRoad(100, 10, 20)
+				.addRoad(101, 30, 10)
+				.build();
+
+		assertEquals(3, graph.nodeCount());
+		assertEquals(4, graph.edgeCount());
+		assertEquals(0, graph.indexOf(10));
+		assertEquals(1, graph.indexOf(20));
+		assertEquals(2, graph.indexOf(30));
+		assertEquals(-1, graph.indexOf(40));
+		assertTrue(graph.hasTrafficLight(graph.indexOf(10)));
+
+		int a = graph.indexOf(10);
+		int b = graph.indexOf(20);
+		assertEquals(2, graph.degree(a));
+		int edge = graph.findEdge(a, b);
+		assertTrue(edge >= 0);
+		assertEquals(a, graph.source(edge));
+		assertEquals(b, graph.target(edge));
+		assertEquals(5.0, graph.length(edge), 1e-9);
+		assertEquals(100, graph.roadId(edge));
+		assertTrue(graph.findEdge(b, a) >= 0);
+		assertEquals(-1, graph.findEdge(b, graph.indexOf(30)));
+	}
+
+	@Test
+	void skipsRoadsWithUnknownEndpointsAndRejectsDuplicateIds() {
+		RoadGraph graph = RoadGraph.builder()
+				.addIntersection(1, 0, 0, false)
+				.addRoad(7, 1, 99)
+				.build();
+		assertEquals(0, graph.edgeCount());
+
+		RoadGraphBuilder duplicate = RoadGraph.builder()
+				.addIntersection(1, 0, 0, false)
+				.addIntersection(1, 1, 1, false);
+		assertThrows(IllegalArgumentException.class, duplicate::build);
+	}
+
+	@Test
+	void editsReturnNewVersionsAndLeaveTheOriginalUnchanged() {
+		RoadGraph graph = TestGraphs.jitteredGrid(6, 6, 0.0, 3);
+		long road = graph.roadId(0);
+		int[] edges = graph.edgesOf(road);
+		assertEquals(2, edges.length);
+
+		RoadGraph closed = graph.withRoadClosed(road, true);
+		assertNotSame(graph, closed);
+		assertFalse(graph.isClosed(edges[0]));
+		assertTrue(closed.isClosed(edges[0]) && closed.isClosed(edges[1]));
+		assertEquals(2, closed.closedEdgeCount());
+		assertNotEquals(graph.fingerprint(), closed.fingerprint());
+		assertSame(closed, closed.withRoadClosed(road, true));
+		assertEquals(graph.fingerprint(), closed.withRoadClosed(road, false).fingerprint());
+
+		RoadGraph limited = graph.withSpeedLimit(road, 20);
+		assertEquals(20, limited.speedLimit(edges[0]));
+		assertEquals(Double.POSITIVE_INFINITY, graph.speedLimit(edges[0]));
+		assertEquals(graph.fingerprint(), limited.fingerprint(), "speed limits do not invalidate routing preprocessing");
+		assertEquals(Double.POSITIVE_INFINITY, limited.withSpeedLimit(road, Double.NaN).speedLimit(edges[0]));
+
+		assertThrows(IllegalArgumentException.class, () -> graph.withRoadClosed(-1, true));
+		assertThrows(IllegalArgumentException.class, () -> graph.withSpeedLimit(road, 0));
+	}
+
+	@Test
+	void addedRoadsRenumberEdgesAndTheMappingFollowsThem() {
+		RoadGraph graph = TestGraphs.jitteredGrid(5, 5, 0.3, 8).withRoadClosed(1, true).withSpeedLimit(2, 15);
+		// Diagonal between opposite corners of a grid cell, which the grid never has
+		RoadGraph extended = graph.withRoad(1000, 1, 7, 25);
+
+		assertEquals(graph.nodeCount(), extended.nodeCount());
+		assertEquals(graph.edgeCount() + 2, extended.edgeCount());
+		int added = extended.findEdge(extended.indexOf(1), extended.indexOf(7));
+		assertEquals(1000, extended.roadId(added));
+		assertEquals(25, extended.speedLimit(added));
+		assertFalse(extended.isClosed(added));
+
+		int[] mapping = graph.edgeMapping(extended);
+		for (int edge = 0; edge < graph.edgeCount(); edge++) {
+			int mapped = mapping[edge];
+			assertEquals(graph.nodeId(graph.source(edge)), extended.nodeId(extended.source(mapped)));
+			assertEquals(graph.nodeId(graph.target(edge)), extended.nodeId(extended.target(mapped)));
+			assertEquals(graph.roadId(edge), extended.roadId(mapped));
+			assertEquals(graph.isClosed(edge), extended.isClosed(mapped));
+			assertEquals(graph.speedLimit(edge), extended.speedLimit(mapped));
+		}
+		assertThrows(IllegalArgumentException.class, () -> graph.withRoad(1001, 1, 999, Double.NaN));
+		assertThrows(IllegalArgumentException.class, () -> extended.withRoad(1000, 2, 8, Double.NaN));
+		assertThrows(IllegalArgumentException.class, () -> graph.withRoad(1001, 2, 8, 0));
+		assertThrows(IllegalArgumentException.class, () -> graph.withRoad(1001, 2, 8, -10));
+	}
+
+	@Test
+	void findEdgePrefersAnOpenParallelRoad() {
+		RoadGraph graph = RoadGraph.builder()
+				.addIntersection(1, 0, 0, false)
+				.addIntersection(2, 10, 0, false)
+				.addRoad(5, 1, 2)
+				.addRoad(6, 1, 2)
+				.build();
+		int a = graph.indexOf(1);
+		int b = graph.indexOf(2);
+		assertEquals(5, graph.roadId(graph.findEdge(a, b)));
+		RoadGraph closed = graph.withRoadClosed(5, true);
+		assertEquals(6, closed.roadId(closed.findEdge(a, b)));
+		assertFalse(closed.usesClosedEdge(new int[] {a, b}, 0));
+		assertTrue(closed.withRoadClosed(6, true).usesClosedEdge(new int[] {a, b}, 0));
+	}
+}
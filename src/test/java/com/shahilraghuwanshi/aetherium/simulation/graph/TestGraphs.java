@@ -0,0 +1,47 @@
+package com.shahilraghuwanshi.aetherium.simulation.graph;
+
+import java.util.Random;
+
+/**
+ * Small synthetic networks for unit tests.
+ */
+public final class TestGraphs {
+
+	private TestGraphs() {
+	}
+
+	/**
+	 * A rows x cols grid with jittered coordinates and a fraction of its roads removed, so that
+	 * shortest paths are unique in practice and some detours are forced.
+	 */
+	public static RoadGraph jitteredGrid(int rows, int cols, double dropFraction, long seed) {
+		Random random = new Random(seed);
+		RoadGraphBuilder builder = RoadGraph.builder();
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				builder.addIntersection(r * cols + c + 1, c * 100 + random.nextInt(30),
+						r * 100 + random.nextInt(30), random.nextInt(4) == 0);
+			}
+		}
+		long roadId = 1;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				long id = r * cols + c + 1;
+				if (c + 1 < cols && random.nextDouble() >= dropFraction) builder.addRoad(roadId++, id, id + 1);
+				if (r + 1 < rows && random.nextDouble() >= dropFraction) builder.addRoad(roadId++, id, id + cols);
+			}
+		}
+		return builder.build();
+	}
+
+	/** Length of a node path, or +infinity if consecutive nodes are not adjacent. */
+	public static double pathLength(RoadGraph graph, int[] path) {
+		double total = 0;
+		for (int i = 1; i < path.length; i++) {
+			int edge = graph.findEdge(path[i - 1], path[i]);
+			if (edge < 0) return Double.POSITIVE_INFINITY;
+			total += graph.length(edge);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,55 @@
+package com.shahilraghuwanshi.aetherium.simulation.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntHashMapTest {
+
+	@Test
+	void behavesLikeAHashMapThroughGrowth() {
+		LongIntHashMap map = new LongIntHashMap(4);
+		Map<Long, Integer> expected = new HashMap<>();
+		SplittableRandom random = new SplittableRandom(1);
+		for (int i = 0; i < 50_000; i++) {
+			long key = random.nextLong(-20_000, 20_000) * 1_000_003L;
+			if (random.nextBoolean()) {
+				map.put(key, i);
+				expected.put(key, i);
+			} else {
+				assertEquals(expected.merge(key, 3, Integer::sum), map.add(key, 3));
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		expected.forEach((key, value) -> assertEquals(value, map.get(key, -1)));
+		assertEquals(-1, map.get(7, -1));
+		assertFalse(map.containsKey(7));
+	}
+
+	@Test
+	void removesKeysWithoutBreakingTheProbeRunsOfOthers() {
+		LongIntHashMap map = new LongIntHashMap(4);
+		Map<Long, Integer> expected = new HashMap<>();
+		SplittableRandom random = new SplittableRandom(2);
+		for (int i = 0; i < 50_000; i++) {
+			long key = random.nextLong(0, 2_000);
+			if (random.nextInt(3) == 0) {
+				Integer removed = expected.remove(key);
+				assertEquals(removed != null ? removed : -1, map.remove(key, -1));
+			} else {
+				map.put(key, i);
+				expected.put(key, i);
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		expected.forEach((key, value) -> assertEquals(value, map.get(key, -1)));
+
+		map.clear();
+		assertEquals(0, map.size());
+		assertFalse(map.containsKey(expected.keySet().iterator().next()));
+	}
+}
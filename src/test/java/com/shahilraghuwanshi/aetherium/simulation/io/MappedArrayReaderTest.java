@@ -0,0 +1,59 @@
+package com.shahilraghuwanshi.aetherium.simulation.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedArrayReaderTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void readsBackWhatWasWrittenAcrossBufferBoundaries() throws IOException {
+		SplittableRandom random = new SplittableRandom(4);
+		int[] ints = random.ints(700_000).toArray(); // Larger than the writer's buffer
+		double[] doubles = random.doubles(300_000).toArray();
+		long[] longs = random.longs(5).toArray();
+		byte[] bytes = {1, 2, 3};
+		Path file = directory.resolve("arrays.bin");
+		try (ArrayFileWriter out = new ArrayFileWriter(file)) {
+			out.writeInt(42);
+			out.writeBytes(bytes, bytes.length); // Leaves the next array unaligned without padding
+			out.writeInts(ints);
+			out.writeDouble(0.5);
+			out.writeDoubles(doubles);
+			out.writeLongs(new long[0]);
+			out.writeLongs(longs);
+		}
+		try (MappedArrayReader in = new MappedArrayReader(file)) {
+			assertEquals(42, in.readInt());
+			assertArrayEquals(bytes, in.readBytes());
+			assertArrayEquals(ints, in.readInts());
+			assertEquals(0.5, in.readDouble());
+			assertArrayEquals(doubles, in.readDoubles());
+			assertEquals(0, in.readLongs().length);
+			assertArrayEquals(longs, in.readLongs());
+		}
+	}
+
+	@Test
+	void rejectsTruncatedFiles() throws IOException {
+		Path file = directory.resolve("arrays.bin");
+		try (ArrayFileWriter out = new ArrayFileWriter(file)) {
+			out.writeInts(new int[1000]);
+		}
+		byte[] whole = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(whole, whole.length - 4));
+		try (MappedArrayReader in = new MappedArrayReader(file)) {
+			assertThrows(IOException.class, in::readInts);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.shahilraghuwanshi.aetherium.simulation.partition;
+
+import com.shahilraghuwanshi.aetherium.simulation.RegionBoundary;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphPartitionTest {
+
+	private static final RoadGraph GRAPH = TestGraphs.jitteredGrid(20, 20, 0.1, 3);
+
+	@Test
+	void splitsIntoRegionsOfEqualSizeTheSameWayEveryTime() {
+		GraphPartition partition = GraphPartition.bisect(GRAPH, 4);
+		GraphPartition again = GraphPartition.bisect(GRAPH, 4);
+
+		int[] sizes = new int[4];
+		for (int node = 0; node < GRAPH.nodeCount(); node++) {
+			sizes[partition.regionOf(node)]++;
+			assertEquals(partition.regionOf(node), again.regionOf(node));
+		}
+		assertArrayEquals(new int[] {100, 100, 100, 100}, sizes);
+		// Quadrants of a 20 x 20 grid are cut by two lines of 20 roads, each road two directed edges
+		assertTrue(partition.cutEdgeCount() <= 2 * 2 * 20 + 8, "cut " + partition.cutEdgeCount() + " edges");
+	}
+
+	@Test
+	void haloListsEveryEdgeAVehicleCanCrossOnto() {
+		GraphPartition partition = GraphPartition.bisect(GRAPH, 3);
+		for (int edge = 0; edge < GRAPH.edgeCount(); edge++) {
+			int from = partition.regionOfEdge(edge);
+			int node = GRAPH.target(edge);
+			int owner = partition.regionOf(node);
+			if (owner == from) continue;
+			int[] halo = partition.haloEdges(owner, from);
+			for (int next = GRAPH.firstEdge(node); next < GRAPH.endEdge(node); next++) {
+				final int expected = next;
+				assertTrue(Arrays.stream(halo).anyMatch(e -> e == expected), "edge " + next + " missing from halo");
+			}
+		}
+		for (int owner = 0; owner < 3; owner++) {
+			for (int viewer = 0; viewer < 3; viewer++) {
+				for (int edge : partition.haloEdges(owner, viewer)) assertEquals(owner, partition.regionOfEdge(edge));
+				assertEquals(owner == viewer, partition.haloEdges(owner, viewer).length == 0);
+			}
+		}
+	}
+
+	@Test
+	void boundaryOwnsTheEdgesLeavingItsNodes() {
+		GraphPartition partition = GraphPartition.bisect(GRAPH, 2);
+		RegionBoundary boundary = partition.boundary(1);
+
+		for (int edge = 0; edge < GRAPH.edgeCount(); edge++) {
+			assertEquals(partition.regionOf(GRAPH.source(edge)) == 1, boundary.owns(edge));
+			assertTrue(Double.isNaN(boundary.rearOffset(edge)));
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package com.shahilraghuwanshi.aetherium.simulation.partition;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.TestEngines;
+import com.shahilraghuwanshi.aetherium.simulation.TickExecutor;
+import com.shahilraghuwanshi.aetherium.simulation.VehicleStore;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionCoordinatorTest {
+
+	private static final RoadGraph GRAPH = TestGraphs.jitteredGrid(12, 12, 0.1, 7);
+	private static final int REGIONS = 3;
+	private static final int TICKS = 3000;
+
+	@Test
+	void regionsOverLoopbackSocketsSimulateWhatOneEngineDoes() throws Exception {
+		GraphPartition partition = GraphPartition.bisect(GRAPH, REGIONS);
+		SimulationEngine[] engines = new SimulationEngine[REGIONS];
+		RegionWorker[] workers = new RegionWorker[REGIONS];
+		ExecutorService threads = Executors.newFixedThreadPool(REGIONS);
+		try (TickExecutor executor = new TickExecutor(1, 1);
+			 PartitionCoordinator coordinator = new PartitionCoordinator(partition, new SignalController(GRAPH),
+					 new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+			Future<?>[] running = new Future<?>[REGIONS];
+			for (int region = 0; region < REGIONS; region++) {
+				engines[region] = TestEngines.engine(GRAPH, executor, 9, 200, 0.2);
+				engines[region].setRegion(partition.boundary(region));
+				workers[region] = new RegionWorker(engines[region], partition, null);
+				RegionWorker worker = workers[region];
+				running[region] = threads.submit(() -> {
+					worker.connect(coordinator.getAddress(), Duration.ofSeconds(10));
+					worker.run();
+					return null;
+				});
+			}
+			coordinator.awaitWorkers(Duration.ofSeconds(10));
+
+			SimulationEngine single = TestEngines.engine(GRAPH, executor, 9, 200, 0.2);
+			for (int tick = 0; tick < TICKS; tick++) {
+				coordinator.step(tick % 100 == 99, 0);
+				single.tick();
+			}
+			coordinator.step(true, 0);
+			single.tick();
+
+			assertEquals(single.getTickCount(), coordinator.getTick());
+			assertTrue(coordinator.getHandoffs() > 0, "vehicles should cross between regions");
+			assertEquals(single.getVehicles().size(), coordinator.getVehicleCount());
+			VehicleStore expected = single.getVehicles();
+			VehicleStore view = coordinator.getView();
+			assertTrue(view.size() > 0);
+			assertEquals(expected.size(), view.size());
+			Set<Long> ids = new HashSet<>();
+			for (int slot = 0; slot < view.size(); slot++) {
+				assertTrue(ids.add(view.id(slot)), "vehicle " + view.id(slot) + " is in two regions");
+			}
+			// Ids are issued per region, so vehicles are matched by where they are; the view has float positions
+			assertArrayEquals(sortedPositions(expected), sortedPositions(view), 1e-3);
+			long spawned = 0;
+			long arrived = 0;
+			for (SimulationEngine engine : engines) {
+				spawned += engine.getSpawnedCount();
+				arrived += engine.getArrivedCount();
+			}
+			assertEquals(single.getSpawnedCount(), spawned);
+			assertEquals(single.getArrivedCount(), arrived);
+
+			coordinator.close();
+			for (Future<?> worker : running) worker.get(10, TimeUnit.SECONDS);
+		} finally {
+			threads.shutdownNow();
+		}
+		long handedOff = 0;
+		long admitted = 0;
+		for (RegionWorker worker : workers) {
+			handedOff += worker.getHandedOff();
+			admitted += worker.getAdmitted();
+		}
+		// Only the vehicles handed off in the last tick were never admitted
+		assertTrue(admitted > 0 && admitted <= handedOff);
+	}
+
+	@Test
+	void aRegionAtItsVehicleLimitKeepsDrawingInStepWithTheOthers() throws Exception {
+		GraphPartition partition = GraphPartition.bisect(GRAPH, REGIONS);
+		SplittableRandom[] randoms = new SplittableRandom[REGIONS];
+		AtomicBoolean saturated = new AtomicBoolean();
+		ExecutorService threads = Executors.newFixedThreadPool(REGIONS);
+		try (TickExecutor executor = new TickExecutor(1, 1);
+			 PartitionCoordinator coordinator = new PartitionCoordinator(partition, new SignalController(GRAPH),
+					 new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+			Future<?>[] running = new Future<?>[REGIONS];
+			for (int region = 0; region < REGIONS; region++) {
+				randoms[region] = new SplittableRandom(9);
+				// Region 0 fills up almost at once; the others never do
+				SimulationEngine engine = TestEngines.engine(GRAPH, executor, randoms[region], region == 0 ? 2 : 200, 0.2);
+				engine.setRegion(partition.boundary(region));
+				RegionWorker worker = new RegionWorker(engine, partition, region == 0 ? () -> {
+					if (!engine.hasRoomForVehicles()) saturated.set(true);
+				} : null);
+				running[region] = threads.submit(() -> {
+					worker.connect(coordinator.getAddress(), Duration.ofSeconds(10));
+					worker.run();
+					return null;
+				});
+			}
+			coordinator.awaitWorkers(Duration.ofSeconds(10));
+			for (int tick = 0; tick < TICKS; tick++) {
+				coordinator.step(false, 0);
+			}
+			coordinator.close();
+			for (Future<?> worker : running) worker.get(10, TimeUnit.SECONDS);
+		} finally {
+			threads.shutdownNow();
+		}
+
+		assertTrue(saturated.get(), "region 0 should have reached its vehicle limit");
+		long next = randoms[0].nextLong();
+		for (int region = 1; region < REGIONS; region++) {
+			assertEquals(next, randoms[region].nextLong(), "region " + region + " drew a different number of spawns");
+		}
+	}
+
+	@Test
+	void rejectsWorkersOfAnotherNetwork() throws Exception {
+		GraphPartition partition = GraphPartition.bisect(GRAPH, 2);
+		RoadGraph other = TestGraphs.jitteredGrid(12, 12, 0.1, 8);
+		try (TickExecutor executor = new TickExecutor(1, 1);
+			 PartitionCoordinator coordinator = new PartitionCoordinator(partition, new SignalController(GRAPH),
+					 new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+			SimulationEngine engine = TestEngines.engine(other, executor, 1, 100, 0.2);
+			GraphPartition otherPartition = GraphPartition.bisect(other, 2);
+			engine.setRegion(otherPartition.boundary(0));
+			RegionWorker worker = new RegionWorker(engine, otherPartition, null);
+			Thread accepting = new Thread(() -> {
+				try {
+					coordinator.awaitWorkers(Duration.ofSeconds(2));
+				} catch (IOException expected) {
+					// Nobody acceptable connects
+				}
+			});
+			accepting.start();
+			assertThrows(IOException.class, () -> worker.connect(coordinator.getAddress(), Duration.ofSeconds(5)));
+			accepting.join();
+		}
+	}
+
+	// x, y of every vehicle, ordered by x then y
+	private static double[] sortedPositions(VehicleStore vehicles) {
+		double[][] points = new double[vehicles.size()][];
+		for (int slot = 0; slot < vehicles.size(); slot++) points[slot] = new double[] {vehicles.x(slot), vehicles.y(slot)};
+		Arrays.sort(points, Comparator.<double[]>comparingDouble(p -> p[0]).thenComparingDouble(p -> p[1]));
+		double[] flat = new double[points.length * 2];
+		for (int i = 0; i < points.length; i++) {
+			flat[2 * i] = points[i][0];
+			flat[2 * i + 1] = points[i][1];
+		}
+		return flat;
+	}
+
+}
@@ -0,0 +1,198 @@
+package com.shahilraghuwanshi.aetherium.simulation.protocol;
+
+import com.shahilraghuwanshi.aetherium.simulation.VehicleStore;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalPlan;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameEncoderTest {
+
+	private static final SignalController NO_SIGNALS = new SignalController(RoadGraph.builder().build());
+
+	private final int[] path = {0, 1};
+
+	@Test
+	void deltasAppliedToAKeyframeReproduceTheCurrentState() {
+		SpatialGrid grid = new SpatialGrid(0, 0, 10_000, 10_000, 1000);
+		VehicleStore vehicles = new VehicleStore(16);
+		int a = vehicles.add(10, 10, 1, path);
+		int b = vehicles.add(20, 20, 1, path);
+		SignalController lights = new SignalController(RoadGraph.builder().addIntersection(7, 500, 500, true).build());
+		lights.addSignal(0, SignalPlan.twoPhase(10, 0), 0);
+
+		FrameEncoder encoder = new FrameEncoder(grid);
+		ClientState client = new ClientState();
+		client.apply(frame(encoder, 1, vehicles, lights, grid.allCells(), CellRect.EMPTY, true));
+
+		// Small move, a teleport beyond the i16 range into another cell, a despawn, a spawn and a light change
+		vehicles.setPosition(vehicles.slotOf(a), 10.5, 9.25);
+		vehicles.setPosition(vehicles.slotOf(b), 5000, 20);
+		int c = vehicles.add(30, 30, 1, path);
+		vehicles.removeAt(vehicles.slotOf(a));
+		lights.update(10, 0, 1); // Switches to EW_GREEN
+
+		byte[] delta = frame(encoder, 2, vehicles, lights, grid.allCells(), grid.allCells(), false);
+		client.apply(delta);
+		assertEquals(Map.of(vehicles.id(vehicles.slotOf(b)), List.of(5000.0, 20.0),
+				vehicles.id(vehicles.slotOf(c)), List.of(30.0, 30.0)), client.positions());
+		assertEquals((byte) 1, client.lights.get(7L));
+
+		// Nothing changed: the delta carries no blocks at all
+		byte[] idle = frame(encoder, 3, vehicles, lights, grid.allCells(), grid.allCells(), false);
+		assertEquals(8 + 4 + 4, idle.length);
+	}
+
+	@Test
+	void idsBeyondThirtyTwoBitsStayDistinct() {
+		SpatialGrid grid = new SpatialGrid(0, 0, 1000, 1000, 1000);
+		VehicleStore vehicles = new VehicleStore(16);
+		long low = 5;
+		long high = (1L << 32) + 5; // The same low 32 bits
+		vehicles.add(low, 10, 10, 1, path);
+		vehicles.add(high, 20, 20, 1, path);
+
+		FrameEncoder encoder = new FrameEncoder(grid);
+		ClientState client = new ClientState();
+		client.apply(frame(encoder, 1, vehicles, NO_SIGNALS, grid.allCells(), CellRect.EMPTY, true));
+		vehicles.setPosition(1, 21, 20);
+		client.apply(frame(encoder, 2, vehicles, NO_SIGNALS, grid.allCells(), grid.allCells(), false));
+		assertEquals(Map.of(low, List.of(10.0, 10.0), high, List.of(21.0, 20.0)), client.positions());
+	}
+
+	@Test
+	void lightIdsBeyondThirtyTwoBitsStayDistinct() {
+		long low = 7;
+		long high = (1L << 32) + 7;
+		SignalController lights = new SignalController(RoadGraph.builder()
+				.addIntersection(low, 100, 100, true)
+				.addIntersection(high, 900, 900, true)
+				.build());
+		lights.addSignal(0, SignalPlan.twoPhase(10, 0), 0);
+		lights.addSignal(1, SignalPlan.twoPhase(10, 0), 10);
+		SpatialGrid grid = new SpatialGrid(0, 0, 1000, 1000, 500);
+
+		FrameEncoder encoder = new FrameEncoder(grid);
+		ClientState client = new ClientState();
+		client.apply(frame(encoder, 1, new VehicleStore(16), lights, grid.allCells(), CellRect.EMPTY, true));
+		assertEquals(Map.of(low, lights.state(0), high, lights.state(1)), client.lights);
+	}
+
+	@Test
+	void clientsOnlyReceiveTheCellsInTheirViewport() {
+		SpatialGrid grid = new SpatialGrid(0, 0, 1000, 1000, 100);
+		VehicleStore vehicles = new VehicleStore(16);
+		int a = vehicles.add(50, 50, 1, path);
+		int b = vehicles.add(550, 550, 1, path);
+		long idA = vehicles.id(vehicles.slotOf(a));
+		long idB = vehicles.id(vehicles.slotOf(b));
+		FrameEncoder encoder = new FrameEncoder(grid);
+		ClientState client = new ClientState();
+
+		CellRect view = grid.cellsIn(0, 0, 199, 199);
+		client.apply(frame(encoder, 1, vehicles, NO_SIGNALS, view, CellRect.EMPTY, true));
+		assertEquals(List.of(idA), List.copyOf(client.cars.keySet()));
+
+		// b drives into view, a drives out of it
+		vehicles.setPosition(vehicles.slotOf(b), 150, 150);
+		vehicles.setPosition(vehicles.slotOf(a), 250, 50);
+		client.apply(frame(encoder, 2, vehicles, NO_SIGNALS, view, view, false));
+		assertEquals(Map.of(idB, List.of(150.0, 150.0)), client.positions());
+
+		// Scrolling right drops b's cell and brings in a's
+		CellRect scrolled = grid.cellsIn(200, 0, 399, 199);
+		client.apply(frame(encoder, 3, vehicles, NO_SIGNALS, scrolled, view, false));
+		assertEquals(Map.of(idA, List.of(250.0, 50.0)), client.positions());
+	}
+
+	@Test
+	void gridMovesHandlesBetweenCells() {
+		SpatialGrid grid = new SpatialGrid(0, 0, 100, 100, 10);
+		grid.place(3, grid.cellOf(5, 5));
+		grid.place(4, grid.cellOf(6, 6));
+		grid.place(3, grid.cellOf(95, 95));
+		assertEquals(1, grid.memberCount(0));
+		assertEquals(4, grid.member(0, 0));
+		assertEquals(grid.cellOf(95, 95), grid.cellOfHandle(3));
+
+		grid.remove(4);
+		assertEquals(0, grid.memberCount(0));
+		assertEquals(-1, grid.cellOfHandle(4));
+		assertEquals(grid.cellCount() - 1, grid.cellOf(5000, 5000)); // Clamped to the border
+	}
+
+	// What the server does for a single viewer
+	private static byte[] frame(FrameEncoder encoder, long tick, VehicleStore vehicles, SignalController lights,
+			CellRect cells, CellRect previousCells, boolean keyframe) {
+		TickFrames frames = encoder.encode(tick, vehicles, lights);
+		SpatialGrid grid = encoder.getGrid();
+		boolean[] marks = new boolean[grid.cellCount()];
+		for (int y = cells.minY(); y <= cells.maxY(); y++) {
+			for (int x = cells.minX(); x <= cells.maxX(); x++) {
+				marks[y * grid.columns() + x] = keyframe || !previousCells.contains(x, y);
+			}
+		}
+		encoder.encodeKeyframeBlocks(frames, marks);
+		for (boolean mark : marks) assertFalse(mark); // Consumed by the encoder
+		return frames.assemble(cells, previousCells, keyframe);
+	}
+
+	/** Mirrors the decoder in frontend/sketch.js. */
+	private static final class ClientState {
+		final Map<Long, double[]> cars = new HashMap<>(); // id -> x, y, cell
+		final Map<Long, Byte> lights = new HashMap<>();
+
+		Map<Long, List<Double>> positions() {
+			Map<Long, List<Double>> positions = new HashMap<>();
+			cars.forEach((id, car) -> positions.put(id, List.of(car[0], car[1])));
+			return positions;
+		}
+
+		void apply(byte[] frame) {
+			ByteBuffer in = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+			byte type = in.get();
+			assertEquals(FrameEncoder.VERSION, in.get());
+			in.getShort();
+			in.getInt();
+			if (type == FrameEncoder.TYPE_KEYFRAME) cars.clear();
+			for (int i = in.getInt(); i > 0; i--) clearCell(in.getInt());
+
+			for (int blocks = in.getInt(); blocks > 0; blocks--) {
+				int cell = in.getInt();
+				if ((in.get() & FrameEncoder.BLOCK_RESET) != 0) clearCell(cell);
+				for (int i = in.getInt(); i > 0; i--) {
+					long id = in.getLong();
+					cars.put(id, new double[] {unscale(in.getInt()), unscale(in.getInt()), cell});
+				}
+				for (int i = in.getInt(); i > 0; i--) {
+					long id = in.getLong();
+					double[] car = cars.get(id);
+					if (car != null && car[2] == cell) cars.remove(id);
+				}
+				for (int i = in.getInt(); i > 0; i--) {
+					double[] car = cars.get(in.getLong());
+					car[0] += unscale(in.getShort());
+					car[1] += unscale(in.getShort());
+				}
+				for (int i = in.getInt(); i > 0; i--) lights.put(in.getLong(), in.get());
+			}
+			assertFalse(in.hasRemaining());
+		}
+
+		private void clearCell(int cell) {
+			cars.values().removeIf(car -> car[2] == cell);
+		}
+
+		private static double unscale(int value) {
+			return value / (double) FrameEncoder.POSITION_SCALE;
+		}
+	}
+}
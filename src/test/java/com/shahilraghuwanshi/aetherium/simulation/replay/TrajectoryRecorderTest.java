@@ -0,0 +1,171 @@
+package com.shahilraghuwanshi.aetherium.simulation.replay;
+
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationSnapshot;
+import com.shahilraghuwanshi.aetherium.simulation.TestEngines;
+import com.shahilraghuwanshi.aetherium.simulation.TickExecutor;
+import com.shahilraghuwanshi.aetherium.simulation.VehicleStore;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalPlan;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrajectoryRecorderTest {
+
+	private static final RoadGraph GRAPH = TestGraphs.jitteredGrid(15, 15, 0.1, 21);
+	private static final List<SimulationSnapshot> RUN = new ArrayList<>();
+
+	@BeforeAll
+	static void simulate() {
+		SignalController signals = new SignalController(GRAPH);
+		for (int node = 0; node < GRAPH.nodeCount(); node += 7) signals.addSignal(node, SignalPlan.twoPhase(3, 1), node % 5);
+		try (TickExecutor executor = new TickExecutor(1, 1)) {
+			SimulationEngine engine = new SimulationEngine(GRAPH, new AStarRouter(GRAPH), signals,
+					TestEngines.DRIVER, executor, new SplittableRandom(3), 300, 0.033);
+			for (int i = 0; i < 150; i++) engine.spawnVehicle();
+			for (int i = 0; i < 400; i++) {
+				engine.tick();
+				RUN.add(engine.getSnapshot());
+			}
+		}
+	}
+
+	@Test
+	void seeksToAnyTickAcrossSegments(@TempDir Path directory) throws IOException {
+		record(directory, 1);
+		try (Stream<Path> files = Files.list(directory)) {
+			assertTrue(files.count() > 1, "expected the small segment size to roll over");
+		}
+
+		try (TrajectoryReader reader = new TrajectoryReader(directory)) {
+			assertEquals(RUN.size(), reader.recordCount());
+			assertEquals(RUN.get(0).getSequence(), reader.firstTick());
+			assertEquals(GRAPH.fingerprint(), reader.getGraphFingerprint());
+			ReplayState state = new ReplayState(reader.getSignalCount());
+			for (int index : new int[] {399, 0, 17, 250, 251, 100}) {
+				reader.seek(reader.recordAt(RUN.get(index).getSequence()), state);
+				assertMatches(RUN.get(index), state);
+			}
+		}
+	}
+
+	@Test
+	void playingRecordsInOrderReproducesEveryTick(@TempDir Path directory) throws IOException {
+		record(directory, 1);
+		try (TrajectoryReader reader = new TrajectoryReader(directory)) {
+			ReplayState state = new ReplayState(reader.getSignalCount());
+			reader.seek(0, state);
+			for (int record = 1; record < reader.recordCount(); record++) {
+				reader.apply(record, state);
+				assertMatches(RUN.get(record), state);
+			}
+		}
+	}
+
+	@Test
+	void skippedTicksAreFoldedIntoTheNextRecord(@TempDir Path directory) throws IOException {
+		record(directory, 3);
+		try (TrajectoryReader reader = new TrajectoryReader(directory)) {
+			assertEquals((RUN.size() + 2) / 3, reader.recordCount());
+			ReplayState state = new ReplayState(reader.getSignalCount());
+			reader.seek(reader.recordAt(RUN.get(301).getSequence()), state);
+			assertMatches(RUN.get(300), state);
+			for (int record = reader.recordAt(RUN.get(300).getSequence()) + 1; record < reader.recordCount(); record++) {
+				reader.apply(record, state);
+			}
+			assertMatches(RUN.get(399), state);
+		}
+	}
+
+	@Test
+	void ignoresATruncatedLastRecord(@TempDir Path directory) throws IOException {
+		record(directory, 1);
+		Path last;
+		try (Stream<Path> files = Files.list(directory)) {
+			last = files.sorted().reduce((a, b) -> b).orElseThrow();
+		}
+		try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+
+		try (TrajectoryReader reader = new TrajectoryReader(directory)) {
+			assertEquals(RUN.size() - 1, reader.recordCount());
+			ReplayState state = new ReplayState(reader.getSignalCount());
+			reader.seek(reader.recordCount() - 1, state);
+			assertMatches(RUN.get(RUN.size() - 2), state);
+		}
+	}
+
+	@Test
+	void idsBeyondThirtyTwoBitsStayDistinct(@TempDir Path directory) throws IOException {
+		VehicleStore vehicles = new VehicleStore(16);
+		int[] path = {0, 1};
+		vehicles.add(5, 10, 10, 1, path);
+		vehicles.add((1L << 32) + 5, 20, 20, 1, path); // The same low 32 bits
+		List<SimulationSnapshot> ticks = new ArrayList<>();
+		ticks.add(TestEngines.snapshot(1, vehicles));
+		vehicles.setPosition(1, 21, 20);
+		ticks.add(TestEngines.snapshot(2, vehicles));
+
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(directory, GRAPH.fingerprint(), 0.033, 25, 8 * 1024,
+				ticks.size(), 1)) {
+			for (SimulationSnapshot tick : ticks) assertTrue(recorder.record(tick));
+		}
+		try (TrajectoryReader reader = new TrajectoryReader(directory)) {
+			ReplayState state = new ReplayState(reader.getSignalCount());
+			reader.seek(0, state);
+			assertMatches(ticks.get(0), state);
+			reader.apply(1, state);
+			assertMatches(ticks.get(1), state);
+		}
+	}
+
+	// Records every step-th tick of the run, starting with the first
+	private static void record(Path directory, int step) throws IOException {
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(directory, GRAPH.fingerprint(), 0.033, 25, 8 * 1024,
+				RUN.size(), 1)) {
+			for (int i = 0; i < RUN.size(); i += step) assertTrue(recorder.record(RUN.get(i)));
+			recorder.close();
+			assertTrue(recorder.isHealthy());
+			assertEquals((RUN.size() + step - 1) / step, recorder.getRecordedTicks());
+			assertEquals(0, recorder.getDroppedTicks());
+		}
+	}
+
+	private static void assertMatches(SimulationSnapshot expected, ReplayState state) {
+		assertEquals(expected.getSequence(), state.getTick());
+		VehicleStore vehicles = state.getVehicles();
+		assertEquals(expected.size(), vehicles.size());
+		Map<Long, Integer> indices = new HashMap<>();
+		for (int i = 0; i < expected.size(); i++) indices.put(expected.id(i), i);
+		double tolerance = 0.5 / 16 + 1e-9;
+		for (int slot = 0; slot < vehicles.size(); slot++) {
+			Integer index = indices.get(vehicles.id(slot));
+			assertNotNull(index, "vehicle " + vehicles.id(slot) + " should not be there at tick " + expected.getSequence());
+			assertEquals(expected.x(index), vehicles.x(slot), tolerance);
+			assertEquals(expected.y(index), vehicles.y(slot), tolerance);
+			assertEquals(expected.speed(index), vehicles.speed(slot), tolerance);
+		}
+		for (int light = 0; light < expected.lightCount(); light++) {
+			assertEquals(expected.lightState(light), state.getLightStates()[light]);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AStarRouterTest {
+
+	@Test
+	void matchesPlainDijkstraAcrossReusedSearchState() {
+		RoadGraph graph = TestGraphs.jitteredGrid(20, 20, 0.25, 42);
+		AStarRouter router = new AStarRouter(graph);
+		Random random = new Random(7);
+
+		for (int i = 0; i < 300; i++) {
+			int start = random.nextInt(graph.nodeCount());
+			int end = random.nextInt(graph.nodeCount());
+			double expected = dijkstra(graph, start, end);
+			int[] path = router.route(start, end);
+
+			if (start == end || expected == Double.POSITIVE_INFINITY) {
+				assertEquals(0, path.length);
+				continue;
+			}
+			assertEquals(start, path[0]);
+			assertEquals(end, path[path.length - 1]);
+			assertEquals(expected, TestGraphs.pathLength(graph, path), 1e-6);
+		}
+	}
+
+	private static double dijkstra(RoadGraph graph, int start, int end) {
+		double[] dist = new double[graph.nodeCount()];
+		boolean[] done = new boolean[graph.nodeCount()];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		dist[start] = 0;
+		for (int round = 0; round < graph.nodeCount(); round++) {
+			int best = -1;
+			for (int n = 0; n < graph.nodeCount(); n++) {
+				if (!done[n] && dist[n] < Double.POSITIVE_INFINITY && (best < 0 || dist[n] < dist[best])) best = n;
+			}
+			if (best < 0) break;
+			done[best] = true;
+			for (int e = graph.firstEdge(best); e < graph.endEdge(best); e++) {
+				dist[graph.target(e)] = Math.min(dist[graph.target(e)], dist[best] + graph.length(e));
+			}
+		}
+		return dist[end];
+	}
+}
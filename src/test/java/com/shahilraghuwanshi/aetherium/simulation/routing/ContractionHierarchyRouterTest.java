@@ -0,0 +1,62 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContractionHierarchyRouterTest {
+
+	@Test
+	void returnsSameLengthPathsAsAStarOnRandomPairs() {
+		RoadGraph graph = TestGraphs.jitteredGrid(40, 40, 0.2, 3);
+		AStarRouter astar = new AStarRouter(graph);
+		ContractionHierarchyRouter ch = new ContractionHierarchyRouter(graph, new ContractionHierarchyBuilder(graph).build());
+		Random random = new Random(11);
+
+		for (int i = 0; i < 1000; i++) {
+			int start = random.nextInt(graph.nodeCount());
+			int end = random.nextInt(graph.nodeCount());
+			int[] expected = astar.route(start, end);
+			int[] actual = ch.route(start, end);
+
+			assertEquals(expected.length == 0, actual.length == 0, "reachability differs for " + start + " -> " + end);
+			if (expected.length == 0) continue;
+			assertEquals(start, actual[0]);
+			assertEquals(end, actual[actual.length - 1]);
+			assertEquals(TestGraphs.pathLength(graph, expected), TestGraphs.pathLength(graph, actual), 1e-6,
+					"path length differs for " + start + " -> " + end);
+		}
+	}
+
+	@Test
+	void storesHierarchyAndReusesItForTheSameGraph(@TempDir Path directory) throws Exception {
+		RoadGraph graph = TestGraphs.jitteredGrid(10, 10, 0.1, 5);
+		ContractionHierarchyStore store = new ContractionHierarchyStore(directory);
+
+		ContractionHierarchy built = store.loadOrBuild(graph);
+		assertTrue(Files.exists(store.fileFor(graph)));
+		ContractionHierarchy loaded = store.loadOrBuild(graph);
+
+		assertNotSame(built, loaded);
+		assertEquals(built.edgeCount(), loaded.edgeCount());
+		assertArrayEquals(built.ranks, loaded.ranks);
+		ContractionHierarchyRouter router = new ContractionHierarchyRouter(graph, loaded);
+		AStarRouter astar = new AStarRouter(graph);
+		assertEquals(TestGraphs.pathLength(graph, astar.route(0, 99)), TestGraphs.pathLength(graph, router.route(0, 99)), 1e-6);
+	}
+
+	@Test
+	void rejectsHierarchyOfAnotherGraph() {
+		RoadGraph graph = TestGraphs.jitteredGrid(5, 5, 0, 1);
+		RoadGraph other = TestGraphs.jitteredGrid(5, 5, 0, 2);
+		ContractionHierarchy hierarchy = new ContractionHierarchyBuilder(graph).build();
+		assertThrows(IllegalArgumentException.class, () -> new ContractionHierarchyRouter(other, hierarchy));
+	}
+}
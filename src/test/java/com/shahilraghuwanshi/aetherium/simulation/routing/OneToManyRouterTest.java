@@ -0,0 +1,38 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OneToManyRouterTest {
+
+	@Test
+	void returnsSameLengthPathsAsAStarForEveryTarget() {
+		RoadGraph graph = TestGraphs.jitteredGrid(30, 30, 0.2, 7);
+		AStarRouter astar = new AStarRouter(graph);
+		OneToManyRouter router = new OneToManyRouter(graph);
+		Random random = new Random(4);
+
+		for (int query = 0; query < 50; query++) {
+			int start = random.nextInt(graph.nodeCount());
+			int[] ends = new int[40];
+			for (int i = 0; i < ends.length; i++) ends[i] = random.nextInt(graph.nodeCount());
+			ends[1] = ends[0]; // Repeated target
+			ends[2] = start;
+			int[][] paths = router.routes(start, ends);
+
+			for (int i = 0; i < ends.length; i++) {
+				int[] expected = astar.route(start, ends[i]);
+				assertEquals(expected.length == 0, paths[i].length == 0, "reachability differs for " + start + " -> " + ends[i]);
+				if (expected.length == 0) continue;
+				assertEquals(start, paths[i][0]);
+				assertEquals(ends[i], paths[i][paths[i].length - 1]);
+				assertEquals(TestGraphs.pathLength(graph, expected), TestGraphs.pathLength(graph, paths[i]), 1e-6);
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.shahilraghuwanshi.aetherium.simulation.routing;
+
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCacheTest {
+
+	@Test
+	void evictsLeastRecentlyUsedEntriesAndCountsHitsAndMisses() {
+		RouteCache cache = new RouteCache(16, Long.MAX_VALUE); // one entry per segment
+		int[] path = {1, 2, 3};
+		cache.put(1, 3, path);
+		assertSame(path, cache.get(1, 3));
+		assertNull(cache.get(3, 1));
+
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i + 10, i + 11, new int[] {i + 10, i + 11});
+		}
+		RouteCacheStats stats = cache.stats();
+		assertEquals(1, stats.hits());
+		assertEquals(1, stats.misses());
+		assertTrue(stats.entries() <= 16);
+		assertEquals(1001 - stats.entries(), stats.evictions());
+	}
+
+	@Test
+	void respectsMemoryBudget() {
+		long budget = 16 * RouteCache.weigh(new int[100]);
+		RouteCache cache = new RouteCache(1_000_000, budget);
+		for (int i = 0; i < 500; i++) {
+			cache.put(i, i + 1, new int[100]);
+		}
+		assertTrue(cache.stats().estimatedBytes() <= budget);
+	}
+
+	@Test
+	void cachingRouterSharesPathArraysUntilInvalidated() {
+		RoadGraph graph = TestGraphs.jitteredGrid(8, 8, 0, 9);
+		RouteCache cache = new RouteCache(100, 1 << 20);
+		CachingRouter router = new CachingRouter(new AStarRouter(graph), cache);
+
+		int[] first = router.route(0, 63);
+		assertSame(first, router.route(0, 63));
+		cache.invalidateAll();
+		int[] recomputed = router.route(0, 63);
+		assertNotSame(first, recomputed);
+		assertArrayEquals(first, recomputed);
+		assertEquals(1, cache.stats().hits());
+	}
+
+	@Test
+	void networkEditsDropOnlyTheRoutesTheyCanChange() {
+		RoadGraph graph = TestGraphs.jitteredGrid(12, 12, 0.1, 4);
+		AStarRouter router = new AStarRouter(graph);
+		RouteCache cache = new RouteCache(100_000, Long.MAX_VALUE);
+		for (int start = 0; start < graph.nodeCount(); start += 7) {
+			for (int end = 0; end < graph.nodeCount(); end += 5) {
+				if (start != end) cache.put(start, end, router.route(start, end));
+			}
+		}
+		int cached = cache.stats().entries();
+
+		// Close a road that some cached routes use
+		int[] used = cache.get(7, 140);
+		long road = graph.roadId(graph.findEdge(used[used.length / 2], used[used.length / 2 + 1]));
+		RoadGraph closed = graph.withRoadClosed(road, true);
+		int dropped = cache.invalidateChanges(graph, closed, graph.edgeMapping(closed));
+		assertTrue(dropped > 0 && dropped < cached, "dropped " + dropped + " of " + cached);
+		assertNull(cache.get(7, 140));
+		assertRemainingRoutesAreShortest(cache, closed);
+
+		// A speed limit changes no route by length
+		RoadGraph limited = closed.withSpeedLimit(road, 10);
+		assertEquals(0, cache.invalidateChanges(closed, limited, closed.edgeMapping(limited)));
+
+		// A shortcut across the map only drops routes it could shorten
+		int before = cache.stats().entries();
+		RoadGraph extended = limited.withRoad(10_000, graph.nodeId(0), graph.nodeId(140), Double.NaN);
+		dropped = cache.invalidateChanges(limited, extended, limited.edgeMapping(extended));
+		assertTrue(dropped > 0 && dropped < before, "dropped " + dropped + " of " + before);
+		assertRemainingRoutesAreShortest(cache, extended);
+	}
+
+	private static void assertRemainingRoutesAreShortest(RouteCache cache, RoadGraph graph) {
+		AStarRouter router = new AStarRouter(graph);
+		for (int start = 0; start < graph.nodeCount(); start += 7) {
+			for (int end = 0; end < graph.nodeCount(); end += 5) {
+				int[] path = start != end ? cache.get(start, end) : null;
+				if (path == null) continue;
+				assertEquals(TestGraphs.pathLength(graph, router.route(start, end)), TestGraphs.pathLength(graph, path), 1e-6);
+			}
+		}
+	}
+}
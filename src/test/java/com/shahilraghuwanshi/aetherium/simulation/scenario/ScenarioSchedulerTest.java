@@ -0,0 +1,96 @@
+package com.shahilraghuwanshi.aetherium.simulation.scenario;
+
+import com.shahilraghuwanshi.aetherium.simulation.PacingMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScenarioSchedulerTest {
+
+	@Test
+	void headlessTasksTakeTurnsOnASingleThread() throws InterruptedException {
+		try (ScenarioScheduler scheduler = new ScenarioScheduler(1)) {
+			AtomicLong[] ticks = {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+			AtomicBoolean counting = new AtomicBoolean(); // From once all of them run
+			for (AtomicLong count : ticks) {
+				scheduler.schedule("test", () -> {
+					if (counting.get()) count.incrementAndGet();
+				}, 1, PacingMode.HEADLESS, 1.0).resume();
+			}
+			Thread.sleep(20);
+			counting.set(true);
+			Thread.sleep(200);
+			counting.set(false);
+			long min = Long.MAX_VALUE, max = 0;
+			for (AtomicLong count : ticks) {
+				min = Math.min(min, count.get());
+				max = Math.max(max, count.get());
+			}
+			assertTrue(min > 100, min + " ticks");
+			assertTrue(max - min <= 2, "one tick each in turn: " + min + " to " + max);
+		}
+	}
+
+	@Test
+	void realtimeTasksKeepTheirPaceNextToHeadlessOnes() throws InterruptedException {
+		try (ScenarioScheduler scheduler = new ScenarioScheduler(1)) {
+			AtomicLong paced = new AtomicLong();
+			scheduler.schedule("headless", () -> { }, 1, PacingMode.HEADLESS, 1.0).resume();
+			scheduler.schedule("realtime", paced::incrementAndGet, 0.05, PacingMode.REALTIME, 1.0).resume();
+			Thread.sleep(500);
+			// About 10 ticks; generous bounds for a busy machine
+			assertTrue(paced.get() >= 3 && paced.get() <= 15, paced.get() + " ticks");
+		}
+	}
+
+	@Test
+	void pausedAndCancelledTasksStopTicking() throws InterruptedException {
+		try (ScenarioScheduler scheduler = new ScenarioScheduler(2)) {
+			AtomicLong ticks = new AtomicLong();
+			ScenarioScheduler.Task task = scheduler.schedule("test", ticks::incrementAndGet, 1, PacingMode.HEADLESS, 1.0);
+			Thread.sleep(50);
+			assertEquals(0, ticks.get(), "tasks start paused");
+
+			task.resume();
+			Thread.sleep(50);
+			task.pause();
+			Thread.sleep(20);
+			long paused = ticks.get();
+			assertTrue(paused > 0);
+			Thread.sleep(50);
+			assertEquals(paused, ticks.get());
+
+			task.resume();
+			Thread.sleep(20);
+			task.cancel();
+			long cancelled = ticks.get();
+			task.resume();
+			Thread.sleep(50);
+			assertEquals(cancelled, ticks.get(), "a cancelled task never ticks again");
+			assertEquals(cancelled, task.getTicks());
+		}
+	}
+
+	@Test
+	void cancelWaitsForTheTickInProgress() throws InterruptedException {
+		try (ScenarioScheduler scheduler = new ScenarioScheduler(1)) {
+			AtomicBoolean inTick = new AtomicBoolean();
+			ScenarioScheduler.Task task = scheduler.schedule("slow", () -> {
+				inTick.set(true);
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				inTick.set(false);
+			}, 1, PacingMode.HEADLESS, 1.0);
+			task.resume();
+			while (!inTick.get()) Thread.onSpinWait();
+			task.cancel();
+			assertFalse(inTick.get(), "cancel returned while the tick was running");
+		}
+	}
+}
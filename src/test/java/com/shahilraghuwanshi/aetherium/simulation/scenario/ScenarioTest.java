@@ -0,0 +1,134 @@
+package com.shahilraghuwanshi.aetherium.simulation.scenario;
+
+import com.shahilraghuwanshi.aetherium.simulation.PacingMode;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationEngine;
+import com.shahilraghuwanshi.aetherium.simulation.SimulationSnapshot;
+import com.shahilraghuwanshi.aetherium.simulation.TestEngines;
+import com.shahilraghuwanshi.aetherium.simulation.TickExecutor;
+import com.shahilraghuwanshi.aetherium.simulation.demand.DemandMode;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import com.shahilraghuwanshi.aetherium.simulation.graph.TestGraphs;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.FrameEncoder;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.SpatialGrid;
+import com.shahilraghuwanshi.aetherium.simulation.protocol.TickFrames;
+import com.shahilraghuwanshi.aetherium.simulation.routing.AStarRouter;
+import com.shahilraghuwanshi.aetherium.simulation.routing.Router;
+import com.shahilraghuwanshi.aetherium.simulation.signal.SignalController;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScenarioTest {
+
+	private static final RoadGraph GRAPH = TestGraphs.jitteredGrid(15, 15, 0.1, 21);
+	private static final TickExecutor SERIAL = new TickExecutor(1, 1);
+
+	@Test
+	void scenariosWithTheSameSeedRunAlikeSideBySideAndEditsStayTheirOwn() throws InterruptedException {
+		Router shared = new AStarRouter(GRAPH); // Search state is per thread, so one router serves every scenario
+		RecordingViewers viewers = new RecordingViewers(Set.of("b"));
+		try (ScenarioScheduler scheduler = new ScenarioScheduler(2)) {
+			Scenario a = scenario("a", 5, shared, viewers, scheduler);
+			Scenario b = scenario("b", 5, shared, viewers, scheduler);
+			Scenario c = scenario("c", 6, shared, viewers, scheduler);
+			long roadId = GRAPH.roadId(0);
+			a.editNetwork(graph -> graph.withSpeedLimit(roadId, 10));
+			assertEquals(1, a.getNetworkVersion());
+			assertEquals(0, b.getNetworkVersion());
+			assertSame(GRAPH, b.getLatestGraph());
+
+			// A tick every few minutes of wall time, so only the fast-forward moves them
+			for (Scenario scenario : new Scenario[] {a, b, c}) {
+				scenario.getClock().fastForward(600);
+				scenario.resume();
+			}
+			long deadline = System.currentTimeMillis() + 10_000;
+			while ((a.getClock().getTicks() < 600 || b.getClock().getTicks() < 600 || c.getClock().getTicks() < 600)
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(50);
+			assertEquals(600, b.getClock().getTicks());
+			assertEquals(600, c.getClock().getTicks());
+
+			SimulationSnapshot first = b.getSnapshot();
+			SimulationSnapshot other = c.getSnapshot();
+			assertEquals(600, first.getSequence());
+			assertTrue(first.size() > 0);
+			boolean differs = first.size() != other.size();
+			for (int i = 0; i < Math.min(first.size(), other.size()); i++) {
+				if (first.x(i) != other.x(i) || first.y(i) != other.y(i)) differs = true;
+			}
+			assertTrue(differs, "a different seed should give a different run");
+			assertEquals(Set.of("b"), viewers.frames.keySet(), "only watched scenarios are encoded");
+
+			a.close();
+			b.close();
+			c.close();
+		}
+	}
+
+	@Test
+	void sameSeedGivesTheSameStateAtTheSameTick() throws InterruptedException {
+		Router shared = new AStarRouter(GRAPH);
+		RecordingViewers viewers = new RecordingViewers(Set.of());
+		try (ScenarioScheduler scheduler = new ScenarioScheduler(2)) {
+			Scenario first = scenario("1", 9, shared, viewers, scheduler);
+			Scenario second = scenario("2", 9, shared, viewers, scheduler);
+			for (Scenario scenario : new Scenario[] {first, second}) {
+				scenario.getClock().fastForward(400);
+				scenario.resume();
+			}
+			long deadline = System.currentTimeMillis() + 10_000;
+			while ((first.getClock().getTicks() < 400 || second.getClock().getTicks() < 400) && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			SimulationSnapshot a = first.getSnapshot();
+			SimulationSnapshot b = second.getSnapshot();
+			assertEquals(a.getSequence(), b.getSequence());
+			assertTrue(a.size() > 0);
+			assertEquals(a.size(), b.size());
+			for (int i = 0; i < a.size(); i++) {
+				assertEquals(a.id(i), b.id(i));
+				assertEquals(a.x(i), b.x(i));
+				assertEquals(a.y(i), b.y(i));
+			}
+			first.close();
+			second.close();
+		}
+	}
+
+	private static Scenario scenario(String id, long seed, Router router, Scenario.Viewers viewers, ScenarioScheduler scheduler) {
+		ScenarioSpec spec = new ScenarioSpec(id, seed, DemandMode.RANDOM, Double.NaN, 7, 200, PacingMode.REALTIME, 0.001);
+		SimulationEngine engine = new SimulationEngine(GRAPH, router, new SignalController(GRAPH), TestEngines.DRIVER, SERIAL,
+				new SplittableRandom(seed), spec.maxVehicles(), 0.5);
+		for (int i = 0; i < 20; i++) engine.spawnVehicle();
+		return new Scenario(id, spec, engine, null, (graph, travelTimes) -> new AStarRouter(graph),
+				new FrameEncoder(new SpatialGrid(-1000, -1000, 100_000, 100_000, 1000)), viewers, 1e6, 30, scheduler);
+	}
+
+	private static final class RecordingViewers implements Scenario.Viewers {
+		private final Set<String> watched;
+		private final Map<String, AtomicInteger> frames = new ConcurrentHashMap<>();
+
+		RecordingViewers(Set<String> watched) {
+			this.watched = watched;
+		}
+
+		@Override
+		public boolean isWatched(String scenarioId) {
+			return watched.contains(scenarioId);
+		}
+
+		@Override
+		public void broadcast(String scenarioId, FrameEncoder encoder, TickFrames frames, boolean periodicKeyframe) {
+			this.frames.computeIfAbsent(scenarioId, id -> new AtomicInteger()).incrementAndGet();
+		}
+	}
+}
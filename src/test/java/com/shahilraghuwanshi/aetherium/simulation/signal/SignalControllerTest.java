@@ -0,0 +1,94 @@
+package com.shahilraghuwanshi.aetherium.simulation.signal;
+
+import com.shahilraghuwanshi.aetherium.model.Intersection;
+import com.shahilraghuwanshi.aetherium.model.TrafficLight;
+import com.shahilraghuwanshi.aetherium.simulation.graph.RoadGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignalControllerTest {
+
+	private static final byte NS = (byte) TrafficLight.State.NS_GREEN.ordinal();
+	private static final byte EW = (byte) TrafficLight.State.EW_GREEN.ordinal();
+	private static final byte RED = (byte) TrafficLight.State.ALL_RED.ordinal();
+
+	private final RoadGraph graph = RoadGraph.builder()
+			.addIntersection(10, 0, 0, true)
+			.addIntersection(20, 100, 0, true)
+			.addIntersection(30, 200, 0, false)
+			.build();
+
+	@Test
+	void multiPhasePlansFollowTheirOffsets() {
+		SignalController signals = new SignalController(graph);
+		SignalPlan plan = SignalPlan.twoPhase(20, 2); // NS 0-20, red 20-22, EW 22-42, red 42-44
+		int first = signals.addSignal(0, plan, 0);
+		int second = signals.addSignal(1, plan, 10); // Ten seconds ahead, as for a green wave
+
+		signals.update(11, 0, signals.signalCount());
+		assertEquals(NS, signals.state(first));
+		assertEquals(RED, signals.state(second));
+
+		signals.update(21 + 44 * 3, 0, signals.signalCount()); // Cycles repeat
+		assertEquals(RED, signals.state(first));
+		assertEquals(EW, signals.state(second));
+
+		assertEquals(EW, signals.stateAt(1));
+		assertEquals(SignalController.NO_SIGNAL, signals.stateAt(2));
+		assertTrue(signals.isGreen(1, false));
+		assertFalse(signals.isGreen(1, true));
+		assertTrue(signals.isGreen(2, true));
+	}
+
+	@Test
+	void lightsStartInTheirStoredStateAndSkipUnknownIntersections() {
+		TrafficLight ew = light(10, TrafficLight.State.EW_GREEN);
+		TrafficLight ns = light(20, TrafficLight.State.NS_GREEN);
+		TrafficLight unknown = light(99, TrafficLight.State.NS_GREEN);
+
+		SignalController signals = SignalController.fromTrafficLights(graph, List.of(ew, ns, unknown), 0);
+		assertEquals(2, signals.signalCount());
+		assertEquals(EW, signals.stateAt(0));
+		assertEquals(NS, signals.stateAt(1));
+		assertSame(signals.plan(0), signals.plan(1));
+
+		signals.update(20, 0, 2);
+		assertEquals(NS, signals.stateAt(0));
+		assertEquals(EW, signals.stateAt(1));
+	}
+
+	@Test
+	void skipsLightsWithoutAPositiveStateDuration() {
+		TrafficLight zero = light(10, TrafficLight.State.NS_GREEN);
+		zero.setStateDurationSeconds(0);
+		TrafficLight negative = light(20, TrafficLight.State.EW_GREEN);
+		negative.setStateDurationSeconds(-5);
+		TrafficLight valid = light(30, TrafficLight.State.NS_GREEN);
+
+		SignalController signals = SignalController.fromTrafficLights(graph, List.of(zero, negative, valid), 0);
+		assertEquals(1, signals.signalCount());
+		assertEquals(SignalController.NO_SIGNAL, signals.stateAt(0));
+		assertEquals(SignalController.NO_SIGNAL, signals.stateAt(1));
+		assertEquals(NS, signals.stateAt(2));
+	}
+
+	@Test
+	void rejectsInvalidPlansAndDuplicateSignals() {
+		assertThrows(IllegalArgumentException.class,
+				() -> SignalPlan.of(new TrafficLight.State[] {TrafficLight.State.NS_GREEN}, new double[] {0}));
+		SignalController signals = new SignalController(graph);
+		signals.addSignal(0, SignalPlan.twoPhase(5, 0), 0);
+		assertThrows(IllegalArgumentException.class, () -> signals.addSignal(0, SignalPlan.twoPhase(5, 0), 0));
+	}
+
+	private static TrafficLight light(long intersectionId, TrafficLight.State state) {
+		Intersection intersection = new Intersection();
+		intersection.setId(intersectionId);
+		TrafficLight light = new TrafficLight(intersection);
+		light.setCurrentState(state);
+		return light;
+	}
+}
@@ -0,0 +1,63 @@
+package com.shahilraghuwanshi.aetherium.simulation.trips;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+	@Test
+	void quantilesStayWithinTheRelativeAccuracy() {
+		SplittableRandom random = new SplittableRandom(4);
+		double[] values = new double[100_000];
+		QuantileSketch sketch = new QuantileSketch(0.02);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Math.exp(3 + random.nextGaussian() * 1.5); // Travel-time like: long tail over orders of magnitude
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+		for (double q : new double[] {0.01, 0.25, 0.5, 0.9, 0.99, 0.999}) {
+			double exact = values[(int) Math.floor(q * (values.length - 1))];
+			assertEquals(exact, sketch.quantile(q), exact * 0.02, "quantile " + q);
+		}
+		assertEquals(values[0], sketch.quantile(0));
+		assertEquals(values[values.length - 1], sketch.max());
+		assertEquals(Arrays.stream(values).average().orElseThrow(), sketch.mean(), 1e-6);
+	}
+
+	@Test
+	void mergedSketchesAnswerLikeOneSketchOfBothStreams() {
+		SplittableRandom random = new SplittableRandom(9);
+		QuantileSketch left = new QuantileSketch(0.01);
+		QuantileSketch right = new QuantileSketch(0.01);
+		QuantileSketch both = new QuantileSketch(0.01);
+		for (int i = 0; i < 10_000; i++) {
+			double fast = random.nextDouble(5, 50);
+			double slow = random.nextDouble(500, 5000); // Disjoint ranges, so the merge must widen the buckets both ways
+			left.add(fast);
+			right.add(slow);
+			both.add(fast);
+			both.add(slow);
+		}
+		right.merge(left);
+		assertEquals(both.count(), right.count());
+		assertEquals(both.sum(), right.sum(), 1e-6);
+		for (double q = 0; q <= 1; q += 0.05) assertEquals(both.quantile(q), right.quantile(q), "quantile " + q);
+	}
+
+	@Test
+	void countsTinyValuesAsZeroAndRejectsNegativeOnes() {
+		QuantileSketch sketch = new QuantileSketch(0.02);
+		assertTrue(Double.isNaN(sketch.quantile(0.5)));
+		sketch.add(0);
+		sketch.add(0);
+		sketch.add(10);
+		assertEquals(0, sketch.quantile(0.5));
+		assertEquals(10, sketch.quantile(1));
+		assertThrows(IllegalArgumentException.class, () -> sketch.add(-1));
+		assertThrows(IllegalArgumentException.class, () -> sketch.merge(new QuantileSketch(0.05)));
+	}
+}
@@ -0,0 +1,99 @@
+package com.shahilraghuwanshi.aetherium.simulation.trips;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripStatisticsTest {
+
+	// Nodes 0 and 3 in zone 0, nodes 1 and 2 in zone 1
+	private static final int[] ZONES = {0, 1, 1, 0};
+
+	@Test
+	void rollsUpEachIntervalAndAnswersQueriesFromMemory() {
+		TripEventRing ring = new TripEventRing(64);
+		List<TripStatistics.Rollup> written = Collections.synchronizedList(new ArrayList<>());
+		try (TripStatistics statistics = new TripStatistics(ring, ZONES, 2, 60, 0.01, written::addAll, 0, 1000)) {
+			ring.offerTrip(0, 1, 0, 10, 500, 8);
+			ring.offerTraversal(5, 12, 30, 200, 4);
+			ring.offerTrip(3, 2, 0, 20, 700, 12);
+			ring.offerTrip(1, 3, 40, 70, 900, 15);   // Interval 1
+			ring.offerTraversal(5, 230, 250, 200, 4); // Interval 4; 2 and 3 stay empty
+			awaitUntil(() -> statistics.getEvents() == 5);
+
+			assertEquals(3, statistics.trips().count());
+			assertEquals(2, statistics.traversals());
+			TravelStats outbound = statistics.zonePair(0, 1);
+			assertEquals(2, outbound.count());
+			assertEquals(15, outbound.meanSeconds(), 1e-9);
+			assertEquals(5, outbound.meanDelaySeconds(), 1e-9);
+			assertEquals(600, outbound.meanDistance(), 1e-9);
+			assertEquals(20, outbound.maxSeconds());
+			assertNull(statistics.zonePair(0, 0));
+			assertEquals(2, statistics.road(5).count());
+			assertEquals(19, statistics.road(5).meanSeconds(), 1e-9);
+			assertNull(statistics.road(6));
+			assertEquals(List.of(1, 10), statistics.busiestZonePairs(5).stream()
+					.map(pair -> pair.originZone() * 10 + pair.destinationZone()).toList()); // 0->1 twice, 1->0 once
+
+			List<TripStatistics.Interval> throughput = statistics.throughput();
+			assertEquals(List.of(0.0, 60.0, 120.0, 180.0, 240.0), throughput.stream().map(TripStatistics.Interval::startSeconds).toList());
+			assertEquals(List.of(2L, 1L, 0L, 0L, 0L), throughput.stream().map(interval -> interval.trips().count()).toList());
+		}
+
+		// Closing wrote the open interval too; empty intervals have no rollup
+		assertEquals(List.of(0.0, 60.0, 240.0), written.stream().map(TripStatistics.Rollup::startSeconds).toList());
+		TripStatistics.Rollup first = written.get(0);
+		assertEquals(1, first.zonePairs().size());
+		assertEquals(2, first.zonePairs().get(0).stats().count());
+		assertEquals(5, first.roads().get(0).roadId());
+		assertEquals(List.of(2, 1, 1), written.stream().map(TripStatistics.Rollup::rowCount).toList());
+	}
+
+	@Test
+	void retriesFailedWritesAtTheNextFlush() {
+		TripEventRing ring = new TripEventRing(64);
+		AtomicInteger calls = new AtomicInteger();
+		List<TripStatistics.Rollup> written = Collections.synchronizedList(new ArrayList<>());
+		RollupSink flaky = rollups -> {
+			if (calls.incrementAndGet() == 1) throw new IllegalStateException("database unavailable");
+			written.addAll(rollups);
+		};
+		try (TripStatistics statistics = new TripStatistics(ring, ZONES, 2, 60, 0.01, flaky, 0, 1000)) {
+			ring.offerTrip(0, 1, 0, 10, 500, 8);
+			ring.offerTrip(0, 1, 0, 70, 500, 8); // Closes interval 0
+			awaitUntil(() -> statistics.getRowsWritten() == 1);
+			assertEquals(1, statistics.getFailedWrites());
+			assertEquals(0.0, written.get(0).startSeconds());
+		}
+	}
+
+	@Test
+	void givesUpTheOldestRollupsWhileTheSinkKeepsFailing() {
+		TripEventRing ring = new TripEventRing(64);
+		RollupSink down = rollups -> {
+			throw new IllegalStateException("database unavailable");
+		};
+		TripStatistics statistics = new TripStatistics(ring, ZONES, 2, 60, 0.01, down, 0, 1);
+		for (int interval = 0; interval < 4; interval++) ring.offerTrip(0, 1, 0, interval * 60 + 10, 500, 8);
+		statistics.close();
+		assertEquals(4, statistics.getEvents());
+		assertEquals(3, statistics.getRowsDropped()); // The last rollup is kept for a retry that never comes
+		assertEquals(0, statistics.getRowsWritten());
+		assertTrue(statistics.getFailedWrites() >= 1);
+	}
+
+	private static void awaitUntil(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "timed out");
+			Thread.onSpinWait();
+		}
+	}
+}